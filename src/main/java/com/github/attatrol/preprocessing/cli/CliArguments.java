@@ -0,0 +1,241 @@
+package com.github.attatrol.preprocessing.cli;
+
+import java.io.File;
+import java.util.Locale;
+
+import com.github.attatrol.preprocessing.datasource.columnar.ColumnarFileDataSource;
+
+/**
+ * Parsed command line arguments of {@link PreprocessingCli}, immutable.
+ * @author atta_troll
+ *
+ */
+final class CliArguments {
+
+    /**
+     * Usage text.
+     */
+    static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: PreprocessingCli --input <file> --output <file> [options]",
+            "  --input <file>             data file or directory, or columnar file (.dpc)",
+            "                             written by the columnar mode, which needs no profile",
+            "  --output <file>            result file",
+            "  --profile <file>           preprocessing profile, by default the stored profile",
+            "                             of the input is used; substitutors of a profile",
+            "                             of another version of the input are fitted again",
+            "  --mode <mode>              parsed: output parsed records as CSV (default),",
+            "                             distances: output distance matrix as little-endian",
+            "                             doubles of its upper triangle, row by row,",
+            "                             columnar: output parsed records as a columnar file",
+            "                             that is read without parsing when used as input",
+            "  --distance <name>          gower (default), dissimilarity, euclidean, manhattan,",
+            "                             chebyshev or normalized-<metric>",
+            "  --similarity-index <name>  similarity index of dissimilarity function,",
+            "                             e.g. OverlapIndex (default)",
+            "  --off-heap-budget <bytes>  keep parsed records off heap within the budget",
+            "                             and spill the rest to a temporary file, distances",
+            "                             are computed from blocks of records read from there");
+
+    /**
+     * Kinds of output.
+     * @author atta_troll
+     *
+     */
+    enum Mode {
+
+        /**
+         * Parsed records as CSV.
+         */
+        PARSED,
+
+        /**
+         * Upper triangle of the distance matrix.
+         */
+        DISTANCES,
+
+        /**
+         * Parsed records as a columnar file.
+         */
+        COLUMNAR
+    }
+
+    /**
+     * Data file or directory.
+     */
+    private final File input;
+
+    /**
+     * Result file.
+     */
+    private final File output;
+
+    /**
+     * Profile file, {@code null} for the stored profile of the input.
+     */
+    private final File profile;
+
+    /**
+     * Kind of output.
+     */
+    private final Mode mode;
+
+    /**
+     * Name of the distance function.
+     */
+    private final String distance;
+
+    /**
+     * Name of the similarity index.
+     */
+    private final String similarityIndex;
+
+    /**
+     * Off-heap budget in bytes, negative if records are kept in heap.
+     */
+    private final long offHeapBudget;
+
+    /**
+     * Default ctor.
+     * @param input data file or directory
+     * @param output result file
+     * @param profile profile file or {@code null}
+     * @param mode kind of output
+     * @param distance name of the distance function
+     * @param similarityIndex name of the similarity index
+     * @param offHeapBudget off-heap budget in bytes or a negative value
+     */
+    private CliArguments(File input, File output, File profile, Mode mode,
+            String distance, String similarityIndex, long offHeapBudget) {
+        this.input = input;
+        this.output = output;
+        this.profile = profile;
+        this.mode = mode;
+        this.distance = distance;
+        this.similarityIndex = similarityIndex;
+        this.offHeapBudget = offHeapBudget;
+    }
+
+    /**
+     * Parses command line arguments.
+     * @param args command line arguments
+     * @return parsed arguments
+     * @throws IllegalArgumentException if arguments are malformed
+     */
+    static CliArguments parse(String... args) throws IllegalArgumentException {
+        File input = null;
+        File output = null;
+        File profile = null;
+        Mode mode = Mode.PARSED;
+        String distance = "gower";
+        String similarityIndex = "OverlapIndex";
+        long offHeapBudget = -1L;
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException(
+                        String.format("Option %s has no value.", args[i]));
+            }
+            final String value = args[i + 1];
+            switch (args[i]) {
+            case "--input":
+                input = new File(value);
+                break;
+            case "--output":
+                output = new File(value);
+                break;
+            case "--profile":
+                profile = new File(value);
+                break;
+            case "--mode":
+                try {
+                    mode = Mode.valueOf(value.toUpperCase(Locale.ROOT));
+                }
+                catch (IllegalArgumentException ex) {
+                    throw new IllegalArgumentException(String.format("Unknown mode %s.", value), ex);
+                }
+                break;
+            case "--distance":
+                distance = value;
+                break;
+            case "--similarity-index":
+                similarityIndex = value;
+                break;
+            case "--off-heap-budget":
+                try {
+                    offHeapBudget = Long.parseLong(value);
+                }
+                catch (NumberFormatException ex) {
+                    throw new IllegalArgumentException(
+                            String.format("Malformed off-heap budget %s.", value), ex);
+                }
+                if (offHeapBudget < 0) {
+                    throw new IllegalArgumentException("Off-heap budget must not be negative.");
+                }
+                break;
+            default:
+                throw new IllegalArgumentException(String.format("Unknown option %s.", args[i]));
+            }
+        }
+        if (input == null || output == null) {
+            throw new IllegalArgumentException("Input and output must be set.");
+        }
+        return new CliArguments(input, output, profile, mode, distance, similarityIndex,
+                offHeapBudget);
+    }
+
+    /**
+     * @return data file or directory
+     */
+    File getInput() {
+        return input;
+    }
+
+    /**
+     * @return result file
+     */
+    File getOutput() {
+        return output;
+    }
+
+    /**
+     * @return profile file, {@code null} for the stored profile of the input
+     */
+    File getProfile() {
+        return profile;
+    }
+
+    /**
+     * @return kind of output
+     */
+    Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * @return {@code true} if input is a columnar file, it is read without a profile
+     */
+    boolean isColumnarInput() {
+        return input.isFile()
+                && input.getName().endsWith(ColumnarFileDataSource.FILE_EXTENSION);
+    }
+
+    /**
+     * @return name of the distance function
+     */
+    String getDistance() {
+        return distance;
+    }
+
+    /**
+     * @return name of the similarity index
+     */
+    String getSimilarityIndex() {
+        return similarityIndex;
+    }
+
+    /**
+     * @return off-heap budget in bytes, negative if records are kept in heap
+     */
+    long getOffHeapBudget() {
+        return offHeapBudget;
+    }
+}
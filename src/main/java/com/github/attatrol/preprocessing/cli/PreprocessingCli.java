@@ -0,0 +1,567 @@
+package com.github.attatrol.preprocessing.cli;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.IntStream;
+
+import com.github.attatrol.preprocessing.datasource.AbstractTokenDataSource;
+import com.github.attatrol.preprocessing.datasource.DataSource;
+import com.github.attatrol.preprocessing.datasource.DefaultTokenDataSource;
+import com.github.attatrol.preprocessing.datasource.RandomAccessDataSource;
+import com.github.attatrol.preprocessing.datasource.TokenDataSourceUtils;
+import com.github.attatrol.preprocessing.datasource.columnar.ColumnarFileDataSource;
+import com.github.attatrol.preprocessing.datasource.columnar.ColumnarFileWriter;
+import com.github.attatrol.preprocessing.datasource.columnar.MaterializedTokenDataSource;
+import com.github.attatrol.preprocessing.datasource.parsing.TokenFeatures;
+import com.github.attatrol.preprocessing.datasource.parsing.TokenType;
+import com.github.attatrol.preprocessing.datasource.profile.FileFingerprint;
+import com.github.attatrol.preprocessing.datasource.profile.PreprocessingProfile;
+import com.github.attatrol.preprocessing.datasource.profile.ProfileStore;
+import com.github.attatrol.preprocessing.distance.DistanceFunction;
+import com.github.attatrol.preprocessing.distance.DistanceRegisters;
+import com.github.attatrol.preprocessing.distance.metric.Metric;
+import com.github.attatrol.preprocessing.distance.metric.NormalizedMetric;
+import com.github.attatrol.preprocessing.distance.nonmetric.gower.GowerDistance;
+import com.github.attatrol.preprocessing.distance.nonmetric.gower.GowerTokenSimilarityIndexFactory;
+import com.github.attatrol.preprocessing.distance.nonmetric.similarity.DissimilarityFunction;
+import com.github.attatrol.preprocessing.distance.nonmetric.similarity.SimilarityIndexFactory;
+
+/**
+ * Headless batch runner of the preprocessing pipeline, it uses a stored
+ * {@link PreprocessingProfile}, so a data source set up once in the UI can be processed
+ * on a server without JavaFX. A profile file set by the command line that was made for
+ * another version of the input, as told by its {@link FileFingerprint}, is used with all
+ * substitutors fitted again on the input.<br/>
+ * Parsed mode writes parsed and substituted records as CSV, distances mode writes
+ * the upper triangle of the distance matrix of records in use, columnar mode writes parsed
+ * records as a columnar file. A columnar file may be the input of later runs, then it is read
+ * without a profile and without parsing. Distances and columnar modes read categorical tokens
+ * as dictionary codes, see {@link DefaultTokenDataSource#encodeCategories()}.
+ * Throughput is reported to the standard output.<br/>
+ * Exit codes: {@link #EXIT_OK}, {@link #EXIT_FAILURE}, {@link #EXIT_USAGE}.
+ * @author atta_troll
+ *
+ */
+public final class PreprocessingCli {
+
+    /**
+     * Successful run.
+     */
+    public static final int EXIT_OK = 0;
+
+    /**
+     * Failed run, i/o error or malformed data.
+     */
+    public static final int EXIT_FAILURE = 1;
+
+    /**
+     * Malformed command line or missing profile.
+     */
+    public static final int EXIT_USAGE = 2;
+
+    /**
+     * Size of output buffers in bytes.
+     */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /**
+     * Number of matrix rows computed in parallel before they are written.
+     */
+    private static final int ROW_BLOCK_SIZE = 64;
+
+    /**
+     * Number of records that are read at once to compute distances to a block of rows.
+     */
+    private static final int COLUMN_BLOCK_SIZE = 4096;
+
+    /**
+     * Number of bytes in a megabyte.
+     */
+    private static final double MEGABYTE = 1 << 20;
+
+    /**
+     * Number of nanoseconds in a second.
+     */
+    private static final double NANOSECONDS = 1e9;
+
+    /**
+     * Restricted ctor.
+     */
+    private PreprocessingCli() {
+    }
+
+    /**
+     * Entry point.
+     * @param args command line arguments, see {@link CliArguments#USAGE}
+     */
+    public static void main(String[] args) {
+        System.exit(run(System.out, System.err, args));
+    }
+
+    /**
+     * Runs the pipeline.
+     * @param out stream of the report
+     * @param err stream of errors
+     * @param args command line arguments
+     * @return exit code
+     */
+    public static int run(PrintStream out, PrintStream err, String... args) {
+        final CliArguments arguments;
+        final PreprocessingProfile profile;
+        try {
+            arguments = CliArguments.parse(args);
+            profile = arguments.isColumnarInput() ? null : loadProfile(err, arguments);
+        }
+        catch (IllegalArgumentException ex) {
+            err.println(ex.getMessage());
+            err.println(CliArguments.USAGE);
+            return EXIT_USAGE;
+        }
+        catch (IOException ex) {
+            err.println(ex.getMessage());
+            return EXIT_FAILURE;
+        }
+        final long start = System.nanoTime();
+        try {
+            if (profile == null) {
+                try (ColumnarFileDataSource columnarDataSource =
+                        new ColumnarFileDataSource(arguments.getInput())) {
+                    write(out, arguments, columnarDataSource.getTokenFeatures(),
+                            columnarDataSource, start);
+                }
+                return EXIT_OK;
+            }
+            try (DataSource<?> basicDataSource =
+                    profile.getSyntax().getSyntax().getBasicDataSource(arguments.getInput())) {
+                final PreprocessingProfile fittedProfile =
+                        profile.fitSubstitutors(basicDataSource);
+                final DefaultTokenDataSource<?> tokenDataSource =
+                        fittedProfile.createTokenDataSource(basicDataSource);
+                write(out, arguments, profile.getTokenFeatures(),
+                        arguments.getMode() == CliArguments.Mode.PARSED
+                        ? tokenDataSource : tokenDataSource.encodeCategories(), start);
+            }
+            return EXIT_OK;
+        }
+        catch (IllegalArgumentException ex) {
+            err.println(ex.getMessage());
+            return ex instanceof UsageException ? EXIT_USAGE : EXIT_FAILURE;
+        }
+        catch (IOException | IllegalStateException ex) {
+            err.println(ex.getMessage());
+            return EXIT_FAILURE;
+        }
+    }
+
+    /**
+     * Loads the profile set by arguments or the stored profile of the input.
+     * If fingerprint of the profile set by arguments doesn't match the input,
+     * a warning is reported and the profile is rebound to the input without substitutors.
+     * @param err stream of errors
+     * @param arguments command line arguments
+     * @return the profile
+     * @throws IOException on i/o error or if profile is malformed
+     * @throws IllegalArgumentException if there is no profile for the input
+     */
+    private static PreprocessingProfile loadProfile(PrintStream err, CliArguments arguments)
+            throws IOException, IllegalArgumentException {
+        if (arguments.getProfile() != null) {
+            final PreprocessingProfile profile;
+            try (InputStream stream = new FileInputStream(arguments.getProfile())) {
+                profile = PreprocessingProfile.load(stream);
+            }
+            final FileFingerprint fingerprint = FileFingerprint.of(arguments.getInput());
+            if (fingerprint.equals(profile.getFingerprint())) {
+                return profile;
+            }
+            err.println(String.format("Profile %s doesn't match %s, substitutors are fitted again.",
+                    arguments.getProfile(), arguments.getInput()));
+            return profile.rebind(fingerprint);
+        }
+        final ProfileStore store = ProfileStore.getDefault();
+        final PreprocessingProfile profile = store.find(arguments.getInput());
+        if (profile == null) {
+            throw new IllegalArgumentException(String.format(
+                    "No profile of %s in %s, set it up in the UI or use --profile.",
+                    arguments.getInput(), store.getDirectory()));
+        }
+        return profile;
+    }
+
+    /**
+     * Writes the output of the mode set by arguments.
+     * @param out stream of the report
+     * @param arguments command line arguments
+     * @param features token features
+     * @param dataSource token data source
+     * @param start start time in nanoseconds
+     * @throws IOException on i/o error
+     * @throws IllegalArgumentException if distance function is unknown or not applicable
+     */
+    private static void write(PrintStream out, CliArguments arguments, TokenFeatures[] features,
+            AbstractTokenDataSource<?> dataSource, long start)
+            throws IOException, IllegalArgumentException {
+        switch (arguments.getMode()) {
+        case DISTANCES:
+            writeDistances(out, arguments, features, dataSource, start);
+            break;
+        case COLUMNAR:
+            writeColumnar(out, arguments, features, dataSource, start);
+            break;
+        default:
+            writeRecords(out, arguments, features, dataSource, start);
+        }
+    }
+
+    /**
+     * Writes parsed records as a columnar file, later runs may use it as input
+     * and skip parsing.
+     * @param out stream of the report
+     * @param arguments command line arguments
+     * @param features token features
+     * @param dataSource token data source
+     * @param start start time in nanoseconds
+     * @throws IOException on i/o error
+     */
+    private static void writeColumnar(PrintStream out, CliArguments arguments,
+            TokenFeatures[] features, AbstractTokenDataSource<?> dataSource, long start)
+            throws IOException {
+        final long recordNumber = ColumnarFileWriter.write(dataSource, features,
+                arguments.getOutput());
+        final double seconds = (System.nanoTime() - start) / NANOSECONDS;
+        final long bytes = arguments.getOutput().length();
+        out.println(String.format(Locale.ROOT,
+                "records: %d, time: %.3f s, %.0f records/s, output: %d bytes, %.2f MB/s",
+                recordNumber, seconds, recordNumber / seconds, bytes, bytes / MEGABYTE / seconds));
+    }
+
+    /**
+     * Writes parsed records as CSV with a title line, missing tokens are empty.
+     * @param out stream of the report
+     * @param arguments command line arguments
+     * @param features token features
+     * @param dataSource token data source
+     * @param start start time in nanoseconds
+     * @throws IOException on i/o error
+     */
+    private static void writeRecords(PrintStream out, CliArguments arguments,
+            TokenFeatures[] features, AbstractTokenDataSource<?> dataSource, long start)
+            throws IOException {
+        long recordNumber = 0;
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(arguments.getOutput()), StandardCharsets.UTF_8),
+                BUFFER_SIZE)) {
+            for (int i = 0; i < features.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writeField(writer, features[i].getTitle() != null
+                        ? features[i].getTitle() : "token" + i);
+            }
+            writer.write('\n');
+            dataSource.reset();
+            while (dataSource.hasNext()) {
+                final Object[] tokens = dataSource.next().getData();
+                for (int i = 0; i < tokens.length; i++) {
+                    if (i > 0) {
+                        writer.write(',');
+                    }
+                    if (tokens[i] != null) {
+                        writeField(writer, tokens[i].toString());
+                    }
+                }
+                writer.write('\n');
+                recordNumber++;
+            }
+        }
+        final double seconds = (System.nanoTime() - start) / NANOSECONDS;
+        final long bytes = arguments.getOutput().length();
+        out.println(String.format(Locale.ROOT,
+                "records: %d, time: %.3f s, %.0f records/s, output: %d bytes, %.2f MB/s",
+                recordNumber, seconds, recordNumber / seconds, bytes, bytes / MEGABYTE / seconds));
+    }
+
+    /**
+     * Writes a CSV field, quotes it if necessary.
+     * @param writer output
+     * @param field field value
+     * @throws IOException on i/o error
+     */
+    private static void writeField(Writer writer, String field) throws IOException {
+        boolean needsQuotes = field.isEmpty();
+        for (int i = 0; i < field.length() && !needsQuotes; i++) {
+            final char c = field.charAt(i);
+            needsQuotes = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!needsQuotes) {
+            writer.write(field);
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < field.length(); i++) {
+            final char c = field.charAt(i);
+            if (c == '"') {
+                writer.write('"');
+            }
+            writer.write(c);
+        }
+        writer.write('"');
+    }
+
+    /**
+     * Writes the upper triangle of the distance matrix of records, excluding the diagonal,
+     * row by row as little-endian doubles. Rows are computed in parallel blocks.
+     * @param out stream of the report
+     * @param arguments command line arguments
+     * @param features token features
+     * @param dataSource token data source
+     * @param start start time in nanoseconds
+     * @throws IOException on i/o error
+     * @throws IllegalArgumentException if distance function is unknown or not applicable
+     */
+    private static void writeDistances(PrintStream out, CliArguments arguments,
+            TokenFeatures[] features, AbstractTokenDataSource<?> dataSource, long start)
+            throws IOException, IllegalArgumentException {
+        final String distance = arguments.getDistance();
+        final Metric metric = findMetric(distance);
+        final int[] mask = getMask(features, metric != null);
+        final TokenType[] types = new TokenType[mask.length];
+        for (int i = 0; i < mask.length; i++) {
+            types[i] = features[mask[i]].getType();
+        }
+        final AbstractTokenDataSource<?> maskedDataSource =
+                new TokenDataSourceUtils.MaskedTokenDataSource<>(dataSource, mask);
+        try (MaterializedTokenDataSource materializedDataSource = arguments.getOffHeapBudget() < 0
+                ? MaterializedTokenDataSource.materialize(maskedDataSource, types)
+                : MaterializedTokenDataSource.materializeOffHeap(maskedDataSource, types,
+                        arguments.getOffHeapBudget(), null, getRecordNumber(dataSource))) {
+            final DistanceFunction function = produceDistanceFunction(distance, metric, types,
+                    materializedDataSource, arguments.getSimilarityIndex());
+            final long pairNumber = writeUpperTriangle(arguments.getOutput(), function,
+                    materializedDataSource);
+            final double seconds = (System.nanoTime() - start) / NANOSECONDS;
+            final long bytes = pairNumber * Double.BYTES;
+            out.println(String.format(Locale.ROOT,
+                    "records: %d, tokens: %d, pairs: %d, time: %.3f s, %.0f pairs/s,"
+                    + " output: %d bytes, %.2f MB/s", materializedDataSource.getRecordNumber(),
+                    mask.length, pairNumber,
+                    seconds, pairNumber / seconds, bytes, bytes / MEGABYTE / seconds));
+        }
+    }
+
+
+    /**
+     * @param dataSource token data source
+     * @return number of records if data source knows it, zero otherwise
+     * @throws IOException on i/o error
+     */
+    private static long getRecordNumber(AbstractTokenDataSource<?> dataSource) throws IOException {
+        if (dataSource instanceof RandomAccessDataSource
+                && ((RandomAccessDataSource<?>) dataSource).supportsRandomAccess()) {
+            return ((RandomAccessDataSource<?>) dataSource).getRecordNumber();
+        }
+        return 0L;
+    }
+    /**
+     * Computes and writes the upper triangle of the distance matrix. Records are read
+     * from the materialized data source block by block, so only a block of rows and a block
+     * of columns are kept in heap and off-heap records stay off heap.
+     * @param file output file
+     * @param function distance function
+     * @param dataSource materialized records
+     * @return number of written distances
+     * @throws IOException on i/o error
+     * @throws IllegalArgumentException if there are too many records
+     */
+    private static long writeUpperTriangle(File file, DistanceFunction function,
+            MaterializedTokenDataSource dataSource) throws IOException, IllegalArgumentException {
+        if (dataSource.getRecordNumber() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many records for a distance matrix.");
+        }
+        final int n = (int) dataSource.getRecordNumber();
+        long pairNumber = 0;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (int blockStart = 0; blockStart < n; blockStart += ROW_BLOCK_SIZE) {
+                final int blockEnd = Math.min(n, blockStart + ROW_BLOCK_SIZE);
+                final int offset = blockStart;
+                final Object[][] blockRecords = readRecords(dataSource, blockStart, blockEnd);
+                final double[][] rows = new double[blockEnd - blockStart][];
+                for (int i = blockStart; i < blockEnd; i++) {
+                    rows[i - offset] = new double[n - i - 1];
+                }
+                for (int columnStart = blockStart + 1; columnStart < n;
+                        columnStart += COLUMN_BLOCK_SIZE) {
+                    final int columnOffset = columnStart;
+                    final int columnEnd = Math.min(n, columnStart + COLUMN_BLOCK_SIZE);
+                    final Object[][] columnRecords = readRecords(dataSource, columnStart, columnEnd);
+                    IntStream.range(blockStart, blockEnd).parallel().forEach(i -> {
+                        final double[] row = rows[i - offset];
+                        for (int j = Math.max(i + 1, columnOffset); j < columnEnd; j++) {
+                            row[j - i - 1] = function.calculate(blockRecords[i - offset],
+                                    columnRecords[j - columnOffset]);
+                        }
+                    });
+                }
+                for (double[] row : rows) {
+                    final ByteBuffer buffer = ByteBuffer.allocate(row.length * Double.BYTES)
+                            .order(ByteOrder.LITTLE_ENDIAN);
+                    buffer.asDoubleBuffer().put(row);
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    pairNumber += row.length;
+                }
+            }
+        }
+        return pairNumber;
+    }
+
+    /**
+     * Reads a range of records of a materialized data source.
+     * @param dataSource the data source
+     * @param start position of the first record
+     * @param end position after the last record
+     * @return records
+     * @throws IOException on i/o error
+     */
+    private static Object[][] readRecords(MaterializedTokenDataSource dataSource, int start,
+            int end) throws IOException {
+        final Object[][] records = new Object[end - start][];
+        dataSource.seek(dataSource.getRecordIndex(start));
+        for (int i = 0; i < records.length; i++) {
+            records[i] = dataSource.next().getData();
+        }
+        return records;
+    }
+
+    /**
+     * Creates mask of tokens in use, if none is in use, all tokens are used.
+     * @param features token features
+     * @param isNumeric {@code true} if only numeric tokens are applicable
+     * @return mask
+     * @throws IllegalArgumentException if no token is applicable
+     */
+    private static int[] getMask(TokenFeatures[] features, boolean isNumeric)
+            throws IllegalArgumentException {
+        final List<Integer> inUse = new ArrayList<>();
+        final List<Integer> applicable = new ArrayList<>();
+        for (int i = 0; i < features.length; i++) {
+            final TokenType type = features[i].getType();
+            if (type != null && (!isNumeric || type == TokenType.INTEGER
+                    || type == TokenType.FLOAT)) {
+                applicable.add(i);
+                if (features[i].isInUse()) {
+                    inUse.add(i);
+                }
+            }
+        }
+        final List<Integer> indexes = inUse.isEmpty() ? applicable : inUse;
+        if (indexes.isEmpty()) {
+            throw new UsageException("No tokens applicable for the distance function.");
+        }
+        final int[] mask = new int[indexes.size()];
+        for (int i = 0; i < mask.length; i++) {
+            mask[i] = indexes.get(i);
+        }
+        return mask;
+    }
+
+    /**
+     * @param distance name of the distance function
+     * @return registered metric, normalized or not, or {@code null}
+     *         if the distance is not a metric
+     */
+    private static Metric findMetric(String distance) {
+        final String name = distance.startsWith("normalized-")
+                ? distance.substring("normalized-".length()) : distance;
+        for (Metric metric : DistanceRegisters.SIMPLE_METRIC_REGISTER) {
+            if ((name + "metric").equalsIgnoreCase(metric.getClass().getSimpleName())) {
+                return metric;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Creates distance function.
+     * @param distance name of the distance function
+     * @param metric registered metric or {@code null}
+     * @param types token types
+     * @param dataSource materialized data source
+     * @param similarityIndex name of the similarity index
+     * @return distance function
+     * @throws IOException on i/o error
+     * @throws IllegalArgumentException if distance function is unknown
+     */
+    private static DistanceFunction produceDistanceFunction(String distance, Metric metric,
+            TokenType[] types, MaterializedTokenDataSource dataSource, String similarityIndex)
+            throws IOException, IllegalArgumentException {
+        if (metric != null) {
+            return distance.startsWith("normalized-")
+                    ? NormalizedMetric.getNormalizedMetric(dataSource, metric) : metric;
+        }
+        if ("gower".equals(distance)) {
+            final GowerTokenSimilarityIndexFactory<?>[] factories =
+                    new GowerTokenSimilarityIndexFactory<?>[types.length];
+            final double[] weights = new double[types.length];
+            for (int i = 0; i < types.length; i++) {
+                final GowerTokenSimilarityIndexFactory<?>[] registered =
+                        DistanceRegisters.GOWER_TOKEN_SIMILARITY_INDEX_FACTORY_REGISTER
+                            .get(types[i]);
+                if (registered == null || registered.length == 0) {
+                    throw new UsageException(String.format(
+                            "No Gower's similarity index for token type %s.", types[i]));
+                }
+                factories[i] = registered[0];
+                weights[i] = 1.;
+            }
+            return GowerDistance.produceGowerDistance(factories, weights, dataSource);
+        }
+        if ("dissimilarity".equals(distance)) {
+            for (SimilarityIndexFactory<?> factory
+                    : DistanceRegisters.SIMILARITY_INDEX_FACTORY_REGISTER) {
+                final Class<?> indexClass = factory.getClass().getEnclosingClass();
+                if (indexClass != null && indexClass.getSimpleName().equals(similarityIndex)) {
+                    return DissimilarityFunction.produceDissimilarityFunction(dataSource, factory);
+                }
+            }
+            throw new UsageException(String.format("Unknown similarity index %s.", similarityIndex));
+        }
+        throw new UsageException(String.format("Unknown distance function %s.", distance));
+    }
+
+    /**
+     * Malformed option value found after the pipeline is started.
+     */
+    private static final class UsageException extends IllegalArgumentException {
+
+        /**
+         * Serial version UID.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Default ctor.
+         * @param message the message
+         */
+        UsageException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Contains headless command line runner of the preprocessing pipeline, it has no JavaFX dependency.
+ */
+package com.github.attatrol.preprocessing.cli;
@@ -69,6 +69,46 @@ public abstract class AbstractTokenDataSource<V> implements DataSource<Object[]>
 		internalDataSource.reset();		
 	}
 
+	/**
+	 * Reads next records into a batch, so per record objects are not retained.
+	 * Batch is cleared first.<br/>
+	 * Default implementation copies records produced by {@link #next()},
+	 * derivatives should parse tokens directly into the batch.
+	 * @param batch reusable batch with {@link #getRecordLength()} columns
+	 * @return number of records read, zero if there are no records left
+	 * @throws IOException on failure to access external data source
+	 * @throws IllegalArgumentException if parsing of some record failed
+	 *         or batch has a wrong number of columns
+	 */
+	public int nextBatch(RecordBatch batch) throws IOException, IllegalArgumentException {
+		checkBatch(batch);
+		batch.clear();
+		while (!batch.isFull() && hasNext()) {
+			batch.addRecord(next());
+		}
+		return batch.getSize();
+	}
+
+	/**
+	 * Checks if a batch fits records of this data source.
+	 * @param batch a batch
+	 * @throws IllegalArgumentException if batch has a wrong number of columns
+	 */
+	protected void checkBatch(RecordBatch batch) throws IllegalArgumentException {
+		if (batch.getColumnNumber() != recordLength) {
+			throw new IllegalArgumentException(String.format(
+					"Batch has %d columns, records have %d tokens.",
+					batch.getColumnNumber(), recordLength));
+		}
+	}
+
+	/**
+	 * @return wrapped data source
+	 */
+	protected DataSource<? extends V> getInternalDataSource() {
+		return internalDataSource;
+	}
+
 	/**
 	 * @return number of tokens in a record
 	 */
@@ -0,0 +1,153 @@
+package com.github.attatrol.preprocessing.datasource;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Zero-copy view of a piece of text stored in a byte buffer (usually a memory mapped file).<br/>
+ * All bytes of the piece must be ASCII characters, so the byte at some position
+ * is the char at the same position and no decoding is needed.<br/>
+ * {@link #toString()} copies the piece into a string only once and caches it.
+ * @author atta_troll
+ *
+ */
+public final class AsciiCharSequence implements CharSequence {
+
+    /**
+     * Buffer that holds text, it is accessed only with absolute getters.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * Offset of the first char in the buffer.
+     */
+    private final int offset;
+
+    /**
+     * Number of chars.
+     */
+    private final int length;
+
+    /**
+     * Cached string presentation.
+     */
+    private String string;
+
+    /**
+     * Cached hash code, it is the same as the hash code of the equal string.
+     */
+    private int hash;
+
+    /**
+     * Default ctor.
+     * @param buffer buffer that holds text
+     * @param offset offset of the first char in the buffer
+     * @param length number of chars
+     */
+    public AsciiCharSequence(ByteBuffer buffer, int offset, int length) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int length() {
+        return length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Index out of range: " + index);
+        }
+        return (char) buffer.get(offset + index);
+    }
+
+    /**
+     * {@inheritDoc}<br/>
+     * Returned sequence shares the buffer with this one.
+     */
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException(
+                    String.format("Illegal bounds [%d, %d) for length %d", start, end, length));
+        }
+        return new AsciiCharSequence(buffer, offset + start, end - start);
+    }
+
+    /**
+     * @return buffer that holds text, must not be modified
+     */
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * @return offset of the first char in the buffer
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        if (string == null) {
+            final byte[] bytes = new byte[length];
+            for (int i = 0; i < length; i++) {
+                bytes[i] = buffer.get(offset + i);
+            }
+            string = new String(bytes, StandardCharsets.US_ASCII);
+        }
+        return string;
+    }
+
+    /**
+     * {@inheritDoc}<br/>
+     * Equal to the hash code of the string with the same content.
+     */
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if (h == 0 && length > 0) {
+            for (int i = 0; i < length; i++) {
+                h = 31 * h + buffer.get(offset + i);
+            }
+            hash = h;
+        }
+        return h;
+    }
+
+    /**
+     * {@inheritDoc}<br/>
+     * Only other {@link AsciiCharSequence} with the same content is equal to this one.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof AsciiCharSequence)) {
+            return false;
+        }
+        final AsciiCharSequence other = (AsciiCharSequence) obj;
+        if (length != other.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buffer.get(offset + i) != other.buffer.get(other.offset + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,552 @@
+package com.github.attatrol.preprocessing.datasource;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Describes compressed file data source where each line of decompressed text
+ * represents some record, just like {@link TextFileDataSource}.<br/>
+ * Decompression and decoding of lines run in a background thread, which passes batches
+ * of lines to the consumer through a bounded queue, so decompression overlaps with
+ * processing of records.<br/>
+ * Compressed streams can't seek, so {@link #reset()} reopens the file. Optionally decompressed
+ * content may be cached in memory during the first complete pass, then later passes
+ * read it from memory without decompression.
+ * @author atta_troll
+ *
+ */
+public class CompressedTextFileDataSource implements TitledDataSource<CharSequence> {
+
+    /**
+     * Number of lines in a batch passed to the consumer.
+     */
+    public static final int BATCH_SIZE = 1 << 10;
+
+    /**
+     * Number of batches that may wait in the queue.
+     */
+    public static final int QUEUE_CAPACITY = 16;
+
+    /**
+     * Marks the end of decompressed data in the queue.
+     */
+    private static final List<String> END_OF_DATA = new ArrayList<>(0);
+
+    /**
+     * File of data source.
+     */
+    private final File file;
+
+    /**
+     * Compression format of the file.
+     */
+    private final CompressionFormat format;
+
+    /**
+     * Name of the archive entry, may be {@code null}.
+     */
+    private final String entryName;
+
+    /**
+     * Flag of having column titles in the first row.
+     * They will be omitted from iterations.
+     * Titles may be recovered by method {@link #getTitles()}.
+     */
+    private final boolean hasTitles;
+
+    /**
+     * Charset of the decompressed text.
+     */
+    private final Charset charset;
+
+    /**
+     * Maximal size of cached decompressed content in bytes, zero if caching is disabled.
+     */
+    private long cacheLimit;
+
+    /**
+     * Cache of decompressed content, {@code null} if there is no cache.
+     */
+    private ContentCache cache;
+
+    /**
+     * Current pass of decompression.
+     */
+    private Decompression decompression;
+
+    /**
+     * Current batch of lines.
+     */
+    private List<String> batch;
+
+    /**
+     * Position of the next line in the current batch.
+     */
+    private int batchPosition;
+
+    /**
+     * Flag of being closed.
+     */
+    private boolean isClosed;
+
+    /**
+     * Index counter for a current record.
+     */
+    private long indexCounter;
+
+    /**
+     * Raw titles string.
+     */
+    private String rawTitlesString;
+
+    /**
+     * Default ctor, recognizes compression format by the file extension
+     * and uses default charset.
+     * @param file compressed file
+     * @param hasTitles flag of having column titles in the first row
+     * @throws IllegalArgumentException if compression format of the file is unknown
+     */
+    public CompressedTextFileDataSource(File file, boolean hasTitles)
+            throws IllegalArgumentException {
+        this(file, getFormat(file), null, hasTitles, Charset.defaultCharset());
+    }
+
+    /**
+     * Complete ctor.
+     * @param file compressed file
+     * @param format compression format of the file
+     * @param entryName name of the archive entry, {@code null} for the default one
+     * @param hasTitles flag of having column titles in the first row
+     * @param charset charset of the decompressed text
+     */
+    public CompressedTextFileDataSource(File file, CompressionFormat format, String entryName,
+            boolean hasTitles, Charset charset) {
+        this.file = file;
+        this.format = format;
+        this.entryName = entryName;
+        this.hasTitles = hasTitles;
+        this.charset = charset;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasNext() throws IOException {
+        stateCheck();
+        if (batchPosition >= batch.size() && batch != END_OF_DATA) {
+            batch = decompression.takeBatch();
+            batchPosition = 0;
+        }
+        return batch != END_OF_DATA;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Record<CharSequence> next()
+            throws IOException, IllegalArgumentException, NoSuchElementException {
+        if (!hasNext()) {
+            throw new NoSuchElementException("There are no records left.");
+        }
+        return new Record<CharSequence>(batch.get(batchPosition++), indexCounter++);
+    }
+
+    /**
+     * {@inheritDoc}<br/>
+     * Reopens the file or the cache of decompressed content if it is complete.
+     */
+    @Override
+    public void reset() throws IOException {
+        stateCheck();
+        decompression.cancel();
+        start();
+        if (hasTitles && hasNext()) {
+            next();
+        }
+        indexCounter = 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+        if (!isClosed) {
+            isClosed = true;
+            cache = null;
+            if (decompression != null) {
+                decompression.cancel();
+            }
+        }
+    }
+
+    /**
+     * @return raw title as a string, may return {@code null}
+     * if file is empty or flag of having titles is {@code false}.
+     * @throws IOException on internal i/o error
+     */
+    @Override
+    public String getTitles() throws IOException {
+        if (hasTitles) {
+            stateCheck();
+        }
+        return rawTitlesString;
+    }
+
+    /**
+     * Enables caching of decompressed content in memory. Content is cached during the first
+     * complete pass, if its size exceeds the limit the cache is dropped. Should be called
+     * before iterations.
+     * @param cacheLimit maximal size of cached content in bytes, zero disables caching
+     */
+    public void setCacheLimit(long cacheLimit) {
+        if (cacheLimit < 0) {
+            throw new IllegalArgumentException("Cache limit must not be negative.");
+        }
+        this.cacheLimit = cacheLimit;
+    }
+
+    /**
+     * @return {@code true} if decompressed content is completely cached in memory
+     */
+    public boolean isCached() {
+        return cache != null && cache.isComplete;
+    }
+
+    /**
+     * @return file of data source
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Checks if IO operation is available,
+     * calls for setup when internal state is not initialized fully.
+     * @throws IOException on failure to perform file opening.
+     */
+    private void stateCheck() throws IOException {
+        if (isClosed) {
+            throw new IllegalStateException("Illegal access to closed resource");
+        }
+        if (decompression == null) {
+            setup();
+        }
+    }
+
+    /**
+     * Starts decompression and reads titles.
+     * @throws IOException on failure to perform file opening.
+     */
+    private void setup() throws IOException {
+        start();
+        if (hasTitles && hasNext()) {
+            rawTitlesString = next().getData().toString();
+        }
+        indexCounter = 0;
+    }
+
+    /**
+     * Starts a new pass of decompression.
+     * @throws IOException on failure to perform file opening.
+     */
+    private void start() throws IOException {
+        InputStream stream;
+        if (isCached()) {
+            stream = cache.openStream();
+        }
+        else {
+            stream = format.open(file, entryName);
+            if (cacheLimit > 0) {
+                cache = new ContentCache(cacheLimit);
+                stream = cache.new CachingInputStream(stream);
+            }
+        }
+        batch = new ArrayList<>(0);
+        batchPosition = 0;
+        decompression = new Decompression(stream);
+        decompression.thread.start();
+    }
+
+    /**
+     * @param file a file
+     * @return compression format of the file
+     * @throws IllegalArgumentException if compression format of the file is unknown
+     */
+    private static CompressionFormat getFormat(File file) throws IllegalArgumentException {
+        final CompressionFormat format = CompressionFormat.forFile(file);
+        if (format == null) {
+            throw new IllegalArgumentException(
+                    String.format("Compression format of the file %s is unknown.", file));
+        }
+        return format;
+    }
+
+    /**
+     * Single pass of decompression, its thread reads lines and puts them into the queue.
+     * @author atta_troll
+     *
+     */
+    private class Decompression implements Runnable {
+
+        /**
+         * Queue of batches of lines.
+         */
+        private final BlockingQueue<List<String>> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+        /**
+         * Decompressed stream.
+         */
+        private final InputStream stream;
+
+        /**
+         * Thread of decompression.
+         */
+        private final Thread thread;
+
+        /**
+         * Failure of the decompression thread, {@code null} if there is none.
+         */
+        private volatile IOException failure;
+
+        /**
+         * Default ctor.
+         * @param stream decompressed stream
+         */
+        Decompression(InputStream stream) {
+            this.stream = stream;
+            thread = new Thread(this, "Decompression of " + file.getName());
+            thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, charset))) {
+                List<String> lines = new ArrayList<>(BATCH_SIZE);
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    lines.add(line);
+                    if (lines.size() == BATCH_SIZE) {
+                        queue.put(lines);
+                        lines = new ArrayList<>(BATCH_SIZE);
+                    }
+                }
+                if (!lines.isEmpty()) {
+                    queue.put(lines);
+                }
+            }
+            catch (InterruptedException ex) {
+                return;
+            }
+            catch (IOException ex) {
+                failure = ex;
+            }
+            try {
+                queue.put(END_OF_DATA);
+            }
+            catch (InterruptedException ex) {
+                // pass is cancelled, nobody waits for the end
+            }
+        }
+
+        /**
+         * Takes the next batch of lines, blocks until decompression thread produces it.
+         * @return batch of lines or {@link CompressedTextFileDataSource#END_OF_DATA}
+         * @throws IOException if decompression thread failed
+         */
+        List<String> takeBatch() throws IOException {
+            final List<String> result;
+            try {
+                result = queue.take();
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for decompressed data.");
+            }
+            if (result == END_OF_DATA && failure != null) {
+                throw new IOException("Failed to decompress " + file, failure);
+            }
+            return result;
+        }
+
+        /**
+         * Stops decompression thread and waits for its termination.
+         * @throws InterruptedIOException if current thread is interrupted
+         */
+        void cancel() throws InterruptedIOException {
+            thread.interrupt();
+            try {
+                thread.join();
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while stopping decompression.");
+            }
+        }
+    }
+
+    /**
+     * Decompressed content kept in memory in chunks.
+     * @author atta_troll
+     *
+     */
+    private static class ContentCache {
+
+        /**
+         * Size of a chunk.
+         */
+        private static final int CHUNK_SIZE = 1 << 20;
+
+        /**
+         * Maximal size of cached content.
+         */
+        private final long limit;
+
+        /**
+         * Chunks of content, the last one may be filled partially.
+         */
+        private List<byte[]> chunks = new ArrayList<>();
+
+        /**
+         * Size of cached content.
+         */
+        private long size;
+
+        /**
+         * {@code true} if the whole content is cached.
+         */
+        private boolean isComplete;
+
+        /**
+         * Default ctor.
+         * @param limit maximal size of cached content
+         */
+        ContentCache(long limit) {
+            this.limit = limit;
+        }
+
+        /**
+         * Appends bytes to the content, drops content if the limit is exceeded.
+         * @param bytes source array
+         * @param offset offset of bytes in the array
+         * @param length number of bytes
+         */
+        void append(byte[] bytes, int offset, int length) {
+            if (chunks == null) {
+                return;
+            }
+            if (size + length > limit) {
+                chunks = null;
+                return;
+            }
+            while (length > 0) {
+                final int chunkPosition = (int) (size % CHUNK_SIZE);
+                if (chunkPosition == 0) {
+                    chunks.add(new byte[(int) Math.min(CHUNK_SIZE, limit - size)]);
+                }
+                final int copied = Math.min(length, CHUNK_SIZE - chunkPosition);
+                System.arraycopy(bytes, offset, chunks.get(chunks.size() - 1), chunkPosition, copied);
+                size += copied;
+                offset += copied;
+                length -= copied;
+            }
+        }
+
+        /**
+         * @return stream that reads cached content
+         */
+        InputStream openStream() {
+            return new InputStream() {
+
+                private long position;
+
+                @Override
+                public int read() throws IOException {
+                    if (position >= size) {
+                        return -1;
+                    }
+                    final byte[] chunk = chunks.get((int) (position / CHUNK_SIZE));
+                    return chunk[(int) (position++ % CHUNK_SIZE)] & 0xFF;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    if (position >= size) {
+                        return -1;
+                    }
+                    final int chunkPosition = (int) (position % CHUNK_SIZE);
+                    final int read = (int) Math.min(Math.min(len, CHUNK_SIZE - chunkPosition),
+                            size - position);
+                    System.arraycopy(chunks.get((int) (position / CHUNK_SIZE)), chunkPosition,
+                            b, off, read);
+                    position += read;
+                    return read;
+                }
+
+                @Override
+                public int available() throws IOException {
+                    return (int) Math.min(Integer.MAX_VALUE, size - position);
+                }
+            };
+        }
+
+        /**
+         * Stream that copies everything it reads into the cache.
+         * @author atta_troll
+         *
+         */
+        class CachingInputStream extends FilterInputStream {
+
+            /**
+             * Default ctor.
+             * @param in decompressed stream
+             */
+            CachingInputStream(InputStream in) {
+                super(in);
+            }
+
+            @Override
+            public int read() throws IOException {
+                final byte[] buffer = new byte[1];
+                return read(buffer, 0, 1) < 0 ? -1 : buffer[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                final int read = super.read(b, off, len);
+                if (read > 0) {
+                    append(b, off, read);
+                }
+                else if (read < 0 && chunks != null) {
+                    isComplete = true;
+                }
+                return read;
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                final byte[] buffer = new byte[(int) Math.min(n, 1 << 13)];
+                final int read = read(buffer, 0, buffer.length);
+                return Math.max(read, 0);
+            }
+
+            @Override
+            public boolean markSupported() {
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.github.attatrol.preprocessing.datasource;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Enumeration;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Compression formats of data files that can be read by {@link CompressedTextFileDataSource}.
+ * Format is recognized by the file extension.
+ * @author atta_troll
+ *
+ */
+public enum CompressionFormat {
+
+    /**
+     * Gzip file.
+     */
+    GZIP(".gz", ".gzip") {
+
+        @Override
+        public InputStream open(File file, String entryName) throws IOException {
+            return new GZIPInputStream(new FileInputStream(file), BUFFER_SIZE);
+        }
+    },
+    /**
+     * Zlib wrapped deflate stream.
+     */
+    DEFLATE(".zz", ".deflate") {
+
+        @Override
+        public InputStream open(File file, String entryName) throws IOException {
+            return new InflaterInputStream(
+                    new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+        }
+    },
+    /**
+     * Entry of a zip archive, the first file entry is used if no entry name is set.
+     */
+    ZIP(".zip") {
+
+        @Override
+        public InputStream open(File file, String entryName) throws IOException {
+            final ZipFile zipFile = new ZipFile(file);
+            try {
+                final ZipEntry entry = entryName != null
+                        ? zipFile.getEntry(entryName) : getFirstFileEntry(zipFile);
+                if (entry == null || entry.isDirectory()) {
+                    throw new IOException(String.format("Zip archive %s has no entry %s.",
+                            file, entryName != null ? entryName : "with a file"));
+                }
+                return new FilterInputStream(zipFile.getInputStream(entry)) {
+
+                    @Override
+                    public void close() throws IOException {
+                        try {
+                            super.close();
+                        }
+                        finally {
+                            zipFile.close();
+                        }
+                    }
+                };
+            }
+            catch (IOException | RuntimeException ex) {
+                zipFile.close();
+                throw ex;
+            }
+        }
+    };
+
+    /**
+     * Size of buffers of decompressing streams.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * File extensions of the format in lower case.
+     */
+    private final String[] extensions;
+
+    /**
+     * Default ctor.
+     * @param extensions file extensions of the format in lower case
+     */
+    CompressionFormat(String... extensions) {
+        this.extensions = extensions;
+    }
+
+    /**
+     * Opens stream of decompressed content of a file.
+     * @param file compressed file
+     * @param entryName name of the archive entry, {@code null} for the default one,
+     *        ignored by formats without entries
+     * @return decompressed stream
+     * @throws IOException on i/o error or if there is no such entry
+     */
+    public abstract InputStream open(File file, String entryName) throws IOException;
+
+    /**
+     * @return file extensions of the format in lower case
+     */
+    public String[] getExtensions() {
+        return extensions.clone();
+    }
+
+    /**
+     * Recognizes compression format by the file extension.
+     * @param file a file
+     * @return compression format or {@code null} if file is not compressed
+     */
+    public static CompressionFormat forFile(File file) {
+        final String name = file.getName().toLowerCase(Locale.ROOT);
+        for (CompressionFormat format : values()) {
+            for (String extension : format.extensions) {
+                if (name.endsWith(extension)) {
+                    return format;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param zipFile zip archive
+     * @return the first entry that is not a directory or {@code null} if there is none
+     */
+    private static ZipEntry getFirstFileEntry(ZipFile zipFile) {
+        final Enumeration<? extends ZipEntry> entries = zipFile.entries();
+        while (entries.hasMoreElements()) {
+            final ZipEntry entry = entries.nextElement();
+            if (!entry.isDirectory()) {
+                return entry;
+            }
+        }
+        return null;
+    }
+}
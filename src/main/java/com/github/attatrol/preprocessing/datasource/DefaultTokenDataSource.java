@@ -1,21 +1,51 @@
 package com.github.attatrol.preprocessing.datasource;
 
-import java.util.Arrays;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.IllegalFormatException;
+import java.util.List;
+import java.util.stream.Stream;
 
+import com.github.attatrol.preprocessing.datasource.columnar.CategoryDictionary;
+import com.github.attatrol.preprocessing.datasource.parsing.TokenType;
+import com.github.attatrol.preprocessing.datasource.parsing.missing.ConstantTokenSubstitutor;
 import com.github.attatrol.preprocessing.datasource.parsing.missing.MissingTokenSubstitutor;
+import com.github.attatrol.preprocessing.datasource.parsing.record.DelimiterScanner;
+import com.github.attatrol.preprocessing.datasource.parsing.record.FieldBounds;
 import com.github.attatrol.preprocessing.datasource.parsing.record.RecordTokenizer;
+import com.github.attatrol.preprocessing.datasource.parsing.token.BooleanTokenParser;
+import com.github.attatrol.preprocessing.datasource.parsing.token.DictionaryEncodingParser;
+import com.github.attatrol.preprocessing.datasource.parsing.token.DoubleTokenParser;
+import com.github.attatrol.preprocessing.datasource.parsing.token.IntTokenParser;
+import com.github.attatrol.preprocessing.datasource.parsing.token.RangeTokenParser;
+import com.github.attatrol.preprocessing.datasource.parsing.token.TextBinaryDigitalParser;
+import com.github.attatrol.preprocessing.datasource.parsing.token.TextCategoricalParser;
 import com.github.attatrol.preprocessing.datasource.parsing.token.TokenParser;
 
 /**
  * This is a default token data source realization used in the library.
  * It uses {@link RecordTokenizer} for splitting incoming raw record into tokens,
  * then tokens are parsed by {@link TokenParser}s, and {@link MissingTokenSubstitutor}s
- * are used in case of omitted values of some tokens.
+ * are used in case of omitted values of some tokens.<br/>
+ * It is splittable if its wrapped data source is splittable, parts share
+ * tokenizer, parsers and substitutors with this data source.
+ * It supports random access if its wrapped data source supports it.<br/>
+ * If tokenizer is a {@link DelimiterScanner}, only fields that are used as tokens
+ * are parsed, {@link RangeTokenParser}s parse them in place, so for records that are views
+ * of ASCII bytes numeric and binary tokens are parsed directly from bytes and only
+ * tokens of other parsers are turned into strings.<br/>
+ * Categorical tokens may be produced as codes of a {@link DictionaryEncodingParser}
+ * instead of strings, see {@link #encodeCategories()}.
  * @author atta_troll
  *
  */
-public class DefaultTokenDataSource<V> extends AbstractTokenDataSource<V>{
+public class DefaultTokenDataSource<V> extends AbstractTokenDataSource<V>
+        implements SplittableDataSource<Object[]>, RandomAccessDataSource<Object[]> {
+
+	/**
+	 * Minimal number of rows of a batch with missing tokens that are substituted in parallel.
+	 */
+	private static final int PARALLEL_SUBSTITUTION_ROWS = 64;
 
 	private final RecordTokenizer<? super V, ?> tokenizer;
 
@@ -23,6 +53,61 @@ public class DefaultTokenDataSource<V> extends AbstractTokenDataSource<V>{
 
 	private final MissingTokenSubstitutor<?>[] substitutors;
 
+	/**
+	 * Tokenizer as a scanner, {@code null} if it is not a scanner.
+	 */
+	private final DelimiterScanner scanner;
+
+	/**
+	 * Reusable bounds of fields, {@code null} if tokenizer is not a scanner.
+	 */
+	private final FieldBounds bounds;
+
+	/**
+	 * Parsers as range parsers, an element is {@code null} if its parser is not a range parser
+	 * or tokenizer is not a scanner.
+	 */
+	private final RangeTokenParser<?>[] rangeParsers;
+
+	/**
+	 * Parsers as {@code int} parsers, an element is {@code null} if its parser is not
+	 * an {@code int} parser or tokenizer is not a scanner.
+	 */
+	private final IntTokenParser[] intParsers;
+
+	/**
+	 * Parsers as {@code double} parsers, an element is {@code null} if its parser is not
+	 * a {@code double} parser or tokenizer is not a scanner.
+	 */
+	private final DoubleTokenParser[] doubleParsers;
+
+	/**
+	 * Parsers as {@code boolean} parsers, an element is {@code null} if its parser is not
+	 * a {@code boolean} parser or tokenizer is not a scanner.
+	 */
+	private final BooleanTokenParser[] booleanParsers;
+
+	/**
+	 * Parsers as dictionary encoding parsers, an element is {@code null} if its parser
+	 * is not a dictionary encoding parser.
+	 */
+	private final DictionaryEncodingParser[] encodingParsers;
+
+	/**
+	 * {@code true} if some parsers are dictionary encoding parsers.
+	 */
+	private final boolean hasEncodedTokens;
+
+	/**
+	 * {@code true} if some tokens have substitutors.
+	 */
+	private final boolean hasSubstitutors;
+
+	/**
+	 * Reusable parsed tokens of a batch row.
+	 */
+	private final Object[] batchTokens;
+
 	public DefaultTokenDataSource(DataSource<V> internalDataSource, 
 			RecordTokenizer<? super V, ?> tokenizer, int recordLength,
 			TokenParser<Object, ?>[] parsers,
@@ -31,34 +116,444 @@ public class DefaultTokenDataSource<V> extends AbstractTokenDataSource<V>{
 		this.tokenizer = tokenizer;
 		this.parsers = parsers;
 		this.substitutors = substitutors;
+		rangeParsers = new RangeTokenParser<?>[recordLength];
+		intParsers = new IntTokenParser[recordLength];
+		doubleParsers = new DoubleTokenParser[recordLength];
+		booleanParsers = new BooleanTokenParser[recordLength];
+		batchTokens = new Object[recordLength];
+		encodingParsers = new DictionaryEncodingParser[recordLength];
+		boolean isEncoded = false;
+		for (int i = 0; i < recordLength; i++) {
+			final Object parser = parsers[i];
+			if (parser instanceof DictionaryEncodingParser) {
+				encodingParsers[i] = (DictionaryEncodingParser) parser;
+				isEncoded = true;
+			}
+		}
+		hasEncodedTokens = isEncoded;
+		boolean isSubstituted = false;
+		for (MissingTokenSubstitutor<?> substitutor : substitutors) {
+			isSubstituted |= substitutor != null;
+		}
+		hasSubstitutors = isSubstituted;
+		if (tokenizer instanceof DelimiterScanner) {
+			scanner = (DelimiterScanner) tokenizer;
+			bounds = new FieldBounds();
+			for (int i = 0; i < recordLength; i++) {
+				if (parsers[i] instanceof RangeTokenParser) {
+					rangeParsers[i] = (RangeTokenParser<?>) parsers[i];
+				}
+				if (parsers[i] instanceof IntTokenParser) {
+					intParsers[i] = (IntTokenParser) parsers[i];
+				}
+				if (parsers[i] instanceof DoubleTokenParser) {
+					doubleParsers[i] = (DoubleTokenParser) parsers[i];
+				}
+				if (parsers[i] instanceof BooleanTokenParser) {
+					booleanParsers[i] = (BooleanTokenParser) parsers[i];
+				}
+			}
+		}
+		else {
+			scanner = null;
+			bounds = null;
+		}
 	}
 
+    /**
+     * Creates a data source that produces {@link Integer} codes of
+     * {@link DictionaryEncodingParser}s instead of strings of {@link TextCategoricalParser}s.
+     * Dictionaries are built by a parallel pass over the wrapped data source, dictionaries
+     * of parts are merged in order of parts, so codes follow the order of the first appearance
+     * of tokens in the data source and don't depend on timing of threads. Values of
+     * {@link ConstantTokenSubstitutor}s are added to dictionaries after tokens.
+     * Substitutors see decoded records and their results are encoded.<br/>
+     * The result wraps the same data source, so this data source should not be used after.
+     * @return new data source, this data source if it has no categorical parsers
+     * @throws IOException on i/o error
+     * @throws IllegalArgumentException if some token can't be parsed
+     */
+    @SuppressWarnings({
+        "unchecked",
+        "rawtypes"
+    })
+    public DefaultTokenDataSource<V> encodeCategories()
+            throws IOException, IllegalArgumentException {
+        final int length = getRecordLength();
+        final boolean[] isCategory = new boolean[length];
+        boolean hasCategories = false;
+        for (int i = 0; i < length; i++) {
+            final Object parser = parsers[i];
+            isCategory[i] = parser instanceof TextCategoricalParser;
+            hasCategories |= isCategory[i];
+        }
+        if (!hasCategories) {
+            return this;
+        }
+        final DataSource<V> internalDataSource = (DataSource<V>) getInternalDataSource();
+        final DefaultTokenDataSource<V> plainDataSource = new DefaultTokenDataSource<>(
+                internalDataSource, tokenizer, length, parsers,
+                new MissingTokenSubstitutor<?>[length]);
+        final CategoryDictionary[] dictionaries = SplittableDataSource.reduce(plainDataSource,
+                TokenDataSourceUtils.DEFAULT_PARTS_NUMBER, () -> {
+                    final CategoryDictionary[] partDictionaries = new CategoryDictionary[length];
+                    for (int i = 0; i < length; i++) {
+                        if (isCategory[i]) {
+                            partDictionaries[i] = new CategoryDictionary();
+                        }
+                    }
+                    return partDictionaries;
+                }, (partDictionaries, record) -> {
+                    final Object[] tokens = record.getData();
+                    for (int i = 0; i < length; i++) {
+                        if (partDictionaries[i] != null && tokens[i] != null) {
+                            partDictionaries[i].encode(tokens[i]);
+                        }
+                    }
+                }, (first, second) -> {
+                    for (int i = 0; i < length; i++) {
+                        if (first[i] != null) {
+                            for (int code = 0; code < second[i].size(); code++) {
+                                first[i].encode(second[i].decode(code));
+                            }
+                        }
+                    }
+                    return first;
+                });
+        internalDataSource.reset();
+        final TokenParser<Object, ?>[] encodedParsers = parsers.clone();
+        for (int i = 0; i < length; i++) {
+            if (dictionaries[i] != null) {
+                if (substitutors[i] instanceof ConstantTokenSubstitutor) {
+                    final Object value = ((ConstantTokenSubstitutor<?>) substitutors[i]).getValue();
+                    if (value != null) {
+                        dictionaries[i].encode(value);
+                    }
+                }
+                encodedParsers[i] = (TokenParser) new DictionaryEncodingParser(dictionaries[i]);
+            }
+        }
+        return new DefaultTokenDataSource<>(internalDataSource, tokenizer, length,
+                encodedParsers, substitutors);
+    }
+
+    /**
+     * @param index index of the token in record
+     * @return parser that decodes codes of the token,
+     *         {@code null} if the token is not dictionary encoded
+     */
+    public DictionaryEncodingParser getEncodingParser(int index) {
+        return encodingParsers[index];
+    }
+
+    /**
+     * @param index index of the token in record
+     * @return {@code true} if the token is categorical or binary,
+     *         so its values are compared only for equality
+     */
+    public boolean isCategorical(int index) {
+        final Object parser = parsers[index];
+        return parser instanceof BooleanTokenParser
+                || parser instanceof TextCategoricalParser
+                || parser instanceof DictionaryEncodingParser;
+    }
+
+    /**
+     * @param index index of the token in record
+     * @return type of values produced by the parser of the token,
+     *         {@code null} if the parser is not one of library parsers
+     */
+    public TokenType getTokenType(int index) {
+        final Object parser = parsers[index];
+        if (parser instanceof IntTokenParser) {
+            return TokenType.INTEGER;
+        }
+        if (parser instanceof DoubleTokenParser) {
+            return TokenType.FLOAT;
+        }
+        if (parser instanceof TextBinaryDigitalParser) {
+            return TokenType.BINARY_DIGITAL;
+        }
+        if (parser instanceof BooleanTokenParser) {
+            return TokenType.BINARY;
+        }
+        return isCategorical(index) ? TokenType.CATEGORICAL_STRING : null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isSplittable() {
+        return getInternalDataSource() instanceof SplittableDataSource
+                && ((SplittableDataSource<?>) getInternalDataSource()).isSplittable();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasGlobalIndexes() {
+        return isSplittable()
+                && ((SplittableDataSource<?>) getInternalDataSource()).hasGlobalIndexes();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<DefaultTokenDataSource<V>> split(int partsNumber) throws IOException {
+        if (!isSplittable()) {
+            throw new UnsupportedOperationException("Wrapped data source is not splittable.");
+        }
+        @SuppressWarnings("unchecked")
+        final SplittableDataSource<V> internalDataSource =
+                (SplittableDataSource<V>) getInternalDataSource();
+        final List<? extends DataSource<V>> internalParts = internalDataSource.split(partsNumber);
+        final List<DefaultTokenDataSource<V>> parts = new ArrayList<>(internalParts.size());
+        for (DataSource<V> internalPart : internalParts) {
+            parts.add(new DefaultTokenDataSource<V>(internalPart, tokenizer, getRecordLength(),
+                    parsers, substitutors));
+        }
+        return parts;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean supportsRandomAccess() {
+        return getInternalDataSource() instanceof RandomAccessDataSource
+                && ((RandomAccessDataSource<?>) getInternalDataSource()).supportsRandomAccess();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void seek(long recordIndex) throws IOException, IllegalArgumentException {
+        getRandomAccessDataSource().seek(recordIndex);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getRecordNumber() throws IOException {
+        return getRandomAccessDataSource().getRecordNumber();
+    }
+
+    /**
+     * @return wrapped data source as a random access one
+     * @throws UnsupportedOperationException if wrapped data source does not support random access
+     */
+    private RandomAccessDataSource<?> getRandomAccessDataSource() {
+        if (!supportsRandomAccess()) {
+            throw new UnsupportedOperationException(
+                    "Wrapped data source does not support random access.");
+        }
+        return (RandomAccessDataSource<?>) getInternalDataSource();
+    }
+
+    /**
+     * {@inheritDoc}<br/>
+     * Tokens are parsed directly into the batch, no parsed record arrays are created.
+     * If tokenizer is a {@link DelimiterScanner}, {@link IntTokenParser}s,
+     * {@link DoubleTokenParser}s and {@link BooleanTokenParser}s fill primitive columns
+     * without strings or boxing. Other tokens are still objects: {@link RangeTokenParser}s
+     * box their values and other parsers parse strings of tokens. Without a scanner
+     * records are tokenized into arrays of raw tokens and parsed as in {@link #next()}.<br/>
+     * Missing tokens are substituted as in {@link #next()} after the batch is parsed,
+     * rows with missing tokens are copied into records for substitutors and substituted
+     * in parallel, see {@link MissingTokenSubstitutor#substitute(Record)}.
+     */
+    @Override
+    public int nextBatch(RecordBatch batch) throws IOException, IllegalArgumentException {
+        checkBatch(batch);
+        batch.clear();
+        final List<Integer> incompleteRows = new ArrayList<>();
+        final DataSource<? extends V> internalDataSource = getInternalDataSource();
+        while (!batch.isFull() && internalDataSource.hasNext()) {
+            final Record<? extends V> record = internalDataSource.next();
+            final int row = batch.addRow(record.getIndex());
+            final boolean hasMissingValues;
+            if (scanner != null) {
+                hasMissingValues = parseTokens((CharSequence) record.getData(), batch, row);
+            }
+            else {
+                hasMissingValues = parseTokens(record.getData(), batchTokens);
+                for (int i = 0; i < getRecordLength(); i++) {
+                    batch.setValue(i, row, batchTokens[i]);
+                }
+            }
+            if (hasMissingValues && hasSubstitutors) {
+                incompleteRows.add(row);
+            }
+        }
+        if (!incompleteRows.isEmpty()) {
+            substitute(batch, incompleteRows);
+        }
+        return batch.getSize();
+    }
+
+    /**
+     * Substitutes missing tokens of batch rows, rows are substituted in parallel
+     * if there are many of them. Values are set into the batch afterwards by this thread.
+     * @param batch the batch
+     * @param rows indexes of rows with missing tokens
+     * @throws IllegalArgumentException if a substituted value is not in the dictionary
+     */
+    private void substitute(RecordBatch batch, List<Integer> rows)
+            throws IllegalArgumentException {
+        final List<Record<Object[]>> records = new ArrayList<>(rows.size());
+        for (int row : rows) {
+            records.add(batch.getRecord(row));
+        }
+        final Stream<Record<Object[]>> stream = records.size() >= PARALLEL_SUBSTITUTION_ROWS
+                ? records.parallelStream() : records.stream();
+        stream.forEach(this::substitute);
+        for (int j = 0; j < rows.size(); j++) {
+            final int row = rows.get(j);
+            final Object[] tokens = records.get(j).getData();
+            for (int i = 0; i < getRecordLength(); i++) {
+                if (batch.isMissing(i, row) && substitutors[i] != null) {
+                    batch.setValue(i, row, tokens[i]);
+                }
+            }
+        }
+    }
+
     @Override
 	protected Record<Object[]> parseRecord(Record<? extends V> record) throws IllegalFormatException {
 		final long index = record.getIndex();
-		Object[] rawTokens = tokenizer.tokenize(record.getData());
-		if (rawTokens.length < getRecordLength()) {
-			rawTokens = Arrays.copyOf(rawTokens, getRecordLength());
-		}
 		final Object[] result = new Object[getRecordLength()];
-		boolean hasMissingValues = false;
-		for (int i = 0; i < getRecordLength(); i++) {
-			if (rawTokens[i] != null) {
-				result[i] = parsers[i].parseValue(rawTokens[i]);
-			}
-			else {
-				hasMissingValues = true;
-			}
-		}
+		final boolean hasMissingValues = parseTokens(record.getData(), result);
 		final Record<Object[]> resultRecord = new Record<>(result, index);
 		if (hasMissingValues) {
-			for (int i = 0; i < getRecordLength(); i++) {
-				if (result[i] == null && substitutors[i] != null) {
-					result[i] = substitutors[i].substitute(resultRecord);
-				}
-			}
+			substitute(resultRecord);
 		}
 		return resultRecord;
 	}
 
+    /**
+     * Substitutes missing tokens of a parsed record in place. If some tokens are
+     * dictionary encoded, substitutors see a decoded copy of the record
+     * and their results are encoded.
+     * @param record parsed record
+     * @throws IllegalArgumentException if a substituted value is not in the dictionary
+     */
+    private void substitute(Record<Object[]> record) throws IllegalArgumentException {
+        final Object[] tokens = record.getData();
+        final Record<Object[]> decodedRecord;
+        if (hasEncodedTokens) {
+            final Object[] decodedTokens = tokens.clone();
+            for (int i = 0; i < decodedTokens.length; i++) {
+                if (encodingParsers[i] != null && decodedTokens[i] != null) {
+                    decodedTokens[i] = encodingParsers[i].decode((Integer) decodedTokens[i]);
+                }
+            }
+            decodedRecord = new Record<>(decodedTokens, record.getIndex());
+        }
+        else {
+            decodedRecord = record;
+        }
+        for (int i = 0; i < tokens.length; i++) {
+            if (tokens[i] == null && substitutors[i] != null) {
+                final Object value = substitutors[i].substitute(decodedRecord);
+                decodedRecord.getData()[i] = value;
+                tokens[i] = encodingParsers[i] != null && value != null
+                        ? encodingParsers[i].encode(value) : value;
+            }
+        }
+    }
+
+    /**
+     * Splits raw record into tokens and parses them.
+     * @param data raw record
+     * @param tokens array for parsed tokens, missing tokens are set to {@code null}
+     * @return {@code true} if some tokens are missing
+     * @throws IllegalArgumentException on failure to tokenize the record or to parse some token
+     */
+    private boolean parseTokens(V data, Object[] tokens) throws IllegalArgumentException {
+        boolean hasMissingValues = false;
+        if (scanner == null) {
+            final Object[] rawTokens = tokenizer.tokenize(data);
+            for (int i = 0; i < tokens.length; i++) {
+                tokens[i] = i < rawTokens.length && rawTokens[i] != null
+                        ? parsers[i].parseValue(rawTokens[i]) : null;
+                hasMissingValues |= tokens[i] == null;
+            }
+            return hasMissingValues;
+        }
+        final CharSequence chars = (CharSequence) data;
+        final int count = scanner.scan(chars, bounds);
+        for (int i = 0; i < tokens.length; i++) {
+            if (i >= count || bounds.isEmpty(i)) {
+                tokens[i] = null;
+            }
+            else if (rangeParsers[i] != null) {
+                tokens[i] = rangeParsers[i].parseRange(chars, bounds.getStart(i), bounds.getEnd(i));
+            }
+            else {
+                tokens[i] = parsers[i].parseValue(bounds.getString(chars, i));
+            }
+            hasMissingValues |= tokens[i] == null;
+        }
+        return hasMissingValues;
+    }
+
+    /**
+     * Scans a raw record and parses its tokens into a batch row,
+     * primitive parsers are used for primitive columns of matching types.
+     * @param chars raw record
+     * @param batch the batch
+     * @param row index of the row in the batch
+     * @return {@code true} if some tokens are missing
+     * @throws IllegalArgumentException on failure to parse some token
+     */
+    private boolean parseTokens(CharSequence chars, RecordBatch batch, int row)
+            throws IllegalArgumentException {
+        final int count = scanner.scan(chars, bounds);
+        boolean hasMissingValues = false;
+        for (int i = 0; i < getRecordLength(); i++) {
+            if (i >= count || bounds.isEmpty(i)) {
+                batch.setMissing(i, row);
+                hasMissingValues = true;
+                continue;
+            }
+            final int start = bounds.getStart(i);
+            final int end = bounds.getEnd(i);
+            switch (batch.getType(i)) {
+            case INTEGER:
+                if (intParsers[i] != null) {
+                    batch.getIntColumn(i)[row] = intParsers[i].parseInt(chars, start, end);
+                    continue;
+                }
+                break;
+            case FLOAT:
+                if (doubleParsers[i] != null) {
+                    batch.getDoubleColumn(i)[row] = doubleParsers[i].parseDouble(chars, start, end);
+                    continue;
+                }
+                break;
+            case BINARY:
+            case BINARY_DIGITAL:
+                if (booleanParsers[i] != null) {
+                    batch.getBooleanColumn(i)[row] =
+                            booleanParsers[i].parseBoolean(chars, start, end);
+                    continue;
+                }
+                break;
+            default:
+                break;
+            }
+            final Object value = rangeParsers[i] != null
+                    ? rangeParsers[i].parseRange(chars, start, end)
+                    : parsers[i].parseValue(bounds.getString(chars, i));
+            batch.setValue(i, row, value);
+            hasMissingValues |= value == null;
+        }
+        return hasMissingValues;
+    }
+
 }
@@ -0,0 +1,409 @@
+package com.github.attatrol.preprocessing.datasource;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Describes data source that consists of all text files in some directory and its
+ * subdirectories. Files are sorted by their paths and are read one by one as a single
+ * sequence of lines with continuous record indexes. If data source has titles, every file
+ * must start with the same title line, titles are taken from the first file.<br/>
+ * Several next files are opened in advance by background threads, so opening
+ * and first reads of a file overlap with processing of the previous one.<br/>
+ * Data source may be split into parts that consist of contiguous groups of files,
+ * records of each part are indexed from zero.
+ * @author atta_troll
+ *
+ */
+public class DirectoryDataSource
+        implements TitledDataSource<CharSequence>, SplittableDataSource<CharSequence> {
+
+    /**
+     * Default number of files opened in advance.
+     */
+    public static final int DEFAULT_READ_AHEAD = 2;
+
+    /**
+     * Counts threads of all instances, used for thread names.
+     */
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    /**
+     * Sorted files of data source.
+     */
+    private final List<File> files;
+
+    /**
+     * Flag of having column titles in the first row of each file.
+     * They will be omitted from iterations.
+     * Titles may be recovered by method {@link #getTitles()}.
+     */
+    private final boolean hasTitles;
+
+    /**
+     * Number of files opened in advance.
+     */
+    private final int readAhead;
+
+    /**
+     * Opens files in advance.
+     */
+    private ExecutorService executor;
+
+    /**
+     * Files that are being opened in advance, in order of files.
+     */
+    private final Deque<Future<TitledDataSource<CharSequence>>> openedFiles = new ArrayDeque<>();
+
+    /**
+     * Index of the next file to be submitted for opening.
+     */
+    private int nextFileIndex;
+
+    /**
+     * Data source of the current file, {@code null} if all files are read.
+     */
+    private TitledDataSource<CharSequence> current;
+
+    /**
+     * Flag of initialized state.
+     */
+    private boolean isSetUp;
+
+    /**
+     * Flag of being closed.
+     */
+    private boolean isClosed;
+
+    /**
+     * Index counter for a current record.
+     */
+    private long indexCounter;
+
+    /**
+     * Raw titles string.
+     */
+    private String rawTitlesString;
+
+    /**
+     * Default ctor.
+     * @param directory directory with data files
+     * @param hasTitles flag of having column titles in the first row of each file
+     */
+    public DirectoryDataSource(File directory, boolean hasTitles) {
+        this(directory, hasTitles, DEFAULT_READ_AHEAD);
+    }
+
+    /**
+     * Complete ctor.
+     * @param directory directory with data files
+     * @param hasTitles flag of having column titles in the first row of each file
+     * @param readAhead number of files opened in advance
+     * @throws IllegalArgumentException if directory can't be listed or read ahead is not positive
+     */
+    public DirectoryDataSource(File directory, boolean hasTitles, int readAhead)
+            throws IllegalArgumentException {
+        this(listFiles(directory), hasTitles, readAhead);
+    }
+
+    /**
+     * Ctor of a part of the data source.
+     * @param files sorted files of data source
+     * @param hasTitles flag of having column titles in the first row of each file
+     * @param readAhead number of files opened in advance
+     */
+    private DirectoryDataSource(List<File> files, boolean hasTitles, int readAhead) {
+        if (readAhead < 1) {
+            throw new IllegalArgumentException("Read ahead must be positive.");
+        }
+        this.files = files;
+        this.hasTitles = hasTitles;
+        this.readAhead = readAhead;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasNext() throws IOException {
+        stateCheck();
+        while (current != null && !current.hasNext()) {
+            current.close();
+            current = takeNextFile();
+        }
+        return current != null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Record<CharSequence> next()
+            throws IOException, IllegalArgumentException, NoSuchElementException {
+        if (!hasNext()) {
+            throw new NoSuchElementException("There are no records left.");
+        }
+        return new Record<CharSequence>(current.next().getData(), indexCounter++);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reset() throws IOException {
+        stateCheck();
+        closeFiles();
+        start();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+        if (!isClosed) {
+            isClosed = true;
+            if (isSetUp) {
+                try {
+                    closeFiles();
+                }
+                finally {
+                    executor.shutdownNow();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return raw title as a string, may return {@code null}
+     * if all files are empty or flag of having titles is {@code false}.
+     * @throws IOException on internal i/o error
+     */
+    @Override
+    public String getTitles() throws IOException {
+        if (hasTitles) {
+            stateCheck();
+        }
+        return rawTitlesString;
+    }
+
+    /**
+     * {@inheritDoc}<br/>
+     * Parts consist of contiguous groups of files with approximately equal total size.
+     */
+    @Override
+    public List<DirectoryDataSource> split(int partsNumber) throws IOException {
+        if (partsNumber < 1) {
+            throw new IllegalArgumentException("Number of parts must be positive.");
+        }
+        long totalSize = 0L;
+        for (File file : files) {
+            totalSize += file.length();
+        }
+        final List<DirectoryDataSource> parts = new ArrayList<>(partsNumber);
+        int from = 0;
+        long size = 0L;
+        for (int i = 0; i < files.size(); i++) {
+            size += files.get(i).length();
+            if (size * partsNumber >= totalSize * (parts.size() + 1) && parts.size() < partsNumber - 1) {
+                parts.add(new DirectoryDataSource(files.subList(from, i + 1), hasTitles, readAhead));
+                from = i + 1;
+            }
+        }
+        if (from < files.size() || parts.isEmpty()) {
+            parts.add(new DirectoryDataSource(files.subList(from, files.size()), hasTitles, readAhead));
+        }
+        return parts;
+    }
+
+    /**
+     * @return sorted files of data source
+     */
+    public List<File> getFiles() {
+        return Collections.unmodifiableList(files);
+    }
+
+    /**
+     * Checks if IO operation is available,
+     * calls for setup when internal state is not initialized fully.
+     * @throws IOException on failure to perform file opening.
+     */
+    private void stateCheck() throws IOException {
+        if (isClosed) {
+            throw new IllegalStateException("Illegal access to closed resource");
+        }
+        if (!isSetUp) {
+            setup();
+        }
+    }
+
+    /**
+     * Starts opening of files and reads titles.
+     * @throws IOException on failure to perform file opening.
+     */
+    private void setup() throws IOException {
+        isSetUp = true;
+        executor = Executors.newFixedThreadPool(Math.max(1, Math.min(readAhead, files.size())), r -> {
+            final Thread thread = new Thread(r, "Directory read ahead " + THREAD_COUNTER.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        start();
+        if (hasTitles) {
+            while (current != null && (rawTitlesString = current.getTitles()) == null) {
+                // the file is empty, titles are looked for in the next one
+                current.close();
+                current = takeNextFile();
+            }
+        }
+    }
+
+    /**
+     * Starts reading from the first file.
+     * @throws IOException on failure to perform file opening.
+     */
+    private void start() throws IOException {
+        indexCounter = 0;
+        nextFileIndex = 0;
+        while (nextFileIndex < files.size() && openedFiles.size() < readAhead) {
+            submitNextFile();
+        }
+        current = takeNextFile();
+    }
+
+    /**
+     * Submits the next file for opening in advance.
+     */
+    private void submitNextFile() {
+        final File file = files.get(nextFileIndex++);
+        openedFiles.addLast(executor.submit(() -> {
+            final TitledDataSource<CharSequence> source = TextFileDataSources.open(file, hasTitles);
+            try {
+                source.hasNext();
+            }
+            catch (IOException | RuntimeException ex) {
+                source.close();
+                throw ex;
+            }
+            return source;
+        }));
+    }
+
+    /**
+     * Takes the next opened file and submits one more file for opening.
+     * @return data source of the next file or {@code null} if there are no files left
+     * @throws IOException on failure to open the file
+     */
+    private TitledDataSource<CharSequence> takeNextFile() throws IOException {
+        final Future<TitledDataSource<CharSequence>> future = openedFiles.pollFirst();
+        if (future == null) {
+            return null;
+        }
+        if (nextFileIndex < files.size()) {
+            submitNextFile();
+        }
+        return getOpenedFile(future);
+    }
+
+    /**
+     * Closes current file and all files opened in advance.
+     * @throws IOException on i/o error
+     */
+    private void closeFiles() throws IOException {
+        IOException exception = null;
+        if (current != null) {
+            try {
+                current.close();
+            }
+            catch (IOException ex) {
+                exception = ex;
+            }
+            current = null;
+        }
+        Future<TitledDataSource<CharSequence>> future;
+        while ((future = openedFiles.pollFirst()) != null) {
+            try {
+                getOpenedFile(future).close();
+            }
+            catch (IOException ex) {
+                exception = ex;
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    /**
+     * Waits until a file is opened.
+     * @param future opening of a file
+     * @return data source of the file
+     * @throws IOException on failure to open the file
+     */
+    private static TitledDataSource<CharSequence> getOpenedFile(
+            Future<TitledDataSource<CharSequence>> future) throws IOException {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a file to be opened.");
+        }
+        catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            throw new IOException("Failed to open a file.", ex.getCause());
+        }
+    }
+
+    /**
+     * Lists all files of a directory and its subdirectories sorted by their paths.
+     * Hidden files and line offset indexes are skipped, so these are exactly
+     * the files read by a data source of the directory.
+     * @param directory a directory
+     * @return sorted files
+     * @throws IllegalArgumentException if directory can't be listed
+     */
+    public static List<File> listFiles(File directory) throws IllegalArgumentException {
+        final List<File> result = new ArrayList<>();
+        collectFiles(directory, result);
+        Collections.sort(result);
+        return result;
+    }
+
+    /**
+     * Adds all files of a directory and its subdirectories to a list.
+     * @param directory a directory
+     * @param result list of files
+     * @throws IllegalArgumentException if directory can't be listed
+     */
+    private static void collectFiles(File directory, List<File> result)
+            throws IllegalArgumentException {
+        final File[] children = directory.listFiles();
+        if (children == null) {
+            throw new IllegalArgumentException(String.format("Can't list directory %s.", directory));
+        }
+        for (File child : children) {
+            if (child.isDirectory()) {
+                collectFiles(child, result);
+            }
+            else if (child.isFile() && !child.isHidden()
+                    && !child.getName().endsWith(LineOffsetIndex.SIDECAR_EXTENSION)) {
+                result.add(child);
+            }
+        }
+    }
+}
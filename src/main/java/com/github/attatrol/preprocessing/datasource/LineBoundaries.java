@@ -0,0 +1,125 @@
+package com.github.attatrol.preprocessing.datasource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds line boundaries in text files on byte level. Line terminators are the same as in
+ * {@link java.io.BufferedReader#readLine()}, charset of the file must encode them as single
+ * bytes, which is true for UTF-8 and all single byte charsets.
+ * @author atta_troll
+ *
+ */
+final class LineBoundaries {
+
+    /**
+     * Size of the buffer used for scanning.
+     */
+    private static final int BUFFER_SIZE = 1 << 13;
+
+    private LineBoundaries() {
+    }
+
+    /**
+     * Finds the first line start that is not less than some position.
+     * @param channel channel of the file
+     * @param position search start position
+     * @param limit position where search stops, usually the file size
+     * @return found line start or {@code limit} if there is none
+     * @throws IOException on i/o error
+     */
+    static long alignToLineStart(FileChannel channel, long position, long limit)
+            throws IOException {
+        if (position <= 0L) {
+            return 0L;
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        long bufferStart = position - 1;
+        while (bufferStart < limit) {
+            buffer.clear();
+            final int read = channel.read(buffer, bufferStart);
+            if (read < 2) {
+                break;
+            }
+            for (int i = 1; i < read; i++) {
+                final byte previous = buffer.get(i - 1);
+                if (previous == '\n' || previous == '\r' && buffer.get(i) != '\n') {
+                    return Math.min(bufferStart + i, limit);
+                }
+            }
+            if (bufferStart + read >= limit) {
+                break;
+            }
+            // the last byte of the buffer will be checked as a previous one
+            bufferStart += read - 1;
+        }
+        return limit;
+    }
+
+    /**
+     * Counts lines of a byte range of a file.
+     * @param channel channel of the file
+     * @param start start of the range, must be a line start
+     * @param end end of the range
+     * @return number of lines that start in the range
+     * @throws IOException on i/o error
+     */
+    static long countLines(FileChannel channel, long start, long end) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        long lineNumber = 0L;
+        long position = start;
+        byte previous = '\n';
+        while (position < end) {
+            buffer.clear();
+            buffer.limit((int) Math.min(BUFFER_SIZE, end - position));
+            final int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                final byte current = buffer.get(i);
+                if (previous == '\n' || previous == '\r' && current != '\n') {
+                    lineNumber++;
+                }
+                previous = current;
+            }
+            position += read;
+        }
+        return lineNumber;
+    }
+
+    /**
+     * Splits byte range of a file into parts with bounds on line starts.
+     * @param channel channel of the file
+     * @param start start of the range, must be a line start
+     * @param end end of the range
+     * @param partsNumber desired number of parts
+     * @return bounds of parts, {@code i}-th part is {@code [bounds[i], bounds[i + 1])},
+     *         all parts are non-empty unless the range is empty
+     * @throws IOException on i/o error
+     */
+    static long[] splitRange(FileChannel channel, long start, long end, int partsNumber)
+            throws IOException {
+        if (partsNumber < 1) {
+            throw new IllegalArgumentException("Number of parts must be positive.");
+        }
+        final List<Long> bounds = new ArrayList<>(partsNumber + 1);
+        bounds.add(start);
+        final long step = (end - start) / partsNumber;
+        for (int i = 1; i < partsNumber && step > 0; i++) {
+            final long bound = alignToLineStart(channel, start + i * step, end);
+            if (bound > bounds.get(bounds.size() - 1) && bound < end) {
+                bounds.add(bound);
+            }
+        }
+        bounds.add(end);
+        final long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,461 @@
+package com.github.attatrol.preprocessing.datasource;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Maps line index of a text file into byte offset of the line.<br/>
+ * Index is stored in an index file of the cache directory, see {@link #getCacheDirectory()},
+ * so nothing is written next to the text file, and is memory mapped when loaded, so it does not
+ * occupy heap. If the index file can't be written, index is kept in heap.
+ * Index file keeps length and modification time of the text file, stale index is never loaded.<br/>
+ * Line terminators are the same as in {@link java.io.BufferedReader#readLine()},
+ * charset of the text file must encode them as single bytes.
+ * @author atta_troll
+ *
+ */
+public final class LineOffsetIndex {
+
+    /**
+     * Extension of index files.
+     */
+    public static final String SIDECAR_EXTENSION = ".lidx";
+
+    /**
+     * First bytes of every index file.
+     */
+    private static final int MAGIC = 0x4C494458;
+
+    /**
+     * Version of index file format.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Size of index file header: magic, version, file length, modification time, line number.
+     */
+    private static final int HEADER_SIZE = 32;
+
+    /**
+     * Position of the line number in the header.
+     */
+    private static final int LINE_NUMBER_POSITION = 24;
+
+    /**
+     * Binary logarithm of the number of offsets in a single mapped segment.
+     */
+    private static final int SEGMENT_SHIFT = 27;
+
+    /**
+     * Size of the buffer used for scanning of the text file.
+     */
+    private static final int SCAN_BUFFER_SIZE = 1 << 20;
+
+    /**
+     * Directory of index files, {@code null} for the default one.
+     */
+    private static volatile File cacheDirectory;
+
+    /**
+     * Segments with offsets, mapped from the index file or kept in heap.
+     */
+    private final LongBuffer[] segments;
+
+    /**
+     * Number of lines in the text file.
+     */
+    private final long lineNumber;
+
+    /**
+     * Default ctor.
+     * @param segments segments with offsets
+     * @param lineNumber number of lines in the text file
+     */
+    private LineOffsetIndex(LongBuffer[] segments, long lineNumber) {
+        this.segments = segments;
+        this.lineNumber = lineNumber;
+    }
+
+    /**
+     * @return number of lines in the text file
+     */
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * @param line index of a line
+     * @return byte offset of the line in the text file
+     * @throws IllegalArgumentException if line index is out of range
+     */
+    public long getLineOffset(long line) throws IllegalArgumentException {
+        if (line < 0 || line >= lineNumber) {
+            throw new IllegalArgumentException(String.format(
+                    "Line index %d is out of range [0, %d).", line, lineNumber));
+        }
+        return segments[(int) (line >>> SEGMENT_SHIFT)]
+                .get((int) (line & ((1 << SEGMENT_SHIFT) - 1)));
+    }
+
+    /**
+     * @return directory of index files, by default it is in the user home directory
+     */
+    public static File getCacheDirectory() {
+        final File directory = cacheDirectory;
+        return directory != null ? directory : new File(new File(System.getProperty("user.home"),
+                ".datapreprocessing"), "line-index");
+    }
+
+    /**
+     * Sets directory of index files.
+     * @param directory directory of index files, {@code null} for the default one
+     */
+    public static void setCacheDirectory(File directory) {
+        cacheDirectory = directory;
+    }
+
+    /**
+     * @param file text file
+     * @return index file of the text file in the cache directory,
+     *         its name is made of the file name and a hash of its absolute path
+     */
+    public static File getSidecarFile(File file) {
+        final CRC32 crc = new CRC32();
+        crc.update(file.getAbsolutePath().getBytes(StandardCharsets.UTF_8));
+        return new File(getCacheDirectory(),
+                String.format("%s-%08x%s", file.getName(), crc.getValue(), SIDECAR_EXTENSION));
+    }
+
+    /**
+     * Loads index from its index file.
+     * @param file text file
+     * @return index or {@code null} if index file is missing, broken or stale
+     * @throws IOException on i/o error
+     */
+    public static LineOffsetIndex load(File file) throws IOException {
+        return load(file, getSidecarFile(file));
+    }
+
+    /**
+     * Loads the index from its index file or builds it with a scan of the text file
+     * if there is no valid index file. Index is kept in heap if index file can't be written.
+     * @param file text file
+     * @return index
+     * @throws IOException on i/o error
+     */
+    public static LineOffsetIndex loadOrBuild(File file) throws IOException {
+        final LineOffsetIndex index = load(file);
+        if (index != null) {
+            return index;
+        }
+        try {
+            return build(file);
+        }
+        catch (IOException ex) {
+            return build(file, new Builder(file, true));
+        }
+    }
+
+    /**
+     * Builds index with a byte level scan of the text file.
+     * @param file text file
+     * @return index
+     * @throws IOException on i/o error
+     */
+    public static LineOffsetIndex build(File file) throws IOException {
+        return build(file, new Builder(file));
+    }
+
+    /**
+     * Builds index with a byte level scan of the text file.
+     * @param file text file
+     * @param builder builder of the index
+     * @return index
+     * @throws IOException on i/o error
+     */
+    private static LineOffsetIndex build(File file, Builder builder) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final ByteBuffer buffer = ByteBuffer.allocateDirect(SCAN_BUFFER_SIZE);
+            long position = 0L;
+            byte previous = '\n';
+            int read;
+            while ((read = channel.read(buffer, position)) > 0) {
+                buffer.flip();
+                for (int i = 0; i < read; i++) {
+                    final byte current = buffer.get(i);
+                    if (previous == '\n' || previous == '\r' && current != '\n') {
+                        builder.addLine(position + i);
+                    }
+                    previous = current;
+                }
+                position += read;
+                buffer.clear();
+            }
+        }
+        catch (IOException | RuntimeException ex) {
+            builder.abort();
+            throw ex;
+        }
+        return builder.finish();
+    }
+
+    /**
+     * @param file text file
+     * @return prefix of temporary files of the index, it is long enough
+     *         for {@link File#createTempFile(String, String)} even for short file names
+     */
+    private static String getTemporaryPrefix(File file) {
+        return file.getName() + "-idx";
+    }
+
+    /**
+     * Loads index from some index file.
+     * @param file text file
+     * @param sidecar index file
+     * @return index or {@code null} if index file is missing, broken or stale
+     * @throws IOException on i/o error
+     */
+    private static LineOffsetIndex load(File file, File sidecar) throws IOException {
+        if (!sidecar.isFile() || sidecar.length() < HEADER_SIZE) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(sidecar.toPath(), StandardOpenOption.READ)) {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            channel.read(header, 0L);
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION
+                    || header.getLong() != file.length()
+                    || header.getLong() != file.lastModified()) {
+                return null;
+            }
+            final long lineNumber = header.getLong();
+            if (channel.size() != HEADER_SIZE + lineNumber * Long.BYTES) {
+                return null;
+            }
+            final int segmentNumber = (int) ((lineNumber + (1L << SEGMENT_SHIFT) - 1) >>> SEGMENT_SHIFT);
+            final LongBuffer[] segments = new LongBuffer[segmentNumber];
+            for (int i = 0; i < segmentNumber; i++) {
+                final long first = (long) i << SEGMENT_SHIFT;
+                final long length = Math.min(lineNumber - first, 1L << SEGMENT_SHIFT);
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                        HEADER_SIZE + first * Long.BYTES, length * Long.BYTES).asLongBuffer();
+            }
+            return new LineOffsetIndex(segments, lineNumber);
+        }
+    }
+
+    /**
+     * Writes line offsets of a text file into an index file in order of lines,
+     * offsets are collected in heap if index file can't be created.
+     * Used by data sources to build index during their first complete pass.
+     * @author atta_troll
+     *
+     */
+    public static final class Builder {
+
+        /**
+         * Initial size of a heap segment.
+         */
+        private static final int INITIAL_SEGMENT_SIZE = 1 << 10;
+
+        /**
+         * Text file.
+         */
+        private final File file;
+
+        /**
+         * Length of the text file when building started.
+         */
+        private final long fileLength;
+
+        /**
+         * Modification time of the text file when building started.
+         */
+        private final long lastModified;
+
+        /**
+         * Index file that is being written, {@code null} if offsets are kept in heap.
+         */
+        private final File sidecar;
+
+        /**
+         * Temporary file where offsets are written before it is moved into index file,
+         * {@code null} if offsets are kept in heap.
+         */
+        private final File temporaryFile;
+
+        /**
+         * Output stream of the temporary file, {@code null} if offsets are kept in heap.
+         */
+        private final DataOutputStream output;
+
+        /**
+         * Heap segments of offsets, {@code null} if offsets are written into a file.
+         */
+        private long[][] heapSegments;
+
+        /**
+         * Number of added lines.
+         */
+        private long lineNumber;
+
+        /**
+         * Creates builder that writes an index file, or keeps offsets in heap
+         * if the index file can't be created.
+         * @param file text file
+         */
+        public Builder(File file) {
+            this(file, false);
+        }
+
+        /**
+         * Default ctor.
+         * @param file text file
+         * @param isInHeap {@code true} if offsets are kept in heap
+         */
+        private Builder(File file, boolean isInHeap) {
+            this.file = file;
+            fileLength = file.length();
+            lastModified = file.lastModified();
+            File target = null;
+            File temporary = null;
+            DataOutputStream stream = null;
+            if (!isInHeap) {
+                try {
+                    target = getSidecarFile(file);
+                    final File directory = target.getParentFile();
+                    if (!directory.isDirectory() && !directory.mkdirs()) {
+                        throw new IOException(String.format(
+                                "Failed to create directory %s.", directory));
+                    }
+                    temporary = File.createTempFile(getTemporaryPrefix(file), SIDECAR_EXTENSION,
+                            directory);
+                    stream = new DataOutputStream(new BufferedOutputStream(
+                            new FileOutputStream(temporary), 1 << 16));
+                    stream.writeInt(MAGIC);
+                    stream.writeInt(VERSION);
+                    stream.writeLong(fileLength);
+                    stream.writeLong(lastModified);
+                    stream.writeLong(0L);
+                }
+                catch (IOException | SecurityException ex) {
+                    closeQuietly(stream);
+                    if (temporary != null) {
+                        temporary.delete();
+                    }
+                    target = null;
+                    temporary = null;
+                    stream = null;
+                }
+            }
+            sidecar = target;
+            temporaryFile = temporary;
+            output = stream;
+            if (output == null) {
+                heapSegments = new long[][] {new long[INITIAL_SEGMENT_SIZE]};
+            }
+        }
+
+        /**
+         * Adds the next line.
+         * @param offset byte offset of the line
+         * @throws IOException on i/o error
+         */
+        public void addLine(long offset) throws IOException {
+            if (output != null) {
+                output.writeLong(offset);
+            }
+            else {
+                final int segment = (int) (lineNumber >>> SEGMENT_SHIFT);
+                final int position = (int) (lineNumber & ((1 << SEGMENT_SHIFT) - 1));
+                if (segment == heapSegments.length) {
+                    heapSegments = Arrays.copyOf(heapSegments, segment + 1);
+                    heapSegments[segment] = new long[INITIAL_SEGMENT_SIZE];
+                }
+                if (position == heapSegments[segment].length) {
+                    heapSegments[segment] = Arrays.copyOf(heapSegments[segment], Math.min(
+                            position * 2, 1 << SEGMENT_SHIFT));
+                }
+                heapSegments[segment][position] = offset;
+            }
+            lineNumber++;
+        }
+
+        /**
+         * Completes building, writes index file and loads index from it.
+         * @return the index
+         * @throws IOException on i/o error
+         */
+        public LineOffsetIndex finish() throws IOException {
+            if (output == null) {
+                if (file.length() != fileLength || file.lastModified() != lastModified) {
+                    throw new IOException("Text file was modified while its index was built.");
+                }
+                final LongBuffer[] segments = new LongBuffer[heapSegments.length];
+                for (int i = 0; i < segments.length; i++) {
+                    final long first = (long) i << SEGMENT_SHIFT;
+                    segments[i] = LongBuffer.wrap(heapSegments[i], 0,
+                            (int) Math.min(lineNumber - first, heapSegments[i].length));
+                }
+                return new LineOffsetIndex(segments, lineNumber);
+            }
+            try {
+                output.close();
+                try (RandomAccessFile raf = new RandomAccessFile(temporaryFile, "rw")) {
+                    raf.seek(LINE_NUMBER_POSITION);
+                    raf.writeLong(lineNumber);
+                }
+                Files.move(temporaryFile.toPath(), sidecar.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+            catch (IOException ex) {
+                temporaryFile.delete();
+                throw ex;
+            }
+            final LineOffsetIndex index = load(file, sidecar);
+            if (index == null) {
+                throw new IOException("Text file was modified while its index was built.");
+            }
+            return index;
+        }
+
+        /**
+         * Cancels building and removes written data.
+         */
+        public void abort() {
+            if (output != null) {
+                closeQuietly(output);
+                temporaryFile.delete();
+            }
+            heapSegments = null;
+        }
+
+        /**
+         * Closes a stream ignoring errors.
+         * @param stream the stream, may be {@code null}
+         */
+        private static void closeQuietly(DataOutputStream stream) {
+            if (stream != null) {
+                try {
+                    stream.close();
+                }
+                catch (IOException ex) {
+                    // nothing to do, file is removed anyway
+                }
+            }
+        }
+    }
+}
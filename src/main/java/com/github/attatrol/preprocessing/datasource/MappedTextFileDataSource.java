@@ -0,0 +1,592 @@
+package com.github.attatrol.preprocessing.datasource;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Describes file data source where each line of text represents some record,
+ * just like {@link TextFileDataSource}, but the file is mapped into memory
+ * with {@link FileChannel#map(FileChannel.MapMode, long, long)} segment by segment.<br/>
+ * Lines that consist of ASCII characters only are returned as {@link AsciiCharSequence}
+ * slices over the mapped segment, so no copying or decoding of data takes place,
+ * other lines are decoded into strings with the charset of this data source.
+ * Line ends are found by a byte scan, so the charset must be ASCII compatible,
+ * see {@link #isAsciiCompatible(Charset)}.<br/>
+ * Reset is almost free as it only moves current position back to the first record.<br/>
+ * Data source may be split into parts that cover byte ranges of the file with bounds
+ * on line starts.<br/>
+ * Records can be accessed by index with help of {@link LineOffsetIndex}, the index is loaded
+ * or built on the first random access. If offset index is enabled, it is also built during
+ * the first complete pass over the file and parts of the data source get global record indexes.
+ * @author atta_troll
+ *
+ */
+public class MappedTextFileDataSource
+        implements TitledDataSource<CharSequence>, SplittableDataSource<CharSequence>,
+        RandomAccessDataSource<CharSequence> {
+
+    /**
+     * Default size of a mapped segment.
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 1 << 28;
+
+    /**
+     * File of data source.
+     */
+    private final File file;
+
+    /**
+     * Flag of having column titles in the first row.
+     * They will be omitted from iterations.
+     * Titles may be recovered by method {@link #getTitles()}.
+     */
+    private final boolean hasTitles;
+
+    /**
+     * Charset used to decode non ASCII lines.
+     */
+    private final Charset charset;
+
+    /**
+     * Preferred size of a mapped segment.
+     */
+    private final int segmentSize;
+
+    /**
+     * Start of the byte range of this data source in the file.
+     */
+    private final long rangeStart;
+
+    /**
+     * End of the byte range of this data source in the file.
+     */
+    private final long rangeEnd;
+
+    /**
+     * Index of the first record of the byte range.
+     */
+    private final long firstIndex;
+
+    /**
+     * {@code true} if this data source covers the whole file.
+     */
+    private final boolean isWholeFile;
+
+    /**
+     * Flag of using the offset index for iterations and splits.
+     */
+    private boolean isOffsetIndexEnabled;
+
+    /**
+     * Line offset index of the file, may be {@code null} if not loaded yet.
+     */
+    private LineOffsetIndex offsetIndex;
+
+    /**
+     * Builder of the offset index used during the first complete pass.
+     */
+    private LineOffsetIndex.Builder indexBuilder;
+
+    /**
+     * Channel associated with data file.
+     */
+    private FileChannel channel;
+
+    /**
+     * Size of the data file or the end of the byte range if it is lesser.
+     */
+    private long fileSize;
+
+    /**
+     * Currently mapped segment of the data file.
+     */
+    private MappedByteBuffer segment;
+
+    /**
+     * Position of the {@link #segment} in the data file.
+     */
+    private long segmentStart;
+
+    /**
+     * Position of the next line in the data file.
+     */
+    private long position;
+
+    /**
+     * Position of the first record in the data file.
+     */
+    private long firstRecordPosition;
+
+    /**
+     * Flag of being closed.
+     */
+    private boolean isClosed;
+
+    /**
+     * Index counter for a current record.
+     */
+    private long indexCounter;
+
+    /**
+     * Number of records of a part, -1 if it is not counted yet.
+     */
+    private long partRecordNumber = -1L;
+
+    /**
+     * Raw titles string.
+     */
+    private String rawTitlesString;
+
+    /**
+     * Default ctor, uses default charset and segment size.
+     * @param file file of data source
+     * @param hasTitles flag of having column titles in the first row
+     */
+    public MappedTextFileDataSource(File file, boolean hasTitles) {
+        this(file, hasTitles, Charset.defaultCharset(), DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Complete ctor.
+     * @param file file of data source
+     * @param hasTitles flag of having column titles in the first row
+     * @param charset charset of the file
+     * @param segmentSize preferred size of a mapped segment, lines longer than it
+     *        are mapped whole
+     * @throws IllegalArgumentException if charset is not ASCII compatible
+     *         or segment size is not positive
+     */
+    public MappedTextFileDataSource(File file, boolean hasTitles, Charset charset,
+            int segmentSize) {
+        this(file, hasTitles, charset, segmentSize, 0L, Long.MAX_VALUE, 0L);
+    }
+
+    /**
+     * Ctor of a part of the data source.
+     * @param file file of data source
+     * @param hasTitles flag of having column titles in the first row of the range
+     * @param charset charset of the file
+     * @param segmentSize preferred size of a mapped segment
+     * @param rangeStart start of the byte range in the file, must be a line start
+     * @param rangeEnd end of the byte range in the file
+     * @param firstIndex index of the first record of the byte range
+     * @throws IllegalArgumentException if charset is not ASCII compatible
+     *         or segment size is not positive
+     */
+    private MappedTextFileDataSource(File file, boolean hasTitles, Charset charset,
+            int segmentSize, long rangeStart, long rangeEnd, long firstIndex) {
+        if (segmentSize <= 0) {
+            throw new IllegalArgumentException("Segment size must be positive.");
+        }
+        if (!isAsciiCompatible(charset)) {
+            throw new IllegalArgumentException(String.format(
+                    "Charset %s is not ASCII compatible.", charset.name()));
+        }
+        this.file = file;
+        this.hasTitles = hasTitles;
+        this.charset = charset;
+        this.segmentSize = segmentSize;
+        this.rangeStart = rangeStart;
+        this.rangeEnd = rangeEnd;
+        this.firstIndex = firstIndex;
+        isWholeFile = rangeStart == 0L && rangeEnd == Long.MAX_VALUE;
+    }
+
+    /**
+     * Checks that a charset encodes every ASCII character as a single byte with the same code
+     * and decodes it back. Multibyte characters of such charsets (UTF-8, GBK, Shift_JIS)
+     * never contain line terminator bytes, so line ends may be found by a byte scan.
+     * UTF-16, UTF-32, EBCDIC and stateful ISO-2022 charsets are not compatible.
+     * @param charset a charset
+     * @return {@code true} if charset is ASCII compatible
+     */
+    public static boolean isAsciiCompatible(Charset charset) {
+        if (!charset.canEncode()) {
+            return false;
+        }
+        for (char c = 0; c < 0x80; c++) {
+            final byte[] encoded = String.valueOf(c).getBytes(charset);
+            if (encoded.length != 1 || encoded[0] != c) {
+                return false;
+            }
+            final String decoded = new String(encoded, charset);
+            if (decoded.length() != 1 || decoded.charAt(0) != c) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasNext() throws IOException {
+        stateCheck();
+        return position < fileSize;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Record<CharSequence> next()
+            throws IOException, IllegalArgumentException, NoSuchElementException {
+        stateCheck();
+        if (position >= fileSize) {
+            throw new NoSuchElementException("There are no records left.");
+        }
+        return new Record<CharSequence>(readLine(), indexCounter++);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reset() throws IOException {
+        stateCheck();
+        abortIndexBuilding();
+        position = firstRecordPosition;
+        indexCounter = firstIndex;
+        startIndexBuilding();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+        if (!isClosed) {
+            isClosed = true;
+            abortIndexBuilding();
+            segment = null;
+            if (channel != null) {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}<br/>
+     * Parts cover line aligned byte ranges of the file. If offset index is enabled
+     * parts contain equal numbers of records with global indexes, otherwise parts
+     * have approximately equal byte sizes and records of each part are indexed from zero.
+     */
+    @Override
+    public List<MappedTextFileDataSource> split(int partsNumber) throws IOException {
+        stateCheck();
+        if (isOffsetIndexEnabled && isWholeFile) {
+            if (partsNumber < 1) {
+                throw new IllegalArgumentException("Number of parts must be positive.");
+            }
+            final long recordNumber = getRecordNumber();
+            final List<MappedTextFileDataSource> parts = new ArrayList<>(partsNumber);
+            long start = 0L;
+            for (int i = 1; i <= partsNumber; i++) {
+                final long end = recordNumber * i / partsNumber;
+                if (end > start || i == partsNumber && parts.isEmpty()) {
+                    parts.add(new MappedTextFileDataSource(file, false, charset, segmentSize,
+                            getRecordPosition(start), getRecordPosition(end), start));
+                    start = end;
+                }
+            }
+            return parts;
+        }
+        final long[] bounds =
+                LineBoundaries.splitRange(channel, firstRecordPosition, fileSize, partsNumber);
+        final List<MappedTextFileDataSource> parts = new ArrayList<>(bounds.length - 1);
+        for (int i = 0; i < bounds.length - 1; i++) {
+            parts.add(new MappedTextFileDataSource(file, false, charset, segmentSize,
+                    bounds[i], bounds[i + 1], 0L));
+        }
+        return parts;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasGlobalIndexes() {
+        return isOffsetIndexEnabled && isWholeFile;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void seek(long recordIndex) throws IOException, IllegalArgumentException {
+        stateCheck();
+        if (!isWholeFile) {
+            throw new UnsupportedOperationException("Parts of data source do not support random access.");
+        }
+        abortIndexBuilding();
+        position = getRecordPosition(recordIndex);
+        indexCounter = recordIndex;
+    }
+
+    /**
+     * {@inheritDoc}<br/>
+     * Records of a part are counted by a byte scan of its range.
+     */
+    @Override
+    public long getRecordNumber() throws IOException {
+        stateCheck();
+        if (!isWholeFile) {
+            if (partRecordNumber < 0L) {
+                partRecordNumber = LineBoundaries.countLines(channel, firstRecordPosition, fileSize);
+            }
+            return partRecordNumber;
+        }
+        loadOffsetIndex();
+        return offsetIndex.getLineNumber() - (firstRecordPosition > 0L ? 1 : 0);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean supportsRandomAccess() {
+        return isWholeFile;
+    }
+
+    /**
+     * Enables or disables use of the offset index: its building during the first complete pass
+     * and splitting into parts with global record indexes. Should be called before iterations.
+     * @param isOffsetIndexEnabled flag of using the offset index
+     */
+    public void setOffsetIndexEnabled(boolean isOffsetIndexEnabled) {
+        this.isOffsetIndexEnabled = isOffsetIndexEnabled;
+    }
+
+    /**
+     * @return raw title as a string, may return {@code null}
+     * if file is empty or flag of having titles is {@code false}.
+     * @throws IOException on internal i/o error
+     */
+    @Override
+    public String getTitles() throws IOException {
+        if (hasTitles) {
+            stateCheck();
+        }
+        return rawTitlesString;
+    }
+
+    /**
+     * @return file of data source
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return charset of the file
+     */
+    public Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * Checks if IO operation is available,
+     * calls for setup when internal state is not initialized fully.
+     * @throws IOException on failure to perform file opening.
+     */
+    private void stateCheck() throws IOException {
+        if (isClosed) {
+            throw new IllegalStateException("Illegal access to closed resource");
+        }
+        if (channel == null) {
+            setup();
+        }
+    }
+
+    /**
+     * Opens file for reading and reads titles.
+     * @throws IOException on failure to perform file opening.
+     */
+    private void setup() throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        fileSize = Math.min(channel.size(), rangeEnd);
+        position = rangeStart;
+        if (hasTitles && position < fileSize) {
+            rawTitlesString = readLine().toString();
+        }
+        firstRecordPosition = position;
+        indexCounter = firstIndex;
+        if (isOffsetIndexEnabled && isWholeFile) {
+            offsetIndex = LineOffsetIndex.load(file);
+            startIndexBuilding();
+        }
+    }
+
+    /**
+     * Starts building of the offset index if data source is at the start of the file,
+     * the index is enabled and is not loaded yet.
+     */
+    private void startIndexBuilding() {
+        if (isOffsetIndexEnabled && isWholeFile && offsetIndex == null && indexBuilder == null) {
+            indexBuilder = new LineOffsetIndex.Builder(file);
+            if (firstRecordPosition > 0L) {
+                addIndexLine(0L);
+            }
+            if (position >= fileSize) {
+                finishIndexBuilding();
+            }
+        }
+    }
+
+    /**
+     * Adds a line to the offset index being built. Failure to write the index
+     * cancels building and does not affect reading, index is built on demand then.
+     * @param offset byte offset of the line
+     */
+    private void addIndexLine(long offset) {
+        try {
+            indexBuilder.addLine(offset);
+        }
+        catch (IOException ex) {
+            abortIndexBuilding();
+        }
+    }
+
+    /**
+     * Completes building of the offset index after the last line was read.
+     * Index stays not loaded if it can't be written, it is built on demand then.
+     */
+    private void finishIndexBuilding() {
+        final LineOffsetIndex.Builder builder = indexBuilder;
+        indexBuilder = null;
+        try {
+            offsetIndex = builder.finish();
+        }
+        catch (IOException ex) {
+            offsetIndex = null;
+        }
+    }
+
+    /**
+     * Cancels building of the offset index, as the pass is not complete.
+     */
+    private void abortIndexBuilding() {
+        if (indexBuilder != null) {
+            indexBuilder.abort();
+            indexBuilder = null;
+        }
+    }
+
+    /**
+     * Loads offset index from its file or builds it with a byte scan of the file.
+     * @throws IOException on i/o error
+     */
+    private void loadOffsetIndex() throws IOException {
+        if (offsetIndex == null) {
+            abortIndexBuilding();
+            offsetIndex = LineOffsetIndex.loadOrBuild(file);
+        }
+    }
+
+    /**
+     * @param recordIndex index of a record
+     * @return position of the record in the file, the file size if record index
+     *         equals to the number of records
+     * @throws IOException on i/o error
+     * @throws IllegalArgumentException if record index is out of range
+     */
+    private long getRecordPosition(long recordIndex) throws IOException, IllegalArgumentException {
+        final long recordNumber = getRecordNumber();
+        if (recordIndex < 0 || recordIndex > recordNumber) {
+            throw new IllegalArgumentException(String.format(
+                    "Record index %d is out of range [0, %d].", recordIndex, recordNumber));
+        }
+        return recordIndex == recordNumber ? fileSize
+                : offsetIndex.getLineOffset(recordIndex + (firstRecordPosition > 0L ? 1 : 0));
+    }
+
+    /**
+     * Maps a segment of the file.
+     * @param start position of the segment in the file
+     * @param minimalLength minimal length of the segment
+     * @throws IOException on failure to map the file or if segment is too long
+     */
+    private void map(long start, long minimalLength) throws IOException {
+        final long length = Math.min(fileSize - start, Math.max(segmentSize, minimalLength));
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException(String.format(
+                    "Line at position %d is too long to be mapped into memory.", start));
+        }
+        segment = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+        segmentStart = start;
+    }
+
+    /**
+     * Reads line that starts at the current position, moves position to the next line.
+     * Line terminators are the same as in {@link java.io.BufferedReader#readLine()}.
+     * @return line without line terminator
+     * @throws IOException on failure to map the file
+     */
+    private CharSequence readLine() throws IOException {
+        final long lineStart = position;
+        if (indexBuilder != null) {
+            addIndexLine(lineStart);
+        }
+        if (segment == null || lineStart < segmentStart
+                || lineStart >= segmentStart + segment.limit()) {
+            map(lineStart, 0L);
+        }
+        while (true) {
+            final int from = (int) (lineStart - segmentStart);
+            final int limit = segment.limit();
+            final boolean isFileEnd = segmentStart + limit >= fileSize;
+            boolean isAscii = true;
+            int i = from;
+            byte b = 0;
+            for (; i < limit; i++) {
+                b = segment.get(i);
+                if (b == '\n' || b == '\r') {
+                    break;
+                }
+                if (b < 0) {
+                    isAscii = false;
+                }
+            }
+            if (i == limit && !isFileEnd || b == '\r' && i + 1 == limit && !isFileEnd) {
+                // line or its terminator is cut by the segment end
+                map(lineStart, 2L * (limit - from + 1));
+                continue;
+            }
+            int terminatorLength = 0;
+            if (i < limit) {
+                terminatorLength = b == '\r' && i + 1 < limit && segment.get(i + 1) == '\n' ? 2 : 1;
+            }
+            position = segmentStart + i + terminatorLength;
+            if (indexBuilder != null && position >= fileSize) {
+                finishIndexBuilding();
+            }
+            return produceLine(from, i - from, isAscii);
+        }
+    }
+
+    /**
+     * Creates line from a piece of the current segment.
+     * @param offset offset of the line in the segment
+     * @param length length of the line in bytes
+     * @param isAscii {@code true} if line contains only ASCII characters
+     * @return line
+     */
+    private CharSequence produceLine(int offset, int length, boolean isAscii) {
+        if (isAscii) {
+            return new AsciiCharSequence(segment, offset, length);
+        }
+        final byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = segment.get(offset + i);
+        }
+        return new String(bytes, charset);
+    }
+}
@@ -0,0 +1,460 @@
+package com.github.attatrol.preprocessing.datasource;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decorator that reads records of the wrapped data source in a background thread.
+ * The producer thread fills batches of records, the consumer drains them;
+ * a fixed number of batches circulates between two bounded queues, so batches are reused
+ * and at most {@code depth * batchSize} records are read in advance.<br/>
+ * Waits of both threads are counted: if the consumer waits more often than the producer,
+ * the pipeline is bound by reading of data, otherwise it is bound by processing of records.<br/>
+ * The wrapped data source is used only by the producer thread while it runs,
+ * titles are read before the producer starts.
+ * The producer thread is never interrupted, because interruption closes file channels.
+ * @author atta_troll
+ *
+ * @param <V> record type of data source
+ */
+public class PrefetchingDataSource<V> implements TitledDataSource<V> {
+
+    /**
+     * Default number of records in a batch.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    /**
+     * Default number of batches.
+     */
+    public static final int DEFAULT_DEPTH = 8;
+
+    /**
+     * Period of checks of the producer state during its termination, in milliseconds.
+     */
+    private static final long STOP_CHECK_PERIOD = 10L;
+
+    /**
+     * Wrapped data source.
+     */
+    private final DataSource<V> source;
+
+    /**
+     * Number of records in a batch.
+     */
+    private final int batchSize;
+
+    /**
+     * Batches filled by the producer.
+     */
+    private final BlockingQueue<Batch<V>> filledBatches;
+
+    /**
+     * Batches drained by the consumer.
+     */
+    private final BlockingQueue<Batch<V>> freeBatches;
+
+    /**
+     * Current producer, {@code null} if not started.
+     */
+    private Producer producer;
+
+    /**
+     * Empty batch that is current while the consumer owns no batch.
+     */
+    private final Batch<V> emptyBatch = new Batch<V>(0);
+
+    /**
+     * Batch drained by the consumer, {@link #emptyBatch} if the consumer owns no batch.
+     */
+    private Batch<V> current = emptyBatch;
+
+    /**
+     * Position of the next record in the current batch.
+     */
+    private int position;
+
+    /**
+     * Flag of being closed.
+     */
+    private boolean isClosed;
+
+    /**
+     * Raw titles string.
+     */
+    private String rawTitlesString;
+
+    /**
+     * Number of times the consumer waited for a filled batch.
+     */
+    private long consumerStallCount;
+
+    /**
+     * Total time the consumer waited for filled batches, in nanoseconds.
+     */
+    private long consumerStallTime;
+
+    /**
+     * Number of times the producer waited for a free batch.
+     */
+    private volatile long producerStallCount;
+
+    /**
+     * Total time the producer waited for free batches, in nanoseconds.
+     */
+    private volatile long producerStallTime;
+
+    /**
+     * Ctor with default batch size and depth.
+     * @param source wrapped data source
+     */
+    public PrefetchingDataSource(DataSource<V> source) {
+        this(source, DEFAULT_BATCH_SIZE, DEFAULT_DEPTH);
+    }
+
+    /**
+     * Complete ctor.
+     * @param source wrapped data source
+     * @param batchSize number of records in a batch
+     * @param depth number of batches
+     * @throws IllegalArgumentException if batch size or depth is not positive
+     */
+    public PrefetchingDataSource(DataSource<V> source, int batchSize, int depth)
+            throws IllegalArgumentException {
+        if (batchSize < 1 || depth < 1) {
+            throw new IllegalArgumentException("Batch size and depth must be positive.");
+        }
+        this.source = source;
+        this.batchSize = batchSize;
+        filledBatches = new ArrayBlockingQueue<>(depth);
+        freeBatches = new ArrayBlockingQueue<>(depth);
+        for (int i = 0; i < depth; i++) {
+            freeBatches.add(new Batch<V>(batchSize));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasNext() throws IOException {
+        stateCheck();
+        while (position >= current.size) {
+            if (current.isLast) {
+                if (current.failure instanceof IOException) {
+                    throw (IOException) current.failure;
+                }
+                if (current.failure instanceof Error) {
+                    throw (Error) current.failure;
+                }
+                if (current.failure != null) {
+                    throw (RuntimeException) current.failure;
+                }
+                return false;
+            }
+            releaseCurrent();
+            current = takeFilledBatch();
+        }
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Record<V> next() throws IOException, IllegalArgumentException, NoSuchElementException {
+        if (!hasNext()) {
+            throw new NoSuchElementException("There are no records left.");
+        }
+        return current.records[position++];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reset() throws IOException {
+        stateCheck();
+        stopProducer();
+        source.reset();
+        startProducer();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+        if (!isClosed) {
+            isClosed = true;
+            if (producer != null) {
+                stopProducer();
+            }
+            source.close();
+        }
+    }
+
+    /**
+     * @return titles of the wrapped data source if it is titled, {@code null} otherwise
+     * @throws IOException on internal i/o error
+     */
+    @Override
+    public String getTitles() throws IOException {
+        stateCheck();
+        return rawTitlesString;
+    }
+
+    /**
+     * @return number of times the consumer waited for a filled batch
+     */
+    public long getConsumerStallCount() {
+        return consumerStallCount;
+    }
+
+    /**
+     * @return total time the consumer waited for filled batches, in nanoseconds
+     */
+    public long getConsumerStallTime() {
+        return consumerStallTime;
+    }
+
+    /**
+     * @return number of times the producer waited for a free batch
+     */
+    public long getProducerStallCount() {
+        return producerStallCount;
+    }
+
+    /**
+     * @return total time the producer waited for free batches, in nanoseconds
+     */
+    public long getProducerStallTime() {
+        return producerStallTime;
+    }
+
+    /**
+     * @return {@code true} if the consumer waited longer than the producer,
+     *         so the pipeline is bound by reading of data
+     */
+    public boolean isSourceBound() {
+        return consumerStallTime > producerStallTime;
+    }
+
+    /**
+     * Checks if IO operation is available,
+     * calls for setup when internal state is not initialized fully.
+     * @throws IOException on failure of the wrapped data source
+     */
+    private void stateCheck() throws IOException {
+        if (isClosed) {
+            throw new IllegalStateException("Illegal access to closed resource");
+        }
+        if (producer == null) {
+            if (source instanceof TitledDataSource) {
+                rawTitlesString = ((TitledDataSource<V>) source).getTitles();
+            }
+            startProducer();
+        }
+    }
+
+    /**
+     * Starts a new producer thread.
+     */
+    private void startProducer() {
+        releaseCurrent();
+        producer = new Producer();
+        producer.thread.start();
+    }
+
+    /**
+     * Stops the producer thread and returns all batches into the pool of free batches.
+     * @throws InterruptedIOException if current thread is interrupted
+     */
+    private void stopProducer() throws InterruptedIOException {
+        producer.isCancelled = true;
+        try {
+            do {
+                Batch<V> batch;
+                while ((batch = filledBatches.poll()) != null) {
+                    recycle(batch);
+                }
+                producer.thread.join(STOP_CHECK_PERIOD);
+            } while (producer.thread.isAlive());
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while stopping prefetching.");
+        }
+        Batch<V> batch;
+        while ((batch = filledBatches.poll()) != null) {
+            recycle(batch);
+        }
+        releaseCurrent();
+    }
+
+    /**
+     * Recycles the current batch, so the consumer owns no batch and a batch
+     * is never recycled twice even if taking of the next one fails.
+     */
+    private void releaseCurrent() {
+        recycle(current);
+        current = emptyBatch;
+        position = 0;
+    }
+
+    /**
+     * Takes the next filled batch, waits for it if necessary.
+     * @return filled batch
+     * @throws InterruptedIOException if current thread is interrupted
+     */
+    private Batch<V> takeFilledBatch() throws InterruptedIOException {
+        Batch<V> batch = filledBatches.poll();
+        if (batch == null) {
+            final long start = System.nanoTime();
+            try {
+                batch = filledBatches.take();
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for records.");
+            }
+            consumerStallCount++;
+            consumerStallTime += System.nanoTime() - start;
+        }
+        return batch;
+    }
+
+    /**
+     * Clears a batch and returns it into the pool of free batches.
+     * @param batch a batch drained by the consumer
+     */
+    private void recycle(Batch<V> batch) {
+        if (batch.records.length > 0) {
+            Arrays.fill(batch.records, 0, batch.size, null);
+            batch.size = 0;
+            batch.isLast = false;
+            batch.failure = null;
+            freeBatches.add(batch);
+        }
+    }
+
+    /**
+     * Reads records of the wrapped data source into batches.
+     * @author atta_troll
+     *
+     */
+    private class Producer implements Runnable {
+
+        /**
+         * Thread of the producer.
+         */
+        private final Thread thread;
+
+        /**
+         * Flag of cancelled production.
+         */
+        private volatile boolean isCancelled;
+
+        /**
+         * Default ctor.
+         */
+        Producer() {
+            thread = new Thread(this, "Prefetching of " + source.getClass().getSimpleName());
+            thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!isCancelled) {
+                    final Batch<V> batch = takeFreeBatch();
+                    if (batch == null) {
+                        return;
+                    }
+                    try {
+                        boolean hasNext = true;
+                        while (batch.size < batchSize && !isCancelled && (hasNext = source.hasNext())) {
+                            final Record<V> record = source.next();
+                            batch.records[batch.size++] = record;
+                        }
+                        batch.isLast = !hasNext;
+                    }
+                    catch (Throwable ex) {
+                        // errors are rethrown by consumer, otherwise it waits forever
+                        batch.failure = ex;
+                        batch.isLast = true;
+                    }
+                    filledBatches.add(batch);
+                    if (batch.isLast) {
+                        return;
+                    }
+                }
+            }
+            catch (InterruptedException ex) {
+                // no one interrupts producer, thread just ends
+            }
+        }
+
+        /**
+         * Takes a free batch, waits for it if necessary.
+         * @return free batch or {@code null} if production is cancelled
+         * @throws InterruptedException if thread is interrupted
+         */
+        private Batch<V> takeFreeBatch() throws InterruptedException {
+            Batch<V> batch = freeBatches.poll();
+            if (batch == null) {
+                final long start = System.nanoTime();
+                while (batch == null && !isCancelled) {
+                    batch = freeBatches.poll(STOP_CHECK_PERIOD, TimeUnit.MILLISECONDS);
+                }
+                producerStallCount++;
+                producerStallTime += System.nanoTime() - start;
+            }
+            return batch;
+        }
+    }
+
+    /**
+     * Batch of records.
+     * @author atta_troll
+     *
+     * @param <V> record type
+     */
+    private static class Batch<V> {
+
+        /**
+         * Records of the batch.
+         */
+        private final Record<V>[] records;
+
+        /**
+         * Number of records in the batch.
+         */
+        private int size;
+
+        /**
+         * {@code true} if there are no records after this batch.
+         */
+        private boolean isLast;
+
+        /**
+         * Failure of the wrapped data source, an {@link IOException}, a {@link RuntimeException}
+         * or an {@link Error}, {@code null} if there is none.
+         */
+        private Throwable failure;
+
+        /**
+         * Default ctor.
+         * @param capacity maximal number of records in the batch
+         */
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Batch(int capacity) {
+            records = new Record[capacity];
+        }
+    }
+}
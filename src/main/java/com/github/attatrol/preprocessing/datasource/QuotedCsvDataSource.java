@@ -0,0 +1,276 @@
+package com.github.attatrol.preprocessing.datasource;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.NoSuchElementException;
+
+import com.github.attatrol.preprocessing.datasource.parsing.record.QuotedCsvTokenizer;
+
+/**
+ * Describes text file data source where records are CSV records as defined by RFC 4180:
+ * a record ends with a line break outside of quotes, so quoted fields may span several lines.
+ * Records should be split into fields with {@link QuotedCsvTokenizer}.<br/>
+ * Text is read through a fixed size character buffer, which is scanned by the state machine
+ * of the tokenizer, see {@link QuotedCsvTokenizer#nextState(int, char)}, so records are framed
+ * exactly as the tokenizer reads them and only the current record is kept in memory.
+ * Compressed files are recognized by their extensions, see {@link CompressionFormat}.
+ * @author atta_troll
+ *
+ */
+public class QuotedCsvDataSource implements TitledDataSource<CharSequence> {
+
+    /**
+     * Size of the character buffer.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * File of data source.
+     */
+    private final File file;
+
+    /**
+     * Flag of having column titles in the first record.
+     * They will be omitted from iterations.
+     * Titles may be recovered by method {@link #getTitles()}.
+     */
+    private final boolean hasTitles;
+
+    /**
+     * Tokenizer whose state machine frames records.
+     */
+    private final QuotedCsvTokenizer tokenizer;
+
+    /**
+     * Charset of the text.
+     */
+    private final Charset charset;
+
+    /**
+     * Character buffer.
+     */
+    private final char[] buffer = new char[BUFFER_SIZE];
+
+    /**
+     * Reusable builder of the current record.
+     */
+    private final StringBuilder recordBuilder = new StringBuilder();
+
+    /**
+     * Reader of the file, {@code null} if it is not opened yet.
+     */
+    private Reader reader;
+
+    /**
+     * Position of the next character in the buffer.
+     */
+    private int bufferPosition;
+
+    /**
+     * Number of characters in the buffer.
+     */
+    private int bufferLimit;
+
+    /**
+     * Next record, {@code null} if there are no records left.
+     */
+    private String nextRecord;
+
+    /**
+     * Flag of being closed.
+     */
+    private boolean isClosed;
+
+    /**
+     * Index counter for a current record.
+     */
+    private long indexCounter;
+
+    /**
+     * Raw titles string.
+     */
+    private String rawTitlesString;
+
+    /**
+     * Creates data source of records with comma separated fields enclosed in double quotes,
+     * uses default charset.
+     * @param file text file, possibly compressed
+     * @param hasTitles flag of having column titles in the first record
+     */
+    public QuotedCsvDataSource(File file, boolean hasTitles) {
+        this(file, hasTitles, new QuotedCsvTokenizer(), Charset.defaultCharset());
+    }
+
+    /**
+     * Default ctor.
+     * @param file text file, possibly compressed
+     * @param hasTitles flag of having column titles in the first record
+     * @param tokenizer tokenizer of records, defines delimiter and quote
+     * @param charset charset of the text
+     */
+    public QuotedCsvDataSource(File file, boolean hasTitles, QuotedCsvTokenizer tokenizer,
+            Charset charset) {
+        this.file = file;
+        this.hasTitles = hasTitles;
+        this.tokenizer = tokenizer;
+        this.charset = charset;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasNext() throws IOException {
+        stateCheck();
+        return nextRecord != null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Record<CharSequence> next() throws IOException, IllegalArgumentException, NoSuchElementException {
+        if (!hasNext()) {
+            throw new NoSuchElementException("There are no records left.");
+        }
+        final Record<CharSequence> record = new Record<>(nextRecord, indexCounter++);
+        nextRecord = readRecord();
+        return record;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reset() throws IOException {
+        if (isClosed) {
+            throw new IllegalStateException("Illegal access to closed resource");
+        }
+        closeReader();
+        setup();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws IOException {
+        isClosed = true;
+        closeReader();
+    }
+
+    /**
+     * @return raw title as a string, may return {@code null}
+     * if file is empty or flag of having titles is {@code false}.
+     * @throws IOException on internal i/o error
+     */
+    @Override
+    public String getTitles() throws IOException {
+        stateCheck();
+        return rawTitlesString;
+    }
+
+    /**
+     * Checks if IO operation is available,
+     * calls for setup when internal state is not initialized fully.
+     * @throws IOException on failure to perform stream opening.
+     */
+    private void stateCheck() throws IOException {
+        if (isClosed) {
+            throw new IllegalStateException("Illegal access to closed resource");
+        }
+        if (reader == null) {
+            setup();
+        }
+    }
+
+    /**
+     * Opens file for reading and reads the first record.
+     * @throws IOException on failure to perform stream opening.
+     */
+    private void setup() throws IOException {
+        final CompressionFormat format = CompressionFormat.forFile(file);
+        final InputStream stream = format != null ? format.open(file, null)
+                : new FileInputStream(file);
+        reader = new InputStreamReader(stream, charset);
+        bufferPosition = 0;
+        bufferLimit = 0;
+        indexCounter = 0L;
+        nextRecord = readRecord();
+        if (hasTitles && nextRecord != null) {
+            rawTitlesString = nextRecord;
+            nextRecord = readRecord();
+        }
+    }
+
+    /**
+     * Closes the reader if it is open.
+     * @throws IOException on i/o error
+     */
+    private void closeReader() throws IOException {
+        if (reader != null) {
+            final Reader openReader = reader;
+            reader = null;
+            nextRecord = null;
+            openReader.close();
+        }
+    }
+
+    /**
+     * Reads characters up to a line break outside of a quoted field.
+     * @return the record without the line break, {@code null} if there are no records left
+     * @throws IOException on i/o error or if the file ends inside a quoted field
+     */
+    private String readRecord() throws IOException {
+        recordBuilder.setLength(0);
+        int state = QuotedCsvTokenizer.FIELD_START;
+        while (true) {
+            if (bufferPosition == bufferLimit && !fillBuffer()) {
+                if (state == QuotedCsvTokenizer.QUOTED) {
+                    throw new IOException(String.format(
+                            "File %s ends inside a quoted field.", file.getName()));
+                }
+                return recordBuilder.length() > 0 ? recordBuilder.toString() : null;
+            }
+            final int start = bufferPosition;
+            while (bufferPosition < bufferLimit) {
+                final char ch = buffer[bufferPosition];
+                if ((ch == '\n' || ch == '\r') && state != QuotedCsvTokenizer.QUOTED) {
+                    break;
+                }
+                state = tokenizer.nextState(state, ch);
+                if (state == QuotedCsvTokenizer.INVALID) {
+                    // tokenizer rejects the record, its line break ends it
+                    state = QuotedCsvTokenizer.UNQUOTED;
+                }
+                bufferPosition++;
+            }
+            recordBuilder.append(buffer, start, bufferPosition - start);
+            if (bufferPosition < bufferLimit) {
+                if (buffer[bufferPosition++] == '\r'
+                        && (bufferPosition < bufferLimit || fillBuffer())
+                        && buffer[bufferPosition] == '\n') {
+                    bufferPosition++;
+                }
+                return recordBuilder.toString();
+            }
+        }
+    }
+
+    /**
+     * Reads next characters into the empty buffer.
+     * @return {@code false} if there are no characters left
+     * @throws IOException on i/o error
+     */
+    private boolean fillBuffer() throws IOException {
+        final int read = reader.read(buffer, 0, buffer.length);
+        bufferPosition = 0;
+        bufferLimit = Math.max(read, 0);
+        return read > 0;
+    }
+}
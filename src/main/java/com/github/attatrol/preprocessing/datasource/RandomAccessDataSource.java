@@ -0,0 +1,54 @@
+package com.github.attatrol.preprocessing.datasource;
+
+import java.io.IOException;
+import java.util.NoSuchElementException;
+
+/**
+ * Data source that can move its position to any record by the record index
+ * without replaying all preceding records.
+ * @author atta_troll
+ *
+ * @param <V> record type of data source
+ */
+public interface RandomAccessDataSource<V> extends DataSource<V> {
+
+    /**
+     * Places data source before the record with some index, so {@link #next()}
+     * will return this record.
+     * @param recordIndex index of the record, may be equal to the number of records,
+     *        then there are no records left
+     * @throws IOException on i/o error
+     * @throws IllegalArgumentException if record index is out of range
+     * @throws UnsupportedOperationException if {@link #supportsRandomAccess()} is {@code false}
+     */
+    void seek(long recordIndex) throws IOException, IllegalArgumentException;
+
+    /**
+     * Returns record with some index, position of data source is moved after this record.
+     * @param recordIndex index of the record
+     * @return the record
+     * @throws IOException on i/o error
+     * @throws IllegalArgumentException if record index is out of range
+     * @throws NoSuchElementException if record index equals to the number of records
+     */
+    default Record<V> get(long recordIndex)
+            throws IOException, IllegalArgumentException, NoSuchElementException {
+        seek(recordIndex);
+        return next();
+    }
+
+    /**
+     * @return total number of records in data source
+     * @throws IOException on i/o error
+     */
+    long getRecordNumber() throws IOException;
+
+    /**
+     * Decorators may support random access only if their wrapped data sources support it,
+     * this method tells if random access is actually supported.
+     * @return {@code true} if {@link #seek(long)} is supported
+     */
+    default boolean supportsRandomAccess() {
+        return true;
+    }
+}
@@ -0,0 +1,346 @@
+package com.github.attatrol.preprocessing.datasource;
+
+import java.util.Arrays;
+
+import com.github.attatrol.preprocessing.datasource.parsing.TokenType;
+
+/**
+ * Reusable columnar block of parsed records, filled by
+ * {@link AbstractTokenDataSource#nextBatch(RecordBatch)}.<br/>
+ * Each column is kept in an array of the type that matches its token type:
+ * {@code int[]} for {@link TokenType#INTEGER}, {@code double[]} for {@link TokenType#FLOAT},
+ * {@code boolean[]} for {@link TokenType#BINARY} and {@link TokenType#BINARY_DIGITAL},
+ * {@code Object[]} for other types. Missing values are marked in a bitmap of each column,
+ * the value in the array is undefined then.<br/>
+ * Batch is not thread safe.
+ * @author atta_troll
+ *
+ */
+public class RecordBatch {
+
+    /**
+     * Token types of columns.
+     */
+    private final TokenType[] types;
+
+    /**
+     * Maximal number of rows.
+     */
+    private final int capacity;
+
+    /**
+     * Arrays of column values.
+     */
+    private final Object[] columns;
+
+    /**
+     * Bitmaps of missing values of columns.
+     */
+    private final long[][] missing;
+
+    /**
+     * Indexes of records of rows.
+     */
+    private final long[] indexes;
+
+    /**
+     * Number of rows.
+     */
+    private int size;
+
+    /**
+     * Default ctor.
+     * @param types token types of columns
+     * @param capacity maximal number of rows
+     * @throws IllegalArgumentException if capacity is not positive
+     */
+    public RecordBatch(TokenType[] types, int capacity) throws IllegalArgumentException {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive.");
+        }
+        this.types = types.clone();
+        this.capacity = capacity;
+        columns = new Object[types.length];
+        missing = new long[types.length][(capacity + Long.SIZE - 1) / Long.SIZE];
+        indexes = new long[capacity];
+        for (int i = 0; i < types.length; i++) {
+            columns[i] = createColumn(types[i], capacity);
+        }
+    }
+
+    /**
+     * Removes all rows.
+     */
+    public void clear() {
+        final int words = (size + Long.SIZE - 1) / Long.SIZE;
+        for (int i = 0; i < columns.length; i++) {
+            Arrays.fill(missing[i], 0, words, 0L);
+            if (columns[i] instanceof Object[]) {
+                Arrays.fill((Object[]) columns[i], 0, size, null);
+            }
+        }
+        size = 0;
+    }
+
+    /**
+     * Adds a new row, all its values are not missing and undefined.
+     * @param index index of the record
+     * @return index of the row in the batch
+     * @throws IllegalStateException if batch is full
+     */
+    public int addRow(long index) throws IllegalStateException {
+        if (size == capacity) {
+            throw new IllegalStateException("Batch is full.");
+        }
+        indexes[size] = index;
+        return size++;
+    }
+
+    /**
+     * Adds a record as a new row.
+     * @param record parsed record
+     * @return index of the row in the batch
+     * @throws IllegalStateException if batch is full
+     * @throws IllegalArgumentException if some value doesn't match the column type
+     */
+    public int addRecord(Record<? extends Object[]> record)
+            throws IllegalStateException, IllegalArgumentException {
+        final int row = addRow(record.getIndex());
+        final Object[] data = record.getData();
+        for (int i = 0; i < columns.length; i++) {
+            setValue(i, row, i < data.length ? data[i] : null);
+        }
+        return row;
+    }
+
+    /**
+     * Sets a value, converts it into the column type.
+     * @param column index of the column
+     * @param row index of the row
+     * @param value boxed value, {@code null} marks value as missing
+     * @throws IllegalArgumentException if the value doesn't match the column type
+     */
+    public void setValue(int column, int row, Object value) throws IllegalArgumentException {
+        if (value == null) {
+            setMissing(column, row);
+            return;
+        }
+        final Object array = columns[column];
+        try {
+            if (array instanceof int[]) {
+                ((int[]) array)[row] = ((Number) value).intValue();
+            }
+            else if (array instanceof double[]) {
+                ((double[]) array)[row] = ((Number) value).doubleValue();
+            }
+            else if (array instanceof boolean[]) {
+                ((boolean[]) array)[row] = (Boolean) value;
+            }
+            else {
+                ((Object[]) array)[row] = value;
+            }
+        }
+        catch (ClassCastException ex) {
+            throw new IllegalArgumentException(String.format(
+                    "Value %s doesn't match column type %s.", value, types[column]), ex);
+        }
+        missing[column][row / Long.SIZE] &= ~(1L << row);
+    }
+
+    /**
+     * Marks value as missing.
+     * @param column index of the column
+     * @param row index of the row
+     */
+    public void setMissing(int column, int row) {
+        missing[column][row / Long.SIZE] |= 1L << row;
+    }
+
+    /**
+     * @param column index of the column
+     * @param row index of the row
+     * @return {@code true} if the value is missing
+     */
+    public boolean isMissing(int column, int row) {
+        return (missing[column][row / Long.SIZE] & 1L << row) != 0L;
+    }
+
+    /**
+     * @param column index of the column
+     * @param row index of the row
+     * @return boxed value or {@code null} if it is missing
+     */
+    public Object getValue(int column, int row) {
+        if (isMissing(column, row)) {
+            return null;
+        }
+        final Object array = columns[column];
+        if (array instanceof int[]) {
+            return ((int[]) array)[row];
+        }
+        if (array instanceof double[]) {
+            return ((double[]) array)[row];
+        }
+        if (array instanceof boolean[]) {
+            return ((boolean[]) array)[row];
+        }
+        return ((Object[]) array)[row];
+    }
+
+    /**
+     * @param row index of the row
+     * @return boxed values of the row, missing values are {@code null}
+     */
+    public Object[] getRow(int row) {
+        final Object[] result = new Object[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            result[i] = getValue(i, row);
+        }
+        return result;
+    }
+
+    /**
+     * @param row index of the row
+     * @return row as a record, the same as produced by {@link AbstractTokenDataSource#next()}
+     */
+    public Record<Object[]> getRecord(int row) {
+        return new Record<>(getRow(row), indexes[row]);
+    }
+
+    /**
+     * @param column index of the {@link TokenType#INTEGER} column
+     * @param row index of the row
+     * @return the value
+     */
+    public int getInt(int column, int row) {
+        return ((int[]) columns[column])[row];
+    }
+
+    /**
+     * @param column index of the {@link TokenType#FLOAT} or {@link TokenType#INTEGER} column
+     * @param row index of the row
+     * @return the value
+     */
+    public double getDouble(int column, int row) {
+        final Object array = columns[column];
+        return array instanceof int[] ? ((int[]) array)[row] : ((double[]) array)[row];
+    }
+
+    /**
+     * @param column index of the binary column
+     * @param row index of the row
+     * @return the value
+     */
+    public boolean getBoolean(int column, int row) {
+        return ((boolean[]) columns[column])[row];
+    }
+
+    /**
+     * Direct access to values of a column, for tight loops.
+     * @param column index of the {@link TokenType#INTEGER} column
+     * @return array of values, only first {@link #getSize()} are valid
+     */
+    public int[] getIntColumn(int column) {
+        return (int[]) columns[column];
+    }
+
+    /**
+     * Direct access to values of a column, for tight loops.
+     * @param column index of the {@link TokenType#FLOAT} column
+     * @return array of values, only first {@link #getSize()} are valid
+     */
+    public double[] getDoubleColumn(int column) {
+        return (double[]) columns[column];
+    }
+
+    /**
+     * Direct access to values of a column, for tight loops.
+     * @param column index of the binary column
+     * @return array of values, only first {@link #getSize()} are valid
+     */
+    public boolean[] getBooleanColumn(int column) {
+        return (boolean[]) columns[column];
+    }
+
+    /**
+     * Direct access to values of a column, for tight loops.
+     * @param column index of a column of other types
+     * @return array of values, only first {@link #getSize()} are valid
+     */
+    public Object[] getObjectColumn(int column) {
+        return (Object[]) columns[column];
+    }
+
+    /**
+     * Direct access to the missing bitmap of a column, for tight loops.
+     * Row {@code r} is missing if bit {@code r % 64} of word {@code r / 64} is set.
+     * @param column index of a column
+     * @return bitmap words, only bits of first {@link #getSize()} rows are valid
+     */
+    public long[] getMissingColumn(int column) {
+        return missing[column];
+    }
+
+    /**
+     * @param row index of the row
+     * @return index of the record of the row
+     */
+    public long getIndex(int row) {
+        return indexes[row];
+    }
+
+    /**
+     * @param column index of the column
+     * @return token type of the column
+     */
+    public TokenType getType(int column) {
+        return types[column];
+    }
+
+    /**
+     * @return number of columns
+     */
+    public int getColumnNumber() {
+        return columns.length;
+    }
+
+    /**
+     * @return number of rows
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return maximal number of rows
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return {@code true} if no more rows can be added
+     */
+    public boolean isFull() {
+        return size == capacity;
+    }
+
+    /**
+     * @param type token type
+     * @param capacity number of values
+     * @return array for values of the token type
+     */
+    private static Object createColumn(TokenType type, int capacity) {
+        switch (type) {
+        case INTEGER:
+            return new int[capacity];
+        case FLOAT:
+            return new double[capacity];
+        case BINARY:
+        case BINARY_DIGITAL:
+            return new boolean[capacity];
+        default:
+            return new Object[capacity];
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.github.attatrol.preprocessing.datasource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Data source that can be split into several independent data sources (parts).
+ * Parts together contain the same records in the same order as the data source,
+ * each part can be iterated in its own thread, so the data source
+ * can be processed by all available cores.<br/>
+ * Parts are new data sources, they must be closed by the caller,
+ * state of the split data source is unchanged.<br/>
+ * Some parts may be unable to figure out indexes of their records, then records of every part
+ * are indexed from zero. Consumers that rely on record indexes must check {@link #hasGlobalIndexes()}.
+ * @author atta_troll
+ *
+ * @param <V> record type of data source
+ */
+public interface SplittableDataSource<V> extends DataSource<V> {
+
+    /**
+     * Splits data source into independent parts.
+     * @param partsNumber desired number of parts, actual number may be lesser
+     * @return non-empty list of parts in order of their records
+     * @throws IOException on i/o error
+     * @throws UnsupportedOperationException if {@link #isSplittable()} is {@code false}
+     */
+    List<? extends DataSource<V>> split(int partsNumber) throws IOException;
+
+    /**
+     * Decorators may be splittable only if their wrapped data sources are splittable,
+     * this method tells if {@link #split(int)} is actually supported.
+     * @return {@code true} if {@link #split(int)} is supported
+     */
+    default boolean isSplittable() {
+        return true;
+    }
+
+    /**
+     * @return {@code true} if parts produce the same record indexes as this data source
+     */
+    default boolean hasGlobalIndexes() {
+        return false;
+    }
+
+    /**
+     * Creates a parallel stream of records of this data source, each part is processed
+     * sequentially by a single thread. The stream must be closed after use, that closes the parts.
+     * @param partsNumber desired number of parts
+     * @return parallel stream of records
+     * @throws IOException on i/o error
+     */
+    default Stream<Record<V>> parallelStream(int partsNumber) throws IOException {
+        final List<? extends DataSource<V>> parts = split(partsNumber);
+        return parts.stream().parallel()
+                .flatMap(part -> stream(part))
+                .onClose(() -> closeParts(parts));
+    }
+
+    /**
+     * Creates a sequential stream of records of some data source from its current position.
+     * @param source a data source
+     * @param <V> record type of the data source
+     * @return stream of records
+     */
+    static <V> Stream<Record<V>> stream(DataSource<V> source) {
+        final Iterator<Record<V>> iterator = new Iterator<Record<V>>() {
+
+            @Override
+            public boolean hasNext() {
+                try {
+                    return source.hasNext();
+                }
+                catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }
+
+            @Override
+            public Record<V> next() {
+                try {
+                    return source.next();
+                }
+                catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Makes a fork-join reduction of a data source. If the data source is splittable
+     * its parts are processed concurrently, each part with its own accumulator,
+     * then accumulators are combined in the order of parts. Otherwise the data source is reset
+     * and processed with the single accumulator.
+     * @param source a data source
+     * @param partsNumber desired number of parts
+     * @param supplier produces new empty accumulators
+     * @param accumulator adds a record to an accumulator
+     * @param combiner merges two accumulators, must be associative
+     * @param <V> record type of the data source
+     * @param <A> accumulator type
+     * @return resulting accumulator
+     * @throws IOException on i/o error
+     */
+    static <V, A> A reduce(DataSource<V> source, int partsNumber, Supplier<A> supplier,
+            BiConsumer<A, Record<V>> accumulator, BinaryOperator<A> combiner) throws IOException {
+        return reduce(source, partsNumber, part -> supplier.get(), accumulator, combiner);
+    }
+
+    /**
+     * Makes a fork-join reduction of a data source exactly like
+     * {@link #reduce(DataSource, int, Supplier, BiConsumer, BinaryOperator)}, but accumulators
+     * are produced for indexes of parts, e.g. to seed their random generators differently.
+     * The single accumulator of a data source that is not split has index 0.
+     * @param source a data source
+     * @param partsNumber desired number of parts
+     * @param supplier produces new empty accumulators for indexes of parts
+     * @param accumulator adds a record to an accumulator
+     * @param combiner merges two accumulators, must be associative
+     * @param <V> record type of the data source
+     * @param <A> accumulator type
+     * @return resulting accumulator
+     * @throws IOException on i/o error
+     */
+    @SuppressWarnings("unchecked")
+    static <V, A> A reduce(DataSource<V> source, int partsNumber, IntFunction<A> supplier,
+            BiConsumer<A, Record<V>> accumulator, BinaryOperator<A> combiner) throws IOException {
+        if (partsNumber > 1 && source instanceof SplittableDataSource
+                && ((SplittableDataSource<V>) source).isSplittable()) {
+            final List<? extends DataSource<V>> parts =
+                    ((SplittableDataSource<V>) source).split(partsNumber);
+            try {
+                return IntStream.range(0, parts.size()).parallel().mapToObj(part -> {
+                    final A partAccumulator = supplier.apply(part);
+                    stream(parts.get(part))
+                            .forEachOrdered(record -> accumulator.accept(partAccumulator, record));
+                    return partAccumulator;
+                }).reduce(combiner).orElseThrow(NoSuchElementException::new);
+            }
+            catch (UncheckedIOException ex) {
+                throw ex.getCause();
+            }
+            finally {
+                closeParts(parts);
+            }
+        }
+        final A result = supplier.apply(0);
+        source.reset();
+        while (source.hasNext()) {
+            accumulator.accept(result, source.next());
+        }
+        return result;
+    }
+
+    /**
+     * Closes parts of a data source.
+     * @param parts parts of some data source
+     * @throws UncheckedIOException on i/o error
+     */
+    static void closeParts(List<? extends DataSource<?>> parts) throws UncheckedIOException {
+        IOException exception = null;
+        for (DataSource<?> part : parts) {
+            try {
+                part.close();
+            }
+            catch (IOException ex) {
+                exception = ex;
+            }
+        }
+        if (exception != null) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+}
@@ -3,17 +3,31 @@ package com.github.attatrol.preprocessing.datasource;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.NoSuchElementException;
 
 /**
  * Describes file data source where each line of text represent some record.
- * Derivatives must override {@link #parseLine(String)} to define how record will be parsed.
+ * Derivatives must override {@link #parseLine(String)} to define how record will be parsed.<br/>
+ * Data source may be split into parts that cover byte ranges of the file with bounds
+ * on line starts, so it is splittable only if default charset is ASCII compatible,
+ * see {@link MappedTextFileDataSource#isAsciiCompatible(Charset)}.<br/>
+ * Records of such a file can be accessed by index with help of {@link LineOffsetIndex}, the index is loaded
+ * or built with a byte scan of the file on the first random access. If offset index
+ * is enabled, parts of the data source get global record indexes.
  * @author atta_troll
  *
  */
-public class TextFileDataSource implements TitledDataSource<String> {
+public class TextFileDataSource implements TitledDataSource<String>, SplittableDataSource<String>,
+        RandomAccessDataSource<String> {
 
     /**
      * File of data source.
@@ -25,6 +39,41 @@ public class TextFileDataSource implements TitledDataSource<String> {
      */
     private FileInputStream fis;
 
+    /**
+     * Stream that reads only the byte range of this data source.
+     */
+    private InputStream rangeStream;
+
+    /**
+     * Start of the byte range of this data source in the file.
+     */
+    private final long rangeStart;
+
+    /**
+     * End of the byte range of this data source in the file.
+     */
+    private final long rangeEnd;
+
+    /**
+     * Index of the first record of the byte range.
+     */
+    private final long firstIndex;
+
+    /**
+     * Flag of using the offset index for splits.
+     */
+    private boolean isOffsetIndexEnabled;
+
+    /**
+     * Line offset index of the file, may be {@code null} if not loaded yet.
+     */
+    private LineOffsetIndex offsetIndex;
+
+    /**
+     * Number of records of a part, -1 if it is not counted yet.
+     */
+    private long partRecordNumber = -1L;
+
     /**
      * Reader used for string-by-string reading from data file.
      */
@@ -56,11 +105,25 @@ public class TextFileDataSource implements TitledDataSource<String> {
      * Default ctor.
      */
     public TextFileDataSource(File file, boolean hasTitles) {
+        this(file, hasTitles, 0L, Long.MAX_VALUE, 0L);
+    }
+
+    /**
+     * Ctor of a part of the data source.
+     * @param file file of data source
+     * @param hasTitles flag of having column titles in the first row of the range
+     * @param rangeStart start of the byte range in the file, must be a line start
+     * @param rangeEnd end of the byte range in the file
+     * @param firstIndex index of the first record of the byte range
+     */
+    private TextFileDataSource(File file, boolean hasTitles, long rangeStart, long rangeEnd,
+            long firstIndex) {
         this.file = file;
         this.hasTitles = hasTitles;
-        {
-            
-        }
+        this.rangeStart = rangeStart;
+        this.rangeEnd = rangeEnd;
+        this.firstIndex = firstIndex;
+        indexCounter = firstIndex;
     }
 
     /**
@@ -69,7 +132,7 @@ public class TextFileDataSource implements TitledDataSource<String> {
 	@Override
 	public boolean hasNext() throws IOException {
 		stateCheck();
-        return fis.available() > 0 || reader.ready();
+        return rangeStream.available() > 0 || reader.ready();
 	}
 
 	/**
@@ -91,12 +154,11 @@ public class TextFileDataSource implements TitledDataSource<String> {
     @Override
     public void reset() throws IOException {
     	stateCheck();
-        fis.getChannel().position(0L);
-        reader = new BufferedReader(new InputStreamReader(fis));
+        openReader(rangeStart);
         if (hasTitles && hasNext()) {
         	next();
         }
-        indexCounter = 0;
+        indexCounter = firstIndex;
     }
 
     /**
@@ -110,6 +172,120 @@ public class TextFileDataSource implements TitledDataSource<String> {
         }
     }
 
+    /**
+     * {@inheritDoc}<br/>
+     * Parts cover line aligned byte ranges of the file. If offset index is enabled
+     * parts contain equal numbers of records with global indexes, otherwise parts
+     * have approximately equal byte sizes and records of each part are indexed from zero.
+     */
+    @Override
+    public List<TextFileDataSource> split(int partsNumber) throws IOException {
+        if (!isSplittable()) {
+            throw new UnsupportedOperationException(String.format(
+                    "Charset %s is not ASCII compatible.", Charset.defaultCharset().name()));
+        }
+        final List<TextFileDataSource> parts = new ArrayList<>(partsNumber);
+        if (hasGlobalIndexes()) {
+            if (partsNumber < 1) {
+                throw new IllegalArgumentException("Number of parts must be positive.");
+            }
+            final long recordNumber = getRecordNumber();
+            long start = 0L;
+            for (int i = 1; i <= partsNumber; i++) {
+                final long end = recordNumber * i / partsNumber;
+                if (end > start || i == partsNumber && parts.isEmpty()) {
+                    parts.add(new TextFileDataSource(file, false, getRecordPosition(start),
+                            getRecordPosition(end), start));
+                    start = end;
+                }
+            }
+            return parts;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final long end = Math.min(rangeEnd, channel.size());
+            final long start = hasTitles
+                    ? LineBoundaries.alignToLineStart(channel, rangeStart + 1, end) : rangeStart;
+            final long[] bounds = LineBoundaries.splitRange(channel, start, end, partsNumber);
+            for (int i = 0; i < bounds.length - 1; i++) {
+                parts.add(new TextFileDataSource(file, false, bounds[i], bounds[i + 1], 0L));
+            }
+        }
+        return parts;
+    }
+
+    /**
+     * {@inheritDoc}<br/>
+     * Byte ranges are bounded by single byte line terminators,
+     * so only files of an ASCII compatible default charset are splittable.
+     */
+    @Override
+    public boolean isSplittable() {
+        return MappedTextFileDataSource.isAsciiCompatible(Charset.defaultCharset());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasGlobalIndexes() {
+        return isOffsetIndexEnabled && isWholeFile() && isSplittable();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void seek(long recordIndex) throws IOException, IllegalArgumentException {
+        stateCheck();
+        if (!supportsRandomAccess()) {
+            throw new UnsupportedOperationException(
+                    "Parts of data source and files of charsets that are not ASCII compatible "
+                    + "do not support random access.");
+        }
+        openReader(getRecordPosition(recordIndex));
+        indexCounter = recordIndex;
+    }
+
+    /**
+     * {@inheritDoc}<br/>
+     * Records of a part are counted by a byte scan of its range.
+     */
+    @Override
+    public long getRecordNumber() throws IOException {
+        if (!isWholeFile()) {
+            if (partRecordNumber < 0L) {
+                try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                    final long lineNumber = LineBoundaries.countLines(channel, rangeStart,
+                            Math.min(rangeEnd, channel.size()));
+                    partRecordNumber = hasTitles && lineNumber > 0 ? lineNumber - 1 : lineNumber;
+                }
+            }
+            return partRecordNumber;
+        }
+        if (offsetIndex == null) {
+            offsetIndex = LineOffsetIndex.loadOrBuild(file);
+        }
+        final long lineNumber = offsetIndex.getLineNumber();
+        return hasTitles && lineNumber > 0 ? lineNumber - 1 : lineNumber;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean supportsRandomAccess() {
+        return isWholeFile() && isSplittable();
+    }
+
+    /**
+     * Enables or disables splitting into parts with global record indexes,
+     * offset index is built for that if necessary.
+     * @param isOffsetIndexEnabled flag of using the offset index
+     */
+    public void setOffsetIndexEnabled(boolean isOffsetIndexEnabled) {
+        this.isOffsetIndexEnabled = isOffsetIndexEnabled;
+    }
+
     /**
      * @return raw title as a string, may return {@code null}
      * if file is empty or flag of having titles is {@code false}.
@@ -141,10 +317,110 @@ public class TextFileDataSource implements TitledDataSource<String> {
      */
     private void setup() throws IOException {
         fis = new FileInputStream(file);
-        reader = new BufferedReader(new InputStreamReader(fis));
+        openReader(rangeStart);
         if (hasTitles && hasNext()) {
         	rawTitlesString = next().getData();
-        	indexCounter = 0;
+        	indexCounter = firstIndex;
+        }
+    }
+
+    /**
+     * Places stream at some position of the byte range and opens a new reader.
+     * @param position position of a line start in the file
+     * @throws IOException on i/o error
+     */
+    private void openReader(long position) throws IOException {
+        fis.getChannel().position(position);
+        rangeStream = new RangeInputStream(fis, rangeEnd - position);
+        reader = new BufferedReader(new InputStreamReader(rangeStream));
+    }
+
+    /**
+     * @return {@code true} if this data source covers the whole file
+     */
+    private boolean isWholeFile() {
+        return rangeStart == 0L && rangeEnd == Long.MAX_VALUE;
+    }
+
+    /**
+     * @param recordIndex index of a record
+     * @return position of the record in the file, the file size if record index
+     *         equals to the number of records
+     * @throws IOException on i/o error
+     * @throws IllegalArgumentException if record index is out of range
+     */
+    private long getRecordPosition(long recordIndex) throws IOException, IllegalArgumentException {
+        final long recordNumber = getRecordNumber();
+        if (recordIndex < 0 || recordIndex > recordNumber) {
+            throw new IllegalArgumentException(String.format(
+                    "Record index %d is out of range [0, %d].", recordIndex, recordNumber));
+        }
+        return recordIndex == recordNumber ? file.length()
+                : offsetIndex.getLineOffset(hasTitles ? recordIndex + 1 : recordIndex);
+    }
+
+    /**
+     * Stream that reads a limited number of bytes from the wrapped stream.
+     * Closing of this stream closes the wrapped one.
+     * @author atta_troll
+     *
+     */
+    private static class RangeInputStream extends FilterInputStream {
+
+        /**
+         * Number of bytes left to read.
+         */
+        private long remaining;
+
+        /**
+         * Default ctor.
+         * @param in wrapped stream
+         * @param length number of bytes to read
+         */
+        RangeInputStream(InputStream in, long length) {
+            super(in);
+            remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            final int result = super.read();
+            if (result >= 0) {
+                remaining--;
+            }
+            return result;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            final int result = super.read(b, off, (int) Math.min(len, remaining));
+            if (result > 0) {
+                remaining -= result;
+            }
+            return result;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            final long result = super.skip(Math.min(n, remaining));
+            remaining -= result;
+            return result;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
         }
     }
 }
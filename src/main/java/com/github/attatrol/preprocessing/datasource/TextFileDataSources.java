@@ -0,0 +1,44 @@
+package com.github.attatrol.preprocessing.datasource;
+
+import java.io.File;
+import java.nio.charset.Charset;
+
+/**
+ * Chooses data source implementation for external text sources.
+ * @author atta_troll
+ *
+ */
+public final class TextFileDataSources {
+
+    private TextFileDataSources() {
+    }
+
+    /**
+     * Opens data source of lines of a text file or of all text files in a directory.
+     * Compressed files are recognized by their extensions. Plain files are mapped into memory
+     * if the default charset is ASCII compatible, otherwise they are read by a reader.
+     * Line offset index of a mapped file is built during its first complete pass.
+     * @param file text file, possibly compressed, or directory
+     * @param hasTitles flag of having column titles in the first row of each file
+     * @return data source of lines
+     */
+    public static TitledDataSource<CharSequence> open(File file, boolean hasTitles) {
+        if (file.isDirectory()) {
+            return new DirectoryDataSource(file, hasTitles);
+        }
+        if (CompressionFormat.forFile(file) != null) {
+            return new CompressedTextFileDataSource(file, hasTitles);
+        }
+        if (!MappedTextFileDataSource.isAsciiCompatible(Charset.defaultCharset())) {
+            // data sources only produce records, so strings may be read as char sequences
+            @SuppressWarnings("unchecked")
+            final TitledDataSource<CharSequence> source =
+                    (TitledDataSource<CharSequence>) (TitledDataSource<?>) new TextFileDataSource(
+                            file, hasTitles);
+            return source;
+        }
+        final MappedTextFileDataSource source = new MappedTextFileDataSource(file, hasTitles);
+        source.setOffsetIndexEnabled(true);
+        return source;
+    }
+}
@@ -2,12 +2,19 @@
 package com.github.attatrol.preprocessing.datasource;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.NoSuchElementException;
 
 import com.github.attatrol.preprocessing.datasource.parsing.record.RecordTokenizer;
 
 public final class TokenDataSourceUtils {
 
+    /**
+     * Number of parts used for parallel processing of splittable data sources.
+     */
+    public static final int DEFAULT_PARTS_NUMBER = Runtime.getRuntime().availableProcessors();
+
     private TokenDataSourceUtils() {
     }
 
@@ -20,7 +27,8 @@ public final class TokenDataSourceUtils {
     }
 
     /**
-     * Finds length of the longest record in the data source
+     * Finds length of the longest record in the data source,
+     * splittable data source is processed in parallel.
      * 
      * @param source
      *        basic data source
@@ -30,31 +38,33 @@ public final class TokenDataSourceUtils {
      */
     public static <V> int getRecordCardinality(DataSource<V> source,
             RecordTokenizer<? super V, ?> tokenizer) throws IOException {
-        int cardinality = 0;
-        source.reset();
-        while (source.hasNext()) {
-            final int tokenNumber = tokenizer.tokenize(source.next().getData()).length;
-            if (tokenNumber > cardinality) {
-                cardinality = tokenNumber;
-            }
-        }
-
-        return cardinality;
+        final int[] cardinality = SplittableDataSource.reduce(source, DEFAULT_PARTS_NUMBER,
+            () -> new int[1],
+            (max, record) -> {
+                final int tokenNumber = tokenizer.tokenize(record.getData()).length;
+                if (tokenNumber > max[0]) {
+                    max[0] = tokenNumber;
+                }
+            },
+            (max1, max2) -> max1[0] >= max2[0] ? max1 : max2);
+        return cardinality[0];
     }
 
     /**
      * Simple wrapper over some {@link AbstractTokenDataSource} with appliance
      * of valid token indexes mask, so undesired tokens are thrown away from an original record.<br/>
-     * Somewhat breaks Liskov substitution principle, but class is final and its ok here.
+     * Somewhat breaks Liskov substitution principle, but class is final and its ok here.<br/>
+     * It is splittable if the original token data source is splittable.
      * @author atta_troll
      *
      */
-    public static final class MaskedTokenDataSource<V> extends AbstractTokenDataSource<V> {
+    public static final class MaskedTokenDataSource<V> extends AbstractTokenDataSource<V>
+            implements SplittableDataSource<Object[]> {
 
         /**
          * Original token data source.
          */
-        private final AbstractTokenDataSource<?> wrappedDataSource;
+        private final DataSource<Object[]> wrappedDataSource;
 
         /**
          * Mask with indexes of desired tokens.
@@ -62,11 +72,46 @@ public final class TokenDataSourceUtils {
         private final int[] mask;
 
         public MaskedTokenDataSource(AbstractTokenDataSource<?> wrappedDataSource, int[] mask) {
+            this((DataSource<Object[]>) wrappedDataSource, mask);
+        }
+
+        /**
+         * Ctor of a part of masked data source.
+         * @param wrappedDataSource part of the original token data source
+         * @param mask mask with indexes of desired tokens
+         */
+        private MaskedTokenDataSource(DataSource<Object[]> wrappedDataSource, int[] mask) {
             super(null, mask.length);
             this.wrappedDataSource = wrappedDataSource;
             this.mask = mask;
         }
 
+        @Override
+        public boolean isSplittable() {
+            return wrappedDataSource instanceof SplittableDataSource
+                    && ((SplittableDataSource<?>) wrappedDataSource).isSplittable();
+        }
+
+        @Override
+        public boolean hasGlobalIndexes() {
+            return isSplittable()
+                    && ((SplittableDataSource<?>) wrappedDataSource).hasGlobalIndexes();
+        }
+
+        @Override
+        public List<MaskedTokenDataSource<V>> split(int partsNumber) throws IOException {
+            if (!isSplittable()) {
+                throw new UnsupportedOperationException("Wrapped data source is not splittable.");
+            }
+            final List<? extends DataSource<Object[]>> wrappedParts =
+                    ((SplittableDataSource<Object[]>) wrappedDataSource).split(partsNumber);
+            final List<MaskedTokenDataSource<V>> parts = new ArrayList<>(wrappedParts.size());
+            for (DataSource<Object[]> wrappedPart : wrappedParts) {
+                parts.add(new MaskedTokenDataSource<V>(wrappedPart, mask));
+            }
+            return parts;
+        }
+
         @Override
         public void close() throws IOException {
             wrappedDataSource.close();
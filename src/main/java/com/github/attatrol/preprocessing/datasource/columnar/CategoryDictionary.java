@@ -0,0 +1,264 @@
+package com.github.attatrol.preprocessing.datasource.columnar;
+
+import java.util.Arrays;
+
+/**
+ * Maps distinct values of a categorical column into dense integer codes
+ * in order of their first appearance.<br/>
+ * Values are kept in an open addressing hash table, a string value may be looked up
+ * as a range of characters of its record, which are compared in place, so a string
+ * is created only for a new value. Dictionary is not thread safe.
+ * @author atta_troll
+ *
+ */
+public class CategoryDictionary {
+
+    /**
+     * Initial size of the hash table, power of two.
+     */
+    private static final int INITIAL_TABLE_SIZE = 16;
+
+    /**
+     * Marks an empty slot of the hash table.
+     */
+    private static final int EMPTY = -1;
+
+    /**
+     * Estimated size of a reference in bytes.
+     */
+    private static final int REFERENCE_SIZE = 8;
+
+    /**
+     * Open addressing hash table of codes, its size is a power of two.
+     */
+    private int[] table = newTable(INITIAL_TABLE_SIZE);
+
+    /**
+     * Values by their codes.
+     */
+    private Object[] values = new Object[INITIAL_TABLE_SIZE / 2];
+
+    /**
+     * Spread hash codes of values by their codes.
+     */
+    private int[] hashes = new int[INITIAL_TABLE_SIZE / 2];
+
+    /**
+     * Number of distinct values.
+     */
+    private int size;
+
+    /**
+     * Estimated size of values in bytes.
+     */
+    private long valuesSize;
+
+    /**
+     * Returns code of a value, adds the value to the dictionary if it is new.
+     * @param value non-null value
+     * @return code of the value
+     */
+    public int encode(Object value) {
+        final int hash = spread(value.hashCode());
+        int slot = hash & (table.length - 1);
+        while (table[slot] != EMPTY) {
+            final int code = table[slot];
+            if (hashes[code] == hash && values[code].equals(value)) {
+                return code;
+            }
+            slot = (slot + 1) & (table.length - 1);
+        }
+        return add(value, hash, slot);
+    }
+
+    /**
+     * Returns code of a string value given as a range of characters,
+     * adds the value to the dictionary if it is new.
+     * @param record record that contains the value
+     * @param start offset of the first character of the value
+     * @param end offset after the last character of the value
+     * @return code of the string of the range
+     */
+    public int encode(CharSequence record, int start, int end) {
+        final int hash = spread(hash(record, start, end));
+        int slot = hash & (table.length - 1);
+        while (table[slot] != EMPTY) {
+            final int code = table[slot];
+            if (hashes[code] == hash && matches(values[code], record, start, end)) {
+                return code;
+            }
+            slot = (slot + 1) & (table.length - 1);
+        }
+        return add(record.subSequence(start, end).toString(), hash, slot);
+    }
+
+    /**
+     * @param value a value
+     * @return code of the value or -1 if the value is not in the dictionary
+     */
+    public int getCode(Object value) {
+        final int hash = spread(value.hashCode());
+        int slot = hash & (table.length - 1);
+        while (table[slot] != EMPTY) {
+            final int code = table[slot];
+            if (hashes[code] == hash && values[code].equals(value)) {
+                return code;
+            }
+            slot = (slot + 1) & (table.length - 1);
+        }
+        return -1;
+    }
+
+    /**
+     * @param record record that contains a string value
+     * @param start offset of the first character of the value
+     * @param end offset after the last character of the value
+     * @return code of the string of the range or -1 if it is not in the dictionary
+     */
+    public int getCode(CharSequence record, int start, int end) {
+        final int hash = spread(hash(record, start, end));
+        int slot = hash & (table.length - 1);
+        while (table[slot] != EMPTY) {
+            final int code = table[slot];
+            if (hashes[code] == hash && matches(values[code], record, start, end)) {
+                return code;
+            }
+            slot = (slot + 1) & (table.length - 1);
+        }
+        return -1;
+    }
+
+    /**
+     * @param code code of a value
+     * @return the value
+     * @throws IndexOutOfBoundsException if there is no such code
+     */
+    public Object decode(int code) throws IndexOutOfBoundsException {
+        if (code < 0 || code >= size) {
+            throw new IndexOutOfBoundsException(String.format("There is no code %d.", code));
+        }
+        return values[code];
+    }
+
+    /**
+     * @return number of distinct values
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return estimated heap size of the dictionary in bytes
+     */
+    public long getMemoryFootprint() {
+        return valuesSize + (long) table.length * Integer.BYTES
+                + (long) values.length * (REFERENCE_SIZE + Integer.BYTES);
+    }
+
+    /**
+     * Adds a new value into an empty slot.
+     * @param value the value
+     * @param hash spread hash code of the value
+     * @param slot empty slot of the value in the current table
+     * @return code of the value
+     */
+    private int add(Object value, int hash, int slot) {
+        if (size == values.length) {
+            grow();
+            slot = hash & (table.length - 1);
+            while (table[slot] != EMPTY) {
+                slot = (slot + 1) & (table.length - 1);
+            }
+        }
+        final int code = size++;
+        values[code] = value;
+        hashes[code] = hash;
+        table[slot] = code;
+        valuesSize += estimateSize(value);
+        return code;
+    }
+
+    /**
+     * Doubles the hash table and arrays of values.
+     */
+    private void grow() {
+        final int capacity = values.length * 2;
+        values = Arrays.copyOf(values, capacity);
+        hashes = Arrays.copyOf(hashes, capacity);
+        table = newTable(capacity * 2);
+        for (int code = 0; code < size; code++) {
+            int slot = hashes[code] & (table.length - 1);
+            while (table[slot] != EMPTY) {
+                slot = (slot + 1) & (table.length - 1);
+            }
+            table[slot] = code;
+        }
+    }
+
+    /**
+     * @param size size of the table
+     * @return empty hash table
+     */
+    private static int[] newTable(int size) {
+        final int[] table = new int[size];
+        Arrays.fill(table, EMPTY);
+        return table;
+    }
+
+    /**
+     * @param hash hash code
+     * @return hash code with high bits spread to low ones
+     */
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Calculates {@link String#hashCode()} of a range of characters.
+     * @param record record that contains the value
+     * @param start offset of the first character of the value
+     * @param end offset after the last character of the value
+     * @return hash code of the string of the range
+     */
+    private static int hash(CharSequence record, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + record.charAt(i);
+        }
+        return hash;
+    }
+
+    /**
+     * @param value a value of the dictionary
+     * @param record record that contains a string
+     * @param start offset of the first character of the string
+     * @param end offset after the last character of the string
+     * @return {@code true} if the value is a string equal to the range of characters
+     */
+    private static boolean matches(Object value, CharSequence record, int start, int end) {
+        if (!(value instanceof String)) {
+            return false;
+        }
+        final String string = (String) value;
+        if (string.length() != end - start) {
+            return false;
+        }
+        for (int i = 0; i < string.length(); i++) {
+            if (string.charAt(i) != record.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param value a value
+     * @return estimated heap size of the value in bytes
+     */
+    private static long estimateSize(Object value) {
+        if (value instanceof CharSequence) {
+            return 40L + 2L * ((CharSequence) value).length();
+        }
+        return 16L;
+    }
+}
@@ -0,0 +1,274 @@
+package com.github.attatrol.preprocessing.datasource.columnar;
+
+import java.util.BitSet;
+
+import com.github.attatrol.preprocessing.datasource.parsing.TokenType;
+
+/**
+ * Append-only column of parsed tokens of a single token type.<br/>
+ * Values of {@link TokenType#INTEGER} columns are kept as {@code int},
+ * of {@link TokenType#FLOAT} columns as {@code double}, binary values are kept in a bit set,
+ * values of other types are coded with a {@link CategoryDictionary} and their codes
+ * are kept as {@code int}. Missing values are marked in a bit set.<br/>
+ * Derivatives define where {@code int} and {@code double} values are stored.
+ * @author atta_troll
+ *
+ */
+public abstract class Column {
+
+    /**
+     * Token type of the column.
+     */
+    private final TokenType type;
+
+    /**
+     * Marks of missing values.
+     */
+    private final BitSet missing = new BitSet();
+
+    /**
+     * Binary values, {@code null} for non binary columns.
+     */
+    private final BitSet booleans;
+
+    /**
+     * Dictionary of values, {@code null} for numeric and binary columns.
+     */
+    private final CategoryDictionary dictionary;
+
+    /**
+     * Number of values.
+     */
+    private int size;
+
+    /**
+     * Default ctor.
+     * @param type token type of the column
+     */
+    protected Column(TokenType type) {
+        this.type = type;
+        booleans = isBinary(type) ? new BitSet() : null;
+        dictionary = isCoded(type) ? new CategoryDictionary() : null;
+    }
+
+    /**
+     * Appends a value.
+     * @param value boxed value, {@code null} if it is missing
+     * @throws IllegalArgumentException if the value doesn't match the column type
+     */
+    public void append(Object value) throws IllegalArgumentException {
+        if (value == null) {
+            appendMissing();
+            return;
+        }
+        try {
+            switch (type) {
+            case INTEGER:
+                appendInt(((Number) value).intValue());
+                break;
+            case FLOAT:
+                appendDouble(((Number) value).doubleValue());
+                break;
+            case BINARY:
+            case BINARY_DIGITAL:
+                appendBoolean((Boolean) value);
+                break;
+            default:
+                appendCoded(value);
+            }
+        }
+        catch (ClassCastException ex) {
+            throw new IllegalArgumentException(String.format(
+                    "Value %s doesn't match column type %s.", value, type), ex);
+        }
+    }
+
+    /**
+     * Appends a missing value.
+     */
+    public void appendMissing() {
+        missing.set(size);
+        if (booleans == null) {
+            if (type == TokenType.FLOAT) {
+                storeDouble(size, 0.);
+            }
+            else {
+                storeInt(size, 0);
+            }
+        }
+        size++;
+    }
+
+    /**
+     * Appends a value to an {@link TokenType#INTEGER} column.
+     * @param value the value
+     */
+    public void appendInt(int value) {
+        storeInt(size++, value);
+    }
+
+    /**
+     * Appends a value to a {@link TokenType#FLOAT} column.
+     * @param value the value
+     */
+    public void appendDouble(double value) {
+        storeDouble(size++, value);
+    }
+
+    /**
+     * Appends a value to a binary column.
+     * @param value the value
+     */
+    public void appendBoolean(boolean value) {
+        booleans.set(size++, value);
+    }
+
+    /**
+     * Appends a value to a dictionary coded column.
+     * @param value non-null value
+     */
+    public void appendCoded(Object value) {
+        storeInt(size++, dictionary.encode(value));
+    }
+
+    /**
+     * @param row index of the value
+     * @return boxed value or {@code null} if it is missing
+     */
+    public Object get(int row) {
+        if (missing.get(row)) {
+            return null;
+        }
+        switch (type) {
+        case INTEGER:
+            return loadInt(row);
+        case FLOAT:
+            return loadDouble(row);
+        case BINARY:
+        case BINARY_DIGITAL:
+            return booleans.get(row);
+        default:
+            return dictionary.decode(loadInt(row));
+        }
+    }
+
+    /**
+     * @param row index of the value
+     * @return {@code true} if the value is missing
+     */
+    public boolean isMissing(int row) {
+        return missing.get(row);
+    }
+
+    /**
+     * @param row index of the value
+     * @return value of an {@link TokenType#INTEGER} column or code of a dictionary coded value
+     */
+    public int getInt(int row) {
+        return loadInt(row);
+    }
+
+    /**
+     * @param row index of the value
+     * @return value of a {@link TokenType#FLOAT} or {@link TokenType#INTEGER} column
+     */
+    public double getDouble(int row) {
+        return type == TokenType.FLOAT ? loadDouble(row) : loadInt(row);
+    }
+
+    /**
+     * @param row index of the value
+     * @return value of a binary column
+     */
+    public boolean getBoolean(int row) {
+        return booleans.get(row);
+    }
+
+    /**
+     * @return dictionary of a coded column, {@code null} for numeric and binary columns
+     */
+    public CategoryDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * @return token type of the column
+     */
+    public TokenType getType() {
+        return type;
+    }
+
+    /**
+     * @return number of values
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return estimated size of the column in bytes
+     */
+    public long getMemoryFootprint() {
+        long result = missing.size() / Byte.SIZE + getStorageFootprint();
+        if (booleans != null) {
+            result += booleans.size() / Byte.SIZE;
+        }
+        if (dictionary != null) {
+            result += dictionary.getMemoryFootprint();
+        }
+        return result;
+    }
+
+    /**
+     * Releases unused capacity after the last value is appended.
+     */
+    public void trim() {
+    }
+
+    /**
+     * Stores {@code int} value.
+     * @param row index of the value
+     * @param value the value
+     */
+    protected abstract void storeInt(int row, int value);
+
+    /**
+     * Stores {@code double} value.
+     * @param row index of the value
+     * @param value the value
+     */
+    protected abstract void storeDouble(int row, double value);
+
+    /**
+     * @param row index of the value
+     * @return stored {@code int} value
+     */
+    protected abstract int loadInt(int row);
+
+    /**
+     * @param row index of the value
+     * @return stored {@code double} value
+     */
+    protected abstract double loadDouble(int row);
+
+    /**
+     * @return size of storage of {@code int} and {@code double} values in bytes
+     */
+    protected abstract long getStorageFootprint();
+
+    /**
+     * @param type token type
+     * @return {@code true} if values of the type are kept in a bit set
+     */
+    protected static boolean isBinary(TokenType type) {
+        return type == TokenType.BINARY || type == TokenType.BINARY_DIGITAL;
+    }
+
+    /**
+     * @param type token type
+     * @return {@code true} if values of the type are coded with a dictionary
+     */
+    protected static boolean isCoded(TokenType type) {
+        return type != TokenType.INTEGER && type != TokenType.FLOAT && !isBinary(type);
+    }
+}
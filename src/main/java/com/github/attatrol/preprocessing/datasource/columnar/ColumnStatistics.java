@@ -0,0 +1,81 @@
+package com.github.attatrol.preprocessing.datasource.columnar;
+
+/**
+ * Statistics of a column of a columnar file, immutable.
+ * @author atta_troll
+ *
+ */
+public class ColumnStatistics {
+
+    /**
+     * Number of present values.
+     */
+    private final long count;
+
+    /**
+     * Number of missing values.
+     */
+    private final long missingCount;
+
+    /**
+     * Minimal value.
+     */
+    private final double min;
+
+    /**
+     * Maximal value.
+     */
+    private final double max;
+
+    /**
+     * Default ctor.
+     * @param count number of present values
+     * @param missingCount number of missing values
+     * @param min minimal value
+     * @param max maximal value
+     */
+    public ColumnStatistics(long count, long missingCount, double min, double max) {
+        this.count = count;
+        this.missingCount = missingCount;
+        this.min = min;
+        this.max = max;
+    }
+
+    /**
+     * @return number of present values
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return number of missing values
+     */
+    public long getMissingCount() {
+        return missingCount;
+    }
+
+    /**
+     * @return minimal value of a numeric column, 0 or 1 for a binary column,
+     *         {@link Double#NaN} if there are no values or column is dictionary coded
+     */
+    public double getMin() {
+        return min;
+    }
+
+    /**
+     * @return maximal value of a numeric column, 0 or 1 for a binary column,
+     *         {@link Double#NaN} if there are no values or column is dictionary coded
+     */
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return String.format("count %d, missing %d, min %s, max %s", count, missingCount, min, max);
+    }
+}
@@ -0,0 +1,726 @@
+package com.github.attatrol.preprocessing.datasource.columnar;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import com.github.attatrol.preprocessing.datasource.AbstractTokenDataSource;
+import com.github.attatrol.preprocessing.datasource.RandomAccessDataSource;
+import com.github.attatrol.preprocessing.datasource.Record;
+import com.github.attatrol.preprocessing.datasource.RecordBatch;
+import com.github.attatrol.preprocessing.datasource.SplittableDataSource;
+import com.github.attatrol.preprocessing.datasource.parsing.TokenFeatures;
+import com.github.attatrol.preprocessing.datasource.parsing.TokenType;
+
+/**
+ * Token data source that reads parsed records from a columnar file written by
+ * {@link ColumnarFileWriter}.<br/>
+ * Opening reads only the footer with token features, statistics and dictionaries,
+ * row groups are memory mapped one at a time when they are reached, values are read
+ * from mapped memory without parsing.<br/>
+ * Values of dictionary coded columns are read with the types they were written with. Random access expects record
+ * indexes to grow, which holds for files written from any data source of this package.
+ * @author atta_troll
+ *
+ */
+public class ColumnarFileDataSource extends AbstractTokenDataSource<Object[]>
+        implements RandomAccessDataSource<Object[]>, SplittableDataSource<Object[]> {
+
+    /**
+     * Extension of columnar files.
+     */
+    public static final String FILE_EXTENSION = ".dpc";
+
+    /**
+     * Opened file, shared with parts.
+     */
+    private final OpenFile file;
+
+    /**
+     * {@code true} if this data source owns the channel.
+     */
+    private final boolean isOwner;
+
+    /**
+     * First row of this data source.
+     */
+    private final long from;
+
+    /**
+     * Row after the last row of this data source.
+     */
+    private final long to;
+
+    /**
+     * Next row.
+     */
+    private long position;
+
+    /**
+     * Row group that is mapped, -1 if there is none.
+     */
+    private int group = -1;
+
+    /**
+     * Mapped record indexes of the row group, {@code null} if they are sequential.
+     */
+    private LongBuffer groupIndexes;
+
+    /**
+     * Mapped missing bitmaps of columns of the row group.
+     */
+    private LongBuffer[] groupMissing;
+
+    /**
+     * Mapped values of columns of the row group, {@link IntBuffer}, {@link DoubleBuffer}
+     * or {@link LongBuffer} of binary values.
+     */
+    private Object[] groupValues;
+
+    /**
+     * Flag of being closed.
+     */
+    private boolean isClosed;
+
+    /**
+     * Opens a columnar file.
+     * @param file columnar file
+     * @throws IOException on failure to read the file or if it is not a columnar file
+     */
+    public ColumnarFileDataSource(File file) throws IOException {
+        this(open(file), true, 0L, -1L);
+    }
+
+    /**
+     * Default ctor.
+     * @param file opened file
+     * @param isOwner {@code true} if this data source owns the channel
+     * @param from first row of this data source
+     * @param to row after the last row of this data source, -1 for all rows
+     */
+    private ColumnarFileDataSource(OpenFile file, boolean isOwner, long from, long to) {
+        super(null, file.types.length);
+        this.file = file;
+        this.isOwner = isOwner;
+        this.from = from;
+        this.to = to < 0L ? file.recordNumber : to;
+        position = from;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasNext() throws IOException {
+        stateCheck();
+        return position < to;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Record<Object[]> next() throws IOException, IllegalArgumentException, NoSuchElementException {
+        if (!hasNext()) {
+            throw new NoSuchElementException("There are no records left.");
+        }
+        final int row = mapRow(position++);
+        final Object[] data = new Object[file.types.length];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = getValue(i, row);
+        }
+        return new Record<>(data, getIndex(row));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reset() throws IOException {
+        stateCheck();
+        position = from;
+    }
+
+    /**
+     * {@inheritDoc}<br/>
+     * Closing the data source that opened the file closes it for all its parts.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!isClosed) {
+            isClosed = true;
+            groupIndexes = null;
+            groupMissing = null;
+            groupValues = null;
+            if (isOwner) {
+                file.channel.close();
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}<br/>
+     * Values of columns that match batch types are copied from mapped memory in bulk.
+     */
+    @Override
+    public int nextBatch(RecordBatch batch) throws IOException, IllegalArgumentException {
+        stateCheck();
+        checkBatch(batch);
+        batch.clear();
+        final TokenType[] types = file.types;
+        while (!batch.isFull() && position < to) {
+            final int first = mapRow(position);
+            final long groupEnd = file.groupStarts[group] + file.groupSizes[group];
+            final int length = (int) Math.min(batch.getCapacity() - batch.getSize(),
+                    Math.min(to, groupEnd) - position);
+            final int batchFirst = batch.getSize();
+            for (int row = first; row < first + length; row++) {
+                batch.addRow(getIndex(row));
+            }
+            for (int i = 0; i < types.length; i++) {
+                if (batch.getType(i) != types[i]) {
+                    for (int row = 0; row < length; row++) {
+                        batch.setValue(i, batchFirst + row, getValue(i, first + row));
+                    }
+                    continue;
+                }
+                switch (types[i]) {
+                case INTEGER:
+                    final IntBuffer ints = (IntBuffer) groupValues[i];
+                    ints.position(first);
+                    ints.get(batch.getIntColumn(i), batchFirst, length);
+                    break;
+                case FLOAT:
+                    final DoubleBuffer doubles = (DoubleBuffer) groupValues[i];
+                    doubles.position(first);
+                    doubles.get(batch.getDoubleColumn(i), batchFirst, length);
+                    break;
+                case BINARY:
+                case BINARY_DIGITAL:
+                    final LongBuffer bits = (LongBuffer) groupValues[i];
+                    final boolean[] booleans = batch.getBooleanColumn(i);
+                    for (int row = 0; row < length; row++) {
+                        booleans[batchFirst + row] = isSet(bits, first + row);
+                    }
+                    break;
+                default:
+                    final IntBuffer codes = (IntBuffer) groupValues[i];
+                    final Object[] objects = batch.getObjectColumn(i);
+                    for (int row = 0; row < length; row++) {
+                        objects[batchFirst + row] =
+                                file.dictionaries[i].decode(codes.get(first + row));
+                    }
+                }
+                final LongBuffer missing = groupMissing[i];
+                for (int row = 0; row < length; row++) {
+                    if (isSet(missing, first + row)) {
+                        batch.setMissing(i, batchFirst + row);
+                    }
+                }
+            }
+            position += length;
+        }
+        return batch.getSize();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void seek(long recordIndex) throws IOException, IllegalArgumentException {
+        stateCheck();
+        final long row = findRow(recordIndex);
+        if (row < from || row > to) {
+            throw new IllegalArgumentException(
+                    String.format("There is no record with index %d.", recordIndex));
+        }
+        position = row;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getRecordNumber() {
+        return to - from;
+    }
+
+    /**
+     * {@inheritDoc}<br/>
+     * Parts share the file with this data source, parts are split on row group bounds
+     * when it is possible.
+     */
+    @Override
+    public List<ColumnarFileDataSource> split(int partsNumber) throws IOException {
+        if (partsNumber < 1) {
+            throw new IllegalArgumentException("Number of parts must be positive.");
+        }
+        stateCheck();
+        final List<ColumnarFileDataSource> parts = new ArrayList<>(partsNumber);
+        final long size = to - from;
+        long start = from;
+        for (int i = 1; i <= partsNumber; i++) {
+            long end = i == partsNumber ? to : alignToGroup(from + size * i / partsNumber);
+            end = Math.max(start, Math.min(to, end));
+            if (end > start || i == partsNumber && parts.isEmpty()) {
+                parts.add(new ColumnarFileDataSource(file, false, start, end));
+                start = end;
+            }
+        }
+        return parts;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasGlobalIndexes() {
+        return true;
+    }
+
+    /**
+     * @return token features restored from the file, a new copy on each call,
+     *         missing token substitutors are not kept in the file
+     */
+    public TokenFeatures[] getTokenFeatures() {
+        final TokenFeatures[] result = new TokenFeatures[file.types.length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = new TokenFeatures();
+            result[i].setTitle(file.titles[i]);
+            result[i].setType(file.types[i]);
+            result[i].setHasOmissions(file.hasOmissions[i]);
+            result[i].setInUse(file.isInUse[i]);
+        }
+        return result;
+    }
+
+    /**
+     * @param column index of a column
+     * @return statistics of the column over the whole file
+     */
+    public ColumnStatistics getStatistics(int column) {
+        return file.statistics[column];
+    }
+
+    /**
+     * @param column index of a column
+     * @return dictionary of a coded column, {@code null} for numeric and binary columns
+     */
+    public CategoryDictionary getDictionary(int column) {
+        return file.dictionaries[column];
+    }
+
+    /**
+     * @return number of records in a full row group
+     */
+    public int getRowGroupSize() {
+        return file.rowGroupSize;
+    }
+
+    /**
+     * {@inheritDoc}<br/>
+     * Records are never parsed by this data source.
+     */
+    @Override
+    protected Record<Object[]> parseRecord(Record<? extends Object[]> record) {
+        return new Record<>(record.getData(), record.getIndex());
+    }
+
+    /**
+     * Maps the row group of a row if it is not mapped yet.
+     * @param row a row of the file
+     * @return the row in its row group
+     * @throws IOException on failure to map the row group
+     */
+    private int mapRow(long row) throws IOException {
+        if (group < 0 || row < file.groupStarts[group]
+                || row >= file.groupStarts[group] + file.groupSizes[group]) {
+            mapGroup(findGroup(row));
+        }
+        return (int) (row - file.groupStarts[group]);
+    }
+
+    /**
+     * Maps a row group and creates views of its sections.
+     * @param newGroup index of the row group
+     * @throws IOException on failure to map the row group
+     */
+    private void mapGroup(int newGroup) throws IOException {
+        final TokenType[] types = file.types;
+        final int size = file.groupSizes[newGroup];
+        long length = file.groupHasIndexes[newGroup] ? (long) size * Long.BYTES : 0L;
+        for (TokenType type : types) {
+            length += ColumnarFileFormat.getChunkSize(type, size);
+        }
+        final ByteBuffer buffer = file.channel.map(FileChannel.MapMode.READ_ONLY,
+                file.groupOffsets[newGroup], length).order(ColumnarFileFormat.ORDER);
+        if (file.groupHasIndexes[newGroup]) {
+            groupIndexes = buffer.asLongBuffer();
+            buffer.position(size * Long.BYTES);
+        }
+        else {
+            groupIndexes = null;
+        }
+        final LongBuffer[] missing = new LongBuffer[types.length];
+        final Object[] values = new Object[types.length];
+        for (int i = 0; i < types.length; i++) {
+            missing[i] = buffer.asLongBuffer();
+            buffer.position(buffer.position() + (int) ColumnarFileFormat.getBitmapSize(size));
+            if (types[i] == TokenType.FLOAT) {
+                values[i] = buffer.asDoubleBuffer();
+            }
+            else if (Column.isBinary(types[i])) {
+                values[i] = buffer.asLongBuffer();
+            }
+            else {
+                values[i] = buffer.asIntBuffer();
+            }
+            buffer.position(buffer.position()
+                    + (int) ColumnarFileFormat.getValuesSize(types[i], size));
+        }
+        groupMissing = missing;
+        groupValues = values;
+        group = newGroup;
+    }
+
+    /**
+     * @param column index of a column
+     * @param row a row in the mapped row group
+     * @return boxed value or {@code null} if it is missing
+     */
+    private Object getValue(int column, int row) {
+        if (isSet(groupMissing[column], row)) {
+            return null;
+        }
+        switch (file.types[column]) {
+        case INTEGER:
+            return ((IntBuffer) groupValues[column]).get(row);
+        case FLOAT:
+            return ((DoubleBuffer) groupValues[column]).get(row);
+        case BINARY:
+        case BINARY_DIGITAL:
+            return isSet((LongBuffer) groupValues[column], row);
+        default:
+            return file.dictionaries[column].decode(((IntBuffer) groupValues[column]).get(row));
+        }
+    }
+
+    /**
+     * @param row a row in the mapped row group
+     * @return index of the record of the row
+     */
+    private long getIndex(int row) {
+        return groupIndexes != null ? groupIndexes.get(row) : file.groupFirstIndexes[group] + row;
+    }
+
+    /**
+     * @param row a row of the file
+     * @return index of the row group of the row
+     */
+    private int findGroup(long row) {
+        final int found = Arrays.binarySearch(file.groupStarts, row);
+        return found >= 0 ? found : -found - 2;
+    }
+
+    /**
+     * @param row a row of the file
+     * @return start of the row group of the row, the row itself if it follows the last row
+     */
+    private long alignToGroup(long row) {
+        if (row >= file.recordNumber) {
+            return row;
+        }
+        return file.groupStarts[findGroup(row)];
+    }
+
+    /**
+     * Finds the row of a record.
+     * @param recordIndex index of the record
+     * @return row of the record, the number of rows if the record follows the last one,
+     *         -1 if there is no such record
+     * @throws IOException on failure to map a row group
+     */
+    private long findRow(long recordIndex) throws IOException {
+        final long[] firstIndexes = file.groupFirstIndexes;
+        if (firstIndexes.length == 0) {
+            return recordIndex == 0L ? 0L : -1L;
+        }
+        final int found = Arrays.binarySearch(firstIndexes, recordIndex);
+        final int foundGroup = found >= 0 ? found : -found - 2;
+        if (foundGroup < 0) {
+            return -1L;
+        }
+        mapGroup(foundGroup);
+        final int size = file.groupSizes[foundGroup];
+        int row;
+        if (groupIndexes == null) {
+            final long offset = recordIndex - firstIndexes[foundGroup];
+            row = offset <= size ? (int) offset : -1;
+        }
+        else {
+            row = -1;
+            int low = 0;
+            int high = size - 1;
+            while (low <= high) {
+                final int middle = (low + high) >>> 1;
+                final long index = groupIndexes.get(middle);
+                if (index < recordIndex) {
+                    low = middle + 1;
+                }
+                else if (index > recordIndex) {
+                    high = middle - 1;
+                }
+                else {
+                    row = middle;
+                    break;
+                }
+            }
+            if (row < 0 && recordIndex == groupIndexes.get(size - 1) + 1) {
+                row = size;
+            }
+        }
+        if (row == size && foundGroup + 1 < firstIndexes.length) {
+            return -1L;
+        }
+        return row < 0 ? -1L : file.groupStarts[foundGroup] + row;
+    }
+
+    /**
+     * Checks if IO operation is available.
+     */
+    private void stateCheck() {
+        if (isClosed || !file.channel.isOpen()) {
+            throw new IllegalStateException("Illegal access to closed resource");
+        }
+    }
+
+    /**
+     * @param bitmap mapped bitmap
+     * @param row a row
+     * @return {@code true} if bit of the row is set
+     */
+    private static boolean isSet(LongBuffer bitmap, int row) {
+        return (bitmap.get(row >>> 6) & 1L << row) != 0L;
+    }
+
+    /**
+     * Opens a columnar file.
+     * @param file columnar file
+     * @return opened file
+     * @throws IOException on i/o error or if the file is not a columnar file
+     */
+    private static OpenFile open(File file) throws IOException {
+        final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            return readFooter(channel);
+        }
+        catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Reads and checks header, trailer and footer of a columnar file.
+     * @param channel channel of the file
+     * @return opened file
+     * @throws IOException on i/o error or if the file is not a columnar file
+     */
+    private static OpenFile readFooter(FileChannel channel) throws IOException {
+        final long fileSize = channel.size();
+        if (fileSize < ColumnarFileFormat.HEADER_SIZE + ColumnarFileFormat.TRAILER_SIZE) {
+            throw new IOException("File is not a columnar file.");
+        }
+        final ByteBuffer header = readFully(channel, 0L, ColumnarFileFormat.HEADER_SIZE);
+        final ByteBuffer trailer = readFully(channel, fileSize - ColumnarFileFormat.TRAILER_SIZE,
+                ColumnarFileFormat.TRAILER_SIZE);
+        if (header.getInt() != ColumnarFileFormat.MAGIC
+                || trailer.getInt(Long.BYTES) != ColumnarFileFormat.MAGIC) {
+            throw new IOException("File is not a columnar file.");
+        }
+        final int version = header.getInt();
+        if (version != ColumnarFileFormat.VERSION) {
+            throw new IOException(String.format("Unsupported columnar file version %d.", version));
+        }
+        final long footerOffset = trailer.getLong(0);
+        final long footerSize = fileSize - ColumnarFileFormat.TRAILER_SIZE - footerOffset;
+        if (footerOffset < ColumnarFileFormat.HEADER_SIZE || footerSize > Integer.MAX_VALUE) {
+            throw new IOException("Columnar file is corrupted.");
+        }
+        final ByteBuffer footerBytes = readFully(channel, footerOffset, (int) footerSize);
+        try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(
+                footerBytes.array(), 0, (int) footerSize))) {
+            return new OpenFile(channel, input);
+        }
+    }
+
+    /**
+     * Reads a region of a file.
+     * @param channel channel of the file
+     * @param offset offset of the region
+     * @param length length of the region
+     * @return heap buffer with the region
+     * @throws IOException on i/o error
+     */
+    private static ByteBuffer readFully(FileChannel channel, long offset, int length)
+            throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(length).order(ColumnarFileFormat.ORDER);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of columnar file.");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Channel of an opened columnar file and contents of its footer.
+     * @author atta_troll
+     *
+     */
+    private static final class OpenFile {
+
+        /**
+         * Channel of the file.
+         */
+        private final FileChannel channel;
+
+        /**
+         * Titles of tokens.
+         */
+        private final String[] titles;
+
+        /**
+         * Token types of columns.
+         */
+        private final TokenType[] types;
+
+        /**
+         * Flags of tokens that have omissions.
+         */
+        private final boolean[] hasOmissions;
+
+        /**
+         * Flags of tokens that are in use.
+         */
+        private final boolean[] isInUse;
+
+        /**
+         * Number of records in a full row group.
+         */
+        private final int rowGroupSize;
+
+        /**
+         * Number of records in the file.
+         */
+        private final long recordNumber;
+
+        /**
+         * Offsets of row groups.
+         */
+        private final long[] groupOffsets;
+
+        /**
+         * Numbers of records in row groups.
+         */
+        private final int[] groupSizes;
+
+        /**
+         * First rows of row groups.
+         */
+        private final long[] groupStarts;
+
+        /**
+         * Indexes of first records of row groups.
+         */
+        private final long[] groupFirstIndexes;
+
+        /**
+         * Flags of row groups that keep record indexes.
+         */
+        private final boolean[] groupHasIndexes;
+
+        /**
+         * Statistics of columns.
+         */
+        private final ColumnStatistics[] statistics;
+
+        /**
+         * Dictionaries of coded columns.
+         */
+        private final CategoryDictionary[] dictionaries;
+
+        /**
+         * Reads the footer.
+         * @param channel channel of the file
+         * @param input footer input
+         * @throws IOException on i/o error or if the footer is corrupted
+         */
+        private OpenFile(FileChannel channel, DataInputStream input) throws IOException {
+            this.channel = channel;
+            final int columnNumber = input.readInt();
+            titles = new String[columnNumber];
+            types = new TokenType[columnNumber];
+            hasOmissions = new boolean[columnNumber];
+            isInUse = new boolean[columnNumber];
+            for (int i = 0; i < columnNumber; i++) {
+                titles[i] = ColumnarFileFormat.readString(input);
+                try {
+                    types[i] = TokenType.valueOf(ColumnarFileFormat.readString(input));
+                }
+                catch (IllegalArgumentException | NullPointerException ex) {
+                    throw new IOException("Columnar file is corrupted.", ex);
+                }
+                hasOmissions[i] = input.readBoolean();
+                isInUse[i] = input.readBoolean();
+            }
+            rowGroupSize = input.readInt();
+            recordNumber = input.readLong();
+            final int groupNumber = input.readInt();
+            groupOffsets = new long[groupNumber];
+            groupSizes = new int[groupNumber];
+            groupStarts = new long[groupNumber];
+            groupFirstIndexes = new long[groupNumber];
+            groupHasIndexes = new boolean[groupNumber];
+            long start = 0L;
+            for (int i = 0; i < groupNumber; i++) {
+                groupOffsets[i] = input.readLong();
+                groupSizes[i] = input.readInt();
+                groupFirstIndexes[i] = input.readLong();
+                groupHasIndexes[i] = input.readBoolean();
+                groupStarts[i] = start;
+                start += groupSizes[i];
+            }
+            if (start != recordNumber) {
+                throw new IOException("Columnar file is corrupted.");
+            }
+            statistics = new ColumnStatistics[columnNumber];
+            for (int i = 0; i < columnNumber; i++) {
+                statistics[i] = new ColumnStatistics(input.readLong(), input.readLong(),
+                        input.readDouble(), input.readDouble());
+            }
+            dictionaries = new CategoryDictionary[columnNumber];
+            for (int i = 0; i < columnNumber; i++) {
+                if (Column.isCoded(types[i])) {
+                    dictionaries[i] = new CategoryDictionary();
+                    final int size = input.readInt();
+                    for (int code = 0; code < size; code++) {
+                        dictionaries[i].encode(ColumnarFileFormat.readValue(input));
+                    }
+                }
+            }
+        }
+    }
+}
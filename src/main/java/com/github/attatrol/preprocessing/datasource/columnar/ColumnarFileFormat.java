@@ -0,0 +1,205 @@
+package com.github.attatrol.preprocessing.datasource.columnar;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+import com.github.attatrol.preprocessing.datasource.parsing.TokenType;
+
+/**
+ * Layout of the binary file of parsed records, shared by {@link ColumnarFileWriter}
+ * and {@link ColumnarFileDataSource}.<br/>
+ * The file starts with a header of {@link #MAGIC} and {@link #VERSION}, then row groups follow.
+ * A row group keeps up to row group size records: record indexes as {@code long}s if they
+ * are not sequential, then a chunk of each column. A chunk starts with the missing bitmap,
+ * then values follow: {@code int}s for {@link TokenType#INTEGER} and dictionary coded
+ * columns, {@code double}s for {@link TokenType#FLOAT} columns, a bitmap for binary columns.
+ * Every section is aligned to 8 bytes and kept in little-endian order, so row groups are read
+ * through memory mapping without decoding.<br/>
+ * The footer keeps token features, row group offsets, column statistics and dictionaries,
+ * it is written with {@link DataOutput}. Dictionary values are tagged with their type,
+ * see {@link #writeValue(DataOutput, Object)}, so they are read back as they were written. The file ends with a trailer of footer offset and
+ * {@link #MAGIC}.
+ * @author atta_troll
+ *
+ */
+final class ColumnarFileFormat {
+
+    /**
+     * Marks file as a columnar file.
+     */
+    static final int MAGIC = 0x44504346;
+
+    /**
+     * Format version.
+     */
+    static final int VERSION = 2;
+
+    /**
+     * Byte order of header, row groups and trailer.
+     */
+    static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    /**
+     * Size of the header in bytes.
+     */
+    static final int HEADER_SIZE = 8;
+
+    /**
+     * Size of the trailer in bytes.
+     */
+    static final int TRAILER_SIZE = 12;
+
+    /**
+     * Tag of a {@link String} dictionary value.
+     */
+    private static final byte STRING_TAG = 0;
+
+    /**
+     * Tag of an {@link Integer} dictionary value.
+     */
+    private static final byte INTEGER_TAG = 1;
+
+    /**
+     * Tag of a {@link Long} dictionary value.
+     */
+    private static final byte LONG_TAG = 2;
+
+    /**
+     * Tag of a {@link Double} dictionary value.
+     */
+    private static final byte DOUBLE_TAG = 3;
+
+    /**
+     * Tag of a {@link Boolean} dictionary value.
+     */
+    private static final byte BOOLEAN_TAG = 4;
+
+    /**
+     * Hidden ctor.
+     */
+    private ColumnarFileFormat() {
+    }
+
+    /**
+     * @param rows number of rows
+     * @return size of a bitmap of rows in bytes
+     */
+    static long getBitmapSize(int rows) {
+        return (long) ((rows + Long.SIZE - 1) / Long.SIZE) * Long.BYTES;
+    }
+
+    /**
+     * @param type token type of a column
+     * @param rows number of rows
+     * @return size of values of the column in bytes
+     */
+    static long getValuesSize(TokenType type, int rows) {
+        if (type == TokenType.FLOAT) {
+            return (long) rows * Double.BYTES;
+        }
+        if (Column.isBinary(type)) {
+            return getBitmapSize(rows);
+        }
+        return ((long) rows * Integer.BYTES + Long.BYTES - 1) & -Long.BYTES;
+    }
+
+    /**
+     * @param type token type of a column
+     * @param rows number of rows
+     * @return size of a column chunk in bytes
+     */
+    static long getChunkSize(TokenType type, int rows) {
+        return getBitmapSize(rows) + getValuesSize(type, rows);
+    }
+
+    /**
+     * Writes a nullable string.
+     * @param output footer output
+     * @param value a string or {@code null}
+     * @throws IOException on i/o error
+     */
+    static void writeString(DataOutput output, String value) throws IOException {
+        if (value == null) {
+            output.writeInt(-1);
+        }
+        else {
+            final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        }
+    }
+
+    /**
+     * Reads a nullable string.
+     * @param input footer input
+     * @return a string or {@code null}
+     * @throws IOException on i/o error
+     */
+    static String readString(DataInput input) throws IOException {
+        final int length = input.readInt();
+        if (length < 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes a dictionary value with the tag of its type. Values of types other than
+     * {@link String}, {@link Integer}, {@link Long}, {@link Double} and {@link Boolean}
+     * are written as their string presentations.
+     * @param output footer output
+     * @param value non-null value
+     * @throws IOException on i/o error
+     */
+    static void writeValue(DataOutput output, Object value) throws IOException {
+        if (value instanceof Integer) {
+            output.writeByte(INTEGER_TAG);
+            output.writeInt((Integer) value);
+        }
+        else if (value instanceof Long) {
+            output.writeByte(LONG_TAG);
+            output.writeLong((Long) value);
+        }
+        else if (value instanceof Double) {
+            output.writeByte(DOUBLE_TAG);
+            output.writeDouble((Double) value);
+        }
+        else if (value instanceof Boolean) {
+            output.writeByte(BOOLEAN_TAG);
+            output.writeBoolean((Boolean) value);
+        }
+        else {
+            output.writeByte(STRING_TAG);
+            writeString(output, String.valueOf(value));
+        }
+    }
+
+    /**
+     * Reads a dictionary value written by {@link #writeValue(DataOutput, Object)}.
+     * @param input footer input
+     * @return the value
+     * @throws IOException on i/o error or unknown tag
+     */
+    static Object readValue(DataInput input) throws IOException {
+        final byte tag = input.readByte();
+        switch (tag) {
+        case STRING_TAG:
+            return readString(input);
+        case INTEGER_TAG:
+            return input.readInt();
+        case LONG_TAG:
+            return input.readLong();
+        case DOUBLE_TAG:
+            return input.readDouble();
+        case BOOLEAN_TAG:
+            return input.readBoolean();
+        default:
+            throw new IOException("Columnar file is corrupted.");
+        }
+    }
+}
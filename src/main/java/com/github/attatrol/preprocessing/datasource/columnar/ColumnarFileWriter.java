@@ -0,0 +1,530 @@
+package com.github.attatrol.preprocessing.datasource.columnar;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.github.attatrol.preprocessing.datasource.AbstractTokenDataSource;
+import com.github.attatrol.preprocessing.datasource.DefaultTokenDataSource;
+import com.github.attatrol.preprocessing.datasource.Record;
+import com.github.attatrol.preprocessing.datasource.RecordBatch;
+import com.github.attatrol.preprocessing.datasource.parsing.TokenFeatures;
+import com.github.attatrol.preprocessing.datasource.parsing.TokenType;
+import com.github.attatrol.preprocessing.datasource.parsing.token.DictionaryEncodingParser;
+
+/**
+ * Writes parsed records into a columnar file, see {@link ColumnarFileFormat},
+ * which is read back by {@link ColumnarFileDataSource}.<br/>
+ * Records are collected into a row group and written when it is full. Values of columns
+ * that are not numeric or binary are written as codes, dictionaries of values are written
+ * once in the footer and keep types of values. Tokens encoded by a {@link DictionaryEncodingParser}
+ * are written decoded, see {@link #setEncodingParser(int, DictionaryEncodingParser)}.<br/>
+ * Data is written into a temporary file that replaces the target file on {@link #close()},
+ * so the target file is never left incomplete.
+ * @author atta_troll
+ *
+ */
+public class ColumnarFileWriter implements Closeable {
+
+    /**
+     * Default number of records in a row group.
+     */
+    public static final int DEFAULT_ROW_GROUP_SIZE = 1 << 16;
+
+    /**
+     * Number of records read from a token data source at once.
+     */
+    private static final int BATCH_SIZE = 1 << 12;
+
+    /**
+     * Target file.
+     */
+    private final File file;
+
+    /**
+     * File where data is written before it is moved into target file.
+     */
+    private final File temporaryFile;
+
+    /**
+     * Channel of the temporary file.
+     */
+    private final FileChannel channel;
+
+    /**
+     * Features of tokens.
+     */
+    private final TokenFeatures[] features;
+
+    /**
+     * Token types of columns.
+     */
+    private final TokenType[] types;
+
+    /**
+     * Records of the current row group.
+     */
+    private final RecordBatch group;
+
+    /**
+     * Dictionaries of coded columns, {@code null} for numeric and binary columns.
+     */
+    private final CategoryDictionary[] dictionaries;
+
+    /**
+     * Parsers that decode written codes of tokens, {@code null} if values are written as is.
+     */
+    private final DictionaryEncodingParser[] encodingParsers;
+
+    /**
+     * Numbers of present values of columns.
+     */
+    private final long[] counts;
+
+    /**
+     * Numbers of missing values of columns.
+     */
+    private final long[] missingCounts;
+
+    /**
+     * Minimal values of columns.
+     */
+    private final double[] mins;
+
+    /**
+     * Maximal values of columns.
+     */
+    private final double[] maxs;
+
+    /**
+     * Offsets of written row groups.
+     */
+    private final List<Long> groupOffsets = new ArrayList<>();
+
+    /**
+     * Numbers of records in written row groups.
+     */
+    private final List<Integer> groupSizes = new ArrayList<>();
+
+    /**
+     * Indexes of first records of written row groups.
+     */
+    private final List<Long> groupFirstIndexes = new ArrayList<>();
+
+    /**
+     * Flags of written row groups that keep record indexes.
+     */
+    private final List<Boolean> groupHasIndexes = new ArrayList<>();
+
+    /**
+     * Reusable buffer of a row group.
+     */
+    private ByteBuffer buffer;
+
+    /**
+     * Number of written records.
+     */
+    private long recordNumber;
+
+    /**
+     * Flag of being closed.
+     */
+    private boolean isClosed;
+
+    /**
+     * Creates writer with the default row group size.
+     * @param file target file
+     * @param features features of tokens, their types define column types
+     * @throws IOException on failure to create a temporary file
+     */
+    public ColumnarFileWriter(File file, TokenFeatures[] features) throws IOException {
+        this(file, features, DEFAULT_ROW_GROUP_SIZE);
+    }
+
+    /**
+     * Default ctor.
+     * @param file target file
+     * @param features features of tokens, their types define column types
+     * @param rowGroupSize number of records in a row group
+     * @throws IOException on failure to create a temporary file
+     * @throws IllegalArgumentException if row group size is not positive
+     */
+    public ColumnarFileWriter(File file, TokenFeatures[] features, int rowGroupSize)
+            throws IOException, IllegalArgumentException {
+        if (rowGroupSize < 1) {
+            throw new IllegalArgumentException("Row group size must be positive.");
+        }
+        this.file = file;
+        this.features = features.clone();
+        types = new TokenType[features.length];
+        dictionaries = new CategoryDictionary[features.length];
+        encodingParsers = new DictionaryEncodingParser[features.length];
+        counts = new long[features.length];
+        missingCounts = new long[features.length];
+        mins = new double[features.length];
+        maxs = new double[features.length];
+        for (int i = 0; i < features.length; i++) {
+            types[i] = features[i].getType();
+            if (Column.isCoded(types[i])) {
+                dictionaries[i] = new CategoryDictionary();
+            }
+            mins[i] = Double.NaN;
+            maxs[i] = Double.NaN;
+        }
+        group = new RecordBatch(types, rowGroupSize);
+        final File directory = file.getAbsoluteFile().getParentFile();
+        temporaryFile = File.createTempFile(file.getName() + "-col", ".tmp", directory);
+        channel = FileChannel.open(temporaryFile.toPath(), StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        final ByteBuffer header = ByteBuffer.allocate(ColumnarFileFormat.HEADER_SIZE)
+                .order(ColumnarFileFormat.ORDER);
+        header.putInt(ColumnarFileFormat.MAGIC).putInt(ColumnarFileFormat.VERSION).flip();
+        writeFully(header);
+    }
+
+    /**
+     * Writes all records of a token data source into a file.
+     * @param source token data source, it is reset first
+     * @param features features of tokens, their types define column types
+     * @param file target file
+     * @return number of written records
+     * @throws IOException on i/o error
+     * @throws IllegalArgumentException if some token doesn't match its type
+     */
+    public static long write(AbstractTokenDataSource<?> source, TokenFeatures[] features, File file)
+            throws IOException, IllegalArgumentException {
+        final ColumnarFileWriter writer = new ColumnarFileWriter(file, features);
+        try {
+            if (source instanceof DefaultTokenDataSource) {
+                for (int i = 0; i < features.length; i++) {
+                    writer.setEncodingParser(i,
+                            ((DefaultTokenDataSource) source).getEncodingParser(i));
+                }
+            }
+            final RecordBatch batch = new RecordBatch(writer.types, BATCH_SIZE);
+            source.reset();
+            while (source.nextBatch(batch) > 0) {
+                writer.write(batch);
+            }
+            writer.close();
+            return writer.getRecordNumber();
+        }
+        catch (IOException | RuntimeException ex) {
+            writer.abort();
+            throw ex;
+        }
+    }
+
+    /**
+     * Sets encoding parser of a token, written values of the token are its codes
+     * and they are decoded before writing.
+     * @param column index of the column
+     * @param parser parser that encoded the token, {@code null} to write values as is
+     * @throws IllegalArgumentException if the column is numeric or binary
+     */
+    public void setEncodingParser(int column, DictionaryEncodingParser parser)
+            throws IllegalArgumentException {
+        if (parser != null && dictionaries[column] == null) {
+            throw new IllegalArgumentException(String.format(
+                    "Column %d is not dictionary coded.", column));
+        }
+        encodingParsers[column] = parser;
+    }
+
+    /**
+     * Writes a record.
+     * @param record parsed record
+     * @throws IOException on i/o error
+     * @throws IllegalArgumentException if some token doesn't match its type
+     */
+    public void write(Record<? extends Object[]> record) throws IOException, IllegalArgumentException {
+        stateCheck();
+        if (group.isFull()) {
+            flush();
+        }
+        group.addRecord(record);
+    }
+
+    /**
+     * Writes all records of a batch.
+     * @param batch batch of parsed records
+     * @throws IOException on i/o error
+     * @throws IllegalArgumentException if some token doesn't match its type
+     *         or batch has a wrong number of columns
+     */
+    public void write(RecordBatch batch) throws IOException, IllegalArgumentException {
+        stateCheck();
+        if (batch.getColumnNumber() != types.length) {
+            throw new IllegalArgumentException(String.format(
+                    "Batch has %d columns, file has %d columns.",
+                    batch.getColumnNumber(), types.length));
+        }
+        for (int row = 0; row < batch.getSize(); row++) {
+            if (group.isFull()) {
+                flush();
+            }
+            final int groupRow = group.addRow(batch.getIndex(row));
+            for (int i = 0; i < types.length; i++) {
+                if (batch.isMissing(i, row)) {
+                    group.setMissing(i, groupRow);
+                }
+                else if (batch.getType(i) == types[i]) {
+                    switch (types[i]) {
+                    case INTEGER:
+                        group.getIntColumn(i)[groupRow] = batch.getIntColumn(i)[row];
+                        break;
+                    case FLOAT:
+                        group.getDoubleColumn(i)[groupRow] = batch.getDoubleColumn(i)[row];
+                        break;
+                    case BINARY:
+                    case BINARY_DIGITAL:
+                        group.getBooleanColumn(i)[groupRow] = batch.getBooleanColumn(i)[row];
+                        break;
+                    default:
+                        group.getObjectColumn(i)[groupRow] = batch.getObjectColumn(i)[row];
+                    }
+                }
+                else {
+                    group.setValue(i, groupRow, batch.getValue(i, row));
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the last row group and the footer, then moves written data into the target file.
+     * @throws IOException on i/o error
+     */
+    @Override
+    public void close() throws IOException {
+        if (isClosed) {
+            return;
+        }
+        if (group.getSize() > 0) {
+            flush();
+        }
+        final long footerOffset = channel.position();
+        final ByteArrayOutputStream footerBytes = new ByteArrayOutputStream();
+        try (DataOutputStream footer = new DataOutputStream(footerBytes)) {
+            writeFooter(footer);
+        }
+        writeFully(ByteBuffer.wrap(footerBytes.toByteArray()));
+        final ByteBuffer trailer = ByteBuffer.allocate(ColumnarFileFormat.TRAILER_SIZE)
+                .order(ColumnarFileFormat.ORDER);
+        trailer.putLong(footerOffset).putInt(ColumnarFileFormat.MAGIC).flip();
+        writeFully(trailer);
+        isClosed = true;
+        channel.close();
+        Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Cancels writing and removes written data, the target file is left intact.
+     */
+    public void abort() {
+        isClosed = true;
+        try {
+            channel.close();
+        }
+        catch (IOException ex) {
+            // nothing to do, file is removed anyway
+        }
+        temporaryFile.delete();
+    }
+
+    /**
+     * @return number of written records
+     */
+    public long getRecordNumber() {
+        return recordNumber + group.getSize();
+    }
+
+    /**
+     * Writes the current row group and clears it.
+     * @throws IOException on i/o error
+     */
+    private void flush() throws IOException {
+        final int size = group.getSize();
+        final long firstIndex = group.getIndex(0);
+        boolean hasIndexes = false;
+        for (int row = 1; row < size && !hasIndexes; row++) {
+            hasIndexes = group.getIndex(row) != firstIndex + row;
+        }
+        long groupSize = hasIndexes ? (long) size * Long.BYTES : 0L;
+        for (TokenType type : types) {
+            groupSize += ColumnarFileFormat.getChunkSize(type, size);
+        }
+        if (groupSize > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Row group is too big, decrease row group size.");
+        }
+        if (buffer == null || buffer.capacity() < groupSize) {
+            buffer = ByteBuffer.allocateDirect((int) groupSize).order(ColumnarFileFormat.ORDER);
+        }
+        buffer.clear();
+        if (hasIndexes) {
+            for (int row = 0; row < size; row++) {
+                buffer.putLong(group.getIndex(row));
+            }
+        }
+        for (int i = 0; i < types.length; i++) {
+            putColumn(i, size);
+        }
+        buffer.flip();
+        groupOffsets.add(channel.position());
+        groupSizes.add(size);
+        groupFirstIndexes.add(firstIndex);
+        groupHasIndexes.add(hasIndexes);
+        writeFully(buffer);
+        recordNumber += size;
+        group.clear();
+    }
+
+    /**
+     * Puts a column chunk of the current row group into the buffer and updates column statistics.
+     * @param column index of the column
+     * @param size number of records in the row group
+     */
+    private void putColumn(int column, int size) {
+        final long[] missing = group.getMissingColumn(column);
+        final int words = (size + Long.SIZE - 1) / Long.SIZE;
+        for (int word = 0; word < words; word++) {
+            buffer.putLong(missing[word]);
+        }
+        long missingCount = 0L;
+        for (int word = 0; word < words; word++) {
+            missingCount += Long.bitCount(missing[word]);
+        }
+        missingCounts[column] += missingCount;
+        counts[column] += size - missingCount;
+        double min = mins[column];
+        double max = maxs[column];
+        switch (types[column]) {
+        case INTEGER:
+            final int[] ints = group.getIntColumn(column);
+            for (int row = 0; row < size; row++) {
+                final boolean isMissing = group.isMissing(column, row);
+                final int value = isMissing ? 0 : ints[row];
+                if (!isMissing) {
+                    min = Double.isNaN(min) || value < min ? value : min;
+                    max = Double.isNaN(max) || value > max ? value : max;
+                }
+                buffer.putInt(value);
+            }
+            break;
+        case FLOAT:
+            final double[] doubles = group.getDoubleColumn(column);
+            for (int row = 0; row < size; row++) {
+                final boolean isMissing = group.isMissing(column, row);
+                final double value = isMissing ? 0. : doubles[row];
+                if (!isMissing && !Double.isNaN(value)) {
+                    min = Double.isNaN(min) || value < min ? value : min;
+                    max = Double.isNaN(max) || value > max ? value : max;
+                }
+                buffer.putDouble(value);
+            }
+            break;
+        case BINARY:
+        case BINARY_DIGITAL:
+            final boolean[] booleans = group.getBooleanColumn(column);
+            long bits = 0L;
+            for (int row = 0; row < size; row++) {
+                if (!group.isMissing(column, row)) {
+                    final int value = booleans[row] ? 1 : 0;
+                    bits |= (long) value << row;
+                    min = Double.isNaN(min) || value < min ? value : min;
+                    max = Double.isNaN(max) || value > max ? value : max;
+                }
+                if ((row & (Long.SIZE - 1)) == Long.SIZE - 1 || row == size - 1) {
+                    buffer.putLong(bits);
+                    bits = 0L;
+                }
+            }
+            break;
+        default:
+            final Object[] objects = group.getObjectColumn(column);
+            final DictionaryEncodingParser encodingParser = encodingParsers[column];
+            for (int row = 0; row < size; row++) {
+                if (group.isMissing(column, row)) {
+                    buffer.putInt(0);
+                }
+                else {
+                    final Object value = encodingParser != null
+                            ? encodingParser.decode((Integer) objects[row]) : objects[row];
+                    buffer.putInt(dictionaries[column].encode(value));
+                }
+            }
+        }
+        while ((buffer.position() & (Long.BYTES - 1)) != 0) {
+            buffer.put((byte) 0);
+        }
+        mins[column] = min;
+        maxs[column] = max;
+    }
+
+    /**
+     * Writes the footer.
+     * @param footer footer output
+     * @throws IOException on i/o error
+     */
+    private void writeFooter(DataOutputStream footer) throws IOException {
+        footer.writeInt(types.length);
+        for (TokenFeatures tokenFeatures : features) {
+            ColumnarFileFormat.writeString(footer, tokenFeatures.getTitle());
+            ColumnarFileFormat.writeString(footer, tokenFeatures.getType().name());
+            footer.writeBoolean(tokenFeatures.hasOmissions());
+            footer.writeBoolean(tokenFeatures.isInUse());
+        }
+        footer.writeInt(group.getCapacity());
+        footer.writeLong(recordNumber);
+        footer.writeInt(groupOffsets.size());
+        for (int i = 0; i < groupOffsets.size(); i++) {
+            footer.writeLong(groupOffsets.get(i));
+            footer.writeInt(groupSizes.get(i));
+            footer.writeLong(groupFirstIndexes.get(i));
+            footer.writeBoolean(groupHasIndexes.get(i));
+        }
+        for (int i = 0; i < types.length; i++) {
+            footer.writeLong(counts[i]);
+            footer.writeLong(missingCounts[i]);
+            footer.writeDouble(mins[i]);
+            footer.writeDouble(maxs[i]);
+        }
+        for (CategoryDictionary dictionary : dictionaries) {
+            if (dictionary != null) {
+                footer.writeInt(dictionary.size());
+                for (int code = 0; code < dictionary.size(); code++) {
+                    ColumnarFileFormat.writeValue(footer, dictionary.decode(code));
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes all remaining bytes of a buffer.
+     * @param data the buffer
+     * @throws IOException on i/o error
+     */
+    private void writeFully(ByteBuffer data) throws IOException {
+        while (data.hasRemaining()) {
+            channel.write(data);
+        }
+    }
+
+    /**
+     * Checks if IO operation is available.
+     */
+    private void stateCheck() {
+        if (isClosed) {
+            throw new IllegalStateException("Illegal access to closed resource");
+        }
+    }
+}
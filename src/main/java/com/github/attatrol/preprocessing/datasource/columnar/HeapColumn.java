@@ -0,0 +1,120 @@
+package com.github.attatrol.preprocessing.datasource.columnar;
+
+import java.util.Arrays;
+
+import com.github.attatrol.preprocessing.datasource.parsing.TokenType;
+
+/**
+ * Column that keeps its values in growing heap arrays.
+ * @author atta_troll
+ *
+ */
+public class HeapColumn extends Column {
+
+    /**
+     * Initial capacity of arrays.
+     */
+    private static final int INITIAL_CAPACITY = 1 << 10;
+
+    /**
+     * {@code int} values, {@code null} if column keeps {@code double} or binary values.
+     */
+    private int[] ints;
+
+    /**
+     * {@code double} values, {@code null} if column keeps {@code int} or binary values.
+     */
+    private double[] doubles;
+
+    /**
+     * Default ctor.
+     * @param type token type of the column
+     */
+    public HeapColumn(TokenType type) {
+        super(type);
+        if (type == TokenType.FLOAT) {
+            doubles = new double[INITIAL_CAPACITY];
+        }
+        else if (!isBinary(type)) {
+            ints = new int[INITIAL_CAPACITY];
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void trim() {
+        if (ints != null) {
+            ints = Arrays.copyOf(ints, size());
+        }
+        if (doubles != null) {
+            doubles = Arrays.copyOf(doubles, size());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void storeInt(int row, int value) {
+        if (row == ints.length) {
+            ints = Arrays.copyOf(ints, grow(row));
+        }
+        ints[row] = value;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void storeDouble(int row, double value) {
+        if (row == doubles.length) {
+            doubles = Arrays.copyOf(doubles, grow(row));
+        }
+        doubles[row] = value;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected int loadInt(int row) {
+        return ints[row];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected double loadDouble(int row) {
+        return doubles[row];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected long getStorageFootprint() {
+        long result = 0L;
+        if (ints != null) {
+            result += (long) ints.length * Integer.BYTES;
+        }
+        if (doubles != null) {
+            result += (long) doubles.length * Double.BYTES;
+        }
+        return result;
+    }
+
+    /**
+     * @param capacity current capacity
+     * @return increased capacity
+     * @throws IllegalStateException if capacity can't be increased
+     */
+    private static int grow(int capacity) throws IllegalStateException {
+        if (capacity == Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Column is too long to be kept in heap.");
+        }
+        return (int) Math.min(Integer.MAX_VALUE - 8, capacity + (capacity >> 1) + 1L);
+    }
+}
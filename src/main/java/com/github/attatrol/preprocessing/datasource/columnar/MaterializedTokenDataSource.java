@@ -0,0 +1,506 @@
+package com.github.attatrol.preprocessing.datasource.columnar;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import com.github.attatrol.preprocessing.datasource.AbstractTokenDataSource;
+import com.github.attatrol.preprocessing.datasource.RandomAccessDataSource;
+import com.github.attatrol.preprocessing.datasource.Record;
+import com.github.attatrol.preprocessing.datasource.RecordBatch;
+import com.github.attatrol.preprocessing.datasource.SplittableDataSource;
+import com.github.attatrol.preprocessing.datasource.parsing.TokenType;
+
+/**
+ * Token data source that keeps all parsed records of another token data source in memory
+ * as typed columns, see {@link Column}. The wrapped data source is read only once,
+ * on materialization, all later passes are served from memory.<br/>
+ * Columns may be kept in heap or outside of it, see {@link OffHeapColumn}, so data sets
+ * larger than heap can be materialized too.<br/>
+ * Closing this data source doesn't close the wrapped one.
+ * @author atta_troll
+ *
+ */
+public class MaterializedTokenDataSource extends AbstractTokenDataSource<Object[]>
+        implements RandomAccessDataSource<Object[]>, SplittableDataSource<Object[]> {
+
+    /**
+     * Number of records read from the wrapped data source at once.
+     */
+    private static final int BATCH_SIZE = 1 << 12;
+
+    /**
+     * Columns of tokens.
+     */
+    private final Column[] columns;
+
+    /**
+     * Index of the record in the first row.
+     */
+    private final long firstIndex;
+
+    /**
+     * Indexes of records of rows, {@code null} if indexes grow by one from {@link #firstIndex}.
+     */
+    private final long[] indexes;
+
+    /**
+     * First row of this data source.
+     */
+    private final int from;
+
+    /**
+     * Row after the last row of this data source.
+     */
+    private final int to;
+
+    /**
+     * Next row.
+     */
+    private int position;
+
+    /**
+     * Allocator owned by this data source, {@code null} if there is none.
+     */
+    private final OffHeapAllocator allocator;
+
+    /**
+     * Flag of being closed.
+     */
+    private boolean isClosed;
+
+    /**
+     * Default ctor.
+     * @param source wrapped data source
+     * @param columns filled columns
+     * @param firstIndex index of the record in the first row
+     * @param indexes indexes of records of rows, {@code null} if they are sequential
+     * @param from first row of this data source
+     * @param to row after the last row of this data source
+     * @param allocator allocator owned by this data source, may be {@code null}
+     */
+    private MaterializedTokenDataSource(AbstractTokenDataSource<?> source, Column[] columns,
+            long firstIndex, long[] indexes, int from, int to, OffHeapAllocator allocator) {
+        super(source, columns.length);
+        this.columns = columns;
+        this.firstIndex = firstIndex;
+        this.indexes = indexes;
+        this.from = from;
+        this.to = to;
+        this.allocator = allocator;
+        position = from;
+    }
+
+    /**
+     * Reads all records of a token data source into heap columns.
+     * @param source token data source, it is reset first
+     * @param types token types of tokens
+     * @return materialized data source
+     * @throws IOException on failure to read the data source
+     * @throws IllegalArgumentException if some token doesn't match its type
+     *         or there are too many records
+     */
+    public static MaterializedTokenDataSource materialize(AbstractTokenDataSource<?> source,
+            TokenType[] types) throws IOException, IllegalArgumentException {
+        final Column[] columns = new Column[types.length];
+        for (int i = 0; i < types.length; i++) {
+            columns[i] = new HeapColumn(types[i]);
+        }
+        return materialize(source, columns, null);
+    }
+
+    /**
+     * Reads all records of a token data source into off-heap columns.
+     * Columns are kept in direct buffers within some budget, the rest is spilled to a
+     * temporary file. Closing the returned data source releases the columns.
+     * @param source token data source, it is reset first
+     * @param types token types of tokens
+     * @param budget maximal total size of direct buffers in bytes
+     * @param spillDirectory directory of the spill file, {@code null} for the default
+     *        temporary directory
+     * @return materialized data source
+     * @throws IOException on failure to read the data source or to spill columns
+     * @throws IllegalArgumentException if some token doesn't match its type
+     *         or there are too many records
+     */
+    public static MaterializedTokenDataSource materializeOffHeap(AbstractTokenDataSource<?> source,
+            TokenType[] types, long budget, File spillDirectory)
+            throws IOException, IllegalArgumentException {
+        return materializeOffHeap(source, types, budget, spillDirectory, 0L);
+    }
+
+    /**
+     * Reads all records of a token data source into off-heap columns.
+     * Columns are kept in direct buffers within some budget, the rest is spilled to a
+     * temporary file. Closing the returned data source releases the columns.
+     * @param source token data source, it is reset first
+     * @param types token types of tokens
+     * @param budget maximal total size of direct buffers in bytes
+     * @param spillDirectory directory of the spill file, {@code null} for the default
+     *        temporary directory
+     * @param expectedRecordNumber expected number of records, first chunks of columns
+     *        are sized from it, non positive if unknown
+     * @return materialized data source
+     * @throws IOException on failure to read the data source or to spill columns
+     * @throws IllegalArgumentException if some token doesn't match its type
+     *         or there are too many records
+     */
+    public static MaterializedTokenDataSource materializeOffHeap(AbstractTokenDataSource<?> source,
+            TokenType[] types, long budget, File spillDirectory, long expectedRecordNumber)
+            throws IOException, IllegalArgumentException {
+        final OffHeapAllocator allocator = new OffHeapAllocator(budget, spillDirectory);
+        try {
+            final Column[] columns = new Column[types.length];
+            for (int i = 0; i < types.length; i++) {
+                columns[i] = new OffHeapColumn(types[i], allocator, expectedRecordNumber);
+            }
+            return materialize(source, columns, allocator);
+        }
+        catch (IOException | RuntimeException ex) {
+            allocator.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Reads all records of a token data source into some empty columns.
+     * @param source token data source, it is reset first
+     * @param columns empty columns, one for each token
+     * @return materialized data source
+     * @throws IOException on failure to read the data source
+     * @throws IllegalArgumentException if some token doesn't match its type
+     *         or there are too many records
+     */
+    public static MaterializedTokenDataSource materialize(AbstractTokenDataSource<?> source,
+            Column[] columns) throws IOException, IllegalArgumentException {
+        return materialize(source, columns, null);
+    }
+
+    /**
+     * Reads all records of a token data source into some empty columns.
+     * @param source token data source, it is reset first
+     * @param columns empty columns, one for each token
+     * @param allocator allocator of columns owned by the result, may be {@code null}
+     * @return materialized data source
+     * @throws IOException on failure to read the data source
+     * @throws IllegalArgumentException if some token doesn't match its type
+     *         or there are too many records
+     */
+    private static MaterializedTokenDataSource materialize(AbstractTokenDataSource<?> source,
+            Column[] columns, OffHeapAllocator allocator) throws IOException, IllegalArgumentException {
+        final TokenType[] types = new TokenType[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            types[i] = columns[i].getType();
+        }
+        final RecordBatch batch = new RecordBatch(types, BATCH_SIZE);
+        long firstIndex = 0L;
+        long[] indexes = null;
+        int size = 0;
+        source.reset();
+        int batchSize;
+        while ((batchSize = source.nextBatch(batch)) > 0) {
+            if (size > Integer.MAX_VALUE - BATCH_SIZE - 8) {
+                throw new IllegalArgumentException("Data source is too big to be materialized.");
+            }
+            for (int row = 0; row < batchSize; row++) {
+                final long index = batch.getIndex(row);
+                if (size == 0 && row == 0) {
+                    firstIndex = index;
+                }
+                else if (indexes == null && index != firstIndex + size + row) {
+                    indexes = new long[Math.max(BATCH_SIZE, (size + row) * 2)];
+                    for (int i = 0; i < size + row; i++) {
+                        indexes[i] = firstIndex + i;
+                    }
+                }
+                if (indexes != null) {
+                    if (size + row == indexes.length) {
+                        indexes = Arrays.copyOf(indexes, indexes.length * 2);
+                    }
+                    indexes[size + row] = index;
+                }
+            }
+            try {
+                for (int i = 0; i < columns.length; i++) {
+                    appendColumn(columns[i], batch, i, batchSize);
+                }
+            }
+            catch (UncheckedIOException ex) {
+                throw ex.getCause();
+            }
+            size += batchSize;
+        }
+        for (Column column : columns) {
+            column.trim();
+        }
+        return new MaterializedTokenDataSource(source, columns, firstIndex,
+                indexes != null ? Arrays.copyOf(indexes, size) : null, 0, size, allocator);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasNext() throws IOException {
+        stateCheck();
+        return position < to;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Record<Object[]> next() throws IOException, IllegalArgumentException, NoSuchElementException {
+        if (!hasNext()) {
+            throw new NoSuchElementException("There are no records left.");
+        }
+        final Object[] data = new Object[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            data[i] = columns[i].get(position);
+        }
+        return new Record<>(data, getIndex(position++));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reset() throws IOException {
+        stateCheck();
+        position = from;
+    }
+
+    /**
+     * {@inheritDoc}<br/>
+     * The wrapped data source is not closed. Off-heap columns are released
+     * if this data source owns them, so its parts must not be used after that.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!isClosed) {
+            isClosed = true;
+            if (allocator != null) {
+                allocator.close();
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}<br/>
+     * Values are copied from columns without boxing.
+     */
+    @Override
+    public int nextBatch(RecordBatch batch) throws IOException, IllegalArgumentException {
+        stateCheck();
+        checkBatch(batch);
+        batch.clear();
+        while (!batch.isFull() && position < to) {
+            final int row = batch.addRow(getIndex(position));
+            for (int i = 0; i < columns.length; i++) {
+                final Column column = columns[i];
+                if (column.isMissing(position)) {
+                    batch.setMissing(i, row);
+                }
+                else if (column.getType() == batch.getType(i)) {
+                    switch (column.getType()) {
+                    case INTEGER:
+                        batch.getIntColumn(i)[row] = column.getInt(position);
+                        break;
+                    case FLOAT:
+                        batch.getDoubleColumn(i)[row] = column.getDouble(position);
+                        break;
+                    case BINARY:
+                    case BINARY_DIGITAL:
+                        batch.getBooleanColumn(i)[row] = column.getBoolean(position);
+                        break;
+                    default:
+                        batch.getObjectColumn(i)[row] = column.get(position);
+                    }
+                }
+                else {
+                    batch.setValue(i, row, column.get(position));
+                }
+            }
+            position++;
+        }
+        return batch.getSize();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void seek(long recordIndex) throws IOException, IllegalArgumentException {
+        stateCheck();
+        final int row;
+        if (indexes == null) {
+            row = recordIndex >= firstIndex + from && recordIndex <= firstIndex + to
+                    ? (int) (recordIndex - firstIndex) : -1;
+        }
+        else {
+            final int found = Arrays.binarySearch(indexes, from, to, recordIndex);
+            row = found >= 0 ? found
+                    : to > from && recordIndex == indexes[to - 1] + 1 ? to : -1;
+        }
+        if (row < 0) {
+            throw new IllegalArgumentException(
+                    String.format("There is no record with index %d.", recordIndex));
+        }
+        position = row;
+    }
+
+    /**
+     * Finds index of a record by its position, so records may be sought
+     * by position with {@link #seek(long)} when indexes are not sequential.
+     * @param position position of the record in this data source
+     * @return index of the record
+     * @throws IndexOutOfBoundsException if there is no such position
+     */
+    public long getRecordIndex(int position) throws IndexOutOfBoundsException {
+        if (position < 0 || position >= to - from) {
+            throw new IndexOutOfBoundsException(String.format("There is no position %d.", position));
+        }
+        return getIndex(from + position);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getRecordNumber() {
+        return to - from;
+    }
+
+    /**
+     * {@inheritDoc}<br/>
+     * Parts share columns with this data source.
+     */
+    @Override
+    public List<MaterializedTokenDataSource> split(int partsNumber) throws IOException {
+        if (partsNumber < 1) {
+            throw new IllegalArgumentException("Number of parts must be positive.");
+        }
+        final List<MaterializedTokenDataSource> parts = new ArrayList<>(partsNumber);
+        final long size = to - from;
+        int start = from;
+        for (int i = 1; i <= partsNumber; i++) {
+            final int end = from + (int) (size * i / partsNumber);
+            if (end > start || i == partsNumber && parts.isEmpty()) {
+                parts.add(new MaterializedTokenDataSource(
+                        (AbstractTokenDataSource<?>) getInternalDataSource(), columns,
+                        firstIndex, indexes, start, end, null));
+                start = end;
+            }
+        }
+        return parts;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasGlobalIndexes() {
+        return true;
+    }
+
+    /**
+     * @param column index of a column
+     * @return the column
+     */
+    public Column getColumn(int column) {
+        return columns[column];
+    }
+
+    /**
+     * @return estimated memory footprint of all columns and record indexes in bytes
+     */
+    public long getMemoryFootprint() {
+        long result = indexes != null ? (long) indexes.length * Long.BYTES : 0L;
+        for (Column column : columns) {
+            result += column.getMemoryFootprint();
+        }
+        return result;
+    }
+
+    /**
+     * @return report on memory footprint of each column
+     */
+    public String getMemoryFootprintReport() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%d records, %d bytes total%n", to - from, getMemoryFootprint()));
+        if (allocator != null) {
+            sb.append(String.format("%d bytes in direct buffers, %d bytes spilled to disk%n",
+                    allocator.getDirectSize(), allocator.getSpilledSize()));
+        }
+        for (int i = 0; i < columns.length; i++) {
+            final Column column = columns[i];
+            sb.append(String.format("column %d, %s: %d bytes", i, column.getType(),
+                    column.getMemoryFootprint()));
+            if (column.getDictionary() != null) {
+                sb.append(String.format(", %d distinct values", column.getDictionary().size()));
+            }
+            sb.append(String.format("%n"));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * {@inheritDoc}<br/>
+     * Records are never parsed by this data source.
+     */
+    @Override
+    protected Record<Object[]> parseRecord(Record<? extends Object[]> record) {
+        return new Record<>(record.getData(), record.getIndex());
+    }
+
+    /**
+     * @param row a row
+     * @return index of the record of the row
+     */
+    private long getIndex(int row) {
+        return indexes != null ? indexes[row] : firstIndex + row;
+    }
+
+    /**
+     * Checks if IO operation is available.
+     */
+    private void stateCheck() {
+        if (isClosed) {
+            throw new IllegalStateException("Illegal access to closed resource");
+        }
+    }
+
+    /**
+     * Appends values of a batch column to a column.
+     * @param column column
+     * @param batch batch
+     * @param index index of the column in the batch
+     * @param size number of rows in the batch
+     */
+    private static void appendColumn(Column column, RecordBatch batch, int index, int size) {
+        for (int row = 0; row < size; row++) {
+            if (batch.isMissing(index, row)) {
+                column.appendMissing();
+                continue;
+            }
+            switch (column.getType()) {
+            case INTEGER:
+                column.appendInt(batch.getInt(index, row));
+                break;
+            case FLOAT:
+                column.appendDouble(batch.getDouble(index, row));
+                break;
+            case BINARY:
+            case BINARY_DIGITAL:
+                column.appendBoolean(batch.getBoolean(index, row));
+                break;
+            default:
+                column.appendCoded(batch.getObjectColumn(index)[row]);
+            }
+        }
+    }
+}
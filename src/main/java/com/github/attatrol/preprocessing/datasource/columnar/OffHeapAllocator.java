@@ -0,0 +1,257 @@
+package com.github.attatrol.preprocessing.datasource.columnar;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Allocates chunks of memory outside of heap for {@link OffHeapColumn}s, chunks are
+ * at most {@link #CHUNK_SIZE} bytes long. Chunks are direct buffers while their total size fits into the budget, after that
+ * chunks are mapped regions of a temporary spill file, so the operating system may
+ * page them out to disk.<br/>
+ * Closing the allocator frees direct buffers, unmaps spilled chunks and deletes the spill
+ * file at once, so chunks must not be used after that. If the running JVM gives no access
+ * to buffer cleaners, chunks are left to the garbage collector.
+ * @author atta_troll
+ *
+ */
+public class OffHeapAllocator implements Closeable {
+
+    /**
+     * Maximal size of a chunk in bytes.
+     */
+    public static final int CHUNK_SIZE = 1 << 22;
+
+    /**
+     * Frees a direct or mapped buffer, {@code null} if the JVM gives no access to cleaners.
+     */
+    private static final BufferCleaner CLEANER = createCleaner();
+
+    /**
+     * Maximal total size of direct buffers in bytes.
+     */
+    private final long budget;
+
+    /**
+     * Directory of the spill file, {@code null} for the default temporary directory.
+     */
+    private final File spillDirectory;
+
+    /**
+     * Total size of allocated direct buffers.
+     */
+    private long directSize;
+
+    /**
+     * Total size of mapped regions of the spill file.
+     */
+    private long spilledSize;
+
+    /**
+     * Spill file, {@code null} if nothing is spilled.
+     */
+    private File spillFile;
+
+    /**
+     * Channel of the spill file.
+     */
+    private FileChannel spillChannel;
+
+    /**
+     * All allocated chunks with flags of being spilled, buffers are compared by identity
+     * because {@link ByteBuffer#equals(Object)} compares their contents.
+     */
+    private final Map<ByteBuffer, Boolean> chunks = new IdentityHashMap<>();
+
+    /**
+     * Flag of being closed.
+     */
+    private boolean isClosed;
+
+    /**
+     * Default ctor.
+     * @param budget maximal total size of direct buffers in bytes, zero to spill everything
+     * @param spillDirectory directory of the spill file, {@code null} for the default
+     *        temporary directory
+     * @throws IllegalArgumentException if budget is negative
+     */
+    public OffHeapAllocator(long budget, File spillDirectory) throws IllegalArgumentException {
+        if (budget < 0) {
+            throw new IllegalArgumentException("Budget must not be negative.");
+        }
+        this.budget = budget;
+        this.spillDirectory = spillDirectory;
+    }
+
+    /**
+     * Allocates a zeroed chunk of maximal size with native byte order.
+     * @return chunk of {@link #CHUNK_SIZE} bytes
+     * @throws IOException on failure to extend the spill file
+     */
+    public ByteBuffer allocate() throws IOException {
+        return allocate(CHUNK_SIZE);
+    }
+
+    /**
+     * Allocates a zeroed chunk with native byte order.
+     * @param size size of the chunk in bytes
+     * @return chunk of the size
+     * @throws IOException on failure to extend the spill file
+     * @throws IllegalArgumentException if size is not positive or exceeds {@link #CHUNK_SIZE}
+     */
+    public synchronized ByteBuffer allocate(int size) throws IOException, IllegalArgumentException {
+        if (isClosed) {
+            throw new IllegalStateException("Illegal access to closed resource");
+        }
+        if (size <= 0 || size > CHUNK_SIZE) {
+            throw new IllegalArgumentException(String.format(
+                    "Chunk size %d is out of range [1, %d].", size, CHUNK_SIZE));
+        }
+        final ByteBuffer chunk;
+        final boolean isSpilled = directSize + size > budget;
+        if (!isSpilled) {
+            chunk = ByteBuffer.allocateDirect(size);
+            directSize += size;
+        }
+        else {
+            if (spillChannel == null) {
+                spillFile = File.createTempFile("columns", ".spill", spillDirectory);
+                spillFile.deleteOnExit();
+                spillChannel = FileChannel.open(spillFile.toPath(), StandardOpenOption.READ,
+                        StandardOpenOption.WRITE);
+            }
+            chunk = spillChannel.map(FileChannel.MapMode.READ_WRITE, spilledSize, size);
+            spilledSize += size;
+        }
+        chunks.put(chunk, isSpilled);
+        return chunk.order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Frees a chunk before the allocator is closed, the chunk must not be used after that.
+     * Memory of a direct chunk returns to the budget, a spilled chunk is unmapped
+     * but its region of the spill file is not reused.
+     * @param chunk chunk allocated by this allocator
+     * @throws IllegalArgumentException if chunk is not allocated by this allocator
+     */
+    public synchronized void free(ByteBuffer chunk) throws IllegalArgumentException {
+        if (isClosed) {
+            throw new IllegalStateException("Illegal access to closed resource");
+        }
+        final Boolean isSpilled = chunks.remove(chunk);
+        if (isSpilled == null) {
+            throw new IllegalArgumentException("Chunk is not allocated by this allocator.");
+        }
+        if (!isSpilled) {
+            directSize -= chunk.capacity();
+        }
+        if (CLEANER != null) {
+            CLEANER.clean(chunk);
+        }
+    }
+
+    /**
+     * @return total size of direct buffers in bytes
+     */
+    public synchronized long getDirectSize() {
+        return directSize;
+    }
+
+    /**
+     * @return total size of chunks spilled to disk in bytes
+     */
+    public synchronized long getSpilledSize() {
+        return spilledSize;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (!isClosed) {
+            isClosed = true;
+            if (CLEANER != null) {
+                for (ByteBuffer chunk : chunks.keySet()) {
+                    CLEANER.clean(chunk);
+                }
+            }
+            chunks.clear();
+            if (spillChannel != null) {
+                spillChannel.close();
+                spillFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Finds a way to free buffers explicitly: {@code Unsafe.invokeCleaner} since Java 9,
+     * cleaner of {@code sun.nio.ch.DirectBuffer} on Java 8.
+     * @return cleaner of buffers, {@code null} if there is no accessible one
+     */
+    private static BufferCleaner createCleaner() {
+        try {
+            final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            final Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            final Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            final Object unsafe = field.get(null);
+            return buffer -> invokeCleaner.invoke(unsafe, buffer);
+        }
+        catch (ReflectiveOperationException | RuntimeException ex) {
+            // Java 8, try its cleaner
+        }
+        try {
+            final Method cleanerMethod = Class.forName("sun.nio.ch.DirectBuffer")
+                    .getMethod("cleaner");
+            final Method cleanMethod = Class.forName("sun.misc.Cleaner").getMethod("clean");
+            return buffer -> {
+                final Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    cleanMethod.invoke(cleaner);
+                }
+            };
+        }
+        catch (ReflectiveOperationException | RuntimeException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Frees memory of a buffer.
+     * @author atta_troll
+     *
+     */
+    @FunctionalInterface
+    private interface BufferCleaner {
+
+        /**
+         * Frees memory of a buffer, failures are ignored because
+         * the garbage collector frees the buffer later anyway.
+         * @param buffer direct or mapped buffer
+         */
+        default void clean(ByteBuffer buffer) {
+            try {
+                invoke(buffer);
+            }
+            catch (ReflectiveOperationException | RuntimeException ex) {
+                // left to garbage collector
+            }
+        }
+
+        /**
+         * Frees memory of a buffer.
+         * @param buffer direct or mapped buffer
+         * @throws ReflectiveOperationException on failure of reflective call
+         */
+        void invoke(ByteBuffer buffer) throws ReflectiveOperationException;
+    }
+}
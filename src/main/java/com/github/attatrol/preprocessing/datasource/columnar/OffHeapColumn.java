@@ -0,0 +1,163 @@
+package com.github.attatrol.preprocessing.datasource.columnar;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.github.attatrol.preprocessing.datasource.parsing.TokenType;
+
+/**
+ * Column that keeps its {@code int} and {@code double} values in chunks
+ * provided by an {@link OffHeapAllocator}: {@link TokenType#INTEGER} values and dictionary
+ * codes take 4 bytes, {@link TokenType#FLOAT} values take 8 bytes.
+ * Bit sets of binary values and missing marks stay in heap, they take a bit per value.<br/>
+ * The first chunk is sized from the expected number of values, or starts small and is doubled
+ * when it is full, so small columns don't take a whole {@link OffHeapAllocator#CHUNK_SIZE}.
+ * @author atta_troll
+ *
+ */
+public class OffHeapColumn extends Column {
+
+    /**
+     * Minimal size of the first chunk in bytes.
+     */
+    private static final int MIN_FIRST_CHUNK_SIZE = 1 << 16;
+
+    /**
+     * Allocator of chunks.
+     */
+    private final OffHeapAllocator allocator;
+
+    /**
+     * Chunks of values.
+     */
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+
+    /**
+     * Binary logarithm of the size of a value in bytes.
+     */
+    private final int valueShift;
+
+    /**
+     * Binary logarithm of the number of values in a chunk.
+     */
+    private final int chunkShift;
+
+    /**
+     * Size of the first chunk in bytes when it is allocated.
+     */
+    private final int firstChunkSize;
+
+    /**
+     * Ctor for a column with unknown number of values.
+     * @param type token type of the column
+     * @param allocator allocator of chunks
+     */
+    public OffHeapColumn(TokenType type, OffHeapAllocator allocator) {
+        this(type, allocator, 0L);
+    }
+
+    /**
+     * Default ctor.
+     * @param type token type of the column
+     * @param allocator allocator of chunks
+     * @param expectedSize expected number of values, non positive if unknown
+     */
+    public OffHeapColumn(TokenType type, OffHeapAllocator allocator, long expectedSize) {
+        super(type);
+        this.allocator = allocator;
+        valueShift = type == TokenType.FLOAT ? 3 : 2;
+        chunkShift = Integer.numberOfTrailingZeros(OffHeapAllocator.CHUNK_SIZE) - valueShift;
+        int size = MIN_FIRST_CHUNK_SIZE;
+        while (size < OffHeapAllocator.CHUNK_SIZE && (long) size >>> valueShift < expectedSize) {
+            size <<= 1;
+        }
+        firstChunkSize = Math.min(size, OffHeapAllocator.CHUNK_SIZE);
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws UncheckedIOException on failure to allocate a chunk
+     */
+    @Override
+    protected void storeInt(int row, int value) throws UncheckedIOException {
+        getChunk(row).putInt(getOffset(row), value);
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws UncheckedIOException on failure to allocate a chunk
+     */
+    @Override
+    protected void storeDouble(int row, double value) throws UncheckedIOException {
+        getChunk(row).putDouble(getOffset(row), value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected int loadInt(int row) {
+        return chunks.get(row >>> chunkShift).getInt(getOffset(row));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected double loadDouble(int row) {
+        return chunks.get(row >>> chunkShift).getDouble(getOffset(row));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected long getStorageFootprint() {
+        long result = 0L;
+        for (ByteBuffer chunk : chunks) {
+            result += chunk.capacity();
+        }
+        return result;
+    }
+
+    /**
+     * @param row index of a value
+     * @return offset of the value in its chunk
+     */
+    private int getOffset(int row) {
+        return (row & ((1 << chunkShift) - 1)) << valueShift;
+    }
+
+    /**
+     * Returns chunk of a value, allocates it when the first value of the chunk is stored.
+     * The first chunk is replaced with a twice larger copy when the value doesn't fit into it.
+     * @param row index of the value
+     * @return chunk of the value
+     * @throws UncheckedIOException on failure to allocate a chunk
+     */
+    private ByteBuffer getChunk(int row) throws UncheckedIOException {
+        final int index = row >>> chunkShift;
+        try {
+            if (index == chunks.size()) {
+                chunks.add(allocator.allocate(index == 0 ? firstChunkSize
+                        : OffHeapAllocator.CHUNK_SIZE));
+            }
+            else if (index == 0 && getOffset(row) >= chunks.get(0).capacity()) {
+                final ByteBuffer chunk = chunks.get(0);
+                final ByteBuffer grown = allocator.allocate(Math.min(chunk.capacity() * 2,
+                        OffHeapAllocator.CHUNK_SIZE));
+                chunk.clear();
+                grown.put(chunk).clear();
+                chunks.set(0, grown);
+                allocator.free(chunk);
+            }
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return chunks.get(index);
+    }
+}
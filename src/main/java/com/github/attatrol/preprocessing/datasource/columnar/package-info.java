@@ -0,0 +1,6 @@
+/**
+ * Contains columnar storage of parsed tokens, used to serve repeated passes over a token
+ * data source without tokenization and parsing: columns in heap or off-heap memory
+ * and columnar files.
+ */
+package com.github.attatrol.preprocessing.datasource.columnar;
@@ -51,6 +51,11 @@ public enum TokenType {
      */
     private static Map<TokenType, TokenType[]> hasseDiagram;
 
+    /**
+     * Closest common ancestors of all pairs of token types indexed by their ordinals.
+     */
+    private static TokenType[][] commonAncestors;
+
     /**
      * Token types that can be parsed as this type.
      */
@@ -87,6 +92,7 @@ public enum TokenType {
                 EnumSet.of(MISSING, BINARY_DIGITAL, INTEGER, FLOAT, BINARY, CATEGORICAL_STRING));
 
         hasseDiagram = generateHasseDiagram();
+        commonAncestors = generateCommonAncestors();
     }
 
     /**
@@ -128,7 +134,7 @@ public enum TokenType {
     }
 
     /**
-     * Finds closest common ancestor using Hasse diagram.
+     * Returns closest common ancestor from the table precomputed with Hasse diagram.
      * 
      * @param type1
      *        some token type nonnull
@@ -137,6 +143,19 @@ public enum TokenType {
      * @return closest common ancestor of type1 and type2
      */
     public static TokenType getClosestCommonAncestor(TokenType type1, TokenType type2) {
+        return commonAncestors[type1.ordinal()][type2.ordinal()];
+    }
+
+    /**
+     * Finds closest common ancestor using Hasse diagram.
+     * 
+     * @param type1
+     *        some token type nonnull
+     * @param type2
+     *        some token type nonnull
+     * @return closest common ancestor of type1 and type2
+     */
+    private static TokenType findClosestCommonAncestor(TokenType type1, TokenType type2) {
         if (type1 == type2) {
             return type1;
         }
@@ -148,7 +167,7 @@ public enum TokenType {
         }
         else {
             for (TokenType ancestor1 : hasseDiagram.get(type1)) {
-                final TokenType commonAncestor = getClosestCommonAncestor(ancestor1, type2);
+                final TokenType commonAncestor = findClosestCommonAncestor(ancestor1, type2);
                 if (commonAncestor != null) {
                     return commonAncestor;
                 }
@@ -193,6 +212,22 @@ public enum TokenType {
         return result;
     }
 
+    /**
+     * Generates table of closest common ancestors of all pairs of token types.
+     * 
+     * @return table indexed by ordinals of token types
+     */
+    private static TokenType[][] generateCommonAncestors() {
+        final TokenType[] types = TokenType.values();
+        final TokenType[][] result = new TokenType[types.length][types.length];
+        for (TokenType type1 : types) {
+            for (TokenType type2 : types) {
+                result[type1.ordinal()][type2.ordinal()] = findClosestCommonAncestor(type1, type2);
+            }
+        }
+        return result;
+    }
+
     /**
      * Calculates longest possible path from token to token in ordered Hasse diagram.
      * 
@@ -0,0 +1,154 @@
+package com.github.attatrol.preprocessing.datasource.parsing;
+
+import java.util.Arrays;
+
+/**
+ * Mergeable state of token type inference over a part of a data source.
+ * Tracks the closest common ancestor of token types, presence of omissions and
+ * the record length, so parts may be processed independently and merged in any order,
+ * since {@link TokenType#getClosestCommonAncestor(TokenType, TokenType)}
+ * is commutative and associative.<br/>
+ * Number of columns grows with record length, a record shorter than the longest one
+ * has omissions in the missing columns.
+ * @author atta_troll
+ *
+ */
+final class TokenTypeAccumulator {
+
+    /**
+     * Identifier of token types.
+     */
+    private final TokenTypeIdentifier identifier;
+
+    /**
+     * Closest common ancestors of token types of columns,
+     * an element is {@code null} if column has no non-missing tokens.
+     */
+    private TokenType[] types = new TokenType[0];
+
+    /**
+     * Flags of missing tokens in columns.
+     */
+    private boolean[] omissions = new boolean[0];
+
+    /**
+     * Numbers of non-missing tokens of columns.
+     */
+    private long[] tokenNumbers = new long[0];
+
+    /**
+     * Numbers of records that contain columns.
+     */
+    private long[] presenceNumbers = new long[0];
+
+    /**
+     * Number of accumulated records.
+     */
+    private long recordNumber;
+
+    /**
+     * Default ctor.
+     * @param identifier identifier of token types
+     */
+    TokenTypeAccumulator(TokenTypeIdentifier identifier) {
+        this.identifier = identifier;
+    }
+
+    /**
+     * Adds tokens of a record.
+     * @param tokens raw tokens
+     */
+    void add(Object[] tokens) {
+        ensureLength(tokens.length);
+        recordNumber++;
+        for (int i = 0; i < tokens.length; i++) {
+            presenceNumbers[i]++;
+            if (tokens[i] == null) {
+                omissions[i] = true;
+            }
+            else {
+                tokenNumbers[i]++;
+                types[i] = join(types[i], identifier.detectTokenType(tokens[i]));
+            }
+        }
+    }
+
+    /**
+     * Merges other accumulator into this one.
+     * @param other accumulator of another part
+     * @return this accumulator
+     */
+    TokenTypeAccumulator merge(TokenTypeAccumulator other) {
+        ensureLength(other.types.length);
+        for (int i = 0; i < other.types.length; i++) {
+            types[i] = join(types[i], other.types[i]);
+            omissions[i] |= other.omissions[i];
+            tokenNumbers[i] += other.tokenNumbers[i];
+            presenceNumbers[i] += other.presenceNumbers[i];
+        }
+        recordNumber += other.recordNumber;
+        return this;
+    }
+
+    /**
+     * @return length of the longest record
+     */
+    int getRecordLength() {
+        return types.length;
+    }
+
+    /**
+     * @return number of accumulated records
+     */
+    long getRecordNumber() {
+        return recordNumber;
+    }
+
+    /**
+     * @return numbers of non-missing tokens of columns
+     */
+    long[] getTokenNumbers() {
+        return tokenNumbers.clone();
+    }
+
+    /**
+     * @return new token features of columns
+     */
+    TokenFeatures[] getTokenFeatures() {
+        final TokenFeatures[] features = new TokenFeatures[types.length];
+        for (int i = 0; i < types.length; i++) {
+            features[i] = new TokenFeatures();
+            features[i].setType(types[i]);
+            features[i].setHasOmissions(omissions[i] || presenceNumbers[i] < recordNumber);
+        }
+        return features;
+    }
+
+    /**
+     * Grows arrays of columns.
+     * @param length record length
+     */
+    private void ensureLength(int length) {
+        if (length > types.length) {
+            types = Arrays.copyOf(types, length);
+            omissions = Arrays.copyOf(omissions, length);
+            tokenNumbers = Arrays.copyOf(tokenNumbers, length);
+            presenceNumbers = Arrays.copyOf(presenceNumbers, length);
+        }
+    }
+
+    /**
+     * @param type1 token type or {@code null}
+     * @param type2 token type or {@code null}
+     * @return closest common ancestor of non-null types
+     */
+    private static TokenType join(TokenType type1, TokenType type2) {
+        if (type1 == null) {
+            return type2;
+        }
+        if (type2 == null) {
+            return type1;
+        }
+        return TokenType.getClosestCommonAncestor(type1, type2);
+    }
+}
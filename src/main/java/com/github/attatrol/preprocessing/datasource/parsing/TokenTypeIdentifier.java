@@ -1,9 +1,9 @@
 package com.github.attatrol.preprocessing.datasource.parsing;
 
 import java.io.IOException;
-import java.util.Arrays;
 
 import com.github.attatrol.preprocessing.datasource.DataSource;
+import com.github.attatrol.preprocessing.datasource.SplittableDataSource;
 import com.github.attatrol.preprocessing.datasource.TitledDataSource;
 import com.github.attatrol.preprocessing.datasource.TokenDataSourceUtils;
 import com.github.attatrol.preprocessing.datasource.parsing.record.RecordTokenizer;
@@ -26,7 +26,10 @@ public interface TokenTypeIdentifier {
 	TokenType detectTokenType(Object token);
 
     /**
-     * Defines {@link #TokenType} for tokens of this data source.
+     * Defines {@link #TokenType} for tokens of this data source in a single pass,
+     * which also finds the record length. Splittable data source is processed in parallel,
+     * types of parts are merged by their closest common ancestor, so result is the same
+     * as of the sequential pass.
      * @param source current raw data source
      * @param tokenizer {@link RecordTokenizer} used to split raw records
      * @param identifier {@link TokenTypeIdentifier} used to identify raw records
@@ -35,34 +38,12 @@ public interface TokenTypeIdentifier {
      */
     static <V> TokenFeatures[] defineTokenTypes(DataSource<V> source,
             RecordTokenizer<? super V, ?> tokenizer, TokenTypeIdentifier identifier) throws IOException {
-        final int maximalRecordLength = TokenDataSourceUtils.getRecordCardinality(source, tokenizer);
-        TokenFeatures[] features = new TokenFeatures[maximalRecordLength];
-        for (int i = 0; i < features.length; i++) {
-            features[i] = new TokenFeatures();
-        }
-        source.reset();
-        while (source.hasNext()) {
-            Object[] tokens = tokenizer.tokenize(source.next().getData());
-            if (tokens.length < maximalRecordLength) {
-                tokens = Arrays.copyOf(tokens, maximalRecordLength);
-            }
-            for (int i = 0; i < tokens.length; i++) {
-                if (tokens[i] == null) {
-                    features[i].setHasOmissions(true);
-                }
-                else {
-                    TokenType type = identifier.detectTokenType(tokens[i]);
-                    if (features[i].getType() == null) {
-                        features[i].setType(type);
-                    }
-                    else {
-                        features[i].setType(TokenType.getClosestCommonAncestor(
-                                features[i].getType(), type));
-                    }
-                }
-            }
-        }
-        return features;
+        final TokenTypeAccumulator accumulator = SplittableDataSource.reduce(source,
+            TokenDataSourceUtils.DEFAULT_PARTS_NUMBER,
+            () -> new TokenTypeAccumulator(identifier),
+            (partAccumulator, record) -> partAccumulator.add(tokenizer.tokenize(record.getData())),
+            TokenTypeAccumulator::merge);
+        return accumulator.getTokenFeatures();
     }
 
     /**
@@ -79,7 +60,7 @@ public interface TokenTypeIdentifier {
     static <V> TokenFeatures[] defineTokenTypes(TitledDataSource<V> source,
             RecordTokenizer<? super V, ?> tokenizer,
             TokenTypeIdentifier identifier,
-            RecordTokenizer<String, String> titleTokenizer) throws IOException {
+            RecordTokenizer<? super String, String> titleTokenizer) throws IOException {
         TokenFeatures[] features = defineTokenTypes(source, tokenizer, identifier);
         final String rawTitles = source.getTitles();
         if (rawTitles != null) {
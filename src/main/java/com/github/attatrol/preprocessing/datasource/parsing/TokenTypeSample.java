@@ -0,0 +1,309 @@
+package com.github.attatrol.preprocessing.datasource.parsing;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import com.github.attatrol.preprocessing.datasource.DataSource;
+import com.github.attatrol.preprocessing.datasource.SplittableDataSource;
+import com.github.attatrol.preprocessing.datasource.TitledDataSource;
+import com.github.attatrol.preprocessing.datasource.parsing.record.RecordTokenizer;
+
+/**
+ * Token features inferred from a sample of records, a fast alternative to
+ * {@link TokenTypeIdentifier#defineTokenTypes(DataSource, RecordTokenizer, TokenTypeIdentifier)}
+ * that reads the whole data source twice.<br/>
+ * Splittable data source is split into {@link #SAMPLE_PARTS_NUMBER} parts that start
+ * at evenly spaced positions, for example byte offsets of a text file, and the sample
+ * is taken from the beginnings of all parts. Other data sources are sampled from their beginning.<br/>
+ * Every column has a confidence that its type holds for the whole data source, see
+ * {@link #getErrorBound(int, double)}. A full pass may be run later by
+ * {@link #validate(DataSource, RecordTokenizer, TokenTypeIdentifier)}, it upgrades
+ * or downgrades the types of columns found by {@link #findMismatches(TokenFeatures[])}.
+ * @author atta_troll
+ *
+ */
+public class TokenTypeSample {
+
+    /**
+     * Default number of sampled records.
+     */
+    public static final int DEFAULT_SAMPLE_SIZE = 10000;
+
+    /**
+     * Default probability that the error bound fails.
+     */
+    public static final double DEFAULT_SIGNIFICANCE = 0.05;
+
+    /**
+     * Number of parts of a splittable data source the sample is taken from.
+     */
+    public static final int SAMPLE_PARTS_NUMBER = 64;
+
+    /**
+     * Inferred token features.
+     */
+    private final TokenFeatures[] features;
+
+    /**
+     * Numbers of sampled non-missing tokens of columns.
+     */
+    private final long[] tokenNumbers;
+
+    /**
+     * Number of sampled records.
+     */
+    private final long recordNumber;
+
+    /**
+     * Flag of sample covering the whole data source.
+     */
+    private final boolean isExhaustive;
+
+    /**
+     * Default ctor.
+     * @param features inferred token features
+     * @param tokenNumbers numbers of sampled non-missing tokens of columns
+     * @param recordNumber number of sampled records
+     * @param isExhaustive flag of sample covering the whole data source
+     */
+    private TokenTypeSample(TokenFeatures[] features, long[] tokenNumbers, long recordNumber,
+            boolean isExhaustive) {
+        this.features = features;
+        this.tokenNumbers = tokenNumbers;
+        this.recordNumber = recordNumber;
+        this.isExhaustive = isExhaustive;
+    }
+
+    /**
+     * Infers token features from a sample of records of the data source.
+     * @param source current raw data source
+     * @param tokenizer {@link RecordTokenizer} used to split raw records
+     * @param identifier {@link TokenTypeIdentifier} used to identify raw records
+     * @param sampleSize maximal number of sampled records
+     * @return the sample
+     * @throws IOException on i/o error of data source
+     * @throws IllegalArgumentException if sample size is not positive
+     */
+    public static <V> TokenTypeSample collect(DataSource<V> source,
+            RecordTokenizer<? super V, ?> tokenizer, TokenTypeIdentifier identifier,
+            int sampleSize) throws IOException, IllegalArgumentException {
+        if (sampleSize < 1) {
+            throw new IllegalArgumentException("Sample size must be positive.");
+        }
+        final TokenTypeAccumulator accumulator = new TokenTypeAccumulator(identifier);
+        boolean isExhaustive = true;
+        if (source instanceof SplittableDataSource
+                && ((SplittableDataSource<V>) source).isSplittable()) {
+            final List<? extends DataSource<V>> parts =
+                    ((SplittableDataSource<V>) source).split(SAMPLE_PARTS_NUMBER);
+            try {
+                final int partSampleSize = (sampleSize + parts.size() - 1) / parts.size();
+                for (DataSource<V> part : parts) {
+                    isExhaustive &= addRecords(accumulator, part, tokenizer, partSampleSize);
+                }
+            }
+            finally {
+                SplittableDataSource.closeParts(parts);
+            }
+        }
+        else {
+            source.reset();
+            isExhaustive = addRecords(accumulator, source, tokenizer, sampleSize);
+        }
+        source.reset();
+        return new TokenTypeSample(accumulator.getTokenFeatures(),
+                accumulator.getTokenNumbers(), accumulator.getRecordNumber(), isExhaustive);
+    }
+
+    /**
+     * Infers token features from a sample of records of the data source.<br/>
+     * Use this instead of {@link #collect(DataSource, RecordTokenizer, TokenTypeIdentifier, int)}
+     * if your data source is a {@link TitledDataSource}.
+     * @param source current raw data source
+     * @param tokenizer {@link RecordTokenizer} used to split raw records
+     * @param identifier {@link TokenTypeIdentifier} used to identify raw records
+     * @param titleTokenizer used to parse raw title into token titles
+     * @param sampleSize maximal number of sampled records
+     * @return the sample
+     * @throws IOException on i/o error of data source
+     * @throws IllegalArgumentException if sample size is not positive
+     */
+    public static <V> TokenTypeSample collect(TitledDataSource<V> source,
+            RecordTokenizer<? super V, ?> tokenizer, TokenTypeIdentifier identifier,
+            RecordTokenizer<? super String, String> titleTokenizer, int sampleSize)
+            throws IOException, IllegalArgumentException {
+        final TokenTypeSample sample = collect(source, tokenizer, identifier, sampleSize);
+        final String rawTitles = source.getTitles();
+        if (rawTitles != null) {
+            copyTitles(titleTokenizer.tokenize(rawTitles), sample.features);
+        }
+        return sample;
+    }
+
+    /**
+     * Defines token features by a full pass over a data source on the common fork-join pool,
+     * the same pool the pass uses for its parts.
+     * @param source current raw data source
+     * @param tokenizer {@link RecordTokenizer} used to split raw records
+     * @param identifier {@link TokenTypeIdentifier} used to identify raw records
+     * @return future token features of the whole data source
+     * @see #validate(DataSource, RecordTokenizer, TokenTypeIdentifier, Executor)
+     */
+    public <V> CompletableFuture<TokenFeatures[]> validate(DataSource<V> source,
+            RecordTokenizer<? super V, ?> tokenizer, TokenTypeIdentifier identifier) {
+        return validate(source, tokenizer, identifier, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Defines token features by a full pass over a data source on an executor.
+     * Titles of the sample are kept. Data source is used by the executor only,
+     * so it should be a separate instance of the sampled data source, the caller closes it
+     * after the result is completed. Columns whose sampled types are wrong are found by
+     * {@link #findMismatches(TokenFeatures[])}.
+     * @param source current raw data source
+     * @param tokenizer {@link RecordTokenizer} used to split raw records
+     * @param identifier {@link TokenTypeIdentifier} used to identify raw records
+     * @param executor executor of the pass
+     * @return future token features of the whole data source,
+     *         completed exceptionally with {@link UncheckedIOException} on i/o error
+     */
+    public <V> CompletableFuture<TokenFeatures[]> validate(DataSource<V> source,
+            RecordTokenizer<? super V, ?> tokenizer, TokenTypeIdentifier identifier,
+            Executor executor) {
+        final String[] titles = new String[features.length];
+        for (int i = 0; i < features.length; i++) {
+            titles[i] = features[i].getTitle();
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                final TokenFeatures[] validatedFeatures =
+                        TokenTypeIdentifier.defineTokenTypes(source, tokenizer, identifier);
+                copyTitles(titles, validatedFeatures);
+                return validatedFeatures;
+            }
+            catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }, executor);
+    }
+
+    /**
+     * Compares sampled types with types of a full pass.
+     * @param validatedFeatures token features of the whole data source,
+     *        see {@link #validate(DataSource, RecordTokenizer, TokenTypeIdentifier, Executor)}
+     * @return indexes of tokens whose sampled type differs, including tokens
+     *         that are absent from the sample
+     */
+    public int[] findMismatches(TokenFeatures[] validatedFeatures) {
+        final List<Integer> mismatches = new ArrayList<>();
+        for (int i = 0; i < validatedFeatures.length; i++) {
+            if (i >= features.length || features[i].getType() != validatedFeatures[i].getType()) {
+                mismatches.add(i);
+            }
+        }
+        final int[] result = new int[mismatches.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = mismatches.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * @return inferred token features
+     */
+    public TokenFeatures[] getTokenFeatures() {
+        return features;
+    }
+
+    /**
+     * @return number of sampled records
+     */
+    public long getRecordNumber() {
+        return recordNumber;
+    }
+
+    /**
+     * @param index index of the token in record
+     * @return number of sampled non-missing tokens
+     */
+    public long getTokenNumber(int index) {
+        return tokenNumbers[index];
+    }
+
+    /**
+     * @return {@code true} if the sample covers the whole data source,
+     *         so inferred features are exact
+     */
+    public boolean isExhaustive() {
+        return isExhaustive;
+    }
+
+    /**
+     * Calculates an upper bound of the share of tokens of a column in the whole data source
+     * that don't match the inferred type. If none of n sampled tokens contradicts the type,
+     * the bound is ln(1 / significance) / n, that is the rule of three for 5% significance.
+     * It assumes that sampled tokens are independent, so it is approximate for records sampled
+     * in blocks.
+     * @param index index of the token in record
+     * @param significance probability that the bound fails
+     * @return upper bound of the share of mismatching tokens, 0 if the sample is exhaustive
+     * @throws IllegalArgumentException if significance is not in (0, 1)
+     */
+    public double getErrorBound(int index, double significance) throws IllegalArgumentException {
+        if (!(significance > 0. && significance < 1.)) {
+            throw new IllegalArgumentException("Significance must be in (0, 1).");
+        }
+        if (isExhaustive) {
+            return 0.;
+        }
+        if (tokenNumbers[index] == 0) {
+            return 1.;
+        }
+        return Math.min(1., -Math.log(significance) / tokenNumbers[index]);
+    }
+
+    /**
+     * @param index index of the token in record
+     * @return confidence that the inferred type of the column matches almost all its tokens,
+     *         it is one minus the error bound for {@link #DEFAULT_SIGNIFICANCE}
+     */
+    public double getConfidence(int index) {
+        return 1. - getErrorBound(index, DEFAULT_SIGNIFICANCE);
+    }
+
+    /**
+     * Adds first records of a data source to an accumulator.
+     * @param accumulator the accumulator
+     * @param source data source at its first record
+     * @param tokenizer splits raw records
+     * @param number maximal number of records
+     * @return {@code true} if all records of data source are added
+     * @throws IOException on i/o error of data source
+     */
+    private static <V> boolean addRecords(TokenTypeAccumulator accumulator, DataSource<V> source,
+            RecordTokenizer<? super V, ?> tokenizer, int number) throws IOException {
+        for (int added = 0; added < number; added++) {
+            if (!source.hasNext()) {
+                return true;
+            }
+            accumulator.add(tokenizer.tokenize(source.next().getData()));
+        }
+        return !source.hasNext();
+    }
+
+    /**
+     * Sets titles to features.
+     * @param titles titles of tokens
+     * @param features token features
+     */
+    private static void copyTitles(String[] titles, TokenFeatures[] features) {
+        for (int i = 0; i < features.length && i < titles.length; i++) {
+            features[i].setTitle(titles[i]);
+        }
+    }
+}
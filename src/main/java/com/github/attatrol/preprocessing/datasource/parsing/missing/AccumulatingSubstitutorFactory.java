@@ -0,0 +1,53 @@
+package com.github.attatrol.preprocessing.datasource.parsing.missing;
+
+import java.io.IOException;
+
+import com.github.attatrol.preprocessing.datasource.AbstractTokenDataSource;
+
+/**
+ * Factory of a {@link MissingTokenSubstitutor} that is fitted by a
+ * {@link SubstitutorAccumulator}, so it can share a pass over a data source
+ * with other factories.
+ * @author atta_troll
+ *
+ * @param <V> type of value to substitute
+ */
+public interface AccumulatingSubstitutorFactory<V> extends MissingTokenSubstitutorFactory<V> {
+
+    /**
+     * Creates an empty accumulator.
+     * @param index index of the token to substitute
+     * @return accumulator
+     */
+    SubstitutorAccumulator<V> createAccumulator(int index);
+
+    /**
+     * Creates an empty accumulator for a data source, factories whose substitutors
+     * depend on other tokens of records may look at the data source.
+     * @param dataSource token data source in use
+     * @param index index of the token to substitute
+     * @return accumulator
+     * @throws IllegalArgumentException if factory doesn't fit the data source
+     */
+    default SubstitutorAccumulator<V> createAccumulator(AbstractTokenDataSource<?> dataSource,
+            int index) throws IllegalArgumentException {
+        return createAccumulator(index);
+    }
+
+    /**
+     * Fits substitutor by its own pass over the data source.
+     * {@inheritDoc}
+     */
+    @Override
+    default MissingTokenSubstitutor<V> produceSubstitutor(AbstractTokenDataSource<?> dataSource,
+            int index) throws IOException, IllegalArgumentException {
+        final MissingTokenSubstitutorFactory<?>[] factories =
+                new MissingTokenSubstitutorFactory<?>[dataSource.getRecordLength()];
+        factories[index] = this;
+        @SuppressWarnings("unchecked")
+        final MissingTokenSubstitutor<V> substitutor =
+                (MissingTokenSubstitutor<V>) SubstitutorFitting.fit(dataSource, factories)[index];
+        return substitutor;
+    }
+
+}
@@ -0,0 +1,45 @@
+package com.github.attatrol.preprocessing.datasource.parsing.missing;
+
+import com.github.attatrol.preprocessing.datasource.Record;
+
+/**
+ * Substitutes the same value for any missing token, base of substitutors
+ * that find the value from the whole data source. As the value doesn't depend
+ * on records, such substitutor may be stored and restored without fitting.
+ * @author atta_troll
+ *
+ * @param <V> type of value to substitute
+ */
+public class ConstantTokenSubstitutor<V> extends MissingTokenSubstitutor<V> {
+
+	/**
+	 * Substituted value.
+	 */
+	private final V value;
+
+	/**
+	 * Default ctor.
+	 * @param index index of the missing token in a record
+	 * @param value substituted value
+	 */
+	public ConstantTokenSubstitutor(int index, V value) {
+		super(index);
+		this.value = value;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public V substitute(Record<? extends Object[]> tokens) {
+		return value;
+	}
+
+	/**
+	 * @return substituted value
+	 */
+	public V getValue() {
+		return value;
+	}
+
+}
@@ -1,22 +1,12 @@
 package com.github.attatrol.preprocessing.datasource.parsing.missing;
 
-import java.io.IOException;
-
-import com.github.attatrol.preprocessing.datasource.AbstractTokenDataSource;
-import com.github.attatrol.preprocessing.datasource.Record;
-
 /**
  * Simply returns expected value for any of missing token,
  * if all values are omitted, returns zero.
  * @author atta_troll
  *
  */
-public class ExpectedValueFloatSubstitutor extends MissingTokenSubstitutor<Double>{
-
-	/**
-	 * Expected value for some token.
-	 */
-	private Double expectedValue;
+public class ExpectedValueFloatSubstitutor extends ConstantTokenSubstitutor<Double> {
 
 	/**
 	 * Defaulr ctor
@@ -24,43 +14,74 @@ public class ExpectedValueFloatSubstitutor extends MissingTokenSubstitutor<Doubl
 	 * @param expectedValue expected value calculated from values of all non missing tokens
 	 */
 	public ExpectedValueFloatSubstitutor(int index, Double expectedValue) {
-		super(index);
-		this.expectedValue = expectedValue;
+		super(index, expectedValue);
 	}
 
 	/**
-	 * {@inheritDoc}
+	 * Factory class for {@link ExpectedValueFloatSubstitutor}
+	 * @author atta_troll
+	 *
 	 */
-	@Override
-	public Double substitute(Record<? extends Object[]> tokens) {
-		return expectedValue;
+	public static class Factory implements AccumulatingSubstitutorFactory<Double> {
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public SubstitutorAccumulator<Double> createAccumulator(int index) {
+			return new Accumulator(index);
+		}
+
 	}
 
 	/**
-	 * Factory class for {@link ExpectedValueFloatSubstitutor}
+	 * Sums non-missing values of a token.
 	 * @author atta_troll
 	 *
 	 */
-	public static class Factory implements MissingTokenSubstitutorFactory<Double> {
+	private static class Accumulator implements SubstitutorAccumulator<Double> {
 
 		/**
-		 * Factory method for {@link ExpectedValueFloatSubstitutor}.
-		 * {@inheritDoc}
-		 * 
+		 * Index of the token.
 		 */
+		private final int index;
+
+		/**
+		 * Sum of values.
+		 */
+		private double sum;
+
+		/**
+		 * Number of values.
+		 */
+		private long count;
+
+		/**
+		 * Default ctor.
+		 * @param index index of the token
+		 */
+		Accumulator(int index) {
+			this.index = index;
+		}
+
 		@Override
-		public MissingTokenSubstitutor<Double> produceSubstitutor(AbstractTokenDataSource<?> dataSource, int index)
-				throws IOException, IllegalArgumentException {
-			double sum = 0.;
-			long count = 0;
-			dataSource.reset();
-			while (dataSource.hasNext()) {
-				Object rawValue = dataSource.next().getData()[index];
-				if (rawValue != null) {
-					count++;
-					sum += (Double) rawValue;
-				}
+		public void accept(Object[] tokens) {
+			final Object rawValue = tokens[index];
+			if (rawValue != null) {
+				count++;
+				sum += (Double) rawValue;
 			}
+		}
+
+		@Override
+		public void merge(SubstitutorAccumulator<Double> other) {
+			final Accumulator accumulator = (Accumulator) other;
+			sum += accumulator.sum;
+			count += accumulator.count;
+		}
+
+		@Override
+		public MissingTokenSubstitutor<Double> finish() {
 			return new ExpectedValueFloatSubstitutor(index, count != 0 ? sum / count : 0.);
 		}
 
@@ -1,31 +1,15 @@
 package com.github.attatrol.preprocessing.datasource.parsing.missing;
 
-import java.io.IOException;
-
-import com.github.attatrol.preprocessing.datasource.AbstractTokenDataSource;
-import com.github.attatrol.preprocessing.datasource.Record;
-
 /**
  * Very basic integer value substitutor that returns expected value for any omitted integer,
  * if all values are omitted, returns zero.
  * @author atta_troll
  *
  */
-public class ExpectedValueIntegerSubstitutor extends MissingTokenSubstitutor<Integer> {
-
-	/**
-	 * Expected value
-	 */
-	private Integer expectedValue;
+public class ExpectedValueIntegerSubstitutor extends ConstantTokenSubstitutor<Integer> {
 
 	public ExpectedValueIntegerSubstitutor(int index, Integer expectedValue) {
-		super(index);
-		this.expectedValue = expectedValue;
-	}
-
-	@Override
-	public Integer substitute(Record<? extends Object[]> tokens) {
-		return expectedValue;
+		super(index, expectedValue);
 	}
 
 	/**
@@ -33,29 +17,67 @@ public class ExpectedValueIntegerSubstitutor extends MissingTokenSubstitutor<Int
 	 * @author atta_troll
 	 *
 	 */
-	public static class Factory implements MissingTokenSubstitutorFactory<Integer> {
+	public static class Factory implements AccumulatingSubstitutorFactory<Integer> {
 
 		/**
-		 * Factory method for {@link ExpectedValueIntegerSubstitutor}.
 		 * {@inheritDoc}
-		 * 
 		 */
 		@Override
-		public MissingTokenSubstitutor<Integer> produceSubstitutor(AbstractTokenDataSource<?> dataSource, int index)
-				throws IOException, IllegalArgumentException {
-			double sum = 0.;
-			long count = 0;
-			dataSource.reset();
-			while (dataSource.hasNext()) {
-				Object rawValue = dataSource.next().getData()[index];
-				if (rawValue != null) {
-					count++;
-					sum += (Integer) rawValue;
-				}
+		public SubstitutorAccumulator<Integer> createAccumulator(int index) {
+			return new Accumulator(index);
+		}
+	}
+
+	/**
+	 * Sums non-missing values of a token.
+	 * @author atta_troll
+	 *
+	 */
+	private static class Accumulator implements SubstitutorAccumulator<Integer> {
+
+		/**
+		 * Index of the token.
+		 */
+		private final int index;
+
+		/**
+		 * Sum of values.
+		 */
+		private double sum;
+
+		/**
+		 * Number of values.
+		 */
+		private long count;
+
+		/**
+		 * Default ctor.
+		 * @param index index of the token
+		 */
+		Accumulator(int index) {
+			this.index = index;
+		}
+
+		@Override
+		public void accept(Object[] tokens) {
+			final Object rawValue = tokens[index];
+			if (rawValue != null) {
+				count++;
+				sum += (Integer) rawValue;
 			}
+		}
+
+		@Override
+		public void merge(SubstitutorAccumulator<Integer> other) {
+			final Accumulator accumulator = (Accumulator) other;
+			sum += accumulator.sum;
+			count += accumulator.count;
+		}
+
+		@Override
+		public MissingTokenSubstitutor<Integer> finish() {
 			Integer calculatedValue = count != 0 ? ((int) Math.round(sum / count)) : 0;
-			return new ExpectedValueIntegerSubstitutor(
-					index, calculatedValue);
+			return new ExpectedValueIntegerSubstitutor(index, calculatedValue);
 		}
 	}
 
@@ -0,0 +1,838 @@
+package com.github.attatrol.preprocessing.datasource.parsing.missing;
+
+import java.util.Arrays;
+
+import com.github.attatrol.preprocessing.datasource.AbstractTokenDataSource;
+import com.github.attatrol.preprocessing.datasource.DefaultTokenDataSource;
+import com.github.attatrol.preprocessing.datasource.Record;
+import com.github.attatrol.preprocessing.datasource.columnar.CategoryDictionary;
+
+/**
+ * Substitutes a statistic of the group of a record for a missing token, groups are
+ * formed by values of key tokens of the same record. Groups of prefixes of keys form a tree:
+ * the root group holds all records, a child group adds a value of the next key to its parent.
+ * If the group of a record has fewer values than a minimal group size, is unknown or a key is
+ * missing, the statistic of the smallest enclosing group with enough values is used, so
+ * the root gives the global statistic.<br/>
+ * Values of keys are encoded into dense codes by {@link CategoryDictionary}s and a group
+ * is found by codes of its parent group and its key in a {@link LongIntHashMap},
+ * so substitution takes one hash lookup per key and allocates nothing.
+ * Statistics of all groups are aggregated in a single pass.<br/>
+ * Default keys are categorical tokens, a default key with more than
+ * {@link #DEFAULT_MAX_KEY_VALUES} distinct values, such as an identifier, is excluded
+ * during the pass and groups are aggregated again without it, records with this key missing
+ * are counted then only in groups of preceding keys. Keys set explicitly are never excluded.
+ * @author atta_troll
+ *
+ * @param <V> type of value to substitute
+ */
+public class GroupStatisticSubstitutor<V> extends MissingTokenSubstitutor<V> {
+
+    /**
+     * Default minimal number of values of a group whose statistic is used.
+     */
+    public static final int DEFAULT_MIN_GROUP_SIZE = 5;
+
+    /**
+     * Maximal number of distinct values of a default key.
+     */
+    public static final int DEFAULT_MAX_KEY_VALUES = 64;
+
+    /**
+     * Index of the root group.
+     */
+    private static final int ROOT = 0;
+
+    /**
+     * Indexes of key tokens.
+     */
+    private final int[] keyIndexes;
+
+    /**
+     * Dictionaries of values of key tokens.
+     */
+    private final CategoryDictionary[] dictionaries;
+
+    /**
+     * Indexes of groups by packed indexes of parent groups and key codes.
+     */
+    private final LongIntHashMap groups;
+
+    /**
+     * Substitution values of groups.
+     */
+    private final Object[] values;
+
+    /**
+     * Default ctor.
+     * @param index index of missing token
+     * @param keyIndexes indexes of key tokens
+     * @param dictionaries dictionaries of values of key tokens
+     * @param groups indexes of groups by packed indexes of parent groups and key codes
+     * @param values substitution values of groups
+     */
+    private GroupStatisticSubstitutor(int index, int[] keyIndexes,
+            CategoryDictionary[] dictionaries, LongIntHashMap groups, Object[] values) {
+        super(index);
+        this.keyIndexes = keyIndexes;
+        this.dictionaries = dictionaries;
+        this.groups = groups;
+        this.values = values;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public V substitute(Record<? extends Object[]> record) {
+        final Object[] tokens = record.getData();
+        int group = ROOT;
+        for (int i = 0; i < keyIndexes.length; i++) {
+            final Object key = tokens[keyIndexes[i]];
+            if (key == null) {
+                break;
+            }
+            final int code = dictionaries[i].getCode(key);
+            if (code < 0) {
+                break;
+            }
+            final int child = groups.get(pack(group, code));
+            if (child == LongIntHashMap.ABSENT) {
+                break;
+            }
+            group = child;
+        }
+        return (V) values[group];
+    }
+
+    /**
+     * @return indexes of key tokens
+     */
+    public int[] getKeyIndexes() {
+        return keyIndexes.clone();
+    }
+
+    /**
+     * @return number of groups including the root one
+     */
+    public int getGroupsNumber() {
+        return values.length;
+    }
+
+    /**
+     * @param group index of parent group
+     * @param code code of key value
+     * @return key of child group
+     */
+    private static long pack(int group, int code) {
+        return ((long) group << Integer.SIZE) | (code & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Factory class for {@link GroupStatisticSubstitutor} that substitutes
+     * mean of numeric values of a group, mean of integer values is rounded.
+     * @author atta_troll
+     *
+     * @param <V> type of value to substitute
+     */
+    public static class MeanFactory<V> extends AbstractFactory<V> {
+
+        /**
+         * Factory grouping by categorical tokens with default minimal group size.
+         */
+        public MeanFactory() {
+            this(DEFAULT_MIN_GROUP_SIZE);
+        }
+
+        /**
+         * Default ctor.
+         * @param minGroupSize minimal number of values of a group whose statistic is used
+         * @param keyIndexes indexes of key tokens in order of nesting of groups,
+         *        if there are none, keys are categorical tokens of data source with at most
+         *        {@link GroupStatisticSubstitutor#DEFAULT_MAX_KEY_VALUES} distinct values
+         * @throws IllegalArgumentException if minimal group size is not positive
+         *         or a key index is negative
+         */
+        public MeanFactory(int minGroupSize, int... keyIndexes) throws IllegalArgumentException {
+            super(Statistic.MEAN, minGroupSize, keyIndexes);
+        }
+    }
+
+    /**
+     * Factory class for {@link GroupStatisticSubstitutor} that substitutes
+     * median of numeric values of a group, it is estimated by a {@link QuantileSketch}.
+     * @author atta_troll
+     *
+     * @param <V> type of value to substitute
+     */
+    public static class MedianFactory<V> extends AbstractFactory<V> {
+
+        /**
+         * Factory grouping by categorical tokens with default minimal group size.
+         */
+        public MedianFactory() {
+            this(DEFAULT_MIN_GROUP_SIZE);
+        }
+
+        /**
+         * Default ctor.
+         * @param minGroupSize minimal number of values of a group whose statistic is used
+         * @param keyIndexes indexes of key tokens in order of nesting of groups,
+         *        if there are none, keys are categorical tokens of data source with at most
+         *        {@link GroupStatisticSubstitutor#DEFAULT_MAX_KEY_VALUES} distinct values
+         * @throws IllegalArgumentException if minimal group size is not positive
+         *         or a key index is negative
+         */
+        public MedianFactory(int minGroupSize, int... keyIndexes) throws IllegalArgumentException {
+            super(Statistic.MEDIAN, minGroupSize, keyIndexes);
+        }
+    }
+
+    /**
+     * Factory class for {@link GroupStatisticSubstitutor} that substitutes
+     * the most common value of a group.
+     * @author atta_troll
+     *
+     * @param <V> type of value to substitute
+     */
+    public static class ModeFactory<V> extends AbstractFactory<V> {
+
+        /**
+         * Factory grouping by categorical tokens with default minimal group size.
+         */
+        public ModeFactory() {
+            this(DEFAULT_MIN_GROUP_SIZE);
+        }
+
+        /**
+         * Default ctor.
+         * @param minGroupSize minimal number of values of a group whose statistic is used
+         * @param keyIndexes indexes of key tokens in order of nesting of groups,
+         *        if there are none, keys are categorical tokens of data source with at most
+         *        {@link GroupStatisticSubstitutor#DEFAULT_MAX_KEY_VALUES} distinct values
+         * @throws IllegalArgumentException if minimal group size is not positive
+         *         or a key index is negative
+         */
+        public ModeFactory(int minGroupSize, int... keyIndexes) throws IllegalArgumentException {
+            super(Statistic.MODE, minGroupSize, keyIndexes);
+        }
+    }
+
+    /**
+     * Statistic of a group.
+     */
+    private enum Statistic {
+        /**
+         * Mean of numeric values.
+         */
+        MEAN,
+        /**
+         * Median of numeric values.
+         */
+        MEDIAN,
+        /**
+         * The most common value.
+         */
+        MODE
+    }
+
+    /**
+     * Base of factories of different statistics.
+     * @author atta_troll
+     *
+     * @param <V> type of value to substitute
+     */
+    private abstract static class AbstractFactory<V> implements AccumulatingSubstitutorFactory<V> {
+
+        /**
+         * Statistic of groups.
+         */
+        private final Statistic statistic;
+
+        /**
+         * Minimal number of values of a group whose statistic is used.
+         */
+        private final int minGroupSize;
+
+        /**
+         * Indexes of key tokens, empty if keys are categorical tokens of data source.
+         */
+        private final int[] keyIndexes;
+
+        /**
+         * Default ctor.
+         * @param statistic statistic of groups
+         * @param minGroupSize minimal number of values of a group whose statistic is used
+         * @param keyIndexes indexes of key tokens, empty for categorical tokens of data source
+         * @throws IllegalArgumentException if minimal group size is not positive
+         *         or a key index is negative
+         */
+        AbstractFactory(Statistic statistic, int minGroupSize, int[] keyIndexes)
+                throws IllegalArgumentException {
+            if (minGroupSize < 1) {
+                throw new IllegalArgumentException("Minimal group size must be positive.");
+            }
+            for (int keyIndex : keyIndexes) {
+                if (keyIndex < 0) {
+                    throw new IllegalArgumentException("Key indexes must be non-negative.");
+                }
+            }
+            this.statistic = statistic;
+            this.minGroupSize = minGroupSize;
+            this.keyIndexes = keyIndexes.clone();
+        }
+
+        /**
+         * @return minimal number of values of a group whose statistic is used
+         */
+        public int getMinGroupSize() {
+            return minGroupSize;
+        }
+
+        /**
+         * @return indexes of key tokens, empty if keys are categorical tokens of data source
+         */
+        public int[] getKeyIndexes() {
+            return keyIndexes.clone();
+        }
+
+        /**
+         * Creates accumulator with set keys, without them
+         * substitutor uses only the global statistic.
+         * {@inheritDoc}
+         */
+        @Override
+        public SubstitutorAccumulator<V> createAccumulator(int index)
+                throws IllegalArgumentException {
+            return new Accumulator<>(index, checkKeys(index, keyIndexes), Integer.MAX_VALUE, this);
+        }
+
+        /**
+         * Creates accumulator with set keys, without them keys are categorical tokens
+         * of a {@link DefaultTokenDataSource}, a key with more than
+         * {@link GroupStatisticSubstitutor#DEFAULT_MAX_KEY_VALUES} distinct values is excluded.
+         * {@inheritDoc}
+         */
+        @Override
+        public SubstitutorAccumulator<V> createAccumulator(AbstractTokenDataSource<?> dataSource,
+                int index) throws IllegalArgumentException {
+            if (keyIndexes.length != 0) {
+                for (int keyIndex : keyIndexes) {
+                    if (keyIndex >= dataSource.getRecordLength()) {
+                        throw new IllegalArgumentException(
+                                String.format("There is no token %d in records.", keyIndex));
+                    }
+                }
+                return createAccumulator(index);
+            }
+            final int[] keys = new int[dataSource.getRecordLength()];
+            int keysNumber = 0;
+            if (dataSource instanceof DefaultTokenDataSource) {
+                final DefaultTokenDataSource<?> defaultDataSource =
+                        (DefaultTokenDataSource<?>) dataSource;
+                for (int i = 0; i < keys.length; i++) {
+                    if (i != index && defaultDataSource.isCategorical(i)) {
+                        keys[keysNumber++] = i;
+                    }
+                }
+            }
+            return new Accumulator<>(index, Arrays.copyOf(keys, keysNumber), DEFAULT_MAX_KEY_VALUES,
+                    this);
+        }
+
+        /**
+         * @param index index of the token to substitute
+         * @param keys indexes of key tokens
+         * @return the keys
+         * @throws IllegalArgumentException if the token is one of keys
+         */
+        private static int[] checkKeys(int index, int[] keys) throws IllegalArgumentException {
+            for (int keyIndex : keys) {
+                if (keyIndex == index) {
+                    throw new IllegalArgumentException(
+                            String.format("Token %d can't be grouped by itself.", index));
+                }
+            }
+            return keys;
+        }
+    }
+
+    /**
+     * Aggregates statistics of all groups of non-missing values of a token by
+     * hash aggregation. Arrays of groups are indexed by group indexes, a group
+     * is created after its parent, so parents have smaller indexes.<br/>
+     * A key with too many values is excluded by aggregation of groups into a new accumulator
+     * without the key, accumulators of parts exclude the same keys before they are merged.
+     * @author atta_troll
+     *
+     * @param <V> type of value to substitute
+     */
+    private static class Accumulator<V> implements SubstitutorAccumulator<V> {
+
+        /**
+         * Initial capacity of arrays of groups and of cells.
+         */
+        private static final int INITIAL_CAPACITY = 16;
+
+        /**
+         * Index of the token.
+         */
+        private final int index;
+
+        /**
+         * Factory of the substitutor.
+         */
+        private final AbstractFactory<V> factory;
+
+        /**
+         * Maximal number of distinct values of a key.
+         */
+        private final int maxKeyValues;
+
+        /**
+         * Indexes of key tokens.
+         */
+        private int[] keyIndexes;
+
+        /**
+         * Statistic of groups.
+         */
+        private final Statistic statistic;
+
+        /**
+         * Minimal number of values of a group whose statistic is used.
+         */
+        private final int minGroupSize;
+
+        /**
+         * Dictionaries of values of key tokens.
+         */
+        private CategoryDictionary[] dictionaries;
+
+        /**
+         * Indexes of groups by packed indexes of parent groups and key codes.
+         */
+        private LongIntHashMap groups = new LongIntHashMap();
+
+        /**
+         * Number of groups.
+         */
+        private int groupsNumber = 1;
+
+        /**
+         * Parents of groups.
+         */
+        private int[] parents = new int[INITIAL_CAPACITY];
+
+        /**
+         * Codes of key values of groups.
+         */
+        private int[] codes = new int[INITIAL_CAPACITY];
+
+        /**
+         * Numbers of values of groups.
+         */
+        private long[] counts = new long[INITIAL_CAPACITY];
+
+        /**
+         * Sums of values of groups, {@code null} if statistic is not mean.
+         */
+        private double[] sums;
+
+        /**
+         * Sketches of values of groups, {@code null} if statistic is not median.
+         */
+        private QuantileSketch[] sketches;
+
+        /**
+         * Dictionary of values, {@code null} if statistic is not mode.
+         */
+        private CategoryDictionary valueDictionary;
+
+        /**
+         * Indexes of cells by packed group indexes and value codes,
+         * {@code null} if statistic is not mode.
+         */
+        private LongIntHashMap cells;
+
+        /**
+         * Number of cells.
+         */
+        private int cellsNumber;
+
+        /**
+         * Groups of cells.
+         */
+        private int[] cellGroups;
+
+        /**
+         * Value codes of cells.
+         */
+        private int[] cellCodes;
+
+        /**
+         * Numbers of occurrences of cells.
+         */
+        private long[] cellCounts;
+
+        /**
+         * {@code true} if numeric values are integers.
+         */
+        private boolean isInteger;
+
+        /**
+         * Index of the part of data source, it seeds sketches of groups.
+         */
+        private int part;
+
+        /**
+         * Default ctor.
+         * @param index index of the token
+         * @param keyIndexes indexes of key tokens
+         * @param maxKeyValues maximal number of distinct values of a key
+         * @param factory factory of the substitutor
+         */
+        Accumulator(int index, int[] keyIndexes, int maxKeyValues, AbstractFactory<V> factory) {
+            this.index = index;
+            this.keyIndexes = keyIndexes;
+            this.maxKeyValues = maxKeyValues;
+            this.factory = factory;
+            statistic = factory.statistic;
+            minGroupSize = factory.minGroupSize;
+            dictionaries = new CategoryDictionary[keyIndexes.length];
+            for (int i = 0; i < keyIndexes.length; i++) {
+                dictionaries[i] = new CategoryDictionary();
+            }
+            if (statistic == Statistic.MEAN) {
+                sums = new double[INITIAL_CAPACITY];
+            }
+            else if (statistic == Statistic.MEDIAN) {
+                sketches = new QuantileSketch[INITIAL_CAPACITY];
+            }
+            if (statistic == Statistic.MODE) {
+                valueDictionary = new CategoryDictionary();
+                cells = new LongIntHashMap();
+                cellGroups = new int[INITIAL_CAPACITY];
+                cellCodes = new int[INITIAL_CAPACITY];
+                cellCounts = new long[INITIAL_CAPACITY];
+            }
+            else {
+                valueDictionary = null;
+                cells = null;
+            }
+        }
+
+        /**
+         * Keeps the index of the part to seed sketches of groups.
+         * {@inheritDoc}
+         */
+        @Override
+        public void startPart(int part) {
+            this.part = part;
+        }
+
+        @Override
+        public void accept(Object[] tokens) {
+            final Object value = tokens[index];
+            if (value == null) {
+                return;
+            }
+            int group = ROOT;
+            add(group, value);
+            boolean hasLargeKey = false;
+            for (int i = 0; i < keyIndexes.length; i++) {
+                final Object key = tokens[keyIndexes[i]];
+                if (key == null) {
+                    break;
+                }
+                group = getChild(group, dictionaries[i].encode(key));
+                add(group, value);
+                hasLargeKey |= dictionaries[i].size() > maxKeyValues;
+            }
+            if (hasLargeKey) {
+                excludeLargeKeys();
+            }
+        }
+
+        @Override
+        public void merge(SubstitutorAccumulator<V> other) {
+            final Accumulator<V> accumulator = (Accumulator<V>) other;
+            for (int i = keyIndexes.length - 1; i >= 0; i--) {
+                if (indexOf(accumulator.keyIndexes, keyIndexes[i]) < 0) {
+                    exclude(i);
+                }
+            }
+            addGroups(accumulator);
+            excludeLargeKeys();
+        }
+
+        @Override
+        public MissingTokenSubstitutor<V> finish() {
+            int[] modes = null;
+            if (statistic == Statistic.MODE) {
+                modes = new int[groupsNumber];
+                Arrays.fill(modes, -1);
+                final long[] modeCounts = new long[groupsNumber];
+                for (int cell = 0; cell < cellsNumber; cell++) {
+                    final int group = cellGroups[cell];
+                    if (cellCounts[cell] > modeCounts[group]) {
+                        modeCounts[group] = cellCounts[cell];
+                        modes[group] = cellCodes[cell];
+                    }
+                }
+            }
+            final Object[] values = new Object[groupsNumber];
+            for (int group = 0; group < groupsNumber; group++) {
+                if (group != ROOT && counts[group] < minGroupSize) {
+                    values[group] = values[parents[group]];
+                }
+                else if (counts[group] != 0) {
+                    switch (statistic) {
+                    case MEAN:
+                        values[group] = toValue(sums[group] / counts[group]);
+                        break;
+                    case MEDIAN:
+                        values[group] = toValue(
+                                sketches[group].getQuantile(QuantileSubstitutor.MEDIAN));
+                        break;
+                    default:
+                        values[group] = valueDictionary.decode(modes[group]);
+                    }
+                }
+            }
+            return new GroupStatisticSubstitutor<>(index, keyIndexes, dictionaries, groups,
+                    values);
+        }
+
+        /**
+         * Adds statistics of groups of another accumulator, whose keys include keys
+         * of this one in the same order. A group of a key that is not a key of this
+         * accumulator is replaced by its parent.
+         * @param accumulator another accumulator
+         */
+        private void addGroups(Accumulator<V> accumulator) {
+            isInteger |= accumulator.isInteger;
+            final int[] levels = new int[accumulator.keyIndexes.length];
+            final int[][] keyCodes = new int[accumulator.keyIndexes.length][];
+            for (int i = 0; i < levels.length; i++) {
+                levels[i] = indexOf(keyIndexes, accumulator.keyIndexes[i]);
+                if (levels[i] >= 0) {
+                    keyCodes[i] = recode(accumulator.dictionaries[i], dictionaries[levels[i]]);
+                }
+            }
+            final int[] groupIndexes = new int[accumulator.groupsNumber];
+            final int[] depths = new int[accumulator.groupsNumber];
+            final boolean[] isReplaced = new boolean[accumulator.groupsNumber];
+            for (int group = 0; group < accumulator.groupsNumber; group++) {
+                if (group != ROOT) {
+                    final int parent = accumulator.parents[group];
+                    depths[group] = depths[parent] + 1;
+                    final int key = depths[group] - 1;
+                    if (levels[key] < 0) {
+                        // values of the group are already added to its parent
+                        groupIndexes[group] = groupIndexes[parent];
+                        isReplaced[group] = true;
+                        continue;
+                    }
+                    groupIndexes[group] = getChild(groupIndexes[parent],
+                            keyCodes[key][accumulator.codes[group]]);
+                }
+                final int target = groupIndexes[group];
+                counts[target] += accumulator.counts[group];
+                if (statistic == Statistic.MEAN) {
+                    sums[target] += accumulator.sums[group];
+                }
+                else if (statistic == Statistic.MEDIAN && accumulator.sketches[group] != null) {
+                    getSketch(target).merge(accumulator.sketches[group]);
+                }
+            }
+            if (statistic == Statistic.MODE) {
+                final int[] valueCodes = recode(accumulator.valueDictionary, valueDictionary);
+                for (int cell = 0; cell < accumulator.cellsNumber; cell++) {
+                    final int group = accumulator.cellGroups[cell];
+                    if (!isReplaced[group]) {
+                        addOccurrences(groupIndexes[group],
+                                valueCodes[accumulator.cellCodes[cell]],
+                                accumulator.cellCounts[cell]);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Excludes keys with more than the maximal number of distinct values.
+         */
+        private void excludeLargeKeys() {
+            for (int i = keyIndexes.length - 1; i >= 0; i--) {
+                if (dictionaries[i].size() > maxKeyValues) {
+                    exclude(i);
+                }
+            }
+        }
+
+        /**
+         * Aggregates groups again without a key.
+         * @param key position of the key in key indexes
+         */
+        private void exclude(int key) {
+            final int[] keys = new int[keyIndexes.length - 1];
+            System.arraycopy(keyIndexes, 0, keys, 0, key);
+            System.arraycopy(keyIndexes, key + 1, keys, key, keys.length - key);
+            final Accumulator<V> reduced = new Accumulator<>(index, keys, maxKeyValues, factory);
+            reduced.part = part;
+            reduced.addGroups(this);
+            keyIndexes = reduced.keyIndexes;
+            dictionaries = reduced.dictionaries;
+            groups = reduced.groups;
+            groupsNumber = reduced.groupsNumber;
+            parents = reduced.parents;
+            codes = reduced.codes;
+            counts = reduced.counts;
+            sums = reduced.sums;
+            sketches = reduced.sketches;
+            valueDictionary = reduced.valueDictionary;
+            cells = reduced.cells;
+            cellsNumber = reduced.cellsNumber;
+            cellGroups = reduced.cellGroups;
+            cellCodes = reduced.cellCodes;
+            cellCounts = reduced.cellCounts;
+            isInteger = reduced.isInteger;
+        }
+
+        /**
+         * Adds a value to a group.
+         * @param group index of the group
+         * @param value the value
+         */
+        private void add(int group, Object value) {
+            counts[group]++;
+            switch (statistic) {
+            case MEAN:
+                sums[group] += toDouble(value);
+                break;
+            case MEDIAN:
+                getSketch(group).update(toDouble(value));
+                break;
+            default:
+                addOccurrences(group, valueDictionary.encode(value), 1L);
+            }
+        }
+
+        /**
+         * Finds a child group, creates it if it is new.
+         * @param parent index of the parent group
+         * @param code code of key value
+         * @return index of the child group
+         */
+        private int getChild(int parent, int code) {
+            final long key = pack(parent, code);
+            int group = groups.get(key);
+            if (group == LongIntHashMap.ABSENT) {
+                group = groupsNumber++;
+                if (group == parents.length) {
+                    final int capacity = group * 2;
+                    parents = Arrays.copyOf(parents, capacity);
+                    codes = Arrays.copyOf(codes, capacity);
+                    counts = Arrays.copyOf(counts, capacity);
+                    if (sums != null) {
+                        sums = Arrays.copyOf(sums, capacity);
+                    }
+                    if (sketches != null) {
+                        sketches = Arrays.copyOf(sketches, capacity);
+                    }
+                }
+                parents[group] = parent;
+                codes[group] = code;
+                groups.put(key, group);
+            }
+            return group;
+        }
+
+        /**
+         * Adds occurrences of a value to a group.
+         * @param group index of the group
+         * @param code code of the value
+         * @param occurrences number of occurrences
+         */
+        private void addOccurrences(int group, int code, long occurrences) {
+            final long key = pack(group, code);
+            int cell = cells.get(key);
+            if (cell == LongIntHashMap.ABSENT) {
+                cell = cellsNumber++;
+                if (cell == cellGroups.length) {
+                    final int capacity = cell * 2;
+                    cellGroups = Arrays.copyOf(cellGroups, capacity);
+                    cellCodes = Arrays.copyOf(cellCodes, capacity);
+                    cellCounts = Arrays.copyOf(cellCounts, capacity);
+                }
+                cellGroups[cell] = group;
+                cellCodes[cell] = code;
+                cells.put(key, cell);
+            }
+            cellCounts[cell] += occurrences;
+        }
+
+        /**
+         * @param group index of a group
+         * @return sketch of values of the group, it is created if absent
+         */
+        private QuantileSketch getSketch(int group) {
+            if (sketches[group] == null) {
+                sketches[group] = new QuantileSketch(QuantileSketch.DEFAULT_ACCURACY,
+                        QuantileSketch.getSeed(part, group));
+            }
+            return sketches[group];
+        }
+
+        /**
+         * @param value numeric value
+         * @return the value as a double
+         */
+        private double toDouble(Object value) {
+            if (value instanceof Integer) {
+                isInteger = true;
+            }
+            return ((Number) value).doubleValue();
+        }
+
+        /**
+         * @param value value of a statistic
+         * @return the value as a token value
+         */
+        private Object toValue(double value) {
+            if (isInteger) {
+                return (int) Math.round(value);
+            }
+            return value;
+        }
+
+        /**
+         * @param keys indexes of key tokens
+         * @param key index of a key token
+         * @return position of the key, -1 if it is not a key
+         */
+        private static int indexOf(int[] keys, int key) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == key) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Encodes values of a dictionary by another dictionary.
+         * @param source the dictionary
+         * @param target another dictionary, new values are added to it
+         * @return codes of the target dictionary by codes of the source one
+         */
+        private static int[] recode(CategoryDictionary source, CategoryDictionary target) {
+            final int[] result = new int[source.size()];
+            for (int code = 0; code < result.length; code++) {
+                result[code] = target.encode(source.decode(code));
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package com.github.attatrol.preprocessing.datasource.parsing.missing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mergeable Space-Saving sketch of the most frequent items of a stream, it keeps
+ * a fixed number of counters. Counters are kept in a min-heap, an untracked item
+ * replaces the item with the smallest count and inherits its count as an error.<br/>
+ * A counter overestimates the frequency of its item by at most its error, that is at most
+ * n / capacity for a stream of n items. Any item more frequent than n / capacity is tracked.
+ * @author atta_troll
+ *
+ * @param <V> type of items
+ */
+final class HeavyHittersSketch<V> {
+
+    /**
+     * Maximal number of counters.
+     */
+    private final int capacity;
+
+    /**
+     * Tracked items in heap order.
+     */
+    private final Object[] items;
+
+    /**
+     * Estimated counts of tracked items.
+     */
+    private final long[] counts;
+
+    /**
+     * Maximal overestimations of counts of tracked items.
+     */
+    private final long[] errors;
+
+    /**
+     * Heap positions of tracked items.
+     */
+    private final Map<V, Integer> positions;
+
+    /**
+     * Number of tracked items.
+     */
+    private int size;
+
+    /**
+     * Total weight of added items.
+     */
+    private long total;
+
+    /**
+     * Default ctor.
+     * @param capacity maximal number of counters
+     * @throws IllegalArgumentException if capacity is not positive
+     */
+    HeavyHittersSketch(int capacity) throws IllegalArgumentException {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive.");
+        }
+        this.capacity = capacity;
+        items = new Object[capacity];
+        counts = new long[capacity];
+        errors = new long[capacity];
+        positions = new HashMap<>(capacity * 2);
+    }
+
+    /**
+     * Creates sketch from exact counts, the most frequent items are kept with exact counts.
+     * @param occurrences exact numbers of occurrences of items
+     * @param capacity maximal number of counters
+     * @return sketch
+     * @throws IllegalArgumentException if capacity is not positive
+     */
+    static <V> HeavyHittersSketch<V> of(Map<V, Long> occurrences, int capacity)
+            throws IllegalArgumentException {
+        final HeavyHittersSketch<V> sketch = new HeavyHittersSketch<>(capacity);
+        final List<Counter<V>> counters = new ArrayList<>(occurrences.size());
+        long total = 0;
+        for (Map.Entry<V, Long> entry : occurrences.entrySet()) {
+            counters.add(new Counter<>(entry.getKey(), entry.getValue(), 0L));
+            total += entry.getValue();
+        }
+        sketch.fill(counters, total);
+        return sketch;
+    }
+
+    /**
+     * Adds occurrences of an item.
+     * @param item the item
+     * @param weight number of occurrences
+     */
+    void add(V item, long weight) {
+        total += weight;
+        final Integer position = positions.get(item);
+        if (position != null) {
+            counts[position] += weight;
+            siftDown(position);
+        }
+        else if (size < capacity) {
+            set(size, item, weight, 0L);
+            siftUp(size++);
+        }
+        else {
+            positions.remove(items[0]);
+            errors[0] = counts[0];
+            set(0, item, counts[0] + weight, errors[0]);
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Merges other sketch into this one. Count of an item untracked by a sketch is
+     * overestimated by the smallest count of that sketch, then the most frequent items are kept.
+     * @param other sketch with the same capacity
+     * @throws IllegalArgumentException if capacities differ
+     */
+    @SuppressWarnings("unchecked")
+    void merge(HeavyHittersSketch<V> other) throws IllegalArgumentException {
+        if (other.capacity != capacity) {
+            throw new IllegalArgumentException("Sketches of different capacity can't be merged.");
+        }
+        final long minCount = getErrorBound();
+        final long otherMinCount = other.getErrorBound();
+        final Map<V, Counter<V>> merged = new HashMap<>((size + other.size) * 2);
+        for (int i = 0; i < size; i++) {
+            merged.put((V) items[i], new Counter<>((V) items[i], counts[i] + otherMinCount,
+                    errors[i] + otherMinCount));
+        }
+        for (int i = 0; i < other.size; i++) {
+            final Counter<V> counter = merged.get(other.items[i]);
+            if (counter != null) {
+                counter.count += other.counts[i] - otherMinCount;
+                counter.error += other.errors[i] - otherMinCount;
+            }
+            else {
+                merged.put((V) other.items[i], new Counter<>((V) other.items[i],
+                        other.counts[i] + minCount, other.errors[i] + minCount));
+            }
+        }
+        positions.clear();
+        fill(new ArrayList<>(merged.values()), total + other.total);
+    }
+
+    /**
+     * @return item with the biggest estimated count or {@code null} if sketch is empty
+     */
+    @SuppressWarnings("unchecked")
+    V getMostFrequent() {
+        int best = -1;
+        for (int i = 0; i < size; i++) {
+            if (best < 0 || counts[i] > counts[best]) {
+                best = i;
+            }
+        }
+        return best >= 0 ? (V) items[best] : null;
+    }
+
+    /**
+     * @return estimated counts of tracked items
+     */
+    @SuppressWarnings("unchecked")
+    Map<V, Long> getCounts() {
+        final Map<V, Long> estimatedCounts = new HashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            estimatedCounts.put((V) items[i], counts[i]);
+        }
+        return estimatedCounts;
+    }
+
+    /**
+     * @return upper bound of overestimation of any count, it is also the biggest count
+     *         an untracked item may have
+     */
+    long getErrorBound() {
+        return size < capacity ? 0L : counts[0];
+    }
+
+    /**
+     * @return total weight of added items
+     */
+    long getTotal() {
+        return total;
+    }
+
+    /**
+     * Replaces counters with the biggest of some counters.
+     * @param counters candidate counters
+     * @param newTotal total weight of added items
+     */
+    private void fill(List<Counter<V>> counters, long newTotal) {
+        counters.sort((c1, c2) -> Long.compare(c2.count, c1.count));
+        size = Math.min(capacity, counters.size());
+        // ascending order is a valid min-heap
+        for (int i = 0; i < size; i++) {
+            final Counter<V> counter = counters.get(size - 1 - i);
+            set(i, counter.item, counter.count, counter.error);
+        }
+        Arrays.fill(items, size, capacity, null);
+        total = newTotal;
+    }
+
+    /**
+     * Sets a counter at a heap position.
+     * @param position heap position
+     * @param item the item
+     * @param count estimated count
+     * @param error maximal overestimation of count
+     */
+    private void set(int position, V item, long count, long error) {
+        items[position] = item;
+        counts[position] = count;
+        errors[position] = error;
+        positions.put(item, position);
+    }
+
+    /**
+     * Moves a counter up the heap.
+     * @param position heap position
+     */
+    private void siftUp(int position) {
+        while (position > 0) {
+            final int parent = (position - 1) >>> 1;
+            if (counts[parent] <= counts[position]) {
+                return;
+            }
+            swap(parent, position);
+            position = parent;
+        }
+    }
+
+    /**
+     * Moves a counter down the heap.
+     * @param position heap position
+     */
+    private void siftDown(int position) {
+        while (true) {
+            final int left = 2 * position + 1;
+            if (left >= size) {
+                return;
+            }
+            final int child = left + 1 < size && counts[left + 1] < counts[left] ? left + 1 : left;
+            if (counts[position] <= counts[child]) {
+                return;
+            }
+            swap(position, child);
+            position = child;
+        }
+    }
+
+    /**
+     * Swaps two counters.
+     * @param i heap position
+     * @param j heap position
+     */
+    @SuppressWarnings("unchecked")
+    private void swap(int i, int j) {
+        final Object item = items[i];
+        final long count = counts[i];
+        final long error = errors[i];
+        set(i, (V) items[j], counts[j], errors[j]);
+        set(j, (V) item, count, error);
+    }
+
+    /**
+     * Counter of an item used while sketches are merged.
+     * @param <V> type of items
+     */
+    private static final class Counter<V> {
+
+        /**
+         * The item.
+         */
+        private final V item;
+
+        /**
+         * Estimated count.
+         */
+        private long count;
+
+        /**
+         * Maximal overestimation of count.
+         */
+        private long error;
+
+        /**
+         * Default ctor.
+         * @param item the item
+         * @param count estimated count
+         * @param error maximal overestimation of count
+         */
+        Counter(V item, long count, long error) {
+            this.item = item;
+            this.count = count;
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,518 @@
+package com.github.attatrol.preprocessing.datasource.parsing.missing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.github.attatrol.preprocessing.datasource.AbstractTokenDataSource;
+import com.github.attatrol.preprocessing.datasource.DefaultTokenDataSource;
+import com.github.attatrol.preprocessing.datasource.Record;
+import com.github.attatrol.preprocessing.datasource.columnar.ColumnarFileDataSource;
+import com.github.attatrol.preprocessing.datasource.parsing.TokenFeatures;
+import com.github.attatrol.preprocessing.datasource.parsing.TokenType;
+import com.github.attatrol.preprocessing.distance.DistanceFunction;
+import com.github.attatrol.preprocessing.distance.NeighbourIndex;
+import com.github.attatrol.preprocessing.distance.nonmetric.gower.GowerDistance;
+import com.github.attatrol.preprocessing.distance.nonmetric.gower.GowerTokenSimilarityIndex;
+import com.github.attatrol.preprocessing.distance.nonmetric.gower.NormalizedFloatManhattanSimilarityIndex;
+import com.github.attatrol.preprocessing.distance.nonmetric.gower.NormalizedIntegerManhattanSimilarityIndex;
+import com.github.attatrol.preprocessing.distance.nonmetric.gower.OverlapTokenSimilarityIndex;
+
+/**
+ * Substitutes missing token by its values in the k nearest reference records.
+ * Values of integer and float tokens are averaged, other values are voted,
+ * a tie is won by the nearest value. Token types are taken from the data source.<br/>
+ * References are a uniform sample of records with the token present, complete records
+ * are preferred if there are at least k of them. Random keys of the sample are hashes
+ * of records mixed with a seed, so a fit is repeatable whatever the data source is split into.
+ * Distance is calculated over tokens present in the substituted record, so there is
+ * a {@link NeighbourIndex} for every pattern of missing tokens, built on the first use.
+ * Search costs about O(log n) distance calculations and substitution may run concurrently.<br/>
+ * Default distance is {@link GowerDistance} with Manhattan differences of numbers normalized
+ * by their ranges in references and overlap of other tokens. A custom distance must skip
+ * missing tokens as {@link GowerDistance} does.
+ * @author atta_troll
+ *
+ * @param <V> type of value to substitute
+ */
+public class KnnSubstitutor<V> extends MissingTokenSubstitutor<V> {
+
+    /**
+     * Default number of neighbours.
+     */
+    public static final int DEFAULT_NEIGHBOURS_NUMBER = 5;
+
+    /**
+     * Default maximal number of reference records.
+     */
+    public static final int DEFAULT_REFERENCE_LIMIT = 10000;
+
+    /**
+     * Default seed of sampling of reference records.
+     */
+    public static final long DEFAULT_SEED = 0x9E3779B97F4A7C15L;
+
+    /**
+     * Maximal number of indexes of missing token patterns, records of other patterns
+     * are compared with all references.
+     */
+    private static final int MAX_INDEXES_NUMBER = 64;
+
+    /**
+     * Reference records.
+     */
+    private final Object[][] references;
+
+    /**
+     * Distance function.
+     */
+    private final DistanceFunction distanceFunction;
+
+    /**
+     * Number of neighbours.
+     */
+    private final int neighboursNumber;
+
+    /**
+     * Type of the substituted token, {@code null} if it is unknown.
+     */
+    private final TokenType type;
+
+    /**
+     * Neighbour indexes of reference records by patterns of missing tokens.
+     */
+    private final Map<BitSet, NeighbourIndex> indexes = new ConcurrentHashMap<>();
+
+    /**
+     * Default ctor.
+     * @param index index of missing token
+     * @param references reference records with the token present
+     * @param distanceFunction distance function that skips missing tokens
+     * @param neighboursNumber number of neighbours
+     * @param type type of the substituted token, values of integer and float tokens
+     *        are averaged, values of other ones or of unknown type ({@code null}) are voted
+     */
+    public KnnSubstitutor(int index, Object[][] references, DistanceFunction distanceFunction,
+            int neighboursNumber, TokenType type) {
+        super(index);
+        this.references = references;
+        this.distanceFunction = distanceFunction;
+        this.neighboursNumber = neighboursNumber;
+        this.type = type;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public V substitute(Record<? extends Object[]> tokens) {
+        return substitute(tokens.getData());
+    }
+
+    /**
+     * @return reference records
+     */
+    public Object[][] getReferences() {
+        return references;
+    }
+
+    /**
+     * Finds substitution from neighbours.
+     * @param tokens tokens of a record
+     * @return substitution value or {@code null} if there are no references
+     */
+    private V substitute(Object[] tokens) {
+        final BitSet pattern = new BitSet(tokens.length);
+        for (int i = 0; i < tokens.length; i++) {
+            if (tokens[i] == null) {
+                pattern.set(i);
+            }
+        }
+        NeighbourIndex neighbourIndex = indexes.get(pattern);
+        if (neighbourIndex == null && indexes.size() < MAX_INDEXES_NUMBER) {
+            neighbourIndex = indexes.computeIfAbsent(pattern, this::createIndex);
+        }
+        final int[] neighbours;
+        if (neighbourIndex != null) {
+            neighbours = neighbourIndex.findNearest(tokens, neighboursNumber);
+        }
+        else {
+            neighbours = NeighbourIndex.findNearest(references, distanceFunction, tokens,
+                    neighboursNumber);
+        }
+        return aggregate(neighbours);
+    }
+
+    /**
+     * Creates neighbour index of references projected on tokens present in a pattern.
+     * @param pattern pattern of missing tokens
+     * @return neighbour index
+     */
+    private NeighbourIndex createIndex(BitSet pattern) {
+        final Object[][] projections = new Object[references.length][];
+        for (int i = 0; i < references.length; i++) {
+            projections[i] = references[i].clone();
+            for (int j = pattern.nextSetBit(0); j >= 0 && j < projections[i].length;
+                    j = pattern.nextSetBit(j + 1)) {
+                projections[i][j] = null;
+            }
+        }
+        return new NeighbourIndex(projections, distanceFunction);
+    }
+
+    /**
+     * Aggregates values of neighbours.
+     * @param neighbours indexes of references in order of increasing distance
+     * @return mean of integer or float values, most common value of other tokens or {@code null}
+     *         if there are no neighbours
+     */
+    @SuppressWarnings("unchecked")
+    private V aggregate(int[] neighbours) {
+        if (neighbours.length == 0) {
+            return null;
+        }
+        final Object nearest = references[neighbours[0]][index];
+        if (type == TokenType.INTEGER || type == TokenType.FLOAT) {
+            double sum = 0.;
+            for (int neighbour : neighbours) {
+                sum += ((Number) references[neighbour][index]).doubleValue();
+            }
+            final double mean = sum / neighbours.length;
+            if (type == TokenType.INTEGER) {
+                return (V) Integer.valueOf((int) Math.round(mean));
+            }
+            return (V) Double.valueOf(mean);
+        }
+        final Map<Object, Integer> votes = new HashMap<>();
+        int winnerVotes = 0;
+        for (int neighbour : neighbours) {
+            winnerVotes = Math.max(winnerVotes,
+                    votes.merge(references[neighbour][index], 1, Integer::sum));
+        }
+        Object winner = nearest;
+        for (int neighbour : neighbours) {
+            final Object value = references[neighbour][index];
+            if (votes.get(value) == winnerVotes) {
+                winner = value;
+                break;
+            }
+        }
+        return (V) winner;
+    }
+
+    /**
+     * Factory class for {@link KnnSubstitutor}.
+     * @author atta_troll
+     *
+     * @param <V> type of value to substitute
+     */
+    public static class Factory<V> implements AccumulatingSubstitutorFactory<V> {
+
+        /**
+         * Number of neighbours.
+         */
+        private final int neighboursNumber;
+
+        /**
+         * Maximal number of reference records.
+         */
+        private final int referenceLimit;
+
+        /**
+         * Distance function, {@code null} for the default one.
+         */
+        private final DistanceFunction distanceFunction;
+
+        /**
+         * Seed of sampling of reference records.
+         */
+        private final long seed;
+
+        /**
+         * Factory with default parameters and distance.
+         */
+        public Factory() {
+            this(DEFAULT_NEIGHBOURS_NUMBER, DEFAULT_REFERENCE_LIMIT, null);
+        }
+
+        /**
+         * Creates factory with the default seed.
+         * @param neighboursNumber number of neighbours
+         * @param referenceLimit maximal number of reference records
+         * @param distanceFunction distance function on whole records that skips missing tokens,
+         *        {@code null} for the default one
+         * @throws IllegalArgumentException if neighbours number or reference limit
+         *         is not positive
+         */
+        public Factory(int neighboursNumber, int referenceLimit,
+                DistanceFunction distanceFunction) throws IllegalArgumentException {
+            this(neighboursNumber, referenceLimit, distanceFunction, DEFAULT_SEED);
+        }
+
+        /**
+         * Default ctor.
+         * @param neighboursNumber number of neighbours
+         * @param referenceLimit maximal number of reference records
+         * @param distanceFunction distance function on whole records that skips missing tokens,
+         *        {@code null} for the default one
+         * @param seed seed of sampling of reference records
+         * @throws IllegalArgumentException if neighbours number or reference limit
+         *         is not positive
+         */
+        public Factory(int neighboursNumber, int referenceLimit,
+                DistanceFunction distanceFunction, long seed) throws IllegalArgumentException {
+            if (neighboursNumber < 1 || referenceLimit < 1) {
+                throw new IllegalArgumentException(
+                        "Neighbours number and reference limit must be positive.");
+            }
+            this.neighboursNumber = neighboursNumber;
+            this.referenceLimit = referenceLimit;
+            this.distanceFunction = distanceFunction;
+            this.seed = seed;
+        }
+
+        /**
+         * Creates factory with the same parameters and another distance function,
+         * for example the one chosen for clustering.
+         * @param distanceFunction distance function on whole records that skips missing tokens,
+         *        {@code null} for the default one
+         * @return factory with the distance function
+         */
+        public Factory<V> withDistanceFunction(DistanceFunction distanceFunction) {
+            return new Factory<>(neighboursNumber, referenceLimit, distanceFunction, seed);
+        }
+
+        /**
+         * Creates accumulator that knows no token types, so all values are voted
+         * and compared by overlap.
+         * {@inheritDoc}
+         */
+        @Override
+        public SubstitutorAccumulator<V> createAccumulator(int index) {
+            return new Accumulator<>(index, new TokenType[0], this);
+        }
+
+        /**
+         * Creates accumulator with token types of a {@link DefaultTokenDataSource}
+         * or a {@link ColumnarFileDataSource}, tokens of other data sources are treated
+         * as ones of unknown type.
+         * {@inheritDoc}
+         */
+        @Override
+        public SubstitutorAccumulator<V> createAccumulator(AbstractTokenDataSource<?> dataSource,
+                int index) throws IllegalArgumentException {
+            final TokenType[] types = new TokenType[dataSource.getRecordLength()];
+            if (dataSource instanceof DefaultTokenDataSource) {
+                for (int i = 0; i < types.length; i++) {
+                    types[i] = ((DefaultTokenDataSource<?>) dataSource).getTokenType(i);
+                }
+            }
+            else if (dataSource instanceof ColumnarFileDataSource) {
+                final TokenFeatures[] features =
+                        ((ColumnarFileDataSource) dataSource).getTokenFeatures();
+                for (int i = 0; i < types.length; i++) {
+                    types[i] = features[i].getType();
+                }
+            }
+            return new Accumulator<>(index, types, this);
+        }
+    }
+
+    /**
+     * Samples reference records by keeping the ones with the smallest random keys,
+     * so samples of parts merge into a uniform sample of the whole data source.
+     * A key depends only on the record and the seed, so the sample doesn't depend
+     * on how the data source is split.
+     * @author atta_troll
+     *
+     * @param <V> type of value to substitute
+     */
+    private static class Accumulator<V> implements SubstitutorAccumulator<V> {
+
+        /**
+         * Index of the token.
+         */
+        private final int index;
+
+        /**
+         * Types of tokens, a missing or {@code null} type is unknown.
+         */
+        private final TokenType[] types;
+
+        /**
+         * Factory of the substitutor.
+         */
+        private final Factory<V> factory;
+
+        /**
+         * Sampled records, the one with the biggest key is the head.
+         */
+        private final PriorityQueue<Sample> samples =
+                new PriorityQueue<>((s1, s2) -> Double.compare(s2.key, s1.key));
+
+        /**
+         * Default ctor.
+         * @param index index of the token
+         * @param types types of tokens
+         * @param factory factory of the substitutor
+         */
+        Accumulator(int index, TokenType[] types, Factory<V> factory) {
+            this.index = index;
+            this.types = types;
+            this.factory = factory;
+        }
+
+        @Override
+        public void accept(Object[] tokens) {
+            if (tokens[index] != null) {
+                final double key = getKey(tokens);
+                if (samples.size() < factory.referenceLimit || key < samples.peek().key) {
+                    offer(new Sample(key, tokens.clone()));
+                }
+            }
+        }
+
+        @Override
+        public void merge(SubstitutorAccumulator<V> other) {
+            for (Sample sample : ((Accumulator<V>) other).samples) {
+                if (samples.size() < factory.referenceLimit || sample.key < samples.peek().key) {
+                    offer(sample);
+                }
+            }
+        }
+
+        @Override
+        public MissingTokenSubstitutor<V> finish() {
+            final List<Object[]> complete = new ArrayList<>();
+            final List<Object[]> all = new ArrayList<>(samples.size());
+            final Sample[] sorted = samples.toArray(new Sample[samples.size()]);
+            // order of references doesn't depend on order of merges
+            Arrays.sort(sorted, (s1, s2) -> Double.compare(s1.key, s2.key));
+            for (Sample sample : sorted) {
+                all.add(sample.tokens);
+                if (isComplete(sample.tokens)) {
+                    complete.add(sample.tokens);
+                }
+            }
+            final List<Object[]> references =
+                    complete.size() >= factory.neighboursNumber ? complete : all;
+            final Object[][] referenceArray = references.toArray(new Object[references.size()][]);
+            final DistanceFunction distance = factory.distanceFunction != null
+                    ? factory.distanceFunction : createDefaultDistance(referenceArray);
+            return new KnnSubstitutor<>(index, referenceArray, distance, factory.neighboursNumber,
+                    getType(index));
+        }
+
+        /**
+         * Creates Gower's distance with equal weights of tokens, Manhattan differences
+         * of integer and float tokens are normalized by their ranges in references.
+         * @param references reference records
+         * @return distance function
+         */
+        private DistanceFunction createDefaultDistance(Object[][] references) {
+            final int length = references.length > 0 ? references[0].length : 0;
+            final GowerTokenSimilarityIndex[] indexes = new GowerTokenSimilarityIndex[length];
+            final double[] weights = new double[length];
+            for (int i = 0; i < length; i++) {
+                final TokenType type = getType(i);
+                if (type == TokenType.INTEGER || type == TokenType.FLOAT) {
+                    double min = Double.POSITIVE_INFINITY;
+                    double max = Double.NEGATIVE_INFINITY;
+                    for (Object[] reference : references) {
+                        if (reference[i] != null) {
+                            final double value = ((Number) reference[i]).doubleValue();
+                            min = Math.min(min, value);
+                            max = Math.max(max, value);
+                        }
+                    }
+                    final double range = max > min ? max - min : 0.;
+                    indexes[i] = type == TokenType.INTEGER
+                            ? new NormalizedIntegerManhattanSimilarityIndex((int) range)
+                            : new NormalizedFloatManhattanSimilarityIndex(range);
+                }
+                else {
+                    indexes[i] = new OverlapTokenSimilarityIndex();
+                }
+                weights[i] = 1.;
+            }
+            return length > 0 ? GowerDistance.produceGowerDistance(indexes, weights)
+                    : (point1, point2) -> 1.;
+        }
+
+        /**
+         * @param tokenIndex index of a token
+         * @return type of the token or {@code null} if it is unknown
+         */
+        private TokenType getType(int tokenIndex) {
+            return tokenIndex < types.length ? types[tokenIndex] : null;
+        }
+
+        /**
+         * Calculates random key of a record from its hash and the seed.
+         * @param tokens tokens of the record
+         * @return key in [0, 1)
+         */
+        private double getKey(Object[] tokens) {
+            long key = factory.seed + Arrays.hashCode(tokens) * 0x9E3779B97F4A7C15L;
+            key = (key ^ (key >>> 30)) * 0xBF58476D1CE4E5B9L;
+            key = (key ^ (key >>> 27)) * 0x94D049BB133111EBL;
+            key ^= key >>> 31;
+            return (key >>> 11) * 0x1.0p-53;
+        }
+
+        /**
+         * Adds a sample, removes the one with the biggest key if there are too many.
+         * @param sample the sample
+         */
+        private void offer(Sample sample) {
+            samples.add(sample);
+            if (samples.size() > factory.referenceLimit) {
+                samples.poll();
+            }
+        }
+
+        /**
+         * @param tokens tokens of a record
+         * @return {@code true} if no token is missing
+         */
+        private static boolean isComplete(Object[] tokens) {
+            for (Object token : tokens) {
+                if (token == null) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Sampled record with its random key.
+     */
+    private static final class Sample {
+
+        /**
+         * Random key.
+         */
+        private final double key;
+
+        /**
+         * Tokens of the record.
+         */
+        private final Object[] tokens;
+
+        /**
+         * Default ctor.
+         * @param key random key
+         * @param tokens tokens of the record
+         */
+        Sample(double key, Object[] tokens) {
+            this.key = key;
+            this.tokens = tokens;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.github.attatrol.preprocessing.datasource.parsing.missing;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from primitive long keys to non-negative int values,
+ * keys and values are kept in arrays, so neither lookup nor insertion of a new key
+ * into a table with free room allocates. Map may be read concurrently if it is not modified.
+ * @author atta_troll
+ *
+ */
+final class LongIntHashMap {
+
+    /**
+     * Value returned for an absent key, also marks an empty slot.
+     */
+    static final int ABSENT = -1;
+
+    /**
+     * Initial size of the table, power of two.
+     */
+    private static final int INITIAL_TABLE_SIZE = 16;
+
+    /**
+     * Multiplier of Fibonacci hashing.
+     */
+    private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    /**
+     * Keys of slots.
+     */
+    private long[] keys = new long[INITIAL_TABLE_SIZE];
+
+    /**
+     * Values of slots, {@link #ABSENT} for an empty slot.
+     */
+    private int[] values = newValues(INITIAL_TABLE_SIZE);
+
+    /**
+     * Number of keys.
+     */
+    private int size;
+
+    /**
+     * @param key a key
+     * @return value of the key or {@link #ABSENT} if there is no such key
+     */
+    int get(long key) {
+        final int mask = values.length - 1;
+        int slot = slot(key, mask);
+        while (values[slot] != ABSENT) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return ABSENT;
+    }
+
+    /**
+     * Sets value of a key.
+     * @param key a key
+     * @param value non-negative value
+     * @throws IllegalArgumentException if value is negative
+     */
+    void put(long key, int value) throws IllegalArgumentException {
+        if (value < 0) {
+            throw new IllegalArgumentException("Value must be non-negative.");
+        }
+        int mask = values.length - 1;
+        int slot = slot(key, mask);
+        while (values[slot] != ABSENT) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (2 * (size + 1) > values.length) {
+            grow();
+            mask = values.length - 1;
+            slot = slot(key, mask);
+            while (values[slot] != ABSENT) {
+                slot = (slot + 1) & mask;
+            }
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+    }
+
+    /**
+     * @return number of keys
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Doubles the table.
+     */
+    private void grow() {
+        final long[] oldKeys = keys;
+        final int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = newValues(oldValues.length * 2);
+        final int mask = values.length - 1;
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != ABSENT) {
+                int slot = slot(oldKeys[i], mask);
+                while (values[slot] != ABSENT) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * @param key a key
+     * @param mask mask of table size
+     * @return home slot of the key
+     */
+    private static int slot(long key, int mask) {
+        return (int) ((key * HASH_MULTIPLIER) >>> 32) & mask;
+    }
+
+    /**
+     * @param size size of the table
+     * @return values of an empty table
+     */
+    private static int[] newValues(int size) {
+        final int[] values = new int[size];
+        Arrays.fill(values, ABSENT);
+        return values;
+    }
+}
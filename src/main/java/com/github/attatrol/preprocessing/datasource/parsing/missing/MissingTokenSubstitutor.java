@@ -25,20 +25,34 @@ public abstract class MissingTokenSubstitutor<V> {
 		Map<TokenType, MissingTokenSubstitutorFactory<?>[]> register = new EnumMap<>(TokenType.class);
 		register.put(TokenType.FLOAT, new MissingTokenSubstitutorFactory<?>[]{
 			new ExpectedValueFloatSubstitutor.Factory(),
+			new QuantileSubstitutor.FloatFactory(),
 			new MostCommonValueSubstitutor.Factory<Float>(),
+			new KnnSubstitutor.Factory<Double>(),
+			new GroupStatisticSubstitutor.MeanFactory<Double>(),
+			new GroupStatisticSubstitutor.MedianFactory<Double>(),
 		});
 		register.put(TokenType.INTEGER, new MissingTokenSubstitutorFactory<?>[]{
 			new ExpectedValueIntegerSubstitutor.Factory(),
+			new QuantileSubstitutor.IntegerFactory(),
 			new MostCommonValueSubstitutor.Factory<Integer>(),
+			new KnnSubstitutor.Factory<Integer>(),
+			new GroupStatisticSubstitutor.MeanFactory<Integer>(),
+			new GroupStatisticSubstitutor.MedianFactory<Integer>(),
 		});
 		register.put(TokenType.BINARY, new MissingTokenSubstitutorFactory<?>[]{
 		    new MostCommonValueSubstitutor.Factory<Boolean>(),
+		    new KnnSubstitutor.Factory<Boolean>(),
+		    new GroupStatisticSubstitutor.ModeFactory<Boolean>(),
 		});
 		register.put(TokenType.BINARY_DIGITAL, new MissingTokenSubstitutorFactory<?>[]{
 		    new MostCommonValueSubstitutor.Factory<Boolean>(),
+		    new KnnSubstitutor.Factory<Boolean>(),
+		    new GroupStatisticSubstitutor.ModeFactory<Boolean>(),
 		});
 		register.put(TokenType.CATEGORICAL_STRING, new MissingTokenSubstitutorFactory<?>[]{
 		    new MostCommonValueSubstitutor.Factory<String>(),
+		    new KnnSubstitutor.Factory<String>(),
+		    new GroupStatisticSubstitutor.ModeFactory<String>(),
 		});
 		SUBSTITUTOR_REGISTER = Collections.unmodifiableMap(register);
 	}
@@ -58,6 +72,8 @@ public abstract class MissingTokenSubstitutor<V> {
 
 	/**
 	 * Finds a proper substitution for an omitted token.
+	 * May be called concurrently for different records, see
+	 * {@link com.github.attatrol.preprocessing.datasource.DefaultTokenDataSource#nextBatch}.
 	 * @param tokens a record consisted of tokens
 	 * @return substitution value
 	 */
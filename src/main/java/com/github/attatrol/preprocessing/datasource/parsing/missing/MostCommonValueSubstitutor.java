@@ -1,68 +1,170 @@
 package com.github.attatrol.preprocessing.datasource.parsing.missing;
 
-import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
-import com.github.attatrol.preprocessing.datasource.AbstractTokenDataSource;
-import com.github.attatrol.preprocessing.datasource.Record;
-
 /**
  * Substitutes most common value for any missing one. If there are more than one
- * most common elements, one will be chosen randomly.
+ * most common elements, one will be chosen randomly.<br/>
+ * Values are counted exactly up to a threshold of distinct values, then by a bounded
+ * {@link HeavyHittersSketch}, so high-cardinality tokens don't exhaust memory.
  * @author atta_troll
  *
  * @param V type of value to substitute
  */
-public class MostCommonValueSubstitutor<V> extends MissingTokenSubstitutor<V> {
+public class MostCommonValueSubstitutor<V> extends ConstantTokenSubstitutor<V> {
 
+    protected MostCommonValueSubstitutor(int index, V mostCommonValue) {
+        super(index, mostCommonValue);
+    }
+
+    
     /**
-     * Found most common value
+     * Factory class for {@link MostCommonValueSubstitutor}.
+     * @author atta_troll
+     *
+     * @param <V> type of value to substitute
      */
-    private V mostCommonValue;
+    public static class Factory<V> implements AccumulatingSubstitutorFactory<V> {
 
-    protected MostCommonValueSubstitutor(int index, V mostCommonValue) {
-        super(index);
-        this.mostCommonValue = mostCommonValue;
-    }
+        /**
+         * Default number of distinct values counted exactly.
+         */
+        public static final int DEFAULT_DISTINCT_THRESHOLD = 100000;
+
+        /**
+         * Default number of counters of the heavy hitters sketch.
+         */
+        public static final int DEFAULT_SKETCH_CAPACITY = 10000;
+
+        /**
+         * Number of distinct values counted exactly.
+         */
+        private final int distinctThreshold;
+
+        /**
+         * Number of counters of the heavy hitters sketch.
+         */
+        private final int sketchCapacity;
+
+        /**
+         * Factory with default memory bounds.
+         */
+        public Factory() {
+            this(DEFAULT_DISTINCT_THRESHOLD, DEFAULT_SKETCH_CAPACITY);
+        }
+
+        /**
+         * Default ctor.
+         * @param distinctThreshold number of distinct values counted exactly, if there are
+         *        more, values are counted by a heavy hitters sketch
+         * @param sketchCapacity number of counters of the sketch, count of the found value
+         *        is overestimated by at most n / sketchCapacity for n values
+         * @throws IllegalArgumentException if capacity is not positive or threshold is less
+         *         than capacity
+         */
+        public Factory(int distinctThreshold, int sketchCapacity) throws IllegalArgumentException {
+            if (sketchCapacity < 1 || distinctThreshold < sketchCapacity) {
+                throw new IllegalArgumentException(
+                        "Sketch capacity must be positive and not bigger than distinct threshold.");
+            }
+            this.distinctThreshold = distinctThreshold;
+            this.sketchCapacity = sketchCapacity;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public SubstitutorAccumulator<V> createAccumulator(int index) {
+            return new Accumulator<>(index, distinctThreshold, sketchCapacity);
+        }
 
-    @Override
-    public V substitute(Record<? extends Object[]> tokens) {
-        return mostCommonValue;
     }
 
-    
     /**
-     * Factory class for {@link ExpectedValueFloatSubstitutor}
+     * Counts occurrences of non-missing values of a token exactly while there are
+     * few distinct values, then switches to {@link HeavyHittersSketch}.
      * @author atta_troll
      *
+     * @param <V> type of value to substitute
      */
-    public static class Factory<V> implements MissingTokenSubstitutorFactory<V> {
+    private static class Accumulator<V> implements SubstitutorAccumulator<V> {
 
         /**
-         * Factory method for {@link ExpectedValueFloatSubstitutor}.
-         * {@inheritDoc}
-         * 
+         * Index of the token.
          */
+        private final int index;
+
+        /**
+         * Number of distinct values counted exactly.
+         */
+        private final int distinctThreshold;
+
+        /**
+         * Number of counters of the sketch.
+         */
+        private final int sketchCapacity;
+
+        /**
+         * Numbers of occurrences of values, {@code null} after switch to sketch.
+         */
+        private Map<V, Long> occurrences = new HashMap<>();
+
+        /**
+         * Sketch of occurrences, {@code null} before switch.
+         */
+        private HeavyHittersSketch<V> sketch;
+
+        /**
+         * Default ctor.
+         * @param index index of the token
+         * @param distinctThreshold number of distinct values counted exactly
+         * @param sketchCapacity number of counters of the sketch
+         */
+        Accumulator(int index, int distinctThreshold, int sketchCapacity) {
+            this.index = index;
+            this.distinctThreshold = distinctThreshold;
+            this.sketchCapacity = sketchCapacity;
+        }
+
         @Override
-        public MissingTokenSubstitutor<V> produceSubstitutor(AbstractTokenDataSource<?> dataSource, int index)
-                throws IOException, IllegalArgumentException {
-            Map<V, Long> occurrences = new HashMap<>();
-            dataSource.reset();
-            while (dataSource.hasNext()) {
-                Object rawValue = dataSource.next().getData()[index];
-                if (rawValue != null) {
-                    @SuppressWarnings("unchecked")
-                    V value = (V) rawValue;
-                    Long occurenceCount = occurrences.get(value);
-                    if (occurenceCount == null) {
-                        occurrences.put(value, 1L);
-                    }
-                    else {
-                        occurrences.put(value, occurenceCount + 1);
-                    }
+        public void accept(Object[] tokens) {
+            Object rawValue = tokens[index];
+            if (rawValue != null) {
+                @SuppressWarnings("unchecked")
+                V value = (V) rawValue;
+                if (sketch != null) {
+                    sketch.add(value, 1L);
+                }
+                else {
+                    occurrences.merge(value, 1L, Long::sum);
+                    checkThreshold();
                 }
             }
+        }
+
+        @Override
+        public void merge(SubstitutorAccumulator<V> other) {
+            final Accumulator<V> accumulator = (Accumulator<V>) other;
+            if (sketch == null && accumulator.sketch == null) {
+                for (Map.Entry<V, Long> entry : accumulator.occurrences.entrySet()) {
+                    occurrences.merge(entry.getKey(), entry.getValue(), Long::sum);
+                }
+                checkThreshold();
+            }
+            else {
+                switchToSketch();
+                sketch.merge(accumulator.sketch != null ? accumulator.sketch
+                        : HeavyHittersSketch.of(accumulator.occurrences, sketchCapacity));
+            }
+        }
+
+        @Override
+        public MissingTokenSubstitutor<V> finish() {
+            if (sketch != null) {
+                return new MostCommonValueSubstitutor<V>(index, sketch.getMostFrequent());
+            }
             long maxOccurrenceCount = 0L;
             V mcv = null;
             for (Map.Entry<V, Long> entry : occurrences.entrySet()) {
@@ -74,5 +176,24 @@ public class MostCommonValueSubstitutor<V> extends MissingTokenSubstitutor<V> {
             return new MostCommonValueSubstitutor<V>(index, mcv);
         }
 
+        /**
+         * Switches to sketch if there are too many distinct values.
+         */
+        private void checkThreshold() {
+            if (occurrences.size() > distinctThreshold) {
+                switchToSketch();
+            }
+        }
+
+        /**
+         * Replaces exact counts with sketch.
+         */
+        private void switchToSketch() {
+            if (sketch == null) {
+                sketch = HeavyHittersSketch.of(occurrences, sketchCapacity);
+                occurrences = null;
+            }
+        }
+
     }
 }
@@ -0,0 +1,299 @@
+package com.github.attatrol.preprocessing.datasource.parsing.missing;
+
+import java.util.Arrays;
+
+/**
+ * Mergeable KLL sketch of quantiles of a stream of numbers, it keeps
+ * O(k * log(n / k)) values for a stream of n values.<br/>
+ * Values are kept in levels, an item of level h stands for 2^h values. A full level
+ * is sorted and every other item of it moves to the next level. Capacities of levels decrease
+ * geometrically from k at the top level. Rank error of a quantile is usually below 2 / k,
+ * so the default k gives about 1% of rank error.
+ * Minimum and maximum are exact. Levels start small and grow up to their capacities,
+ * so a sketch of a few values, e.g. of a small group, takes little memory.<br/>
+ * Compactions choose odd or even items randomly. Sketches of parts of a data source
+ * should have different seeds, otherwise their choices are the same and their errors
+ * don't cancel each other when sketches are merged.
+ * @author atta_troll
+ *
+ */
+final class QuantileSketch {
+
+    /**
+     * Default capacity of the top level.
+     */
+    static final int DEFAULT_ACCURACY = 200;
+
+    /**
+     * Minimal capacity of the top level.
+     */
+    static final int MIN_ACCURACY = 8;
+
+    /**
+     * Default seed of the generator of compaction offsets.
+     */
+    private static final long DEFAULT_SEED = 0x9E3779B97F4A7C15L;
+
+    /**
+     * Ratio of capacities of neighbour levels.
+     */
+    private static final double CAPACITY_RATIO = 2. / 3.;
+
+    /**
+     * Minimal capacity of a level.
+     */
+    private static final int MIN_LEVEL_CAPACITY = 2;
+
+    /**
+     * Capacity of the top level.
+     */
+    private final int accuracy;
+
+    /**
+     * Items of levels.
+     */
+    private double[][] levels;
+
+    /**
+     * Numbers of items of levels.
+     */
+    private int[] sizes;
+
+    /**
+     * Capacities of levels.
+     */
+    private int[] capacities;
+
+    /**
+     * Number of added values.
+     */
+    private long count;
+
+    /**
+     * Minimal value.
+     */
+    private double min = Double.POSITIVE_INFINITY;
+
+    /**
+     * Maximal value.
+     */
+    private double max = Double.NEGATIVE_INFINITY;
+
+    /**
+     * State of the generator of compaction offsets.
+     */
+    private long randomState;
+
+    /**
+     * Creates sketch with the default seed.
+     * @param accuracy capacity of the top level, bigger value gives smaller error
+     * @throws IllegalArgumentException if accuracy is less than {@link #MIN_ACCURACY}
+     */
+    QuantileSketch(int accuracy) throws IllegalArgumentException {
+        this(accuracy, 0L);
+    }
+
+    /**
+     * Default ctor.
+     * @param accuracy capacity of the top level, bigger value gives smaller error
+     * @param seed seed of compaction offsets, see {@link #getSeed(int, int)}
+     * @throws IllegalArgumentException if accuracy is less than {@link #MIN_ACCURACY}
+     */
+    QuantileSketch(int accuracy, long seed) throws IllegalArgumentException {
+        if (accuracy < MIN_ACCURACY) {
+            throw new IllegalArgumentException(
+                    String.format("Accuracy must be at least %d.", MIN_ACCURACY));
+        }
+        this.accuracy = accuracy;
+        levels = new double[][] {new double[MIN_ACCURACY]};
+        sizes = new int[1];
+        capacities = new int[] {accuracy};
+        long state = DEFAULT_SEED + seed * 0x9E3779B97F4A7C15L;
+        state = (state ^ (state >>> 30)) * 0xBF58476D1CE4E5B9L;
+        state = (state ^ (state >>> 27)) * 0x94D049BB133111EBL;
+        state ^= state >>> 31;
+        // xorshift generator never leaves zero state
+        randomState = state != 0L ? state : DEFAULT_SEED;
+    }
+
+    /**
+     * Packs index of a part of data source and index of a sketch within the part into a seed.
+     * @param part index of the part
+     * @param sketch index of the sketch, e.g. of a group of records
+     * @return seed of the sketch
+     */
+    static long getSeed(int part, int sketch) {
+        return (long) part << 32 | sketch & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Adds a value, NaN is ignored.
+     * @param value the value
+     */
+    void update(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        append(0, value);
+        count++;
+        if (value < min) {
+            min = value;
+        }
+        if (value > max) {
+            max = value;
+        }
+        if (sizes[0] >= capacities[0]) {
+            compress();
+        }
+    }
+
+    /**
+     * Merges other sketch into this one.
+     * @param other sketch with the same accuracy
+     * @throws IllegalArgumentException if accuracies differ
+     */
+    void merge(QuantileSketch other) throws IllegalArgumentException {
+        if (other.accuracy != accuracy) {
+            throw new IllegalArgumentException("Sketches of different accuracy can't be merged.");
+        }
+        while (levels.length < other.levels.length) {
+            addLevel();
+        }
+        for (int h = 0; h < other.levels.length; h++) {
+            for (int i = 0; i < other.sizes[h]; i++) {
+                append(h, other.levels[h][i]);
+            }
+        }
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        compress();
+    }
+
+    /**
+     * @return number of added values
+     */
+    long getCount() {
+        return count;
+    }
+
+    /**
+     * Estimates a quantile.
+     * @param quantile rank of the quantile, 0.5 for median
+     * @return value of the quantile or NaN if sketch is empty
+     * @throws IllegalArgumentException if quantile is not in [0, 1]
+     */
+    double getQuantile(double quantile) throws IllegalArgumentException {
+        if (!(quantile >= 0. && quantile <= 1.)) {
+            throw new IllegalArgumentException("Quantile must be in [0, 1].");
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+        if (quantile == 0.) {
+            return min;
+        }
+        if (quantile == 1.) {
+            return max;
+        }
+        int retained = 0;
+        for (int size : sizes) {
+            retained += size;
+        }
+        final double[] values = new double[retained];
+        final int[] itemLevels = new int[retained];
+        final Integer[] order = new Integer[retained];
+        int position = 0;
+        for (int h = 0; h < levels.length; h++) {
+            for (int i = 0; i < sizes[h]; i++) {
+                values[position] = levels[h][i];
+                itemLevels[position] = h;
+                order[position] = position;
+                position++;
+            }
+        }
+        Arrays.sort(order, (i1, i2) -> Double.compare(values[i1], values[i2]));
+        final double rank = quantile * count;
+        long weight = 0;
+        for (Integer item : order) {
+            weight += 1L << itemLevels[item];
+            if (weight >= rank) {
+                return values[item];
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Compacts full levels until all levels fit their capacities.
+     */
+    private void compress() {
+        boolean isCompacted = true;
+        while (isCompacted) {
+            isCompacted = false;
+            for (int h = 0; h < levels.length; h++) {
+                if (sizes[h] >= capacities[h]) {
+                    if (h + 1 == levels.length) {
+                        addLevel();
+                    }
+                    compact(h);
+                    isCompacted = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves every other item of a sorted level to the next level, an odd item stays.
+     * @param h index of the level
+     */
+    private void compact(int h) {
+        final double[] level = levels[h];
+        final int size = sizes[h];
+        final int kept = size & 1;
+        Arrays.sort(level, kept, size);
+        for (int i = kept + nextOffset(); i < size; i += 2) {
+            append(h + 1, level[i]);
+        }
+        sizes[h] = kept;
+    }
+
+    /**
+     * Adds a new top level and recalculates capacities.
+     */
+    private void addLevel() {
+        final int levelsNumber = levels.length + 1;
+        levels = Arrays.copyOf(levels, levelsNumber);
+        levels[levelsNumber - 1] = new double[MIN_LEVEL_CAPACITY];
+        sizes = Arrays.copyOf(sizes, levelsNumber);
+        capacities = new int[levelsNumber];
+        for (int h = 0; h < levelsNumber; h++) {
+            capacities[h] = Math.max(MIN_LEVEL_CAPACITY, (int) Math.ceil(
+                    accuracy * Math.pow(CAPACITY_RATIO, levelsNumber - 1 - h)));
+        }
+    }
+
+    /**
+     * Appends an item to a level.
+     * @param h index of the level
+     * @param value the item
+     */
+    private void append(int h, double value) {
+        if (sizes[h] == levels[h].length) {
+            final int length = levels[h].length;
+            levels[h] = Arrays.copyOf(levels[h], length < capacities[h]
+                    ? Math.min(length * 2, capacities[h]) : length * 2);
+        }
+        levels[h][sizes[h]++] = value;
+    }
+
+    /**
+     * @return random offset of compaction, 0 or 1
+     */
+    private int nextOffset() {
+        randomState ^= randomState << 13;
+        randomState ^= randomState >>> 7;
+        randomState ^= randomState << 17;
+        return (int) (randomState >>> 63);
+    }
+}
@@ -0,0 +1,214 @@
+package com.github.attatrol.preprocessing.datasource.parsing.missing;
+
+import java.util.function.DoubleFunction;
+
+/**
+ * Substitutes a quantile of non-missing values, the median by default,
+ * for any missing numeric token. Unlike expected value it is robust to heavy tails.
+ * Quantile is estimated by a {@link QuantileSketch}, so fitting takes constant memory.
+ * If all values are omitted, returns zero.<br/>
+ * Registered factories produce median substitutors, other quantiles may be set
+ * by factory ctors.
+ * @author atta_troll
+ *
+ * @param <V> type of value to substitute
+ */
+public class QuantileSubstitutor<V> extends ConstantTokenSubstitutor<V> {
+
+    /**
+     * Rank of the median.
+     */
+    public static final double MEDIAN = 0.5;
+
+    /**
+     * Default ctor.
+     * @param index index of missing token value
+     * @param quantileValue estimated quantile of values of all non missing tokens
+     */
+    public QuantileSubstitutor(int index, V quantileValue) {
+        super(index, quantileValue);
+    }
+
+    /**
+     * Factory class for {@link QuantileSubstitutor} of float tokens.
+     * @author atta_troll
+     *
+     */
+    public static class FloatFactory extends AbstractFactory<Double> {
+
+        /**
+         * Factory of median substitutors with default accuracy.
+         */
+        public FloatFactory() {
+            this(MEDIAN, QuantileSketch.DEFAULT_ACCURACY);
+        }
+
+        /**
+         * Default ctor.
+         * @param quantile rank of the quantile in [0, 1]
+         * @param accuracy capacity of the sketch, rank error is usually below 2 / accuracy
+         * @throws IllegalArgumentException if quantile is not in [0, 1] or accuracy is too small
+         */
+        public FloatFactory(double quantile, int accuracy) throws IllegalArgumentException {
+            super(quantile, accuracy, value -> value);
+        }
+    }
+
+    /**
+     * Factory class for {@link QuantileSubstitutor} of integer tokens,
+     * quantile is always one of the token values.
+     * @author atta_troll
+     *
+     */
+    public static class IntegerFactory extends AbstractFactory<Integer> {
+
+        /**
+         * Factory of median substitutors with default accuracy.
+         */
+        public IntegerFactory() {
+            this(MEDIAN, QuantileSketch.DEFAULT_ACCURACY);
+        }
+
+        /**
+         * Default ctor.
+         * @param quantile rank of the quantile in [0, 1]
+         * @param accuracy capacity of the sketch, rank error is usually below 2 / accuracy
+         * @throws IllegalArgumentException if quantile is not in [0, 1] or accuracy is too small
+         */
+        public IntegerFactory(double quantile, int accuracy) throws IllegalArgumentException {
+            super(quantile, accuracy, value -> (int) value);
+        }
+    }
+
+    /**
+     * Base of factories for different numeric types.
+     * @author atta_troll
+     *
+     * @param <V> type of value to substitute
+     */
+    private abstract static class AbstractFactory<V> implements AccumulatingSubstitutorFactory<V> {
+
+        /**
+         * Rank of the quantile.
+         */
+        private final double quantile;
+
+        /**
+         * Capacity of the sketch.
+         */
+        private final int accuracy;
+
+        /**
+         * Converts the quantile into a token value.
+         */
+        private final DoubleFunction<V> converter;
+
+        /**
+         * Default ctor.
+         * @param quantile rank of the quantile in [0, 1]
+         * @param accuracy capacity of the sketch
+         * @param converter converts the quantile into a token value
+         * @throws IllegalArgumentException if quantile is not in [0, 1] or accuracy is too small
+         */
+        AbstractFactory(double quantile, int accuracy, DoubleFunction<V> converter)
+                throws IllegalArgumentException {
+            if (!(quantile >= 0. && quantile <= 1.)) {
+                throw new IllegalArgumentException("Quantile must be in [0, 1].");
+            }
+            if (accuracy < QuantileSketch.MIN_ACCURACY) {
+                throw new IllegalArgumentException(String.format(
+                        "Accuracy must be at least %d.", QuantileSketch.MIN_ACCURACY));
+            }
+            this.quantile = quantile;
+            this.accuracy = accuracy;
+            this.converter = converter;
+        }
+
+        /**
+         * @return rank of the quantile
+         */
+        public double getQuantile() {
+            return quantile;
+        }
+
+        /**
+         * @return capacity of the sketch
+         */
+        public int getAccuracy() {
+            return accuracy;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public SubstitutorAccumulator<V> createAccumulator(int index) {
+            return new Accumulator<>(index, this);
+        }
+    }
+
+    /**
+     * Sketches non-missing values of a token.
+     * @author atta_troll
+     *
+     * @param <V> type of value to substitute
+     */
+    private static class Accumulator<V> implements SubstitutorAccumulator<V> {
+
+        /**
+         * Index of the token.
+         */
+        private final int index;
+
+        /**
+         * Factory of the substitutor.
+         */
+        private final AbstractFactory<V> factory;
+
+        /**
+         * Sketch of values.
+         */
+        private QuantileSketch sketch;
+
+        /**
+         * Default ctor.
+         * @param index index of the token
+         * @param factory factory of the substitutor
+         */
+        Accumulator(int index, AbstractFactory<V> factory) {
+            this.index = index;
+            this.factory = factory;
+            sketch = new QuantileSketch(factory.accuracy);
+        }
+
+        /**
+         * Seeds the sketch with the index of the part.
+         * {@inheritDoc}
+         */
+        @Override
+        public void startPart(int part) {
+            if (sketch.getCount() == 0) {
+                sketch = new QuantileSketch(factory.accuracy, QuantileSketch.getSeed(part, 0));
+            }
+        }
+
+        @Override
+        public void accept(Object[] tokens) {
+            final Object rawValue = tokens[index];
+            if (rawValue != null) {
+                sketch.update(((Number) rawValue).doubleValue());
+            }
+        }
+
+        @Override
+        public void merge(SubstitutorAccumulator<V> other) {
+            sketch.merge(((Accumulator<V>) other).sketch);
+        }
+
+        @Override
+        public MissingTokenSubstitutor<V> finish() {
+            final double value = sketch.getCount() != 0 ? sketch.getQuantile(factory.quantile) : 0.;
+            return new QuantileSubstitutor<>(index, factory.converter.apply(value));
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.github.attatrol.preprocessing.datasource.parsing.missing;
+
+/**
+ * Mergeable state of fitting a {@link MissingTokenSubstitutor} for one token of records.
+ * Parts of a data source are accumulated independently and merged, so all substitutors
+ * are fitted in a single parallel pass, see {@link SubstitutorFitting}.
+ * @author atta_troll
+ *
+ * @param <V> type of value to substitute
+ */
+public interface SubstitutorAccumulator<V> {
+
+    /**
+     * Adds a record, the accumulator chooses tokens it needs.
+     * @param tokens parsed tokens of a record, missing tokens are {@code null}
+     * @throws IllegalArgumentException on failure to process token properly
+     */
+    void accept(Object[] tokens) throws IllegalArgumentException;
+
+    /**
+     * Is called before records of a part of a data source are added, accumulators
+     * with random state may seed it with the index of the part, so random choices
+     * of parts are independent and a fit is still repeatable.
+     * @param part index of the part, 0 if data source is not split
+     */
+    default void startPart(int part) {
+    }
+
+    /**
+     * Merges accumulator of another part into this one.
+     * @param other accumulator produced by the same factory for the same token
+     */
+    void merge(SubstitutorAccumulator<V> other);
+
+    /**
+     * @return substitutor fitted on all added records
+     */
+    MissingTokenSubstitutor<V> finish();
+
+}
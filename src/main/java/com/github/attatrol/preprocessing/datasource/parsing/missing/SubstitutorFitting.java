@@ -0,0 +1,123 @@
+package com.github.attatrol.preprocessing.datasource.parsing.missing;
+
+import java.io.IOException;
+
+import com.github.attatrol.preprocessing.datasource.AbstractTokenDataSource;
+import com.github.attatrol.preprocessing.datasource.SplittableDataSource;
+import com.github.attatrol.preprocessing.datasource.TokenDataSourceUtils;
+
+/**
+ * Fits substitutors of all tokens of a data source together. Substitutors of
+ * {@link AccumulatingSubstitutorFactory}s are fitted in one pass over the data source,
+ * that is split into parts processed in parallel if possible. Other factories
+ * make their own passes.
+ * @author atta_troll
+ *
+ */
+public final class SubstitutorFitting {
+
+    /**
+     * Restricted ctor.
+     */
+    private SubstitutorFitting() {
+    }
+
+    /**
+     * Fits substitutors.
+     * @param dataSource token data source without substitutors
+     * @param factories substitutor factories of tokens, an element is {@code null}
+     *        if token has no substitutor
+     * @return fitted substitutors, an element is {@code null} if token has no factory
+     * @throws IOException on i/o error
+     * @throws IllegalArgumentException on failure to process token properly
+     */
+    public static MissingTokenSubstitutor<?>[] fit(AbstractTokenDataSource<?> dataSource,
+            MissingTokenSubstitutorFactory<?>[] factories)
+            throws IOException, IllegalArgumentException {
+        final MissingTokenSubstitutor<?>[] substitutors =
+                new MissingTokenSubstitutor<?>[factories.length];
+        boolean hasAccumulators = false;
+        for (int i = 0; i < factories.length; i++) {
+            if (factories[i] instanceof AccumulatingSubstitutorFactory) {
+                hasAccumulators = true;
+            }
+            else if (factories[i] != null) {
+                substitutors[i] = factories[i].produceSubstitutor(dataSource, i);
+            }
+        }
+        if (hasAccumulators) {
+            final RecordAccumulator accumulator = SplittableDataSource.reduce(dataSource,
+                    TokenDataSourceUtils.DEFAULT_PARTS_NUMBER,
+                    part -> new RecordAccumulator(dataSource, factories, part),
+                    (partAccumulator, record) -> partAccumulator.accept(record.getData()),
+                    RecordAccumulator::merge);
+            for (int i = 0; i < factories.length; i++) {
+                if (accumulator.accumulators[i] != null) {
+                    substitutors[i] = accumulator.accumulators[i].finish();
+                }
+            }
+        }
+        return substitutors;
+    }
+
+    /**
+     * Accumulators of all tokens of a part of data source.
+     */
+    private static final class RecordAccumulator {
+
+        /**
+         * Accumulators of tokens, an element is {@code null} if token
+         * has no accumulating factory.
+         */
+        private final SubstitutorAccumulator<?>[] accumulators;
+
+        /**
+         * Default ctor.
+         * @param dataSource token data source in use
+         * @param factories substitutor factories of tokens
+         * @param part index of the part
+         */
+        RecordAccumulator(AbstractTokenDataSource<?> dataSource,
+                MissingTokenSubstitutorFactory<?>[] factories, int part) {
+            accumulators = new SubstitutorAccumulator<?>[factories.length];
+            for (int i = 0; i < factories.length; i++) {
+                if (factories[i] instanceof AccumulatingSubstitutorFactory) {
+                    accumulators[i] = ((AccumulatingSubstitutorFactory<?>) factories[i])
+                            .createAccumulator(dataSource, i);
+                    accumulators[i].startPart(part);
+                }
+            }
+        }
+
+        /**
+         * Adds a record to all accumulators.
+         * @param tokens parsed tokens of a record
+         * @throws IllegalArgumentException on failure to process token properly
+         */
+        void accept(Object[] tokens) throws IllegalArgumentException {
+            for (SubstitutorAccumulator<?> accumulator : accumulators) {
+                if (accumulator != null) {
+                    accumulator.accept(tokens);
+                }
+            }
+        }
+
+        /**
+         * Merges accumulators of another part.
+         * @param other accumulators of another part
+         * @return this instance
+         */
+        @SuppressWarnings({
+            "unchecked",
+            "rawtypes"
+        })
+        RecordAccumulator merge(RecordAccumulator other) {
+            for (int i = 0; i < accumulators.length; i++) {
+                if (accumulators[i] != null) {
+                    ((SubstitutorAccumulator) accumulators[i]).merge(other.accumulators[i]);
+                }
+            }
+            return this;
+        }
+    }
+}
@@ -6,18 +6,16 @@ package com.github.attatrol.preprocessing.datasource.parsing.record;
  * @author atta_troll
  *
  */
-public class CommaSeparatedStringSplitter implements RecordTokenizer<String, String> {
+public class CommaSeparatedStringSplitter extends DelimiterScanner {
 
 	@Override
-	public String[] tokenize(String record) throws IllegalArgumentException {
-		String[] strings  = record.split(",");
-		for(int i = 0; i < strings.length; i++) {
-			strings[i] = strings[i].trim();
-			if ("".equals(strings[i])) {
-				strings[i] = null;
-			}
-		}
-		return strings;
+	protected boolean isDelimiter(char ch) {
+		return ch == ',';
+	}
+
+	@Override
+	protected boolean collapsesDelimiters() {
+		return false;
 	}
 
 }
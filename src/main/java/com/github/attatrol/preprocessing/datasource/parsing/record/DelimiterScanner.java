@@ -0,0 +1,97 @@
+package com.github.attatrol.preprocessing.datasource.parsing.record;
+
+/**
+ * Splits a record into fields in a single pass without regular expressions.<br/>
+ * Reproduces {@link String#split(String)} followed by {@link String#trim()}: trailing empty
+ * fields are dropped, fields are trimmed, empty fields are {@code null} tokens, a record
+ * without delimiters is a single field.<br/>
+ * {@link #scan(CharSequence, FieldBounds)} only finds offsets of fields, so strings
+ * are created just for the fields that are used.
+ * @author atta_troll
+ *
+ */
+public abstract class DelimiterScanner implements RecordTokenizer<CharSequence, String> {
+
+    /**
+     * Reusable bounds of {@link #tokenize(CharSequence)}, one for each thread
+     * to keep tokenizer stateless.
+     */
+    private static final ThreadLocal<FieldBounds> BOUNDS = new ThreadLocal<FieldBounds>() {
+        @Override
+        protected FieldBounds initialValue() {
+            return new FieldBounds();
+        }
+    };
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String[] tokenize(CharSequence record) throws IllegalArgumentException {
+        final FieldBounds bounds = BOUNDS.get();
+        final String[] strings = new String[scan(record, bounds)];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = bounds.getString(record, i);
+        }
+        return strings;
+    }
+
+    /**
+     * Finds trimmed fields of a record.
+     * @param record a record
+     * @param bounds reusable bounds, filled with fields of the record
+     * @return number of fields
+     */
+    public int scan(CharSequence record, FieldBounds bounds) {
+        bounds.clear();
+        final int length = record.length();
+        final boolean collapsesDelimiters = collapsesDelimiters();
+        boolean hasDelimiters = false;
+        int keptCount = 0;
+        int fieldStart = 0;
+        while (true) {
+            int fieldEnd = fieldStart;
+            while (fieldEnd < length && !isDelimiter(record.charAt(fieldEnd))) {
+                fieldEnd++;
+            }
+            int start = fieldStart;
+            int end = fieldEnd;
+            while (start < end && record.charAt(start) <= ' ') {
+                start++;
+            }
+            while (end > start && record.charAt(end - 1) <= ' ') {
+                end--;
+            }
+            bounds.add(start, end);
+            if (fieldEnd > fieldStart) {
+                keptCount = bounds.getCount();
+            }
+            if (fieldEnd == length) {
+                break;
+            }
+            hasDelimiters = true;
+            fieldStart = fieldEnd + 1;
+            if (collapsesDelimiters) {
+                while (fieldStart < length && isDelimiter(record.charAt(fieldStart))) {
+                    fieldStart++;
+                }
+            }
+        }
+        if (hasDelimiters) {
+            bounds.truncate(keptCount);
+        }
+        return bounds.getCount();
+    }
+
+    /**
+     * @param ch a character
+     * @return {@code true} if the character separates fields
+     */
+    protected abstract boolean isDelimiter(char ch);
+
+    /**
+     * @return {@code true} if a run of delimiters separates two fields,
+     *         {@code false} if each delimiter separates two fields
+     */
+    protected abstract boolean collapsesDelimiters();
+}
@@ -0,0 +1,95 @@
+package com.github.attatrol.preprocessing.datasource.parsing.record;
+
+import java.util.Arrays;
+
+/**
+ * Reusable start and end offsets of fields of a record, filled by {@link DelimiterScanner}.
+ * Offsets are kept in a single {@code int} array that grows when needed, so scanning
+ * records of a steady width doesn't allocate.
+ * @author atta_troll
+ *
+ */
+public class FieldBounds {
+
+    /**
+     * Start and end offsets of fields, two per field.
+     */
+    private int[] bounds = new int[32];
+
+    /**
+     * Number of fields.
+     */
+    private int count;
+
+    /**
+     * @return number of fields
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @param field index of a field
+     * @return offset of the first character of the trimmed field
+     */
+    public int getStart(int field) {
+        return bounds[2 * field];
+    }
+
+    /**
+     * @param field index of a field
+     * @return offset after the last character of the trimmed field
+     */
+    public int getEnd(int field) {
+        return bounds[2 * field + 1];
+    }
+
+    /**
+     * @param field index of a field
+     * @return {@code true} if the trimmed field is empty
+     */
+    public boolean isEmpty(int field) {
+        return bounds[2 * field] == bounds[2 * field + 1];
+    }
+
+    /**
+     * Creates a string of a field.
+     * @param record scanned record
+     * @param field index of a field
+     * @return trimmed field or {@code null} if it is empty
+     */
+    public String getString(CharSequence record, int field) {
+        final int start = bounds[2 * field];
+        final int end = bounds[2 * field + 1];
+        return start == end ? null : record.subSequence(start, end).toString();
+    }
+
+    /**
+     * Removes all fields.
+     */
+    void clear() {
+        count = 0;
+    }
+
+    /**
+     * Adds a field.
+     * @param start offset of the first character of the trimmed field
+     * @param end offset after the last character of the trimmed field
+     */
+    void add(int start, int end) {
+        if (2 * count == bounds.length) {
+            bounds = Arrays.copyOf(bounds, bounds.length * 2);
+        }
+        bounds[2 * count] = start;
+        bounds[2 * count + 1] = end;
+        count++;
+    }
+
+    /**
+     * Removes fields after some number of fields.
+     * @param newCount number of fields left
+     */
+    void truncate(int newCount) {
+        count = newCount;
+    }
+}
@@ -0,0 +1,201 @@
+package com.github.attatrol.preprocessing.datasource.parsing.record;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a CSV record as defined by RFC 4180: a field enclosed in quotes may contain
+ * delimiters, line breaks and doubled quotes, which stand for a single quote.<br/>
+ * The record is passed once through a state machine. Unquoted fields are trimmed,
+ * spaces around quoted fields are ignored, quoted fields are kept as they are.
+ * Returns {@code null} if token string is empty.
+ * @author atta_troll
+ *
+ */
+public class QuotedCsvTokenizer implements RecordTokenizer<CharSequence, String> {
+
+    /**
+     * Before the first character of a field, a record starts in this state.
+     */
+    public static final int FIELD_START = 0;
+
+    /**
+     * Inside an unquoted field, quotes are literal characters here.
+     */
+    public static final int UNQUOTED = 1;
+
+    /**
+     * Inside a quoted field, line breaks belong to the field here.
+     */
+    public static final int QUOTED = 2;
+
+    /**
+     * After a quote inside a quoted field, it either closes the field or escapes a quote.
+     */
+    public static final int QUOTE_IN_QUOTED = 3;
+
+    /**
+     * After a closed quoted field.
+     */
+    public static final int AFTER_QUOTED = 4;
+
+    /**
+     * Some characters other than spaces follow a closed quoted field.
+     */
+    public static final int INVALID = -1;
+
+    /**
+     * Separates fields.
+     */
+    private final char delimiter;
+
+    /**
+     * Encloses fields.
+     */
+    private final char quote;
+
+    /**
+     * Creates tokenizer of comma separated fields enclosed in double quotes.
+     */
+    public QuotedCsvTokenizer() {
+        this(',', '"');
+    }
+
+    /**
+     * Default ctor.
+     * @param delimiter character that separates fields
+     * @param quote character that encloses fields
+     * @throws IllegalArgumentException if delimiter and quote are the same
+     */
+    public QuotedCsvTokenizer(char delimiter, char quote) throws IllegalArgumentException {
+        if (delimiter == quote) {
+            throw new IllegalArgumentException("Delimiter and quote must differ.");
+        }
+        this.delimiter = delimiter;
+        this.quote = quote;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @throws IllegalArgumentException if a quoted field is not closed or is followed
+     *         by some characters other than spaces before the delimiter
+     */
+    @Override
+    public String[] tokenize(CharSequence record) throws IllegalArgumentException {
+        final List<String> fields = new ArrayList<>();
+        final StringBuilder quoted = new StringBuilder();
+        final int length = record.length();
+        int state = FIELD_START;
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            final char ch = record.charAt(i);
+            final int next = nextState(state, ch);
+            switch (next) {
+            case FIELD_START:
+                if (ch == delimiter) {
+                    fields.add(state == FIELD_START ? null
+                            : state == UNQUOTED ? getTrimmed(record, start, i)
+                            : getQuoted(quoted));
+                }
+                break;
+            case UNQUOTED:
+                if (state == FIELD_START) {
+                    start = i;
+                }
+                break;
+            case QUOTED:
+                if (state == FIELD_START) {
+                    quoted.setLength(0);
+                }
+                else {
+                    quoted.append(ch);
+                }
+                break;
+            case INVALID:
+                throw new IllegalArgumentException(String.format(
+                        "Unexpected character '%c' after quoted field at position %d.", ch, i));
+            default:
+                break;
+            }
+            state = next;
+        }
+        switch (state) {
+        case FIELD_START:
+            fields.add(null);
+            break;
+        case UNQUOTED:
+            fields.add(getTrimmed(record, start, length));
+            break;
+        case QUOTED:
+            throw new IllegalArgumentException("Quoted field is not closed.");
+        default:
+            fields.add(getQuoted(quoted));
+        }
+        return fields.toArray(new String[fields.size()]);
+    }
+
+    /**
+     * Moves the state machine over a character of a record. The same transitions
+     * frame records in a text, see {@link com.github.attatrol.preprocessing.datasource.QuotedCsvDataSource},
+     * so a line break ends a record unless the state is {@link #QUOTED}.
+     * @param state current state
+     * @param ch the character
+     * @return next state, {@link #INVALID} if the character can't follow a closed quoted field
+     */
+    public int nextState(int state, char ch) {
+        switch (state) {
+        case FIELD_START:
+            if (ch == delimiter) {
+                return FIELD_START;
+            }
+            if (ch == quote) {
+                return QUOTED;
+            }
+            return ch > ' ' ? UNQUOTED : FIELD_START;
+        case UNQUOTED:
+            return ch == delimiter ? FIELD_START : UNQUOTED;
+        case QUOTED:
+            return ch == quote ? QUOTE_IN_QUOTED : QUOTED;
+        case QUOTE_IN_QUOTED:
+            if (ch == quote) {
+                return QUOTED;
+            }
+            return afterQuoted(ch);
+        default:
+            return afterQuoted(ch);
+        }
+    }
+
+    /**
+     * Handles a character after a closed quoted field.
+     * @param ch the character
+     * @return next state
+     */
+    private int afterQuoted(char ch) {
+        if (ch == delimiter) {
+            return FIELD_START;
+        }
+        return ch <= ' ' ? AFTER_QUOTED : INVALID;
+    }
+
+    /**
+     * @param quoted contents of a quoted field
+     * @return the field, {@code null} if it is empty
+     */
+    private static String getQuoted(StringBuilder quoted) {
+        return quoted.length() > 0 ? quoted.toString() : null;
+    }
+
+    /**
+     * @param record a record
+     * @param start start of a field that doesn't start with a space
+     * @param end end of the field
+     * @return the field with trailing spaces removed
+     */
+    private static String getTrimmed(CharSequence record, int start, int end) {
+        while (end > start && record.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return record.subSequence(start, end).toString();
+    }
+}
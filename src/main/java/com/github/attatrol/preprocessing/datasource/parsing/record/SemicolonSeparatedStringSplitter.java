@@ -7,18 +7,16 @@ package com.github.attatrol.preprocessing.datasource.parsing.record;
  * @author atta_troll
  *
  */
-public class SemicolonSeparatedStringSplitter implements RecordTokenizer<String, String> {
+public class SemicolonSeparatedStringSplitter extends DelimiterScanner {
 
     @Override
-    public String[] tokenize(String record) throws IllegalArgumentException {
-        String[] strings  = record.split(";");
-        for(int i = 0; i < strings.length; i++) {
-            strings[i] = strings[i].trim();
-            if ("".equals(strings[i])) {
-                strings[i] = null;
-            }
-        }
-        return strings;
+    protected boolean isDelimiter(char ch) {
+        return ch == ';';
+    }
+
+    @Override
+    protected boolean collapsesDelimiters() {
+        return false;
     }
 
 }
@@ -5,18 +5,20 @@ package com.github.attatrol.preprocessing.datasource.parsing.record;
  * @author atta_troll
  *
  */
-public class TabulationSeparatedStringSplitter implements RecordTokenizer<String, String> {
+public class TabulationSeparatedStringSplitter extends DelimiterScanner {
 
+	/**
+	 * {@inheritDoc}<br/>
+	 * Space characters are the ones of regular expression {@code \s}.
+	 */
 	@Override
-	public String[] tokenize(String record) throws IllegalArgumentException {
-		String[] strings  = record.split("\\s+");
-		for(int i = 0; i < strings.length; i++) {
-			strings[i] = strings[i].trim();
-			if ("".equals(strings[i])) {
-				strings[i] = null;
-			}
-		}
-		return strings;
+	protected boolean isDelimiter(char ch) {
+		return ch == ' ' || ch == '\t' || ch == '\n' || ch == '\u000B' || ch == '\f' || ch == '\r';
+	}
+
+	@Override
+	protected boolean collapsesDelimiters() {
+		return true;
 	}
 
 }
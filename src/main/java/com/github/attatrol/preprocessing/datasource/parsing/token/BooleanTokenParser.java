@@ -0,0 +1,26 @@
+package com.github.attatrol.preprocessing.datasource.parsing.token;
+
+/**
+ * Parses a raw token given as a range of characters of its record into a {@code boolean},
+ * so neither the token string nor the boxed value is created. Columnar consumers,
+ * see {@link com.github.attatrol.preprocessing.datasource.RecordBatch}, use it to fill
+ * {@link com.github.attatrol.preprocessing.datasource.parsing.TokenType#BINARY} and
+ * {@link com.github.attatrol.preprocessing.datasource.parsing.TokenType#BINARY_DIGITAL}
+ * columns.<br/>
+ * NOTE: must be a stateless object!.
+ * @author atta_troll
+ *
+ */
+public interface BooleanTokenParser {
+
+	/**
+	 * Parses a range of characters into a {@code boolean}.
+	 * @param record record that contains the token
+	 * @param start offset of the first character of the token
+	 * @param end offset after the last character of the token
+	 * @return parsed token
+	 * @throws IllegalArgumentException on failure to parse
+	 */
+	boolean parseBoolean(CharSequence record, int start, int end) throws IllegalArgumentException;
+
+}
@@ -0,0 +1,108 @@
+package com.github.attatrol.preprocessing.datasource.parsing.token;
+
+import com.github.attatrol.preprocessing.datasource.columnar.CategoryDictionary;
+
+/**
+ * Parses categorical tokens into their codes in a {@link CategoryDictionary},
+ * so a column keeps one string per distinct token and tokens are compared as integers.<br/>
+ * The dictionary is built in advance by a pass over the data source, see
+ * {@link com.github.attatrol.preprocessing.datasource.DefaultTokenDataSource#encodeCategories()},
+ * so codes don't depend on the order in which parts of the data source are read.
+ * The parser only looks codes up and never changes the dictionary, so it is stateless
+ * as any other {@link TokenParser} and is shared by parts read in parallel.
+ * The dictionary must not be changed after the parser is created.
+ * @author atta_troll
+ *
+ */
+public class DictionaryEncodingParser
+		implements TokenParser<String, Integer>, RangeTokenParser<Integer> {
+
+	/**
+	 * Dictionary of tokens.
+	 */
+	private final CategoryDictionary dictionary;
+
+	/**
+	 * Canonical boxes of codes, so parsing allocates nothing.
+	 */
+	private final Integer[] codes;
+
+	/**
+	 * Default ctor.
+	 * @param dictionary complete dictionary of tokens
+	 */
+	public DictionaryEncodingParser(CategoryDictionary dictionary) {
+		this.dictionary = dictionary;
+		codes = new Integer[dictionary.size()];
+		for (int i = 0; i < codes.length; i++) {
+			codes[i] = i;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Integer parseValue(String rawValue) throws IllegalArgumentException {
+		return toCode(dictionary.getCode(rawValue), rawValue);
+	}
+
+	/**
+	 * {@inheritDoc}<br/>
+	 * Characters of the token are compared in place, no string is created.
+	 */
+	@Override
+	public Integer parseRange(CharSequence record, int start, int end)
+			throws IllegalArgumentException {
+		final int code = dictionary.getCode(record, start, end);
+		return code >= 0 ? codes[code] : toCode(code, record.subSequence(start, end));
+	}
+
+	/**
+	 * @param token a token, not necessarily a string
+	 * @return code of the token
+	 * @throws IllegalArgumentException if the token is not in the dictionary
+	 */
+	public Integer encode(Object token) throws IllegalArgumentException {
+		return toCode(dictionary.getCode(token), token);
+	}
+
+	/**
+	 * @param code code of a token
+	 * @return the token
+	 * @throws IndexOutOfBoundsException if there is no such code
+	 */
+	public Object decode(int code) throws IndexOutOfBoundsException {
+		return dictionary.decode(code);
+	}
+
+	/**
+	 * @param token a token
+	 * @return code of the token or -1 if the token is not in the dictionary
+	 */
+	public int getCode(Object token) {
+		return dictionary.getCode(token);
+	}
+
+	/**
+	 * @return number of distinct tokens
+	 */
+	public int getTokenNumber() {
+		return codes.length;
+	}
+
+	/**
+	 * @param code code of a token or -1
+	 * @param token the token
+	 * @return canonical box of the code
+	 * @throws IllegalArgumentException if the token is not in the dictionary
+	 */
+	private Integer toCode(int code, Object token) throws IllegalArgumentException {
+		if (code < 0) {
+			throw new IllegalArgumentException(
+					String.format("Token \"%s\" is not in the dictionary.", token));
+		}
+		return codes[code];
+	}
+
+}
@@ -0,0 +1,24 @@
+package com.github.attatrol.preprocessing.datasource.parsing.token;
+
+/**
+ * Parses a raw token given as a range of characters of its record into an {@code int},
+ * so neither the token string nor the boxed value is created. Columnar consumers,
+ * see {@link com.github.attatrol.preprocessing.datasource.RecordBatch}, use it to fill
+ * {@link com.github.attatrol.preprocessing.datasource.parsing.TokenType#INTEGER} columns.<br/>
+ * NOTE: must be a stateless object!.
+ * @author atta_troll
+ *
+ */
+public interface IntTokenParser {
+
+	/**
+	 * Parses a range of characters into an {@code int}.
+	 * @param record record that contains the token
+	 * @param start offset of the first character of the token
+	 * @param end offset after the last character of the token
+	 * @return parsed token
+	 * @throws IllegalArgumentException on failure to parse
+	 */
+	int parseInt(CharSequence record, int start, int end) throws IllegalArgumentException;
+
+}
@@ -0,0 +1,27 @@
+package com.github.attatrol.preprocessing.datasource.parsing.token;
+
+/**
+ * Parses a raw token given as a range of characters of its record, so the token doesn't
+ * have to be copied into a string. For records that are views of ASCII bytes,
+ * see {@link com.github.attatrol.preprocessing.datasource.AsciiCharSequence},
+ * tokens are parsed directly from bytes.<br/>
+ * Result must be the same as the result of {@link TokenParser#parseValue(Object)}
+ * for the string of the range.<br/>
+ * NOTE: must be a stateless object!.
+ * @author atta_troll
+ *
+ * @param <T> internal value type
+ */
+public interface RangeTokenParser<T> {
+
+	/**
+	 * Parses a range of characters into a format understandable by internal algorithms.
+	 * @param record record that contains the token
+	 * @param start offset of the first character of the token
+	 * @param end offset after the last character of the token
+	 * @return parsed token
+	 * @throws IllegalArgumentException on failure to parse
+	 */
+	T parseRange(CharSequence record, int start, int end) throws IllegalArgumentException;
+
+}
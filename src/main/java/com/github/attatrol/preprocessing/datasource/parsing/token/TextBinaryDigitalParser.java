@@ -1,10 +1,23 @@
 package com.github.attatrol.preprocessing.datasource.parsing.token;
 
-public class TextBinaryDigitalParser implements TokenParser<String, Boolean> {
+public class TextBinaryDigitalParser
+		implements TokenParser<String, Boolean>, RangeTokenParser<Boolean>, BooleanTokenParser {
 
 	@Override
 	public Boolean parseValue(String rawValue) throws IllegalArgumentException {
 		return rawValue.equals("1") ? Boolean.TRUE : Boolean.FALSE;
 	}
 
+	@Override
+	public Boolean parseRange(CharSequence record, int start, int end)
+			throws IllegalArgumentException {
+		return parseBoolean(record, start, end) ? Boolean.TRUE : Boolean.FALSE;
+	}
+
+	@Override
+	public boolean parseBoolean(CharSequence record, int start, int end)
+			throws IllegalArgumentException {
+		return end - start == 1 && record.charAt(start) == '1';
+	}
+
 }
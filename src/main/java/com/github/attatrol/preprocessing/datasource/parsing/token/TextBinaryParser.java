@@ -2,7 +2,8 @@ package com.github.attatrol.preprocessing.datasource.parsing.token;
 
 import java.util.regex.Pattern;
 
-public class TextBinaryParser implements TokenParser<String, Boolean> {
+public class TextBinaryParser
+		implements TokenParser<String, Boolean>, RangeTokenParser<Boolean>, BooleanTokenParser {
 
 	public static final Pattern TRUE_PARSER = Pattern.compile("t|T|True|true");
 
@@ -11,4 +12,29 @@ public class TextBinaryParser implements TokenParser<String, Boolean> {
 		return TRUE_PARSER.matcher(rawValue).matches() ? Boolean.TRUE : Boolean.FALSE;
 	}
 
+	@Override
+	public Boolean parseRange(CharSequence record, int start, int end)
+			throws IllegalArgumentException {
+		return parseBoolean(record, start, end);
+	}
+
+	/**
+	 * {@inheritDoc}<br/>
+	 * Matches the same values as {@link #TRUE_PARSER} without a regular expression.
+	 */
+	@Override
+	public boolean parseBoolean(CharSequence record, int start, int end)
+			throws IllegalArgumentException {
+		final int length = end - start;
+		if (length == 0) {
+			return false;
+		}
+		final char first = record.charAt(start);
+		if (length == 1) {
+			return first == 't' || first == 'T';
+		}
+		return length == 4 && (first == 't' || first == 'T') && record.charAt(start + 1) == 'r'
+				&& record.charAt(start + 2) == 'u' && record.charAt(start + 3) == 'e';
+	}
+
 }
@@ -1,10 +1,20 @@
 package com.github.attatrol.preprocessing.datasource.parsing.token;
 
-public class TextCategoricalParser implements TokenParser<String, String> {
+public class TextCategoricalParser implements TokenParser<String, String>, RangeTokenParser<String> {
 
 	@Override
 	public String parseValue(String rawValue) throws IllegalArgumentException {
 		return rawValue;
 	}
 
+	/**
+	 * {@inheritDoc}<br/>
+	 * This is the only place where characters of the token are decoded into a string.
+	 */
+	@Override
+	public String parseRange(CharSequence record, int start, int end)
+			throws IllegalArgumentException {
+		return record.subSequence(start, end).toString();
+	}
+
 }
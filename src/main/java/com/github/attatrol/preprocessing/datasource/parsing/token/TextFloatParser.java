@@ -1,10 +1,137 @@
 package com.github.attatrol.preprocessing.datasource.parsing.token;
 
-public class TextFloatParser implements TokenParser<String, Double>{
+public class TextFloatParser
+		implements TokenParser<String, Double>, RangeTokenParser<Double>, DoubleTokenParser {
+
+	/**
+	 * Largest integer that is exactly representable as a {@code double}, with all smaller ones.
+	 */
+	private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+	/**
+	 * Maximal number of significant digits collected into a {@code long} mantissa.
+	 */
+	private static final int MAX_DIGITS = 18;
+
+	/**
+	 * Powers of ten that are exactly representable as {@code double}.
+	 */
+	private static final double[] POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
 
 	@Override
 	public Double parseValue(String rawValue) throws IllegalArgumentException {
 		return Double.parseDouble(rawValue);
 	}
 
+	@Override
+	public Double parseRange(CharSequence record, int start, int end)
+			throws IllegalArgumentException {
+		return parseDouble(record, start, end);
+	}
+
+	/**
+	 * {@inheritDoc}<br/>
+	 * Plain decimal numbers with an optional exponent are parsed in place if their mantissa
+	 * and the power of ten are exact doubles, then a single multiplication or division
+	 * is correctly rounded (Clinger's fast path). Any other input is parsed
+	 * by {@link Double#parseDouble(String)}, so the result is always the same.
+	 */
+	@Override
+	public double parseDouble(CharSequence record, int start, int end)
+			throws IllegalArgumentException {
+		int position = start;
+		boolean isNegative = false;
+		if (position < end && (record.charAt(position) == '-' || record.charAt(position) == '+')) {
+			isNegative = record.charAt(position) == '-';
+			position++;
+		}
+		long mantissa = 0L;
+		int digits = 0;
+		int significantDigits = 0;
+		int exponent = 0;
+		boolean hasPoint = false;
+		for (; position < end; position++) {
+			final char ch = record.charAt(position);
+			if (ch >= '0' && ch <= '9') {
+				digits++;
+				if (mantissa == 0L && ch == '0') {
+					if (hasPoint) {
+						exponent--;
+					}
+					continue;
+				}
+				if (++significantDigits > MAX_DIGITS) {
+					return parseFallback(record, start, end);
+				}
+				mantissa = mantissa * 10 + (ch - '0');
+				if (hasPoint) {
+					exponent--;
+				}
+			}
+			else if (ch == '.' && !hasPoint) {
+				hasPoint = true;
+			}
+			else {
+				break;
+			}
+		}
+		if (digits == 0) {
+			return parseFallback(record, start, end);
+		}
+		if (position < end) {
+			final char ch = record.charAt(position);
+			if (ch != 'e' && ch != 'E') {
+				return parseFallback(record, start, end);
+			}
+			position++;
+			boolean isExponentNegative = false;
+			if (position < end && (record.charAt(position) == '-' || record.charAt(position) == '+')) {
+				isExponentNegative = record.charAt(position) == '-';
+				position++;
+			}
+			if (position == end || end - position > 4) {
+				return parseFallback(record, start, end);
+			}
+			int explicitExponent = 0;
+			for (; position < end; position++) {
+				final int digit = record.charAt(position) - '0';
+				if (digit < 0 || digit > 9) {
+					return parseFallback(record, start, end);
+				}
+				explicitExponent = explicitExponent * 10 + digit;
+			}
+			exponent += isExponentNegative ? -explicitExponent : explicitExponent;
+		}
+		double result;
+		if (mantissa == 0L) {
+			result = 0.;
+		}
+		else if (mantissa > MAX_EXACT_MANTISSA
+				|| exponent < -(POWERS_OF_TEN.length - 1) || exponent > POWERS_OF_TEN.length - 1) {
+			return parseFallback(record, start, end);
+		}
+		else if (exponent < 0) {
+			result = mantissa / POWERS_OF_TEN[-exponent];
+		}
+		else {
+			result = mantissa * POWERS_OF_TEN[exponent];
+		}
+		return isNegative ? -result : result;
+	}
+
+	/**
+	 * @param record record that contains the token
+	 * @param start offset of the first character of the token
+	 * @param end offset after the last character of the token
+	 * @return token parsed by {@link Double#parseDouble(String)}
+	 * @throws IllegalArgumentException on failure to parse
+	 */
+	private static double parseFallback(CharSequence record, int start, int end)
+			throws IllegalArgumentException {
+		return Double.parseDouble(record.subSequence(start, end).toString());
+	}
+
 }
@@ -1,10 +1,57 @@
 package com.github.attatrol.preprocessing.datasource.parsing.token;
 
-public class TextIntegerParser implements TokenParser<String, Integer>{
+public class TextIntegerParser
+		implements TokenParser<String, Integer>, RangeTokenParser<Integer>, IntTokenParser,
+		DoubleTokenParser {
 
 	@Override
 	public Integer parseValue(String rawValue) throws IllegalArgumentException {
 		return Integer.parseInt(rawValue);
 	}
 
+	@Override
+	public Integer parseRange(CharSequence record, int start, int end)
+			throws IllegalArgumentException {
+		return parseInt(record, start, end);
+	}
+
+	/**
+	 * {@inheritDoc}<br/>
+	 * ASCII digits are parsed in place, any other input is parsed by
+	 * {@link Integer#parseInt(String)}.
+	 */
+	@Override
+	public int parseInt(CharSequence record, int start, int end) throws IllegalArgumentException {
+		int position = start;
+		boolean isNegative = false;
+		if (position < end && (record.charAt(position) == '-' || record.charAt(position) == '+')) {
+			isNegative = record.charAt(position) == '-';
+			position++;
+		}
+		if (position == end || end - position > 10) {
+			return Integer.parseInt(record.subSequence(start, end).toString());
+		}
+		long result = 0L;
+		for (; position < end; position++) {
+			final int digit = record.charAt(position) - '0';
+			if (digit < 0 || digit > 9) {
+				return Integer.parseInt(record.subSequence(start, end).toString());
+			}
+			result = result * 10 + digit;
+		}
+		if (isNegative) {
+			result = -result;
+		}
+		if (result < Integer.MIN_VALUE || result > Integer.MAX_VALUE) {
+			return Integer.parseInt(record.subSequence(start, end).toString());
+		}
+		return (int) result;
+	}
+
+	@Override
+	public double parseDouble(CharSequence record, int start, int end)
+			throws IllegalArgumentException {
+		return parseInt(record, start, end);
+	}
+
 }
@@ -0,0 +1,206 @@
+package com.github.attatrol.preprocessing.datasource.profile;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import com.github.attatrol.preprocessing.datasource.DirectoryDataSource;
+
+/**
+ * Fast fingerprint of a file: its size, modification time and a hash of its head and tail,
+ * so a changed file is recognized without reading it. Fingerprint of a directory is made
+ * of relative paths, sizes and modification times of the files read by its data source,
+ * see {@link DirectoryDataSource#listFiles(File)}. Immutable.
+ * @author atta_troll
+ *
+ */
+public final class FileFingerprint {
+
+    /**
+     * Number of hashed bytes at each end of a file.
+     */
+    private static final int HASHED_SIZE = 1 << 16;
+
+    /**
+     * Size of the file or total size of files of the directory.
+     */
+    private final long size;
+
+    /**
+     * Modification time of the file or the latest one of files of the directory.
+     */
+    private final long lastModified;
+
+    /**
+     * Hash of contents.
+     */
+    private final long hash;
+
+    /**
+     * Default ctor.
+     * @param size size of the file
+     * @param lastModified modification time of the file
+     * @param hash hash of contents
+     */
+    public FileFingerprint(long size, long lastModified, long hash) {
+        this.size = size;
+        this.lastModified = lastModified;
+        this.hash = hash;
+    }
+
+    /**
+     * Takes fingerprint of a file or a directory.
+     * @param file a file or a directory
+     * @return its fingerprint
+     * @throws IOException on i/o error or if the file doesn't exist
+     */
+    public static FileFingerprint of(File file) throws IOException {
+        if (file.isDirectory()) {
+            return ofDirectory(file);
+        }
+        if (!file.isFile()) {
+            throw new IOException(String.format("File %s doesn't exist.", file.getName()));
+        }
+        final CRC32 head = new CRC32();
+        final CRC32 tail = new CRC32();
+        final long size;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            size = channel.size();
+            update(head, channel, 0L, Math.min(size, HASHED_SIZE));
+            final long tailStart = Math.max(HASHED_SIZE, size - HASHED_SIZE);
+            update(tail, channel, tailStart, size - tailStart);
+        }
+        return new FileFingerprint(size, file.lastModified(), head.getValue() << 32 | tail.getValue());
+    }
+
+    /**
+     * Takes fingerprint of a directory.
+     * @param directory a directory
+     * @return its fingerprint
+     * @throws IOException on failure to list files
+     */
+    private static FileFingerprint ofDirectory(File directory) throws IOException {
+        final List<File> files;
+        try {
+            files = DirectoryDataSource.listFiles(directory);
+        }
+        catch (IllegalArgumentException ex) {
+            throw new IOException(String.format("Failed to list files of %s.", directory.getName()),
+                    ex);
+        }
+        final CRC32 crc = new CRC32();
+        final ByteBuffer buffer = ByteBuffer.allocate(2 * Long.BYTES);
+        long size = 0L;
+        long lastModified = 0L;
+        for (File file : files) {
+            final String path = directory.toPath().relativize(file.toPath()).toString()
+                    .replace(File.separatorChar, '/');
+            crc.update(path.getBytes(StandardCharsets.UTF_8));
+            buffer.clear();
+            buffer.putLong(file.length()).putLong(file.lastModified());
+            crc.update(buffer.array());
+            size += file.length();
+            lastModified = Math.max(lastModified, file.lastModified());
+        }
+        return new FileFingerprint(size, lastModified, (long) files.size() << 32 | crc.getValue());
+    }
+
+    /**
+     * Adds a range of bytes of a file to a checksum.
+     * @param crc the checksum
+     * @param channel file channel
+     * @param position position of the range
+     * @param length length of the range
+     * @throws IOException on i/o error
+     */
+    private static void update(CRC32 crc, FileChannel channel, long position, long length)
+            throws IOException {
+        if (length <= 0) {
+            return;
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate((int) length);
+        while (buffer.hasRemaining()
+                && channel.read(buffer, position + buffer.position()) >= 0) {
+            // reads until the buffer is full
+        }
+        crc.update(buffer.array(), 0, buffer.position());
+    }
+
+    /**
+     * Parses fingerprint from its string form, see {@link #toString()}.
+     * @param string string form of fingerprint
+     * @return the fingerprint
+     * @throws IllegalArgumentException if string is malformed
+     */
+    public static FileFingerprint parse(String string) throws IllegalArgumentException {
+        final String[] parts = string.split("-");
+        if (parts.length != 3) {
+            throw new IllegalArgumentException(String.format("Malformed fingerprint %s.", string));
+        }
+        try {
+            return new FileFingerprint(Long.parseUnsignedLong(parts[0], 16),
+                    Long.parseUnsignedLong(parts[1], 16), Long.parseUnsignedLong(parts[2], 16));
+        }
+        catch (NumberFormatException ex) {
+            throw new IllegalArgumentException(String.format("Malformed fingerprint %s.", string),
+                    ex);
+        }
+    }
+
+    /**
+     * @return size of the file
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return modification time of the file
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * @return hash of contents
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof FileFingerprint)) {
+            return false;
+        }
+        final FileFingerprint other = (FileFingerprint) obj;
+        return size == other.size && lastModified == other.lastModified && hash == other.hash;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        return Long.hashCode(size) * 961 + Long.hashCode(lastModified) * 31 + Long.hashCode(hash);
+    }
+
+    /**
+     * @return string form of fingerprint, it is safe to use as a file name
+     */
+    @Override
+    public String toString() {
+        return String.format("%x-%x-%x", size, lastModified, hash);
+    }
+}
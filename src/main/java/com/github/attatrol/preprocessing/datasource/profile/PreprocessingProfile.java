@@ -0,0 +1,385 @@
+package com.github.attatrol.preprocessing.datasource.profile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+
+import com.github.attatrol.preprocessing.datasource.AbstractTokenDataSource;
+import com.github.attatrol.preprocessing.datasource.DataSource;
+import com.github.attatrol.preprocessing.datasource.DefaultTokenDataSource;
+import com.github.attatrol.preprocessing.datasource.parsing.TokenFeatures;
+import com.github.attatrol.preprocessing.datasource.parsing.TokenType;
+import com.github.attatrol.preprocessing.datasource.parsing.missing.ConstantTokenSubstitutor;
+import com.github.attatrol.preprocessing.datasource.parsing.missing.MissingTokenSubstitutor;
+import com.github.attatrol.preprocessing.datasource.parsing.missing.MissingTokenSubstitutorFactory;
+import com.github.attatrol.preprocessing.datasource.parsing.missing.SubstitutorFitting;
+import com.github.attatrol.preprocessing.datasource.parsing.token.TokenParser;
+import com.github.attatrol.preprocessing.datasource.syntax.SyntaxRegister;
+import com.github.attatrol.preprocessing.datasource.syntax.TokenDataSourceSyntax;
+
+/**
+ * Complete result of preprocessing setup of a data source: its syntax, token features
+ * with chosen {@link MissingTokenSubstitutorFactory}s and fitted substitutors.
+ * It is bound to the data source by {@link FileFingerprint}.<br/>
+ * Profile is stored as a properties file. Only {@link ConstantTokenSubstitutor}s are stored,
+ * other substitutors have to be fitted again, see {@link #isComplete()}
+ * and {@link #fitSubstitutors(DataSource)}.
+ * Factories are restored from {@link MissingTokenSubstitutor#SUBSTITUTOR_REGISTER}.
+ * @author atta_troll
+ *
+ */
+public class PreprocessingProfile {
+
+    /**
+     * Version of stored profiles.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Prefix of keys of columns.
+     */
+    private static final String COLUMN = "column.";
+
+    /**
+     * Fingerprint of the data source.
+     */
+    private final FileFingerprint fingerprint;
+
+    /**
+     * Syntax of the data source.
+     */
+    private final SyntaxRegister syntax;
+
+    /**
+     * Token features.
+     */
+    private final TokenFeatures[] features;
+
+    /**
+     * Fitted substitutors, an element is {@code null} if token has no substitutor
+     * or it must be fitted again.
+     */
+    private final MissingTokenSubstitutor<?>[] substitutors;
+
+    /**
+     * Default ctor.
+     * @param fingerprint fingerprint of the data source
+     * @param syntax syntax of the data source
+     * @param features token features
+     * @param substitutors fitted substitutors, elements may be {@code null}
+     * @throws IllegalArgumentException if lengths of features and substitutors differ
+     */
+    public PreprocessingProfile(FileFingerprint fingerprint, SyntaxRegister syntax,
+            TokenFeatures[] features, MissingTokenSubstitutor<?>[] substitutors)
+            throws IllegalArgumentException {
+        if (features.length != substitutors.length) {
+            throw new IllegalArgumentException(
+                    "Numbers of token features and substitutors differ.");
+        }
+        this.fingerprint = fingerprint;
+        this.syntax = syntax;
+        this.features = features;
+        this.substitutors = substitutors;
+    }
+
+    /**
+     * @return fingerprint of the data source
+     */
+    public FileFingerprint getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * @return syntax of the data source
+     */
+    public SyntaxRegister getSyntax() {
+        return syntax;
+    }
+
+    /**
+     * @return token features
+     */
+    public TokenFeatures[] getTokenFeatures() {
+        return features;
+    }
+
+    /**
+     * @return fitted substitutors, an element is {@code null} if token has no substitutor
+     *         or it must be fitted again
+     */
+    public MissingTokenSubstitutor<?>[] getSubstitutors() {
+        return substitutors;
+    }
+
+    /**
+     * @return {@code true} if every token with a substitutor factory has its fitted substitutor
+     */
+    public boolean isComplete() {
+        for (int i = 0; i < features.length; i++) {
+            if (features[i].getMissingTokenSubstitutor() != null && substitutors[i] == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return token parsers of the syntax for token types
+     */
+    public TokenParser<?, ?>[] getTokenParsers() {
+        final TokenDataSourceSyntax<?, ?> tokenDataSourceSyntax = syntax.getSyntax();
+        final TokenParser<?, ?>[] parsers = new TokenParser<?, ?>[features.length];
+        for (int i = 0; i < features.length; i++) {
+            parsers[i] = tokenDataSourceSyntax.getTokenParser(features[i].getType());
+        }
+        return parsers;
+    }
+
+    /**
+     * Creates profile of another data source, e.g. of a changed version of the data source,
+     * with the same syntax and token features. Substitutors were fitted on other data,
+     * so all of them have to be fitted again, see {@link #fitSubstitutors(DataSource)}.
+     * @param newFingerprint fingerprint of the other data source
+     * @return profile without substitutors
+     */
+    public PreprocessingProfile rebind(FileFingerprint newFingerprint) {
+        return new PreprocessingProfile(newFingerprint, syntax, features,
+                new MissingTokenSubstitutor<?>[features.length]);
+    }
+
+    /**
+     * Fits substitutors that are not stored in the profile by one pass
+     * over the data source, stored ones are kept. The data source is reset after the pass.
+     * @param basicDataSource basic data source created by the syntax
+     * @return complete profile, this one if it is complete already
+     * @throws IOException on i/o error
+     * @throws IllegalArgumentException if some token doesn't match its type
+     */
+    @SuppressWarnings({
+        "unchecked",
+        "rawtypes"
+    })
+    public PreprocessingProfile fitSubstitutors(DataSource<?> basicDataSource)
+            throws IOException, IllegalArgumentException {
+        if (isComplete()) {
+            return this;
+        }
+        final AbstractTokenDataSource<?> substitutorDataSource = new DefaultTokenDataSource(
+                basicDataSource, syntax.getSyntax().getTokenizer(), features.length,
+                getTokenParsers(), new MissingTokenSubstitutor<?>[features.length]);
+        final MissingTokenSubstitutorFactory<?>[] factories =
+                new MissingTokenSubstitutorFactory<?>[features.length];
+        for (int i = 0; i < features.length; i++) {
+            if (substitutors[i] == null) {
+                factories[i] = features[i].getMissingTokenSubstitutor();
+            }
+        }
+        final MissingTokenSubstitutor<?>[] fitted =
+                SubstitutorFitting.fit(substitutorDataSource, factories);
+        basicDataSource.reset();
+        final MissingTokenSubstitutor<?>[] completeSubstitutors = substitutors.clone();
+        for (int i = 0; i < features.length; i++) {
+            if (fitted[i] != null) {
+                completeSubstitutors[i] = fitted[i];
+            }
+        }
+        return new PreprocessingProfile(fingerprint, syntax, features, completeSubstitutors);
+    }
+
+    /**
+     * Creates token data source without any analysis pass.
+     * @param basicDataSource basic data source created by the syntax
+     * @return token data source
+     * @throws IllegalStateException if profile is not complete
+     */
+    @SuppressWarnings({
+        "unchecked",
+        "rawtypes"
+    })
+    public DefaultTokenDataSource<?> createTokenDataSource(DataSource<?> basicDataSource)
+            throws IllegalStateException {
+        if (!isComplete()) {
+            throw new IllegalStateException("Some substitutors must be fitted.");
+        }
+        return new DefaultTokenDataSource(basicDataSource, syntax.getSyntax().getTokenizer(),
+                features.length, getTokenParsers(), substitutors.clone());
+    }
+
+    /**
+     * Writes profile as a properties file in UTF-8.
+     * @param stream output stream, is not closed
+     * @throws IOException on i/o error
+     * @throws IllegalArgumentException if some substituted value can't be stored
+     */
+    public void store(OutputStream stream) throws IOException, IllegalArgumentException {
+        final Properties properties = new Properties();
+        properties.setProperty("version", Integer.toString(VERSION));
+        properties.setProperty("fingerprint", fingerprint.toString());
+        properties.setProperty("syntax", syntax.name());
+        properties.setProperty("columns", Integer.toString(features.length));
+        for (int i = 0; i < features.length; i++) {
+            final String prefix = COLUMN + i + '.';
+            final TokenFeatures feature = features[i];
+            if (feature.getTitle() != null) {
+                properties.setProperty(prefix + "title", feature.getTitle());
+            }
+            if (feature.getType() != null) {
+                properties.setProperty(prefix + "type", feature.getType().name());
+            }
+            properties.setProperty(prefix + "in.use", Boolean.toString(feature.isInUse()));
+            properties.setProperty(prefix + "omissions", Boolean.toString(feature.hasOmissions()));
+            if (feature.getMissingTokenSubstitutor() != null) {
+                properties.setProperty(prefix + "substitutor.factory",
+                        feature.getMissingTokenSubstitutor().getClass().getName());
+            }
+            if (substitutors[i] instanceof ConstantTokenSubstitutor) {
+                properties.setProperty(prefix + "substitutor.value",
+                        encodeValue(((ConstantTokenSubstitutor<?>) substitutors[i]).getValue()));
+            }
+        }
+        final Writer writer = new OutputStreamWriter(stream, StandardCharsets.UTF_8);
+        properties.store(writer, null);
+        writer.flush();
+    }
+
+    /**
+     * Reads profile from a properties file in UTF-8.
+     * @param stream input stream, is not closed
+     * @return the profile
+     * @throws IOException on i/o error or if the profile is malformed
+     */
+    public static PreprocessingProfile load(InputStream stream) throws IOException {
+        final Properties properties = new Properties();
+        properties.load(new InputStreamReader(stream, StandardCharsets.UTF_8));
+        try {
+            if (Integer.parseInt(getProperty(properties, "version")) != VERSION) {
+                throw new IOException("Unsupported profile version.");
+            }
+            final FileFingerprint fingerprint =
+                    FileFingerprint.parse(getProperty(properties, "fingerprint"));
+            final SyntaxRegister syntax = SyntaxRegister.valueOf(getProperty(properties, "syntax"));
+            final int columns = Integer.parseInt(getProperty(properties, "columns"));
+            final TokenFeatures[] features = new TokenFeatures[columns];
+            final MissingTokenSubstitutor<?>[] substitutors = new MissingTokenSubstitutor<?>[columns];
+            for (int i = 0; i < columns; i++) {
+                final String prefix = COLUMN + i + '.';
+                final TokenFeatures feature = new TokenFeatures();
+                feature.setTitle(properties.getProperty(prefix + "title"));
+                final String type = properties.getProperty(prefix + "type");
+                feature.setType(type != null ? TokenType.valueOf(type) : null);
+                feature.setInUse(Boolean.parseBoolean(getProperty(properties, prefix + "in.use")));
+                feature.setHasOmissions(
+                        Boolean.parseBoolean(getProperty(properties, prefix + "omissions")));
+                final String factory = properties.getProperty(prefix + "substitutor.factory");
+                if (factory != null) {
+                    feature.setMissingTokenSubstitutor(findFactory(feature.getType(), factory));
+                }
+                final String value = properties.getProperty(prefix + "substitutor.value");
+                if (value != null) {
+                    substitutors[i] = new ConstantTokenSubstitutor<>(i, decodeValue(value));
+                }
+                features[i] = feature;
+            }
+            return new PreprocessingProfile(fingerprint, syntax, features, substitutors);
+        }
+        catch (IllegalArgumentException ex) {
+            throw new IOException("Malformed profile.", ex);
+        }
+    }
+
+    /**
+     * @param properties stored profile
+     * @param key a key
+     * @return value of the key
+     * @throws IllegalArgumentException if there is no such key
+     */
+    private static String getProperty(Properties properties, String key)
+            throws IllegalArgumentException {
+        final String value = properties.getProperty(key);
+        if (value == null) {
+            throw new IllegalArgumentException(String.format("Missing key %s.", key));
+        }
+        return value;
+    }
+
+    /**
+     * Finds registered substitutor factory.
+     * @param type token type
+     * @param className name of the factory class
+     * @return the factory
+     * @throws IllegalArgumentException if there is no such factory for the token type
+     */
+    private static MissingTokenSubstitutorFactory<?> findFactory(TokenType type, String className)
+            throws IllegalArgumentException {
+        final MissingTokenSubstitutorFactory<?>[] factories =
+                type != null ? MissingTokenSubstitutor.SUBSTITUTOR_REGISTER.get(type) : null;
+        if (factories != null) {
+            for (MissingTokenSubstitutorFactory<?> factory : factories) {
+                if (factory.getClass().getName().equals(className)) {
+                    return factory;
+                }
+            }
+        }
+        throw new IllegalArgumentException(String.format(
+                "Unknown substitutor factory %s for token type %s.", className, type));
+    }
+
+    /**
+     * Encodes substituted value with its type.
+     * @param value a token value
+     * @return encoded value
+     * @throws IllegalArgumentException if value type is not supported
+     */
+    private static String encodeValue(Object value) throws IllegalArgumentException {
+        if (value == null) {
+            return "null:";
+        }
+        if (value instanceof Integer) {
+            return "integer:" + value;
+        }
+        if (value instanceof Double) {
+            return "float:" + Double.toString((Double) value);
+        }
+        if (value instanceof Boolean) {
+            return "binary:" + value;
+        }
+        if (value instanceof String) {
+            return "string:" + value;
+        }
+        throw new IllegalArgumentException(String.format(
+                "Values of %s can't be stored.", value.getClass().getName()));
+    }
+
+    /**
+     * Decodes substituted value.
+     * @param encoded encoded value
+     * @return the value
+     * @throws IllegalArgumentException if encoded value is malformed
+     */
+    private static Object decodeValue(String encoded) throws IllegalArgumentException {
+        final int separator = encoded.indexOf(':');
+        if (separator < 0) {
+            throw new IllegalArgumentException(String.format("Malformed value %s.", encoded));
+        }
+        final String value = encoded.substring(separator + 1);
+        switch (encoded.substring(0, separator)) {
+        case "null":
+            return null;
+        case "integer":
+            return Integer.valueOf(value);
+        case "float":
+            return Double.valueOf(value);
+        case "binary":
+            return Boolean.valueOf(value);
+        case "string":
+            return value;
+        default:
+            throw new IllegalArgumentException(String.format("Malformed value %s.", encoded));
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.github.attatrol.preprocessing.datasource.profile;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Directory of {@link PreprocessingProfile}s, a profile is found by
+ * {@link FileFingerprint} of its data source, so a moved or renamed file keeps its profile
+ * while a changed file gets none.
+ * @author atta_troll
+ *
+ */
+public class ProfileStore {
+
+    /**
+     * Extension of profile files.
+     */
+    public static final String FILE_EXTENSION = ".profile";
+
+    /**
+     * Directory of profiles.
+     */
+    private final File directory;
+
+    /**
+     * Default ctor.
+     * @param directory directory of profiles, it is created on the first save
+     */
+    public ProfileStore(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @return store in the user home directory
+     */
+    public static ProfileStore getDefault() {
+        return new ProfileStore(new File(new File(System.getProperty("user.home"),
+                ".datapreprocessing"), "profiles"));
+    }
+
+    /**
+     * Finds profile of a data source.
+     * @param source a file or a directory of the data source
+     * @return the profile or {@code null} if there is none
+     * @throws IOException on i/o error or if the stored profile is malformed
+     */
+    public PreprocessingProfile find(File source) throws IOException {
+        return find(FileFingerprint.of(source));
+    }
+
+    /**
+     * Finds profile by fingerprint of its data source.
+     * @param fingerprint fingerprint of the data source
+     * @return the profile or {@code null} if there is none
+     * @throws IOException on i/o error or if the stored profile is malformed
+     */
+    public PreprocessingProfile find(FileFingerprint fingerprint) throws IOException {
+        final File file = getProfileFile(fingerprint);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (InputStream stream = new FileInputStream(file)) {
+            final PreprocessingProfile profile = PreprocessingProfile.load(stream);
+            return fingerprint.equals(profile.getFingerprint()) ? profile : null;
+        }
+    }
+
+    /**
+     * Saves a profile, replaces the previous profile of the same data source.
+     * @param profile the profile
+     * @throws IOException on i/o error
+     * @throws IllegalArgumentException if some substituted value can't be stored
+     */
+    public void save(PreprocessingProfile profile) throws IOException, IllegalArgumentException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException(String.format("Failed to create directory %s.", directory));
+        }
+        final File file = getProfileFile(profile.getFingerprint());
+        final File temporaryFile = File.createTempFile(file.getName(), ".tmp", directory);
+        try {
+            try (OutputStream stream = new FileOutputStream(temporaryFile)) {
+                profile.store(stream);
+            }
+            Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        finally {
+            Files.deleteIfExists(temporaryFile.toPath());
+        }
+    }
+
+    /**
+     * Removes profile of a data source.
+     * @param fingerprint fingerprint of the data source
+     * @return {@code true} if there was a profile
+     * @throws IOException on i/o error
+     */
+    public boolean remove(FileFingerprint fingerprint) throws IOException {
+        return Files.deleteIfExists(getProfileFile(fingerprint).toPath());
+    }
+
+    /**
+     * @return directory of profiles
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @param fingerprint fingerprint of a data source
+     * @return file of its profile
+     */
+    private File getProfileFile(FileFingerprint fingerprint) {
+        return new File(directory, fingerprint + FILE_EXTENSION);
+    }
+}
@@ -0,0 +1,5 @@
+/**
+ * Contains persisted preprocessing profiles, that let a known data source be reopened
+ * with its syntax, token features and fitted missing token substitutors without analysis passes.
+ */
+package com.github.attatrol.preprocessing.datasource.profile;
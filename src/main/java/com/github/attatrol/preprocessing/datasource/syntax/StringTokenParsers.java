@@ -3,7 +3,6 @@ package com.github.attatrol.preprocessing.datasource.syntax;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.regex.Pattern;
 
 import com.github.attatrol.preprocessing.datasource.parsing.TokenType;
 import com.github.attatrol.preprocessing.datasource.parsing.token.StubParser;
@@ -31,26 +30,16 @@ final class StringTokenParsers {
 	}
 
 	/**
-	 * Pattern matching integers.
-	 */
-	private static final Pattern INTEGER_PATTERN = Pattern.compile("[+-]?\\d+");
-
-	/**
-	 * Pattern matching floats.
-	 */
-	private static final Pattern REAL_PATTERN = Pattern.compile("[+-]?((\\d*\\.?\\d+)|(\\d+\\.?\\d*))");
-
-	/**
-	 * Pattern matching booleans.
-	 */
-	private static final Pattern BINARY_DIGITAL_PATTERN = Pattern.compile("0|1");
-	/**
-	 * Pattern matching booleans.
-	 */
-	private static final Pattern BINARY_PATTERN = Pattern.compile("t|f|true|false|T|F|True|False");
-
-	/**
-	 * Detects token type. 
+	 * Detects token type in a single pass over its characters,
+	 * types are checked from the most specific one:
+	 * <ul>
+	 * <li>{@link TokenType#BINARY_DIGITAL} for {@code 0} and {@code 1},</li>
+	 * <li>{@link TokenType#INTEGER} for digits with an optional sign,</li>
+	 * <li>{@link TokenType#FLOAT} for digits with one decimal point and an optional sign,</li>
+	 * <li>{@link TokenType#BINARY} for {@code t, f, true, false} with an optional
+	 * capital first letter,</li>
+	 * <li>{@link TokenType#CATEGORICAL_STRING} otherwise.</li>
+	 * </ul>
 	 * @param token some token of a record from data set.
 	 * @return token type.
 	 */
@@ -58,24 +47,80 @@ final class StringTokenParsers {
 		if (token == null) {
 			return TokenType.MISSING;
 		}
-		if (token instanceof String) {
-			String string = (String) token;
-			if (BINARY_DIGITAL_PATTERN.matcher(string).matches()) {
-				return TokenType.BINARY_DIGITAL;
+		if (token instanceof CharSequence) {
+			return detectStringTokenType((CharSequence) token);
+		}
+		return TokenType.UNKNOWN;
+	}
+
+	/**
+	 * Detects type of a non-null token.
+	 * @param token some token
+	 * @return token type
+	 */
+	private static TokenType detectStringTokenType(CharSequence token) {
+		final int length = token.length();
+		if (length == 0) {
+			return TokenType.CATEGORICAL_STRING;
+		}
+		final char first = token.charAt(0);
+		int position = first == '+' || first == '-' ? 1 : 0;
+		int digits = 0;
+		int points = 0;
+		while (position < length) {
+			final char ch = token.charAt(position);
+			if (ch >= '0' && ch <= '9') {
+				digits++;
+			}
+			else if (ch == '.' && points == 0) {
+				points++;
 			}
-			else if (INTEGER_PATTERN.matcher(string).matches()) {
-				return TokenType.INTEGER;
+			else {
+				break;
 			}
-			else if (REAL_PATTERN.matcher(string).matches()) {
+			position++;
+		}
+		if (position == length && digits > 0) {
+			if (points > 0) {
 				return TokenType.FLOAT;
 			}
-			else if (BINARY_PATTERN.matcher(string).matches()) {
-				return TokenType.BINARY;
+			if (length == 1 && (first == '0' || first == '1')) {
+				return TokenType.BINARY_DIGITAL;
 			}
-			else {
-				return TokenType.CATEGORICAL_STRING;
+			return TokenType.INTEGER;
+		}
+		return isBinary(token, first, length) ? TokenType.BINARY : TokenType.CATEGORICAL_STRING;
+	}
+
+	/**
+	 * @param token some token
+	 * @param first its first character
+	 * @param length its length
+	 * @return {@code true} if token is one of {@code t, f, true, false}
+	 *         with an optional capital first letter
+	 */
+	private static boolean isBinary(CharSequence token, char first, int length) {
+		final String tail;
+		if (first == 't' || first == 'T') {
+			tail = "rue";
+		}
+		else if (first == 'f' || first == 'F') {
+			tail = "alse";
+		}
+		else {
+			return false;
+		}
+		if (length == 1) {
+			return true;
+		}
+		if (length != tail.length() + 1) {
+			return false;
+		}
+		for (int i = 0; i < tail.length(); i++) {
+			if (token.charAt(i + 1) != tail.charAt(i)) {
+				return false;
 			}
 		}
-		return TokenType.UNKNOWN;
+		return true;
 	}
 }
@@ -2,11 +2,14 @@
 package com.github.attatrol.preprocessing.datasource.syntax;
 
 import java.io.File;
+import java.nio.charset.Charset;
 
 import com.github.attatrol.preprocessing.datasource.DataSource;
-import com.github.attatrol.preprocessing.datasource.TextFileDataSource;
+import com.github.attatrol.preprocessing.datasource.QuotedCsvDataSource;
+import com.github.attatrol.preprocessing.datasource.TextFileDataSources;
 import com.github.attatrol.preprocessing.datasource.parsing.TokenType;
 import com.github.attatrol.preprocessing.datasource.parsing.record.CommaSeparatedStringSplitter;
+import com.github.attatrol.preprocessing.datasource.parsing.record.QuotedCsvTokenizer;
 import com.github.attatrol.preprocessing.datasource.parsing.record.SemicolonSeparatedStringSplitter;
 import com.github.attatrol.preprocessing.datasource.parsing.record.TabulationSeparatedStringSplitter;
 
@@ -18,12 +21,12 @@ import com.github.attatrol.preprocessing.datasource.parsing.record.TabulationSep
  */
 public enum SyntaxRegister {
 
-    COMMA_SEPARATED_LINES(new TokenDataSourceSyntax<String, String>(new CommaSeparatedStringSplitter(),
+    COMMA_SEPARATED_LINES(new TokenDataSourceSyntax<CharSequence, String>(new CommaSeparatedStringSplitter(),
             StringTokenParsers.STRING_TOKEN_PARSERS) {
 
         @Override
-        public DataSource<String> getBasicDataSource(Object file) {
-            return new TextFileDataSource((File) file, false);
+        public DataSource<CharSequence> getBasicDataSource(Object file) {
+            return TextFileDataSources.open((File) file, false);
         }
 
         @Override
@@ -32,12 +35,12 @@ public enum SyntaxRegister {
         }
     }),
     COMMA_SEPARATED_TITLED_LINES(
-            new TitledTokenDataSourceSyntax<String, String>(new CommaSeparatedStringSplitter(),
+            new TitledTokenDataSourceSyntax<CharSequence, String>(new CommaSeparatedStringSplitter(),
                     new CommaSeparatedStringSplitter(), StringTokenParsers.STRING_TOKEN_PARSERS) {
 
                 @Override
-                public DataSource<String> getBasicDataSource(Object file) {
-                    return new TextFileDataSource((File) file, true);
+                public DataSource<CharSequence> getBasicDataSource(Object file) {
+                    return TextFileDataSources.open((File) file, true);
                 }
 
                 @Override
@@ -45,12 +48,12 @@ public enum SyntaxRegister {
                     return StringTokenParsers.detectStringTokenType(token);
                 }
             }),
-    SEMICOLON_SEPARATED_LINES(new TokenDataSourceSyntax<String, String>(new SemicolonSeparatedStringSplitter(),
+    SEMICOLON_SEPARATED_LINES(new TokenDataSourceSyntax<CharSequence, String>(new SemicolonSeparatedStringSplitter(),
             StringTokenParsers.STRING_TOKEN_PARSERS) {
 
         @Override
-        public DataSource<String> getBasicDataSource(Object file) {
-            return new TextFileDataSource((File) file, false);
+        public DataSource<CharSequence> getBasicDataSource(Object file) {
+            return TextFileDataSources.open((File) file, false);
         }
 
         @Override
@@ -59,12 +62,12 @@ public enum SyntaxRegister {
         }
     }),
     SEMICOLON_SEPARATED_TITLED_LINES(
-            new TitledTokenDataSourceSyntax<String, String>(new SemicolonSeparatedStringSplitter(),
+            new TitledTokenDataSourceSyntax<CharSequence, String>(new SemicolonSeparatedStringSplitter(),
                     new SemicolonSeparatedStringSplitter(), StringTokenParsers.STRING_TOKEN_PARSERS) {
 
                 @Override
-                public DataSource<String> getBasicDataSource(Object file) {
-                    return new TextFileDataSource((File) file, true);
+                public DataSource<CharSequence> getBasicDataSource(Object file) {
+                    return TextFileDataSources.open((File) file, true);
                 }
 
                 @Override
@@ -72,12 +75,12 @@ public enum SyntaxRegister {
                     return StringTokenParsers.detectStringTokenType(token);
                 }
             }),
-    TABULATION_SEPARATED_LINES(new TokenDataSourceSyntax<String, String>(new TabulationSeparatedStringSplitter(),
+    TABULATION_SEPARATED_LINES(new TokenDataSourceSyntax<CharSequence, String>(new TabulationSeparatedStringSplitter(),
             StringTokenParsers.STRING_TOKEN_PARSERS) {
 
         @Override
-        public DataSource<String> getBasicDataSource(Object file) {
-            return new TextFileDataSource((File) file, false);
+        public DataSource<CharSequence> getBasicDataSource(Object file) {
+            return TextFileDataSources.open((File) file, false);
         }
 
         @Override
@@ -85,13 +88,69 @@ public enum SyntaxRegister {
             return StringTokenParsers.detectStringTokenType(token);
         }
     }),
-    TABULATION_SEPARATED_TITLED_LINES(new TitledTokenDataSourceSyntax<String, String>(
+    TABULATION_SEPARATED_TITLED_LINES(new TitledTokenDataSourceSyntax<CharSequence, String>(
             new TabulationSeparatedStringSplitter(), new TabulationSeparatedStringSplitter(),
             StringTokenParsers.STRING_TOKEN_PARSERS) {
 
         @Override
-        public DataSource<String> getBasicDataSource(Object file) {
-            return new TextFileDataSource((File) file, true);
+        public DataSource<CharSequence> getBasicDataSource(Object file) {
+            return TextFileDataSources.open((File) file, true);
+        }
+
+        @Override
+        public TokenType detectTokenType(Object token) {
+            return StringTokenParsers.detectStringTokenType(token);
+        }
+    }),
+    QUOTED_COMMA_SEPARATED_RECORDS(new TokenDataSourceSyntax<CharSequence, String>(new QuotedCsvTokenizer(),
+            StringTokenParsers.STRING_TOKEN_PARSERS) {
+
+        @Override
+        public DataSource<CharSequence> getBasicDataSource(Object file) {
+            return new QuotedCsvDataSource((File) file, false);
+        }
+
+        @Override
+        public TokenType detectTokenType(Object token) {
+            return StringTokenParsers.detectStringTokenType(token);
+        }
+    }),
+    QUOTED_COMMA_SEPARATED_TITLED_RECORDS(new TitledTokenDataSourceSyntax<CharSequence, String>(
+            new QuotedCsvTokenizer(), new QuotedCsvTokenizer(),
+            StringTokenParsers.STRING_TOKEN_PARSERS) {
+
+        @Override
+        public DataSource<CharSequence> getBasicDataSource(Object file) {
+            return new QuotedCsvDataSource((File) file, true);
+        }
+
+        @Override
+        public TokenType detectTokenType(Object token) {
+            return StringTokenParsers.detectStringTokenType(token);
+        }
+    }),
+    QUOTED_SEMICOLON_SEPARATED_RECORDS(new TokenDataSourceSyntax<CharSequence, String>(
+            new QuotedCsvTokenizer(';', '"'), StringTokenParsers.STRING_TOKEN_PARSERS) {
+
+        @Override
+        public DataSource<CharSequence> getBasicDataSource(Object file) {
+            return new QuotedCsvDataSource((File) file, false, new QuotedCsvTokenizer(';', '"'),
+                    Charset.defaultCharset());
+        }
+
+        @Override
+        public TokenType detectTokenType(Object token) {
+            return StringTokenParsers.detectStringTokenType(token);
+        }
+    }),
+    QUOTED_SEMICOLON_SEPARATED_TITLED_RECORDS(new TitledTokenDataSourceSyntax<CharSequence, String>(
+            new QuotedCsvTokenizer(';', '"'), new QuotedCsvTokenizer(';', '"'),
+            StringTokenParsers.STRING_TOKEN_PARSERS) {
+
+        @Override
+        public DataSource<CharSequence> getBasicDataSource(Object file) {
+            return new QuotedCsvDataSource((File) file, true, new QuotedCsvTokenizer(';', '"'),
+                    Charset.defaultCharset());
         }
 
         @Override
@@ -116,4 +175,18 @@ public enum SyntaxRegister {
     public TokenDataSourceSyntax<?, ?> getSyntax() {
         return syntax;
     }
+
+    /**
+     * Finds register entry of a syntax.
+     * @param syntax some registered syntax
+     * @return its entry or {@code null} if syntax is not registered
+     */
+    public static SyntaxRegister forSyntax(TokenDataSourceSyntax<?, ?> syntax) {
+        for (SyntaxRegister entry : values()) {
+            if (entry.syntax == syntax) {
+                return entry;
+            }
+        }
+        return null;
+    }
 }
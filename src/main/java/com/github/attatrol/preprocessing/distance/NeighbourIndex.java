@@ -0,0 +1,310 @@
+package com.github.attatrol.preprocessing.distance;
+
+/**
+ * Vantage point tree over a set of points, finds k nearest points of a query
+ * in about O(log n) distance calculations instead of n. Tree is built in place over
+ * a permutation of points: the first point of a segment is its vantage point, nearer half
+ * of the rest follows it, farther half goes last.<br/>
+ * Search is exact if distance function satisfies triangle inequality, otherwise
+ * found neighbours are approximate. Index is immutable and may be searched concurrently
+ * if distance function is thread-safe.
+ * @author atta_troll
+ *
+ */
+public class NeighbourIndex {
+
+    /**
+     * Maximal size of a segment that is scanned without a vantage point.
+     */
+    private static final int LEAF_SIZE = 8;
+
+    /**
+     * Indexed points.
+     */
+    private final Object[][] points;
+
+    /**
+     * Distance function.
+     */
+    private final DistanceFunction distanceFunction;
+
+    /**
+     * Permutation of point indexes that forms the tree.
+     */
+    private final int[] order;
+
+    /**
+     * Median distances from vantage points by their positions in {@link #order}.
+     */
+    private final double[] thresholds;
+
+    /**
+     * Default ctor, builds the tree.
+     * @param points indexed points, the array is not copied
+     * @param distanceFunction distance function
+     */
+    public NeighbourIndex(Object[][] points, DistanceFunction distanceFunction) {
+        this.points = points;
+        this.distanceFunction = distanceFunction;
+        order = new int[points.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        thresholds = new double[points.length];
+        build(0, points.length, new double[points.length]);
+    }
+
+    /**
+     * Finds nearest points.
+     * @param query the query point
+     * @param number number of neighbours
+     * @return indexes of at most {@code number} nearest points in order of increasing distance
+     */
+    public int[] findNearest(Object[] query, int number) {
+        final Neighbours neighbours = new Neighbours(Math.min(number, points.length));
+        if (neighbours.capacity > 0) {
+            search(0, points.length, query, neighbours);
+        }
+        return neighbours.sorted();
+    }
+
+    /**
+     * Finds nearest points by comparison with every point, without an index.
+     * @param points the points
+     * @param distanceFunction distance function
+     * @param query the query point
+     * @param number number of neighbours
+     * @return indexes of at most {@code number} nearest points in order of increasing distance
+     */
+    public static int[] findNearest(Object[][] points, DistanceFunction distanceFunction,
+            Object[] query, int number) {
+        final Neighbours neighbours = new Neighbours(Math.min(number, points.length));
+        if (neighbours.capacity > 0) {
+            for (int i = 0; i < points.length; i++) {
+                neighbours.offer(i, distanceFunction.calculate(query, points[i]));
+            }
+        }
+        return neighbours.sorted();
+    }
+
+    /**
+     * @return number of indexed points
+     */
+    public int size() {
+        return points.length;
+    }
+
+    /**
+     * Builds subtree of a segment.
+     * @param from first position of the segment
+     * @param to position after the segment
+     * @param distances buffer of distances from vantage points
+     */
+    private void build(int from, int to, double[] distances) {
+        if (to - from <= LEAF_SIZE) {
+            return;
+        }
+        // vantage point is the middle one, so presorted input doesn't degrade the tree
+        swap(from, (from + to) >>> 1, distances);
+        final Object[] vantagePoint = points[order[from]];
+        for (int i = from + 1; i < to; i++) {
+            distances[i] = distanceFunction.calculate(vantagePoint, points[order[i]]);
+        }
+        final int median = (from + 1 + to) >>> 1;
+        select(from + 1, to - 1, median, distances);
+        thresholds[from] = distances[median];
+        build(from + 1, median, distances);
+        build(median, to, distances);
+    }
+
+    /**
+     * Searches nearest points in a segment.
+     * @param from first position of the segment
+     * @param to position after the segment
+     * @param query the query point
+     * @param neighbours nearest points found so far
+     */
+    private void search(int from, int to, Object[] query, Neighbours neighbours) {
+        if (to - from <= LEAF_SIZE) {
+            for (int i = from; i < to; i++) {
+                neighbours.offer(order[i], distanceFunction.calculate(query, points[order[i]]));
+            }
+            return;
+        }
+        final double distance = distanceFunction.calculate(query, points[order[from]]);
+        neighbours.offer(order[from], distance);
+        final int median = (from + 1 + to) >>> 1;
+        final double threshold = thresholds[from];
+        if (distance < threshold) {
+            search(from + 1, median, query, neighbours);
+            if (threshold - distance <= neighbours.getRadius()) {
+                search(median, to, query, neighbours);
+            }
+        }
+        else {
+            search(median, to, query, neighbours);
+            if (distance - threshold <= neighbours.getRadius()) {
+                search(from + 1, median, query, neighbours);
+            }
+        }
+    }
+
+    /**
+     * Partially sorts a segment by distances, so the k-th position has the element of the sorted
+     * segment, elements before it are not farther, elements after it are not nearer.
+     * @param left first position
+     * @param right last position
+     * @param k position to select
+     * @param distances distances of positions
+     */
+    private void select(int left, int right, int k, double[] distances) {
+        while (left < right) {
+            final double pivot = distances[(left + right) >>> 1];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (distances[i] < pivot) {
+                    i++;
+                }
+                while (distances[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(i++, j--, distances);
+                }
+            }
+            if (k <= j) {
+                right = j;
+            }
+            else if (k >= i) {
+                left = i;
+            }
+            else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Swaps two positions of the tree with their distances.
+     * @param i position
+     * @param j position
+     * @param distances distances of positions
+     */
+    private void swap(int i, int j, double[] distances) {
+        final int index = order[i];
+        order[i] = order[j];
+        order[j] = index;
+        final double distance = distances[i];
+        distances[i] = distances[j];
+        distances[j] = distance;
+    }
+
+    /**
+     * Bounded max-heap of the nearest points found so far.
+     */
+    private static final class Neighbours {
+
+        /**
+         * Number of searched neighbours.
+         */
+        private final int capacity;
+
+        /**
+         * Indexes of points.
+         */
+        private final int[] indexes;
+
+        /**
+         * Distances of points.
+         */
+        private final double[] distances;
+
+        /**
+         * Number of found points.
+         */
+        private int size;
+
+        /**
+         * Default ctor.
+         * @param capacity number of searched neighbours
+         */
+        Neighbours(int capacity) {
+            this.capacity = capacity;
+            indexes = new int[capacity];
+            distances = new double[capacity];
+        }
+
+        /**
+         * @return distance within which nearer points may be found
+         */
+        double getRadius() {
+            return size < capacity ? Double.POSITIVE_INFINITY : distances[0];
+        }
+
+        /**
+         * Offers a point.
+         * @param index index of the point
+         * @param distance its distance to the query
+         */
+        void offer(int index, double distance) {
+            if (size < capacity) {
+                int position = size++;
+                while (position > 0) {
+                    final int parent = (position - 1) >>> 1;
+                    if (distances[parent] >= distance) {
+                        break;
+                    }
+                    indexes[position] = indexes[parent];
+                    distances[position] = distances[parent];
+                    position = parent;
+                }
+                indexes[position] = index;
+                distances[position] = distance;
+            }
+            else if (distance < distances[0]) {
+                replaceRoot(index, distance);
+            }
+        }
+
+        /**
+         * @return indexes of found points in order of increasing distance
+         */
+        int[] sorted() {
+            final int[] result = new int[size];
+            while (size > 0) {
+                result[size - 1] = indexes[0];
+                size--;
+                if (size > 0) {
+                    replaceRoot(indexes[size], distances[size]);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Replaces the farthest point and restores the heap.
+         * @param index index of the new point
+         * @param distance its distance to the query
+         */
+        private void replaceRoot(int index, double distance) {
+            int position = 0;
+            while (true) {
+                final int left = 2 * position + 1;
+                if (left >= size) {
+                    break;
+                }
+                final int child = left + 1 < size && distances[left + 1] > distances[left]
+                        ? left + 1 : left;
+                if (distances[child] <= distance) {
+                    break;
+                }
+                indexes[position] = indexes[child];
+                distances[position] = distances[child];
+                position = child;
+            }
+            indexes[position] = index;
+            distances[position] = distance;
+        }
+    }
+}
@@ -6,6 +6,7 @@ import java.util.HashMap;
 import java.util.Map;
 
 import com.github.attatrol.preprocessing.datasource.AbstractTokenDataSource;
+import com.github.attatrol.preprocessing.distance.nonmetric.similarity.AbstractSimilarityIndex;
 
 /**
  * Performs calculation of similarity index for some pair of tokens which have the same coordinate.
@@ -28,6 +29,12 @@ public abstract class AbstractCategoricalTokenSimilarityIndex implements GowerTo
      */
     protected long tokenTotalNumber;
 
+    /**
+     * Occurrences of tokens by their codes, {@code null} if tokens are not dense
+     * {@link Integer} codes, see {@link AbstractSimilarityIndex#toCodeOccurrences(Map)}.
+     */
+    private final long[] codeOccurrences;
+
     /**
      * Default ctor
      * 
@@ -50,6 +57,7 @@ public abstract class AbstractCategoricalTokenSimilarityIndex implements GowerTo
             long tokenTotalNumber) {
         this.occurrences = occurrences;
         this.tokenTotalNumber = tokenTotalNumber;
+        codeOccurrences = AbstractSimilarityIndex.toCodeOccurrences(occurrences);
     }
 
     /**
@@ -66,6 +74,12 @@ public abstract class AbstractCategoricalTokenSimilarityIndex implements GowerTo
      * @return occurrence number for a current token
      */
     protected long getOccurrence(Object object) {
+        if (codeOccurrences != null && object instanceof Integer) {
+            final int code = (Integer) object;
+            if (code >= 0 && code < codeOccurrences.length) {
+                return codeOccurrences[code];
+            }
+        }
         final Long result = occurrences.get(object);
         return result; // should never return null
     }
@@ -11,7 +11,9 @@ import com.github.attatrol.preprocessing.distance.DistanceFunction;
  * of tokens with the same index i, then they are processed by individual token similarity index
  * calculators, each returning pair of {S[i], w[i]}. Then Gower's generalized similarity index is
  * calculated as a ratio between sums of all weight[i]*S[i] and all weight[i]*w[i]. Then subtract this
- * similarity index from {@code 1} and get Gower's generalized distance.
+ * similarity index from {@code 1} and get Gower's generalized distance.<br/>
+ * A pair of tokens with a missing token is skipped, as in the original Gower's definition,
+ * so records with omissions may be compared by their common tokens.
  * 
  * @author atta_troll
  *
@@ -56,6 +58,9 @@ public class GowerDistance implements DistanceFunction {
         double numerator = 0.;
         double denominator = 0.;
         for (int i = 0; i < recordSize; i++) {
+            if (record1[i] == null || record2[i] == null) {
+                continue;
+            }
             final GowerTokenSimilarityIndexOutput output = similarityIndexes[i].calculate(record1[i], record2[i]);
             numerator += weights[i] * output.getNumeratorSummand();
             denominator += weights[i] * output.getDenominatorSummand();
@@ -87,7 +92,39 @@ public class GowerDistance implements DistanceFunction {
             GowerTokenSimilarityIndexFactory<?>[] indexesFactories,
             double[] unbalancedWeights, AbstractTokenDataSource<?> dataSource)
                     throws IOException, IllegalStateException {
-        // balance weights
+        final double[] weights = balanceWeights(unbalancedWeights);
+        // generate token similarity indexes
+        final GowerTokenSimilarityIndex[] indexes =
+                new GowerTokenSimilarityIndex[indexesFactories.length];
+        for (int i = 0; i < indexesFactories.length; i++) {
+            indexes[i] = indexesFactories[i].getTokenDifferenceCalculator(dataSource, i);
+        }
+        // generating instance
+        return new GowerDistance(indexes, weights, dataSource.getRecordLength());
+    }
+
+    /**
+     * Factory method for a Gower's distance instance with ready similarity indexes,
+     * for example ones fitted on a sample of records.
+     * @param indexes similarity indexes for each token
+     * @param unbalancedWeights raw weights values for each token
+     * @return Gower's distance instance
+     * @throws IllegalStateException on bad weights values
+     */
+    public static GowerDistance produceGowerDistance(GowerTokenSimilarityIndex[] indexes,
+            double[] unbalancedWeights) throws IllegalStateException {
+        return new GowerDistance(indexes.clone(), balanceWeights(unbalancedWeights),
+                indexes.length);
+    }
+
+    /**
+     * Divides weights by their sum.
+     * @param unbalancedWeights raw weights values for each token
+     * @return weights with sum 1
+     * @throws IllegalStateException on negative weights or if all weights are zero
+     */
+    private static double[] balanceWeights(double[] unbalancedWeights)
+            throws IllegalStateException {
         double sum = 0.;
         for (double weight : unbalancedWeights) {
             if (weight < 0) {
@@ -106,13 +143,6 @@ public class GowerDistance implements DistanceFunction {
         else {
             throw new IllegalStateException("Gower's distance all weights can not be zero");
         }
-        // generate token similarity indexes
-        final GowerTokenSimilarityIndex[] indexes =
-                new GowerTokenSimilarityIndex[indexesFactories.length];
-        for (int i = 0; i < indexesFactories.length; i++) {
-            indexes[i] = indexesFactories[i].getTokenDifferenceCalculator(dataSource, i);
-        }
-        // generating instance
-        return new GowerDistance(indexes, weights, dataSource.getRecordLength());
+        return weights;
     }
 }
@@ -21,7 +21,8 @@ public class NormalizedFloatManhattanSimilarityIndex implements GowerTokenSimila
     @Override
     public GowerTokenSimilarityIndexOutput calculate(Object coord1, Object coord2) {
         final double numeratorSummand =
-                range != 0. ? 1. - Math.abs((Double) coord1 - (Double) coord2) / range : 1.;
+                range != 0. ? Math.max(0., 1. - Math.abs((Double) coord1 - (Double) coord2) / range)
+                        : 1.;
         return new GowerTokenSimilarityIndexOutput(numeratorSummand, 1.);
     }
 
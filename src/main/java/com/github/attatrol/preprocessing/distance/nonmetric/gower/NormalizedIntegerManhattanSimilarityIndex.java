@@ -22,7 +22,8 @@ public class NormalizedIntegerManhattanSimilarityIndex implements GowerTokenSimi
     @Override
     public GowerTokenSimilarityIndexOutput calculate(Object coord1, Object coord2) {
         final double numeratorSummand =
-                range != 0. ? 1. - ((double) Math.abs((Integer) coord1 - (Integer) coord2)) / range : 1.;
+                range != 0. ? Math.max(0.,
+                        1. - ((double) Math.abs((Integer) coord1 - (Integer) coord2)) / range) : 1.;
         return new GowerTokenSimilarityIndexOutput(numeratorSummand, 1.);
     }
 
@@ -26,6 +26,12 @@ public abstract class AbstractSimilarityIndex implements SimilarityIndex {
      */
     protected long[] tokenTotalNumber;
 
+    /**
+     * Occurrences of tokens by their codes, an element is {@code null} if tokens
+     * of the index are not dense {@link Integer} codes, see {@link #toCodeOccurrences(Map)}.
+     */
+    private final long[][] codeOccurrences;
+
     /**
      * Default ctor.
      * @param occurrences number of token occurrences
@@ -35,6 +41,34 @@ public abstract class AbstractSimilarityIndex implements SimilarityIndex {
         super();
         this.occurrences = occurrences;
         this.tokenTotalNumber = tokenTotalNumber;
+        codeOccurrences = new long[occurrences.length][];
+        for (int i = 0; i < occurrences.length; i++) {
+            codeOccurrences[i] = toCodeOccurrences(occurrences[i]);
+        }
+    }
+
+    /**
+     * Converts occurrences of dictionary encoded tokens, which are {@link Integer} codes
+     * from 0 to the number of tokens, into an array indexed by codes.
+     * @param occurrences occurrences of tokens of an index
+     * @return occurrences by codes or {@code null} if tokens are not such codes
+     */
+    public static long[] toCodeOccurrences(Map<Object, Long> occurrences) {
+        if (occurrences == null) {
+            return null;
+        }
+        final long[] result = new long[occurrences.size()];
+        for (Map.Entry<Object, Long> entry : occurrences.entrySet()) {
+            if (!(entry.getKey() instanceof Integer)) {
+                return null;
+            }
+            final int code = (Integer) entry.getKey();
+            if (code < 0 || code >= result.length) {
+                return null;
+            }
+            result[code] = entry.getValue();
+        }
+        return result;
     }
 
     /**
@@ -48,6 +82,13 @@ public abstract class AbstractSimilarityIndex implements SimilarityIndex {
      * @return occurrence number for a current token
      */
     protected long getOccurrence(Object object, int index) {
+        final long[] counts = codeOccurrences[index];
+        if (counts != null && object instanceof Integer) {
+            final int code = (Integer) object;
+            if (code >= 0 && code < counts.length) {
+                return counts[code];
+            }
+        }
         final Long result = occurrences[index].get(object);
         return result; // should never return null
     }
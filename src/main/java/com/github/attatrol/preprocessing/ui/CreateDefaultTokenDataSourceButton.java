@@ -1,6 +1,7 @@
 
 package com.github.attatrol.preprocessing.ui;
 
+import java.io.File;
 import java.io.IOException;
 
 import com.github.attatrol.preprocessing.datasource.AbstractTokenDataSource;
@@ -9,8 +10,13 @@ import com.github.attatrol.preprocessing.datasource.DefaultTokenDataSource;
 import com.github.attatrol.preprocessing.datasource.parsing.TokenFeatures;
 import com.github.attatrol.preprocessing.datasource.parsing.missing.MissingTokenSubstitutor;
 import com.github.attatrol.preprocessing.datasource.parsing.missing.MissingTokenSubstitutorFactory;
+import com.github.attatrol.preprocessing.datasource.parsing.missing.SubstitutorFitting;
 import com.github.attatrol.preprocessing.datasource.parsing.record.RecordTokenizer;
 import com.github.attatrol.preprocessing.datasource.parsing.token.TokenParser;
+import com.github.attatrol.preprocessing.datasource.profile.FileFingerprint;
+import com.github.attatrol.preprocessing.datasource.profile.PreprocessingProfile;
+import com.github.attatrol.preprocessing.datasource.profile.ProfileStore;
+import com.github.attatrol.preprocessing.datasource.syntax.SyntaxRegister;
 import com.github.attatrol.preprocessing.ui.TokenDataSourceDialog.TokenDataSourceDialogState;
 import com.github.attatrol.preprocessing.ui.i18n.UiI18nProvider;
 import com.github.attatrol.preprocessing.ui.misc.UiUtils;
@@ -42,6 +48,7 @@ class CreateDefaultTokenDataSourceButton extends Button {
                 entities.setTokenDataSource(new DefaultTokenDataSource(entities.getBasicDataSource(),
                         entities.getDataSourceSyntax().getTokenizer(), numberOfTokens, tokenParsers,
                         substitutors));
+                saveProfile(entities, substitutors);
                 form.setState(TokenDataSourceDialogState.TOKEN_SOURCE_SET_7);
             }
             catch (IllegalArgumentException | IOException ex) {
@@ -51,6 +58,28 @@ class CreateDefaultTokenDataSourceButton extends Button {
         });
     }
 
+    /**
+     * Saves preprocessing profile of the external source, so the next time it is loaded
+     * without analysis. Failure to save is reported but doesn't affect the created data source.
+     * @param entities model entities
+     * @param substitutors fitted substitutors
+     */
+    private static void saveProfile(TokenDataSourceEnitities entities,
+            MissingTokenSubstitutor<?>[] substitutors) {
+        final SyntaxRegister syntax = SyntaxRegister.forSyntax(entities.getDataSourceSyntax());
+        if (syntax == null || !(entities.getExternalSource() instanceof File)) {
+            return;
+        }
+        try {
+            ProfileStore.getDefault().save(new PreprocessingProfile(
+                    FileFingerprint.of((File) entities.getExternalSource()), syntax,
+                    entities.getTokenFeatures(), substitutors));
+        }
+        catch (IllegalArgumentException | IOException ex) {
+            UiUtils.showExceptionMessage(ex);
+        }
+    }
+
     private static MissingTokenSubstitutor<?>[] produceSubstitutors(
             TokenDataSourceEnitities entities) throws IOException, IllegalArgumentException {
         final TokenFeatures[] features = entities.getTokenFeatures();
@@ -69,14 +98,18 @@ class CreateDefaultTokenDataSourceButton extends Button {
         final AbstractTokenDataSource<?> substitutorDataSource = new DefaultTokenDataSource(basicDataSource,
                 tokenizer, numberOfTokens, tokenParsers,
                 new MissingTokenSubstitutor<?>[numberOfTokens]);
+        final MissingTokenSubstitutorFactory<?>[] factories =
+                new MissingTokenSubstitutorFactory<?>[numberOfTokens];
+        boolean hasFactories = false;
         for (int i = 0; i < numberOfTokens; i++) {
-            final MissingTokenSubstitutorFactory<?> factory =
-                    features[i].getMissingTokenSubstitutor();
-            if (factory != null) {
-                substitutors[i] = factory.produceSubstitutor(substitutorDataSource, i);
-            }
+            factories[i] = features[i].getMissingTokenSubstitutor();
+            hasFactories |= factories[i] != null;
+        }
+        if (!hasFactories) {
+            return substitutors;
         }
-        return substitutors;
+        // all substitutors are fitted in one parallel pass
+        return SubstitutorFitting.fit(substitutorDataSource, factories);
     }
 
 }
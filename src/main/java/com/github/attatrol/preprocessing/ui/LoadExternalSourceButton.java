@@ -3,8 +3,15 @@ package com.github.attatrol.preprocessing.ui;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 
+import com.github.attatrol.preprocessing.datasource.CompressionFormat;
+import com.github.attatrol.preprocessing.datasource.DataSource;
+import com.github.attatrol.preprocessing.datasource.profile.PreprocessingProfile;
+import com.github.attatrol.preprocessing.datasource.profile.ProfileStore;
 import com.github.attatrol.preprocessing.ui.TokenDataSourceDialog.TokenDataSourceDialogState;
 import com.github.attatrol.preprocessing.ui.i18n.ToStringMappingI18nComboBox;
 import com.github.attatrol.preprocessing.ui.i18n.UiI18nProvider;
@@ -56,12 +63,56 @@ class LoadExternalSourceButton extends Button {
                         form.setState(TokenDataSourceDialogState.FILE_READING_ERROR);
                     }
                     form.setState(TokenDataSourceDialogState.SOURCE_FILE_SET_2);
+                    applyProfile(form);
                 }
             }
 
         });
     }
 
+    /**
+     * Restores syntax and token features from the stored preprocessing profile
+     * of the chosen external source, whose fingerprint matches the source, so no analysis
+     * passes are made. Substitutors that are not stored in the profile are fitted again
+     * by one pass, the way the command line runner does it.
+     * @param form the dialog
+     */
+    private static void applyProfile(TokenDataSourceDialog form) {
+        final TokenDataSourceEnitities entities = form.getTokenDataSourceEntities();
+        if (!(entities.getExternalSource() instanceof File)) {
+            return;
+        }
+        try {
+            final PreprocessingProfile profile =
+                    ProfileStore.getDefault().find((File) entities.getExternalSource());
+            if (profile == null || !Arrays.asList(
+                    entities.getExternalSourceType().getPossibleSyntaxes())
+                    .contains(profile.getSyntax())) {
+                return;
+            }
+            final DataSource<?> basicDataSource = profile.getSyntax().getSyntax()
+                    .getBasicDataSource(entities.getExternalSource());
+            final PreprocessingProfile fittedProfile;
+            try {
+                fittedProfile = profile.fitSubstitutors(basicDataSource);
+            }
+            catch (IOException | IllegalArgumentException ex) {
+                basicDataSource.close();
+                throw ex;
+            }
+            entities.setDataSourceSyntax(profile.getSyntax().getSyntax());
+            entities.setBasicDataSource(basicDataSource);
+            entities.setTokenFeatures(fittedProfile.getTokenFeatures());
+            entities.setTokenDataSource(fittedProfile.createTokenDataSource(basicDataSource));
+            form.selectSyntax(profile.getSyntax());
+            form.setState(TokenDataSourceDialogState.TOKEN_SOURCE_SET_7);
+        }
+        catch (IOException | IllegalArgumentException ex) {
+            // stale or damaged profile, the source is set up as a new one
+            UiUtils.showExceptionMessage(ex);
+        }
+    }
+
     /**
      * Locally used bean.
      * 
@@ -101,12 +152,23 @@ class LoadExternalSourceButton extends Button {
         private ObjectProperty<File> chosenFile = new SimpleObjectProperty<>();
 
         private FileChooser fileChooser = new FileChooser();
+        private FileChooser compressedFileChooser = new FileChooser();
         private DirectoryChooser dirChooser = new DirectoryChooser();
         {
             if (lastDirectory != null) {
                 fileChooser.setInitialDirectory(lastDirectory);
+                compressedFileChooser.setInitialDirectory(lastDirectory);
                 dirChooser.setInitialDirectory(lastDirectory);
             }
+            final List<String> extensions = new ArrayList<>();
+            for (CompressionFormat format : CompressionFormat.values()) {
+                for (String extension : format.getExtensions()) {
+                    extensions.add("*" + extension);
+                }
+            }
+            compressedFileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter(
+                    UiI18nProvider.INSTANCE.getValue("file.chooser.dialog.filter.compressed"),
+                    extensions));
         }
 
         private Button fileChooserButton = new Button(UiI18nProvider
@@ -134,6 +196,9 @@ class LoadExternalSourceButton extends Button {
                     else if (selected == ExternalSourceTypeRegister.SINGLE_FILE) {
                         chosenFile.set(fileChooser.showOpenDialog(null));
                     }
+                    else if (selected == ExternalSourceTypeRegister.COMPRESSED_FILE) {
+                        chosenFile.set(compressedFileChooser.showOpenDialog(null));
+                    }
                     else {
                         UiUtils.showInfoMessage(UiI18nProvider.INSTANCE
                                 .getValue("file.chooser.dialog.message.no.choice"));
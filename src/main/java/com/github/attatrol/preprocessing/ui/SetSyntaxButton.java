@@ -2,11 +2,12 @@
 package com.github.attatrol.preprocessing.ui;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
 
 import com.github.attatrol.preprocessing.datasource.DataSource;
 import com.github.attatrol.preprocessing.datasource.TitledDataSource;
 import com.github.attatrol.preprocessing.datasource.parsing.TokenFeatures;
-import com.github.attatrol.preprocessing.datasource.parsing.TokenTypeIdentifier;
+import com.github.attatrol.preprocessing.datasource.parsing.TokenTypeSample;
 import com.github.attatrol.preprocessing.datasource.parsing.record.RecordTokenizer;
 import com.github.attatrol.preprocessing.datasource.syntax.TitledTokenDataSourceSyntax;
 import com.github.attatrol.preprocessing.datasource.syntax.TokenDataSourceSyntax;
@@ -14,11 +15,13 @@ import com.github.attatrol.preprocessing.ui.TokenDataSourceDialog.TokenDataSourc
 import com.github.attatrol.preprocessing.ui.i18n.UiI18nProvider;
 import com.github.attatrol.preprocessing.ui.misc.UiUtils;
 
+import javafx.application.Platform;
 import javafx.scene.control.Button;
 
 /**
  * Confirms {@link TokenDataSourceSyntax} choice in {@link DataSourceSyntaxComboBox}, then creates
- * and registers in entities basic data source and token features.
+ * and registers in entities basic data source and token features. Token features are inferred
+ * from a sample of records, see {@link TokenTypeSample}, and validated by a full pass in background.
  * 
  * @author atta_troll
  *
@@ -35,9 +38,13 @@ class SetSyntaxButton extends Button {
                 final DataSource<?> basicDataSource =
                         syntax.getBasicDataSource(entities.getExternalSource());
                 entities.setBasicDataSource(basicDataSource);
-                final TokenFeatures[] features = produceTokenFeatures(basicDataSource, syntax);
-                entities.setTokenFeatures(features);
+                final TokenTypeSample sample = produceTokenTypeSample(basicDataSource, syntax);
+                entities.setTokenFeatures(sample.getTokenFeatures());
                 form.setAdditionalContent(TokenParserSetupPane.createTokenSetupPane(form));
+                if (!sample.isExhaustive()) {
+                    validateTokenTypes(form, sample,
+                            syntax.getBasicDataSource(entities.getExternalSource()), syntax);
+                }
             }
             catch (IOException ex) {
                 UiUtils.showExceptionMessage(ex);
@@ -48,13 +55,13 @@ class SetSyntaxButton extends Button {
     }
 
     /**
-     * Creates array of token features for current data source.
+     * Infers token features of current data source from a sample of its records.
      * 
      * @param basicDataSource
      *        current basic data source
      * @param syntax
      *        syntax for current data source
-     * @return token features that describe tokens of current data source
+     * @return sample with token features that describe tokens of current data source
      * @throws IOException
      *         on data source i/o exception
      */
@@ -62,21 +69,74 @@ class SetSyntaxButton extends Button {
         "unchecked",
         "rawtypes"
     })
-    private static TokenFeatures[] produceTokenFeatures(DataSource<?> basicDataSource,
+    private static TokenTypeSample produceTokenTypeSample(DataSource<?> basicDataSource,
             TokenDataSourceSyntax<?, ?> syntax) throws IOException {
-        TokenFeatures[] features = null;
+        TokenTypeSample sample = null;
         if (basicDataSource instanceof TitledDataSource
                 && ((TitledDataSource<?>) basicDataSource).getTitles() != null) {
-            features = TokenTypeIdentifier.defineTokenTypes((TitledDataSource) basicDataSource,
+            sample = TokenTypeSample.collect((TitledDataSource) basicDataSource,
                     (RecordTokenizer) syntax.getTokenizer(), syntax,
-                    ((TitledTokenDataSourceSyntax) syntax).getTitleTokenizer());
+                    ((TitledTokenDataSourceSyntax) syntax).getTitleTokenizer(),
+                    TokenTypeSample.DEFAULT_SAMPLE_SIZE);
         }
         else {
-            features = TokenTypeIdentifier.defineTokenTypes((DataSource) basicDataSource,
-                    (RecordTokenizer) syntax.getTokenizer(), syntax);
+            sample = TokenTypeSample.collect((DataSource) basicDataSource,
+                    (RecordTokenizer) syntax.getTokenizer(), syntax,
+                    TokenTypeSample.DEFAULT_SAMPLE_SIZE);
         }
         basicDataSource.reset();
-        return features;
+        return sample;
+    }
+
+    /**
+     * Runs full pass over current data source in background. If some sampled types
+     * are wrong and the user still sets up parsing of the sampled features, features
+     * are replaced and the setup pane is recreated.
+     * 
+     * @param form the dialog
+     * @param sample sample of current data source
+     * @param validationDataSource
+     *        separate instance of current basic data source, closed after the pass
+     * @param syntax
+     *        syntax for current data source
+     */
+    @SuppressWarnings({
+        "unchecked",
+        "rawtypes"
+    })
+    private static void validateTokenTypes(TokenDataSourceDialog form, TokenTypeSample sample,
+            DataSource<?> validationDataSource, TokenDataSourceSyntax<?, ?> syntax) {
+        final CompletableFuture<TokenFeatures[]> validation = sample.validate(
+                (DataSource) validationDataSource, (RecordTokenizer) syntax.getTokenizer(), syntax);
+        validation.whenComplete((validatedFeatures, throwable) -> {
+            try {
+                validationDataSource.close();
+            }
+            catch (IOException ex) {
+                // result of the pass is still valid
+            }
+            if (validatedFeatures == null
+                    || sample.findMismatches(validatedFeatures).length == 0) {
+                return;
+            }
+            Platform.runLater(() -> {
+                final TokenDataSourceEnitities entities =
+                        form.getTokenDataSourceEntities();
+                if (entities.getTokenFeatures() != sample.getTokenFeatures()) {
+                    return;
+                }
+                try {
+                    entities.setTokenFeatures(validatedFeatures);
+                    form.setAdditionalContent(
+                            TokenParserSetupPane.createTokenSetupPane(form));
+                    UiUtils.showInfoMessage(UiI18nProvider.INSTANCE
+                            .getValue("data.source.dialog.message.types.validated"));
+                }
+                catch (IOException ex) {
+                    UiUtils.showExceptionMessage(ex);
+                }
+            });
+        });
     }
 
 }
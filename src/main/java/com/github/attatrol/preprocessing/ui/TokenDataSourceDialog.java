@@ -104,6 +104,14 @@ public class TokenDataSourceDialog extends Dialog<TokenDataSourceAndMisc> {
         return entities;
     }
 
+    /**
+     * Shows syntax as chosen one.
+     * @param syntax syntax of the data source
+     */
+    void selectSyntax(SyntaxRegister syntax) {
+        setupSyntaxComboBox.getSelectionModel().select(syntax);
+    }
+
     private void fillContentPane() {
         GridPane buttonGrid = UiUtils.getGridPane();
         buttonGrid.setMaxWidth(400);
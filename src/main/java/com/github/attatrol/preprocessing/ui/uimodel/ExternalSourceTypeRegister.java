@@ -26,6 +26,31 @@ public enum ExternalSourceTypeRegister {
         SyntaxRegister.SEMICOLON_SEPARATED_TITLED_LINES,
         SyntaxRegister.TABULATION_SEPARATED_LINES,
         SyntaxRegister.TABULATION_SEPARATED_TITLED_LINES,
+        SyntaxRegister.QUOTED_COMMA_SEPARATED_RECORDS,
+        SyntaxRegister.QUOTED_COMMA_SEPARATED_TITLED_RECORDS,
+        SyntaxRegister.QUOTED_SEMICOLON_SEPARATED_RECORDS,
+        SyntaxRegister.QUOTED_SEMICOLON_SEPARATED_TITLED_RECORDS,
+    }) {
+
+        @Override
+        public Pane createPreviewPane(Object externalSource) throws IOException {
+            return PreviewFilePane.createPreviewFilePane((File) externalSource);
+        }
+    },
+    /**
+     * Data source that is located in a single compressed file or a zip archive.
+     */
+    COMPRESSED_FILE(new SyntaxRegister[] {
+        SyntaxRegister.COMMA_SEPARATED_LINES,
+        SyntaxRegister.COMMA_SEPARATED_TITLED_LINES,
+        SyntaxRegister.SEMICOLON_SEPARATED_LINES,
+        SyntaxRegister.SEMICOLON_SEPARATED_TITLED_LINES,
+        SyntaxRegister.TABULATION_SEPARATED_LINES,
+        SyntaxRegister.TABULATION_SEPARATED_TITLED_LINES,
+        SyntaxRegister.QUOTED_COMMA_SEPARATED_RECORDS,
+        SyntaxRegister.QUOTED_COMMA_SEPARATED_TITLED_RECORDS,
+        SyntaxRegister.QUOTED_SEMICOLON_SEPARATED_RECORDS,
+        SyntaxRegister.QUOTED_SEMICOLON_SEPARATED_TITLED_RECORDS,
     }) {
 
         @Override
@@ -36,7 +61,14 @@ public enum ExternalSourceTypeRegister {
     /**
      * Data source that is disseminated among different files in some folder.
      */
-    DIRECTORY(new SyntaxRegister[0]) {
+    DIRECTORY(new SyntaxRegister[] {
+        SyntaxRegister.COMMA_SEPARATED_LINES,
+        SyntaxRegister.COMMA_SEPARATED_TITLED_LINES,
+        SyntaxRegister.SEMICOLON_SEPARATED_LINES,
+        SyntaxRegister.SEMICOLON_SEPARATED_TITLED_LINES,
+        SyntaxRegister.TABULATION_SEPARATED_LINES,
+        SyntaxRegister.TABULATION_SEPARATED_TITLED_LINES,
+    }) {
 
         @Override
         public Pane createPreviewPane(Object externalSource) throws IOException {
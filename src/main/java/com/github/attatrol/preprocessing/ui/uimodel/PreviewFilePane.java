@@ -5,16 +5,21 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.github.attatrol.preprocessing.datasource.CompressionFormat;
+
 import javafx.scene.control.Label;
 import javafx.scene.control.TextArea;
 import javafx.scene.layout.VBox;
 
 /**
  * Preview external source pane for
- * {@link ExternalSourceTypeRegister#SINGLE_FILE}
+ * {@link ExternalSourceTypeRegister#SINGLE_FILE},
+ * {@link ExternalSourceTypeRegister#COMPRESSED_FILE}
  * and {@link ExternalSourceTypeRegister#DIRECTORY}.
  * @author atta_troll
  *
@@ -62,7 +67,10 @@ class PreviewFilePane extends VBox {
 
     private static void getLines(File file, List<String> lines)
             throws IOException, FileNotFoundException {
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+        final CompressionFormat format = CompressionFormat.forFile(file);
+        final Reader fileReader = format != null
+                ? new InputStreamReader(format.open(file, null)) : new FileReader(file);
+        try (BufferedReader reader = new BufferedReader(fileReader)) {
             int counter = 0;
             String line;
             while (counter++ < LINE_LIMIT && (line = reader.readLine()) != null) {
@@ -0,0 +1,67 @@
+package com.github.attatrol.preprocessing.cli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+
+import org.junit.Test;
+
+/**
+ * Checks parsing of command line arguments, default values and rejection
+ * of malformed command lines.
+ * @author atta_troll
+ *
+ */
+public class CliArgumentsTest {
+
+    @Test
+    public void testDefaults() {
+        final CliArguments arguments = CliArguments.parse("--input", "data.csv",
+                "--output", "out.csv");
+        assertEquals(new File("data.csv"), arguments.getInput());
+        assertEquals(new File("out.csv"), arguments.getOutput());
+        assertNull(arguments.getProfile());
+        assertEquals(CliArguments.Mode.PARSED, arguments.getMode());
+        assertEquals("gower", arguments.getDistance());
+        assertEquals("OverlapIndex", arguments.getSimilarityIndex());
+        assertEquals(-1L, arguments.getOffHeapBudget());
+    }
+
+    @Test
+    public void testAllOptions() {
+        final CliArguments arguments = CliArguments.parse("--mode", "Distances",
+                "--input", "data.csv", "--output", "out.bin", "--profile", "data.profile",
+                "--distance", "dissimilarity", "--similarity-index", "GoodallIndex",
+                "--off-heap-budget", "1048576");
+        assertEquals(new File("data.profile"), arguments.getProfile());
+        assertEquals(CliArguments.Mode.DISTANCES, arguments.getMode());
+        assertEquals("dissimilarity", arguments.getDistance());
+        assertEquals("GoodallIndex", arguments.getSimilarityIndex());
+        assertEquals(1048576L, arguments.getOffHeapBudget());
+    }
+
+    @Test
+    public void testMalformedArguments() {
+        checkRejected("--input", "data.csv");
+        checkRejected("--input", "data.csv", "--output");
+        checkRejected("--input", "data.csv", "--output", "out.csv", "--verbose", "true");
+        checkRejected("--input", "data.csv", "--output", "out.csv", "--mode", "clusters");
+        checkRejected("--input", "data.csv", "--output", "out.csv", "--off-heap-budget", "-1");
+        checkRejected("--input", "data.csv", "--output", "out.csv", "--off-heap-budget", "1M");
+    }
+
+    /**
+     * @param args command line that must be rejected
+     */
+    private static void checkRejected(String... args) {
+        try {
+            CliArguments.parse(args);
+            fail(String.join(" ", args));
+        }
+        catch (IllegalArgumentException ex) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.github.attatrol.preprocessing.cli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.attatrol.preprocessing.datasource.DataSourceFixtures;
+import com.github.attatrol.preprocessing.datasource.parsing.TokenFeatures;
+import com.github.attatrol.preprocessing.datasource.parsing.TokenType;
+import com.github.attatrol.preprocessing.datasource.parsing.missing.MissingTokenSubstitutor;
+import com.github.attatrol.preprocessing.datasource.profile.FileFingerprint;
+import com.github.attatrol.preprocessing.datasource.profile.PreprocessingProfile;
+import com.github.attatrol.preprocessing.datasource.syntax.SyntaxRegister;
+
+/**
+ * Runs the command line runner end to end on a small file: parsed output with substituted
+ * tokens, a profile of another version of the input and a columnar file used as input.
+ * @author atta_troll
+ *
+ */
+public class PreprocessingCliTest {
+
+    /**
+     * Number of records.
+     */
+    private static final int RECORDS = 50;
+
+    /**
+     * Token types of the fixture.
+     */
+    private static final TokenType[] TYPES = {
+        TokenType.INTEGER, TokenType.FLOAT, TokenType.CATEGORICAL_STRING, TokenType.BINARY
+    };
+
+    private File directory;
+
+    private File input;
+
+    private File output;
+
+    private ByteArrayOutputStream out;
+
+    private ByteArrayOutputStream err;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = DataSourceFixtures.createDirectory();
+        input = DataSourceFixtures.write(new File(directory, "data.csv"),
+                DataSourceFixtures.lines(RECORDS));
+        output = new File(directory, "out.csv");
+        out = new ByteArrayOutputStream();
+        err = new ByteArrayOutputStream();
+    }
+
+    @After
+    public void tearDown() {
+        DataSourceFixtures.delete(directory);
+    }
+
+    @Test
+    public void testParsedRecords() throws IOException {
+        final File profile = writeProfile(FileFingerprint.of(input));
+        assertEquals(err.toString(), PreprocessingCli.EXIT_OK, run("--input", input.getPath(),
+                "--output", output.getPath(), "--profile", profile.getPath()));
+        assertTrue(out.toString().startsWith("records: " + RECORDS));
+        assertEquals("", err.toString());
+        checkRecords(output);
+    }
+
+    @Test
+    public void testProfileOfAnotherVersion() throws IOException {
+        final File profile = writeProfile(new FileFingerprint(1L, 2L, 3L));
+        assertEquals(err.toString(), PreprocessingCli.EXIT_OK, run("--input", input.getPath(),
+                "--output", output.getPath(), "--profile", profile.getPath()));
+        assertTrue(err.toString().contains("substitutors are fitted again"));
+        checkRecords(output);
+    }
+
+    @Test
+    public void testColumnarInput() throws IOException {
+        final File profile = writeProfile(FileFingerprint.of(input));
+        assertEquals(PreprocessingCli.EXIT_OK, run("--input", input.getPath(),
+                "--output", output.getPath(), "--profile", profile.getPath()));
+        final File columnar = new File(directory, "data.dpc");
+        assertEquals(err.toString(), PreprocessingCli.EXIT_OK, run("--input", input.getPath(),
+                "--output", columnar.getPath(), "--profile", profile.getPath(),
+                "--mode", "columnar"));
+        final File columnarOutput = new File(directory, "columnar.csv");
+        assertEquals(err.toString(), PreprocessingCli.EXIT_OK, run("--input", columnar.getPath(),
+                "--output", columnarOutput.getPath()));
+        assertEquals(readLines(output), readLines(columnarOutput));
+    }
+
+    @Test
+    public void testUsage() {
+        assertEquals(PreprocessingCli.EXIT_USAGE, run("--input", input.getPath()));
+        assertTrue(err.toString().contains("Usage"));
+    }
+
+    /**
+     * Checks that parsed records have titles and no missing tokens.
+     * @param file parsed output
+     * @throws IOException on i/o error
+     */
+    private static void checkRecords(File file) throws IOException {
+        final List<String> lines = readLines(file);
+        assertEquals(RECORDS + 1, lines.size());
+        assertEquals("id,value,color,flag", lines.get(0));
+        for (String line : lines.subList(1, lines.size())) {
+            final String[] tokens = line.split(",", -1);
+            assertEquals(line, 4, tokens.length);
+            for (String token : tokens) {
+                assertFalse(line, token.isEmpty());
+            }
+        }
+    }
+
+    /**
+     * Writes profile of the fixture whose float and categorical tokens have substitutors.
+     * @param fingerprint fingerprint of the profile
+     * @return profile file
+     * @throws IOException on i/o error
+     */
+    private File writeProfile(FileFingerprint fingerprint) throws IOException {
+        final String[] titles = {"id", "value", "color", "flag"};
+        final TokenFeatures[] features = new TokenFeatures[TYPES.length];
+        for (int i = 0; i < TYPES.length; i++) {
+            features[i] = new TokenFeatures();
+            features[i].setTitle(titles[i]);
+            features[i].setType(TYPES[i]);
+            features[i].setInUse(true);
+            features[i].setHasOmissions(i == 1 || i == 2);
+            if (i == 1 || i == 2) {
+                features[i].setMissingTokenSubstitutor(
+                        MissingTokenSubstitutor.SUBSTITUTOR_REGISTER.get(TYPES[i])[0]);
+            }
+        }
+        final File file = new File(directory, "data.profile");
+        try (OutputStream stream = new FileOutputStream(file)) {
+            new PreprocessingProfile(fingerprint, SyntaxRegister.COMMA_SEPARATED_TITLED_LINES,
+                    features, new MissingTokenSubstitutor<?>[TYPES.length]).store(stream);
+        }
+        return file;
+    }
+
+    private int run(String... args) {
+        return PreprocessingCli.run(new PrintStream(out, true), new PrintStream(err, true), args);
+    }
+
+    private static List<String> readLines(File file) throws IOException {
+        return Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,124 @@
+package com.github.attatrol.preprocessing.datasource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that compressed data sources read back the source lines
+ * on the first pass, after reset and from the cache.
+ * @author atta_troll
+ *
+ */
+public class CompressedTextFileDataSourceTest {
+
+    /**
+     * Number of data lines, several batches of the decompression thread.
+     */
+    private static final int LINES = 3 * CompressedTextFileDataSource.BATCH_SIZE + 17;
+
+    private File directory;
+
+    private List<String> lines;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = DataSourceFixtures.createDirectory();
+        lines = DataSourceFixtures.lines(LINES);
+    }
+
+    @After
+    public void tearDown() {
+        DataSourceFixtures.delete(directory);
+    }
+
+    @Test
+    public void testGzip() throws IOException {
+        final File file = new File(directory, "data.csv.gz");
+        try (OutputStream stream = new GZIPOutputStream(new FileOutputStream(file))) {
+            DataSourceFixtures.write(stream, lines);
+        }
+        checkReadBack(new CompressedTextFileDataSource(file, true));
+    }
+
+    @Test
+    public void testDeflate() throws IOException {
+        final File file = new File(directory, "data.csv.deflate");
+        try (OutputStream stream = new DeflaterOutputStream(new FileOutputStream(file))) {
+            DataSourceFixtures.write(stream, lines);
+        }
+        checkReadBack(new CompressedTextFileDataSource(file, true));
+    }
+
+    @Test
+    public void testZipEntry() throws IOException {
+        final File file = new File(directory, "data.zip");
+        try (ZipOutputStream stream = new ZipOutputStream(new FileOutputStream(file))) {
+            stream.putNextEntry(new ZipEntry("first.csv"));
+            stream.write("other\n".getBytes(StandardCharsets.UTF_8));
+            stream.closeEntry();
+            stream.putNextEntry(new ZipEntry("second.csv"));
+            DataSourceFixtures.write(stream, lines);
+            stream.closeEntry();
+        }
+        checkReadBack(new CompressedTextFileDataSource(file, CompressionFormat.ZIP, "second.csv",
+                true, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testCache() throws IOException {
+        final File file = new File(directory, "data.csv.gz");
+        try (OutputStream stream = new GZIPOutputStream(new FileOutputStream(file))) {
+            DataSourceFixtures.write(stream, lines);
+        }
+        final CompressedTextFileDataSource source = new CompressedTextFileDataSource(file, true);
+        source.setCacheLimit(Long.MAX_VALUE);
+        try {
+            assertEquals(lines.subList(1, lines.size()), DataSourceFixtures.readAll(source, 0L));
+            assertTrue(source.isCached());
+            source.reset();
+            assertEquals(lines.subList(1, lines.size()), DataSourceFixtures.readAll(source, 0L));
+            assertEquals(lines.get(0), source.getTitles());
+        }
+        finally {
+            source.close();
+        }
+    }
+
+    /**
+     * Reads a data source twice, checks titles and lines.
+     * @param source data source of the lines
+     * @throws IOException on i/o error
+     */
+    private void checkReadBack(CompressedTextFileDataSource source) throws IOException {
+        try {
+            assertEquals(lines.get(0), source.getTitles());
+            assertEquals(lines.subList(1, lines.size()), DataSourceFixtures.readAll(source, 0L));
+            assertFalse(source.isCached());
+            source.reset();
+            for (int i = 0; i < 10; i++) {
+                source.next();
+            }
+            source.reset();
+            assertEquals(lines.subList(1, lines.size()), DataSourceFixtures.readAll(source, 0L));
+        }
+        finally {
+            source.close();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.github.attatrol.preprocessing.datasource;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.github.attatrol.preprocessing.datasource.parsing.missing.MissingTokenSubstitutor;
+import com.github.attatrol.preprocessing.datasource.parsing.record.CommaSeparatedStringSplitter;
+import com.github.attatrol.preprocessing.datasource.parsing.token.TokenParser;
+
+/**
+ * Files and data sources shared by tests.
+ * @author atta_troll
+ *
+ */
+public final class DataSourceFixtures {
+
+    private DataSourceFixtures() {
+    }
+
+    /**
+     * Creates a temporary directory.
+     * @return the directory
+     * @throws IOException on i/o error
+     */
+    public static File createDirectory() throws IOException {
+        return Files.createTempDirectory("fixture").toFile();
+    }
+
+    /**
+     * Deletes a file or a directory with its content.
+     * @param file file or directory
+     */
+    public static void delete(File file) {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * Writes lines into a file, each line is terminated with a line feed.
+     * @param file the file
+     * @param lines the lines
+     * @return the file
+     * @throws IOException on i/o error
+     */
+    public static File write(File file, List<String> lines) throws IOException {
+        try (OutputStream stream = Files.newOutputStream(file.toPath())) {
+            write(stream, lines);
+        }
+        return file;
+    }
+
+    /**
+     * Writes lines into a stream, each line is terminated with a line feed.
+     * @param stream the stream, is not closed
+     * @param lines the lines
+     * @throws IOException on i/o error
+     */
+    public static void write(OutputStream stream, List<String> lines) throws IOException {
+        for (String line : lines) {
+            stream.write(line.getBytes(StandardCharsets.UTF_8));
+            stream.write('\n');
+        }
+    }
+
+    /**
+     * Produces lines of a data set with a title line.
+     * @param number number of data lines
+     * @return lines, the first one is the title line
+     */
+    public static List<String> lines(int number) {
+        final List<String> lines = new ArrayList<>(number + 1);
+        lines.add("id,value,color,flag");
+        for (int i = 0; i < number; i++) {
+            lines.add(String.format("%d,%s,%s,%s", i, i % 7 == 0 ? "" : Double.toString(i / 4.),
+                    i % 5 == 0 ? "" : "c" + i % 3, i % 2 == 0 ? "true" : "false"));
+        }
+        return lines;
+    }
+
+    /**
+     * Reads all records of a data source and checks that their indexes are sequential.
+     * @param source data source, it is not reset
+     * @param firstIndex index of the first record
+     * @return string values of records
+     * @throws IOException on i/o error
+     */
+    public static List<String> readAll(DataSource<? extends CharSequence> source, long firstIndex)
+            throws IOException {
+        final List<String> result = new ArrayList<>();
+        while (source.hasNext()) {
+            final Record<? extends CharSequence> record = source.next();
+            assertEquals(firstIndex + result.size(), record.getIndex());
+            result.add(record.getData().toString());
+        }
+        return result;
+    }
+
+    /**
+     * Creates token data source of comma separated lines without substitutors.
+     * @param source data source of lines
+     * @param parsers token parsers
+     * @return token data source
+     */
+    @SuppressWarnings("unchecked")
+    public static DefaultTokenDataSource<CharSequence> tokens(DataSource<CharSequence> source,
+            TokenParser<?, ?>... parsers) {
+        return new DefaultTokenDataSource<CharSequence>(source, new CommaSeparatedStringSplitter(),
+                parsers.length, (TokenParser<Object, ?>[]) parsers,
+                new MissingTokenSubstitutor<?>[parsers.length]);
+    }
+}
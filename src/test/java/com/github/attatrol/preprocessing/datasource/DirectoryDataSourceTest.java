@@ -0,0 +1,84 @@
+package com.github.attatrol.preprocessing.datasource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that a directory data source reads back lines of its sorted files
+ * as one data source with a single title line and sequential indexes.
+ * @author atta_troll
+ *
+ */
+public class DirectoryDataSourceTest {
+
+    /**
+     * Numbers of data lines in files, some files have no data lines.
+     */
+    private static final int[] FILE_LINES = {120, 0, 7, 300, 0, 1, 55};
+
+    private File directory;
+
+    private List<String> expected;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = DataSourceFixtures.createDirectory();
+        expected = new ArrayList<>();
+        int first = 0;
+        for (int i = 0; i < FILE_LINES.length; i++) {
+            final List<String> lines = new ArrayList<>();
+            lines.add("id,value");
+            for (int j = 0; j < FILE_LINES[i]; j++) {
+                lines.add(String.format("%d,%d", first + j, i));
+            }
+            first += FILE_LINES[i];
+            expected.addAll(lines.subList(1, lines.size()));
+            DataSourceFixtures.write(new File(directory, String.format("part-%05d.csv", i)),
+                    lines);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        DataSourceFixtures.delete(directory);
+    }
+
+    @Test
+    public void testReadBack() throws IOException {
+        try (DirectoryDataSource source = new DirectoryDataSource(directory, true, 2)) {
+            assertEquals("id,value", source.getTitles());
+            assertEquals(expected, DataSourceFixtures.readAll(source, 0L));
+            source.reset();
+            source.next();
+            source.reset();
+            assertEquals(expected, DataSourceFixtures.readAll(source, 0L));
+        }
+    }
+
+    @Test
+    public void testSplit() throws IOException {
+        try (DirectoryDataSource source = new DirectoryDataSource(directory, true, 3)) {
+            final List<DirectoryDataSource> parts = source.split(3);
+            assertTrue(parts.size() > 1);
+            final List<String> actual = new ArrayList<>();
+            for (DirectoryDataSource part : parts) {
+                try {
+                    actual.addAll(DataSourceFixtures.readAll(part, 0L));
+                }
+                finally {
+                    part.close();
+                }
+            }
+            assertEquals(expected, actual);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.github.attatrol.preprocessing.datasource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks building, loading and staleness of line offset index and random access
+ * of a mapped text file with it.
+ * @author atta_troll
+ *
+ */
+public class LineOffsetIndexTest {
+
+    /**
+     * Text with all kinds of line terminators, lines start at offsets 0, 4, 9, 14.
+     */
+    private static final String TEXT = "abc\ndef\r\nghi\r\njkl";
+
+    /**
+     * Offsets of lines of the text.
+     */
+    private static final long[] OFFSETS = {0L, 4L, 9L, 14L};
+
+    private File directory;
+
+    private File cacheDirectory;
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("lidx").toFile();
+        cacheDirectory = new File(directory, "cache");
+        LineOffsetIndex.setCacheDirectory(cacheDirectory);
+        file = new File(directory, "data.csv");
+        write(file, TEXT);
+    }
+
+    @After
+    public void tearDown() {
+        LineOffsetIndex.setCacheDirectory(null);
+        delete(directory);
+    }
+
+    @Test
+    public void testBuild() throws IOException {
+        final LineOffsetIndex index = LineOffsetIndex.build(file);
+        assertOffsets(index);
+        assertTrue(LineOffsetIndex.getSidecarFile(file).isFile());
+        assertTrue(LineOffsetIndex.getSidecarFile(file).getParentFile().equals(cacheDirectory));
+        assertEquals(1, directory.list((dir, name) -> name.startsWith(file.getName())).length);
+    }
+
+    @Test
+    public void testLoad() throws IOException {
+        assertNull(LineOffsetIndex.load(file));
+        LineOffsetIndex.build(file);
+        assertOffsets(LineOffsetIndex.load(file));
+        assertOffsets(LineOffsetIndex.loadOrBuild(file));
+    }
+
+    @Test
+    public void testStaleness() throws IOException {
+        LineOffsetIndex.build(file);
+        write(file, TEXT + "\nmno");
+        assertTrue(file.setLastModified(file.lastModified() + 2000L));
+        assertNull(LineOffsetIndex.load(file));
+        final LineOffsetIndex index = LineOffsetIndex.loadOrBuild(file);
+        assertEquals(OFFSETS.length + 1, index.getLineNumber());
+        assertEquals(18L, index.getLineOffset(OFFSETS.length));
+        assertNotNull(LineOffsetIndex.load(file));
+    }
+
+    @Test
+    public void testHeapFallback() throws IOException {
+        final File notDirectory = new File(directory, "not-a-directory");
+        write(notDirectory, "");
+        LineOffsetIndex.setCacheDirectory(notDirectory);
+        assertOffsets(LineOffsetIndex.loadOrBuild(file));
+        assertNull(LineOffsetIndex.load(file));
+    }
+
+    @Test
+    public void testSeek() throws IOException {
+        final StringBuilder text = new StringBuilder("title\n");
+        final int lines = 1000;
+        for (int i = 0; i < lines; i++) {
+            text.append("line").append(i).append(i % 3 == 0 ? "\r\n" : "\n");
+        }
+        write(file, text.toString());
+        final MappedTextFileDataSource source = new MappedTextFileDataSource(file, true,
+                StandardCharsets.US_ASCII, 64);
+        source.setOffsetIndexEnabled(true);
+        try {
+            int read = 0;
+            while (source.hasNext()) {
+                source.next();
+                read++;
+            }
+            assertEquals(lines, read);
+            assertNotNull("index is built during the first pass", LineOffsetIndex.load(file));
+            assertEquals(lines, source.getRecordNumber());
+            for (int i : new int[] {0, 1, 500, 333, lines - 1}) {
+                source.seek(i);
+                final Record<CharSequence> record = source.next();
+                assertEquals(i, record.getIndex());
+                assertEquals("line" + i, record.getData().toString());
+            }
+            source.seek(lines);
+            assertFalse(source.hasNext());
+        }
+        finally {
+            source.close();
+        }
+    }
+
+    private static void assertOffsets(LineOffsetIndex index) {
+        assertEquals(OFFSETS.length, index.getLineNumber());
+        for (int i = 0; i < OFFSETS.length; i++) {
+            assertEquals(OFFSETS[i], index.getLineOffset(i));
+        }
+    }
+
+    private static void write(File file, String text) throws IOException {
+        Files.write(file.toPath(), text.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static void delete(File file) {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
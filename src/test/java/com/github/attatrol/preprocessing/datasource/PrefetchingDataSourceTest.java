@@ -0,0 +1,55 @@
+package com.github.attatrol.preprocessing.datasource;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that a prefetching data source reads back records of the wrapped one
+ * with their indexes, also after reset in the middle of a pass.
+ * @author atta_troll
+ *
+ */
+public class PrefetchingDataSourceTest {
+
+    private File directory;
+
+    private File file;
+
+    private List<String> lines;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = DataSourceFixtures.createDirectory();
+        lines = DataSourceFixtures.lines(1000);
+        file = DataSourceFixtures.write(new File(directory, "data.csv"), lines);
+    }
+
+    @After
+    public void tearDown() {
+        DataSourceFixtures.delete(directory);
+    }
+
+    @Test
+    public void testReadBack() throws IOException {
+        for (int batchSize : new int[] {1, 7, 1000, 5000}) {
+            try (PrefetchingDataSource<CharSequence> source = new PrefetchingDataSource<>(
+                    new MappedTextFileDataSource(file, true), batchSize, 2)) {
+                assertEquals(lines.get(0), source.getTitles());
+                assertEquals(lines.subList(1, lines.size()), DataSourceFixtures.readAll(source, 0L));
+                source.reset();
+                for (int i = 0; i < 123; i++) {
+                    source.next();
+                }
+                source.reset();
+                assertEquals(lines.subList(1, lines.size()), DataSourceFixtures.readAll(source, 0L));
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.github.attatrol.preprocessing.datasource;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.github.attatrol.preprocessing.datasource.parsing.record.QuotedCsvTokenizer;
+
+/**
+ * Checks that quoted CSV records are framed by the data source exactly as the tokenizer
+ * reads them, in particular that a quote inside an unquoted field is a literal.
+ * @author atta_troll
+ *
+ */
+public class QuotedCsvDataSourceTest {
+
+    @Test
+    public void testStrayQuote() {
+        assertArrayEquals(new String[] {"1", "TV 5\" wide", "3"},
+                new QuotedCsvTokenizer().tokenize("1,TV 5\" wide,3"));
+    }
+
+    @Test
+    public void testQuotedFields() {
+        assertArrayEquals(new String[] {"a,b", "say \"hi\"", null, "x"},
+                new QuotedCsvTokenizer().tokenize("\"a,b\", \"say \"\"hi\"\"\" ,,x"));
+    }
+
+    @Test
+    public void testFramingOfStrayQuotes() throws IOException {
+        final List<String> records = read("1,TV 5\" wide,3\n2,plain,4\r\n3,\"two\nlines\",5\n");
+        assertEquals(3, records.size());
+        final QuotedCsvTokenizer tokenizer = new QuotedCsvTokenizer();
+        assertArrayEquals(new String[] {"1", "TV 5\" wide", "3"}, tokenizer.tokenize(records.get(0)));
+        assertArrayEquals(new String[] {"2", "plain", "4"}, tokenizer.tokenize(records.get(1)));
+        assertArrayEquals(new String[] {"3", "two\nlines", "5"}, tokenizer.tokenize(records.get(2)));
+    }
+
+    /**
+     * Reads records of a text with the quoted CSV data source.
+     * @param text the text
+     * @return records
+     * @throws IOException on i/o error
+     */
+    private static List<String> read(String text) throws IOException {
+        final File file = File.createTempFile("quoted", ".csv");
+        try {
+            Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+            final List<String> records = new ArrayList<>();
+            final QuotedCsvDataSource source = new QuotedCsvDataSource(file, false,
+                    new QuotedCsvTokenizer(), StandardCharsets.UTF_8);
+            try {
+                while (source.hasNext()) {
+                    records.add(source.next().getData().toString());
+                }
+                assertFalse(source.hasNext());
+            }
+            finally {
+                source.close();
+            }
+            return records;
+        }
+        finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.github.attatrol.preprocessing.datasource.columnar;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.attatrol.preprocessing.datasource.AbstractTokenDataSource;
+import com.github.attatrol.preprocessing.datasource.DataSourceFixtures;
+import com.github.attatrol.preprocessing.datasource.DefaultTokenDataSource;
+import com.github.attatrol.preprocessing.datasource.MappedTextFileDataSource;
+import com.github.attatrol.preprocessing.datasource.Record;
+import com.github.attatrol.preprocessing.datasource.parsing.TokenFeatures;
+import com.github.attatrol.preprocessing.datasource.parsing.TokenType;
+import com.github.attatrol.preprocessing.datasource.parsing.token.TextBinaryDigitalParser;
+import com.github.attatrol.preprocessing.datasource.parsing.token.TextBinaryParser;
+import com.github.attatrol.preprocessing.datasource.parsing.token.TextCategoricalParser;
+import com.github.attatrol.preprocessing.datasource.parsing.token.TextFloatParser;
+import com.github.attatrol.preprocessing.datasource.parsing.token.TextIntegerParser;
+import com.github.attatrol.preprocessing.datasource.parsing.token.TokenParser;
+
+/**
+ * Checks that a columnar file reads back records and token features written into it,
+ * for every column type, across row groups.
+ * @author atta_troll
+ *
+ */
+public class ColumnarFileDataSourceTest {
+
+    /**
+     * Token types of the fixture, one column of each type.
+     */
+    private static final TokenType[] TYPES = {
+        TokenType.INTEGER, TokenType.FLOAT, TokenType.CATEGORICAL_STRING, TokenType.BINARY,
+        TokenType.BINARY_DIGITAL
+    };
+
+    /**
+     * Number of records, several row groups.
+     */
+    private static final int RECORDS = 1000;
+
+    /**
+     * Number of records in a row group.
+     */
+    private static final int ROW_GROUP_SIZE = 128;
+
+    private File directory;
+
+    private File textFile;
+
+    private File columnarFile;
+
+    private TokenFeatures[] features;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = DataSourceFixtures.createDirectory();
+        final List<String> lines = new ArrayList<>();
+        lines.add("int,float,category,binary,digital");
+        for (int i = 0; i < RECORDS; i++) {
+            lines.add(String.format("%s,%s,%s,%s,%s", i % 11 == 0 ? "" : Integer.toString(i - 500),
+                    i % 13 == 0 ? "" : Double.toString(i * 0.25), i % 17 == 0 ? "" : "c" + i % 23,
+                    i % 19 == 0 ? "" : i % 2 == 0 ? "true" : "false",
+                    i % 29 == 0 ? "" : Integer.toString(i % 3 == 0 ? 1 : 0)));
+        }
+        textFile = DataSourceFixtures.write(new File(directory, "data.csv"), lines);
+        columnarFile = new File(directory, "data" + ColumnarFileDataSource.FILE_EXTENSION);
+        features = new TokenFeatures[TYPES.length];
+        final String[] titles = lines.get(0).split(",");
+        for (int i = 0; i < TYPES.length; i++) {
+            features[i] = new TokenFeatures();
+            features[i].setTitle(titles[i]);
+            features[i].setType(TYPES[i]);
+            features[i].setHasOmissions(true);
+            features[i].setInUse(i != 1);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        DataSourceFixtures.delete(directory);
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        final List<Record<Object[]>> expected;
+        try (DefaultTokenDataSource<CharSequence> source = open(new TextCategoricalParser())) {
+            expected = readAll(source);
+            try (ColumnarFileWriter writer = new ColumnarFileWriter(columnarFile, features,
+                    ROW_GROUP_SIZE)) {
+                for (Record<Object[]> record : expected) {
+                    writer.write(record);
+                }
+            }
+        }
+        checkReadBack(expected);
+    }
+
+    @Test
+    public void testRoundTripOfEncodedCategories() throws IOException {
+        final List<Record<Object[]>> expected;
+        try (DefaultTokenDataSource<CharSequence> source = open(new TextCategoricalParser())) {
+            expected = readAll(source);
+        }
+        try (DefaultTokenDataSource<CharSequence> source =
+                open(new TextCategoricalParser()).encodeCategories()) {
+            assertEquals(RECORDS, ColumnarFileWriter.write(source, features, columnarFile));
+        }
+        checkReadBack(expected);
+    }
+
+    /**
+     * Compares records and features of the columnar file with the expected ones,
+     * on a pass, after a seek and in parts.
+     * @param expected expected records
+     * @throws IOException on i/o error
+     */
+    private void checkReadBack(List<Record<Object[]>> expected) throws IOException {
+        try (ColumnarFileDataSource columnar = new ColumnarFileDataSource(columnarFile)) {
+            final TokenFeatures[] readFeatures = columnar.getTokenFeatures();
+            for (int i = 0; i < TYPES.length; i++) {
+                assertEquals(features[i].getTitle(), readFeatures[i].getTitle());
+                assertEquals(features[i].getType(), readFeatures[i].getType());
+                assertEquals(features[i].isInUse(), readFeatures[i].isInUse());
+                assertEquals(features[i].hasOmissions(), readFeatures[i].hasOmissions());
+            }
+            assertEquals(expected.size(), columnar.getRecordNumber());
+            assertRecords(expected, readAll(columnar));
+            columnar.seek(ROW_GROUP_SIZE * 3 + 5);
+            assertRecords(expected.subList(ROW_GROUP_SIZE * 3 + 5, expected.size()),
+                    readAll(columnar));
+            final List<Record<Object[]>> parts = new ArrayList<>();
+            for (ColumnarFileDataSource part : columnar.split(3)) {
+                parts.addAll(readAll(part));
+            }
+            assertRecords(expected, parts);
+        }
+    }
+
+    /**
+     * Opens token data source of the text file.
+     * @param categoricalParser parser of the categorical column
+     * @return token data source
+     */
+    private DefaultTokenDataSource<CharSequence> open(TokenParser<?, ?> categoricalParser) {
+        return DataSourceFixtures.tokens(new MappedTextFileDataSource(textFile, true),
+                new TextIntegerParser(), new TextFloatParser(), categoricalParser,
+                new TextBinaryParser(), new TextBinaryDigitalParser());
+    }
+
+    private static List<Record<Object[]>> readAll(AbstractTokenDataSource<?> dataSource)
+            throws IOException {
+        final List<Record<Object[]>> records = new ArrayList<>();
+        while (dataSource.hasNext()) {
+            final Record<Object[]> record = dataSource.next();
+            records.add(new Record<>(record.getData().clone(), record.getIndex()));
+        }
+        dataSource.reset();
+        return records;
+    }
+
+    private static void assertRecords(List<Record<Object[]>> expected,
+            List<Record<Object[]>> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getIndex(), actual.get(i).getIndex());
+            assertArrayEquals(Arrays.toString(expected.get(i).getData()),
+                    expected.get(i).getData(), actual.get(i).getData());
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.github.attatrol.preprocessing.datasource.columnar;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.attatrol.preprocessing.datasource.AbstractTokenDataSource;
+import com.github.attatrol.preprocessing.datasource.DataSourceFixtures;
+import com.github.attatrol.preprocessing.datasource.DefaultTokenDataSource;
+import com.github.attatrol.preprocessing.datasource.MappedTextFileDataSource;
+import com.github.attatrol.preprocessing.datasource.Record;
+import com.github.attatrol.preprocessing.datasource.parsing.TokenType;
+import com.github.attatrol.preprocessing.datasource.parsing.token.TextBinaryParser;
+import com.github.attatrol.preprocessing.datasource.parsing.token.TextCategoricalParser;
+import com.github.attatrol.preprocessing.datasource.parsing.token.TextFloatParser;
+import com.github.attatrol.preprocessing.datasource.parsing.token.TextIntegerParser;
+
+/**
+ * Checks that materialized data sources in heap and off heap read back
+ * records of the source data source, missing tokens included.
+ * @author atta_troll
+ *
+ */
+public class MaterializedTokenDataSourceTest {
+
+    /**
+     * Token types of the fixture.
+     */
+    private static final TokenType[] TYPES = {
+        TokenType.INTEGER, TokenType.FLOAT, TokenType.CATEGORICAL_STRING, TokenType.BINARY
+    };
+
+    private File directory;
+
+    private DefaultTokenDataSource<CharSequence> source;
+
+    private List<Record<Object[]>> expected;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = DataSourceFixtures.createDirectory();
+        final File file = DataSourceFixtures.write(new File(directory, "data.csv"),
+                DataSourceFixtures.lines(5000));
+        source = DataSourceFixtures.tokens(new MappedTextFileDataSource(file, true),
+                new TextIntegerParser(), new TextFloatParser(), new TextCategoricalParser(),
+                new TextBinaryParser());
+        expected = readAll(source);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        source.close();
+        DataSourceFixtures.delete(directory);
+    }
+
+    @Test
+    public void testHeap() throws IOException {
+        try (MaterializedTokenDataSource materialized =
+                MaterializedTokenDataSource.materialize(source, TYPES)) {
+            checkReadBack(materialized);
+        }
+    }
+
+    @Test
+    public void testOffHeap() throws IOException {
+        try (MaterializedTokenDataSource materialized = MaterializedTokenDataSource
+                .materializeOffHeap(source, TYPES, Long.MAX_VALUE, directory, expected.size())) {
+            checkReadBack(materialized);
+        }
+    }
+
+    @Test
+    public void testSpilled() throws IOException {
+        try (MaterializedTokenDataSource materialized = MaterializedTokenDataSource
+                .materializeOffHeap(source, TYPES, 0L, directory)) {
+            checkReadBack(materialized);
+            assertTrue(materialized.getMemoryFootprintReport().contains("0 bytes in direct buffers"));
+        }
+    }
+
+    /**
+     * Compares records of a materialized data source with the expected ones,
+     * on a pass, after a seek and in parts.
+     * @param materialized materialized data source
+     * @throws IOException on i/o error
+     */
+    private void checkReadBack(MaterializedTokenDataSource materialized) throws IOException {
+        assertEquals(expected.size(), materialized.getRecordNumber());
+        assertRecords(expected, readAll(materialized));
+        materialized.seek(expected.size() / 2);
+        assertRecords(expected.subList(expected.size() / 2, expected.size()), readAll(materialized));
+        final List<Record<Object[]>> parts = new ArrayList<>();
+        for (MaterializedTokenDataSource part : materialized.split(3)) {
+            parts.addAll(readAll(part));
+        }
+        assertRecords(expected, parts);
+    }
+
+    private static List<Record<Object[]>> readAll(AbstractTokenDataSource<?> dataSource)
+            throws IOException {
+        final List<Record<Object[]>> records = new ArrayList<>();
+        while (dataSource.hasNext()) {
+            records.add(dataSource.next());
+        }
+        dataSource.reset();
+        return records;
+    }
+
+    private static void assertRecords(List<Record<Object[]>> expected,
+            List<Record<Object[]>> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getIndex(), actual.get(i).getIndex());
+            assertArrayEquals(expected.get(i).getData(), actual.get(i).getData());
+        }
+    }
+}
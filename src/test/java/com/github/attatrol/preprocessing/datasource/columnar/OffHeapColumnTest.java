@@ -0,0 +1,125 @@
+package com.github.attatrol.preprocessing.datasource.columnar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import com.github.attatrol.preprocessing.datasource.parsing.TokenType;
+
+/**
+ * Checks values of off-heap columns across chunk boundaries, sizing of the first chunk
+ * and release of chunks by the allocator.
+ * @author atta_troll
+ *
+ */
+public class OffHeapColumnTest {
+
+    /**
+     * Number of {@code int} values in a chunk.
+     */
+    private static final int INTS_PER_CHUNK = OffHeapAllocator.CHUNK_SIZE / Integer.BYTES;
+
+    @Test
+    public void testChunkBoundary() throws IOException {
+        try (OffHeapAllocator allocator = new OffHeapAllocator(Long.MAX_VALUE, null)) {
+            final OffHeapColumn column = new OffHeapColumn(TokenType.INTEGER, allocator);
+            final int size = INTS_PER_CHUNK + 100;
+            for (int i = 0; i < size; i++) {
+                if (i % 1000 == 999) {
+                    column.appendMissing();
+                }
+                else {
+                    column.appendInt(i * 31);
+                }
+            }
+            assertEquals(size, column.size());
+            for (int i = 0; i < size; i++) {
+                if (i % 1000 == 999) {
+                    assertTrue(column.isMissing(i));
+                    assertNull(column.get(i));
+                }
+                else {
+                    assertFalse(column.isMissing(i));
+                    assertEquals(i * 31, column.getInt(i));
+                }
+            }
+            assertEquals(2L * OffHeapAllocator.CHUNK_SIZE, allocator.getDirectSize());
+        }
+    }
+
+    @Test
+    public void testSpilledChunkBoundary() throws IOException {
+        try (OffHeapAllocator allocator = new OffHeapAllocator(0L, null)) {
+            final OffHeapColumn column = new OffHeapColumn(TokenType.FLOAT, allocator,
+                    INTS_PER_CHUNK);
+            final int size = INTS_PER_CHUNK / 2 + 3;
+            for (int i = 0; i < size; i++) {
+                column.appendDouble(i / 8.);
+            }
+            for (int i = 0; i < size; i++) {
+                assertEquals(i / 8., column.getDouble(i), 0.);
+            }
+            assertEquals(0L, allocator.getDirectSize());
+            assertEquals(2L * OffHeapAllocator.CHUNK_SIZE, allocator.getSpilledSize());
+        }
+    }
+
+    @Test
+    public void testFirstChunkSize() throws IOException {
+        try (OffHeapAllocator allocator = new OffHeapAllocator(Long.MAX_VALUE, null)) {
+            final OffHeapColumn small = new OffHeapColumn(TokenType.INTEGER, allocator, 10);
+            small.appendInt(1);
+            final long smallSize = allocator.getDirectSize();
+            assertTrue(smallSize < OffHeapAllocator.CHUNK_SIZE);
+            final OffHeapColumn sized = new OffHeapColumn(TokenType.INTEGER, allocator, 100000);
+            sized.appendInt(1);
+            assertTrue(allocator.getDirectSize() - smallSize >= 100000L * Integer.BYTES);
+            assertTrue(allocator.getDirectSize() - smallSize < 2L * 100000L * Integer.BYTES);
+        }
+    }
+
+    @Test
+    public void testGrowthOfFirstChunk() throws IOException {
+        try (OffHeapAllocator allocator = new OffHeapAllocator(Long.MAX_VALUE, null)) {
+            final OffHeapColumn column = new OffHeapColumn(TokenType.CATEGORICAL_STRING,
+                    allocator);
+            final int size = 100000;
+            for (int i = 0; i < size; i++) {
+                column.append("v" + i % 10);
+            }
+            for (int i = 0; i < size; i++) {
+                assertEquals("v" + i % 10, column.get(i));
+            }
+            // replaced chunks are freed, only the first chunk doubled up to 512 KB remains
+            assertEquals(1L << 19, allocator.getDirectSize());
+        }
+    }
+
+    @Test
+    public void testFree() throws IOException {
+        try (OffHeapAllocator allocator = new OffHeapAllocator(1L << 20, null)) {
+            final ByteBuffer first = allocator.allocate(1 << 19);
+            final ByteBuffer second = allocator.allocate(1 << 19);
+            assertEquals(1L << 20, allocator.getDirectSize());
+            allocator.free(first);
+            assertEquals(1L << 19, allocator.getDirectSize());
+            allocator.allocate(1 << 19);
+            assertEquals("freed memory returns to the budget", 0L, allocator.getSpilledSize());
+            allocator.free(second);
+            try {
+                allocator.free(second);
+                fail("chunk is freed twice");
+            }
+            catch (IllegalArgumentException ex) {
+                // expected
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.github.attatrol.preprocessing.datasource.parsing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.attatrol.preprocessing.datasource.DataSourceFixtures;
+import com.github.attatrol.preprocessing.datasource.MappedTextFileDataSource;
+import com.github.attatrol.preprocessing.datasource.parsing.record.CommaSeparatedStringSplitter;
+import com.github.attatrol.preprocessing.datasource.syntax.SyntaxRegister;
+
+/**
+ * Checks that token types defined by the parallel pass over parts of a data source
+ * are the ones of a sequential scan, when types of a column differ between parts
+ * and are promoted by merging.
+ * @author atta_troll
+ *
+ */
+public class TokenTypeIdentifierTest {
+
+    /**
+     * Number of records, enough for several parts.
+     */
+    private static final int RECORDS = 8000;
+
+    /**
+     * Every record with this remainder of its index misses the last column.
+     */
+    private static final int SHORT_RECORD_PERIOD = 1000;
+
+    private static final TokenTypeIdentifier IDENTIFIER =
+            SyntaxRegister.COMMA_SEPARATED_TITLED_LINES.getSyntax();
+
+    private File directory;
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = DataSourceFixtures.createDirectory();
+        final List<String> lines = new ArrayList<>();
+        lines.add("id,mixed,digit,flag,tail");
+        for (int i = 0; i < RECORDS; i++) {
+            // integers in the first half become floats in the second one
+            final String mixed = i < RECORDS / 2 ? Integer.toString(i) : i + ".5";
+            // binary digits become integers in the last part only
+            final String digit = i < RECORDS - 10 ? Integer.toString(i % 2) : "7";
+            // binary values become a categorical column by a single token
+            final String flag = i == RECORDS / 3 ? "maybe" : Boolean.toString(i % 3 == 0);
+            final String line = String.join(",", Integer.toString(i), mixed, digit, flag);
+            lines.add(i % SHORT_RECORD_PERIOD == SHORT_RECORD_PERIOD / 2 ? line : line + ",c" + i);
+        }
+        file = DataSourceFixtures.write(new File(directory, "data.csv"), lines);
+    }
+
+    @After
+    public void tearDown() {
+        DataSourceFixtures.delete(directory);
+    }
+
+    @Test
+    public void testParallelPassMatchesSequentialScan() throws IOException {
+        final TokenFeatures[] expected = scan();
+        final TokenFeatures[] actual;
+        try (MappedTextFileDataSource source = new MappedTextFileDataSource(file, true)) {
+            assertTrue(source.isSplittable());
+            actual = TokenTypeIdentifier.defineTokenTypes(source,
+                    new CommaSeparatedStringSplitter(), IDENTIFIER);
+        }
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals("type of column " + i, expected[i].getType(), actual[i].getType());
+            assertEquals("omissions of column " + i, expected[i].hasOmissions(),
+                    actual[i].hasOmissions());
+        }
+        assertEquals(TokenType.FLOAT, actual[1].getType());
+        assertEquals(TokenType.INTEGER, actual[2].getType());
+        assertEquals(TokenType.CATEGORICAL_STRING, actual[3].getType());
+        assertFalse(actual[1].hasOmissions());
+        assertTrue("short records miss the last column", actual[4].hasOmissions());
+    }
+
+    /**
+     * Defines token features by a sequential scan of records.
+     * @return token features
+     * @throws IOException on i/o error
+     */
+    private TokenFeatures[] scan() throws IOException {
+        TokenType[] types = new TokenType[0];
+        boolean[] omissions = new boolean[0];
+        long recordNumber = 0;
+        final CommaSeparatedStringSplitter tokenizer = new CommaSeparatedStringSplitter();
+        try (MappedTextFileDataSource source = new MappedTextFileDataSource(file, true)) {
+            while (source.hasNext()) {
+                final Object[] tokens = tokenizer.tokenize(source.next().getData());
+                if (tokens.length > types.length) {
+                    omissions = Arrays.copyOf(omissions, tokens.length);
+                    // columns absent in previous records have omissions
+                    for (int i = types.length; i < tokens.length; i++) {
+                        omissions[i] = recordNumber != 0;
+                    }
+                    types = Arrays.copyOf(types, tokens.length);
+                }
+                for (int i = 0; i < types.length; i++) {
+                    if (i >= tokens.length || tokens[i] == null) {
+                        omissions[i] = true;
+                    }
+                    else {
+                        final TokenType type = IDENTIFIER.detectTokenType(tokens[i]);
+                        types[i] = types[i] == null ? type
+                                : TokenType.getClosestCommonAncestor(types[i], type);
+                    }
+                }
+                recordNumber++;
+            }
+        }
+        final TokenFeatures[] features = new TokenFeatures[types.length];
+        for (int i = 0; i < types.length; i++) {
+            features[i] = new TokenFeatures();
+            features[i].setType(types[i]);
+            features[i].setHasOmissions(omissions[i]);
+        }
+        return features;
+    }
+}
@@ -0,0 +1,100 @@
+package com.github.attatrol.preprocessing.datasource.parsing;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.attatrol.preprocessing.datasource.DataSourceFixtures;
+import com.github.attatrol.preprocessing.datasource.MappedTextFileDataSource;
+import com.github.attatrol.preprocessing.datasource.parsing.record.CommaSeparatedStringSplitter;
+import com.github.attatrol.preprocessing.datasource.syntax.SyntaxRegister;
+
+/**
+ * Checks that types inferred from a sample match types of a full pass,
+ * and that validation finds a column whose sampled type is wrong.
+ * @author atta_troll
+ *
+ */
+public class TokenTypeSampleTest {
+
+    /**
+     * Number of records.
+     */
+    private static final int RECORDS = 5000;
+
+    /**
+     * Number of sampled records, one record from the beginning of each part.
+     */
+    private static final int SAMPLE_SIZE = TokenTypeSample.SAMPLE_PARTS_NUMBER;
+
+    private static final TokenTypeIdentifier IDENTIFIER =
+            SyntaxRegister.COMMA_SEPARATED_TITLED_LINES.getSyntax();
+
+    private File directory;
+
+    private List<String> lines;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = DataSourceFixtures.createDirectory();
+        lines = DataSourceFixtures.lines(RECORDS);
+    }
+
+    @After
+    public void tearDown() {
+        DataSourceFixtures.delete(directory);
+    }
+
+    @Test
+    public void testSampleMatchesFullPass() throws Exception {
+        final File file = DataSourceFixtures.write(new File(directory, "data.csv"), lines);
+        final TokenTypeSample sample = collect(file, SAMPLE_SIZE);
+        assertFalse(sample.isExhaustive());
+        assertTrue(sample.getRecordNumber() <= SAMPLE_SIZE);
+        final TokenFeatures[] validatedFeatures = validate(sample, file);
+        assertEquals(validatedFeatures.length, sample.getTokenFeatures().length);
+        for (int i = 0; i < validatedFeatures.length; i++) {
+            assertEquals(validatedFeatures[i].getType(), sample.getTokenFeatures()[i].getType());
+            assertTrue(sample.getConfidence(i) > 0. && sample.getConfidence(i) < 1.);
+        }
+        assertArrayEquals(new int[0], sample.findMismatches(validatedFeatures));
+        final TokenTypeSample exhaustiveSample = collect(file, RECORDS * 2);
+        assertTrue(exhaustiveSample.isExhaustive());
+        assertEquals(1., exhaustiveSample.getConfidence(1), 0.);
+    }
+
+    @Test
+    public void testWrongSampledType() throws Exception {
+        // the last record is far from beginnings of parts, so it is not sampled
+        lines.set(lines.size() - 1, "4999,n/a,c1,true");
+        final File file = DataSourceFixtures.write(new File(directory, "data.csv"), lines);
+        final TokenTypeSample sample = collect(file, SAMPLE_SIZE);
+        assertEquals(TokenType.FLOAT, sample.getTokenFeatures()[1].getType());
+        final TokenFeatures[] validatedFeatures = validate(sample, file);
+        assertTrue(validatedFeatures[1].getType() != TokenType.FLOAT);
+        assertArrayEquals(new int[] {1}, sample.findMismatches(validatedFeatures));
+        assertEquals("titles of the sample are kept", "value", validatedFeatures[1].getTitle());
+    }
+
+    private static TokenTypeSample collect(File file, int sampleSize) throws IOException {
+        try (MappedTextFileDataSource source = new MappedTextFileDataSource(file, true)) {
+            return TokenTypeSample.collect(source, new CommaSeparatedStringSplitter(), IDENTIFIER,
+                    new CommaSeparatedStringSplitter(), sampleSize);
+        }
+    }
+
+    private static TokenFeatures[] validate(TokenTypeSample sample, File file) throws Exception {
+        try (MappedTextFileDataSource source = new MappedTextFileDataSource(file, true)) {
+            return sample.validate(source, new CommaSeparatedStringSplitter(), IDENTIFIER).get();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.github.attatrol.preprocessing.datasource.parsing.missing;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.attatrol.preprocessing.datasource.DataSourceFixtures;
+import com.github.attatrol.preprocessing.datasource.DefaultTokenDataSource;
+import com.github.attatrol.preprocessing.datasource.MappedTextFileDataSource;
+import com.github.attatrol.preprocessing.datasource.Record;
+import com.github.attatrol.preprocessing.datasource.parsing.token.TextCategoricalParser;
+import com.github.attatrol.preprocessing.datasource.parsing.token.TextFloatParser;
+
+/**
+ * Checks that a statistic of the group of a record is substituted, that small and unknown
+ * groups fall back to the global statistic and that a default key with too many
+ * distinct values is excluded.
+ * @author atta_troll
+ *
+ */
+public class GroupStatisticSubstitutorTest {
+
+    /**
+     * Number of records of big groups.
+     */
+    private static final int RECORDS = 400;
+
+    /**
+     * Number of big groups.
+     */
+    private static final int GROUPS = 4;
+
+    /**
+     * Value of records of the small group.
+     */
+    private static final double SMALL_GROUP_VALUE = 100.;
+
+    private File directory;
+
+    private File file;
+
+    /**
+     * Mean of all values.
+     */
+    private double globalMean;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = DataSourceFixtures.createDirectory();
+        final List<String> lines = new ArrayList<>();
+        lines.add("value,group,id");
+        double sum = 0.;
+        int number = 0;
+        for (int i = 0; i < RECORDS; i++) {
+            // identifiers are categorical tokens with a distinct value per record
+            if (i % 9 == 0) {
+                lines.add(",g" + i % GROUPS + ",id" + i);
+            }
+            else {
+                lines.add(Double.toString(groupValue(i % GROUPS)) + ",g" + i % GROUPS + ",id" + i);
+                sum += groupValue(i % GROUPS);
+                number++;
+            }
+        }
+        // group smaller than the default minimal group size
+        lines.add(SMALL_GROUP_VALUE + ",small,id" + RECORDS);
+        lines.add(SMALL_GROUP_VALUE + ",small,id" + (RECORDS + 1));
+        globalMean = (sum + 2 * SMALL_GROUP_VALUE) / (number + 2);
+        file = DataSourceFixtures.write(new File(directory, "data.csv"), lines);
+    }
+
+    @After
+    public void tearDown() {
+        DataSourceFixtures.delete(directory);
+    }
+
+    @Test
+    public void testGroupMean() throws IOException {
+        final GroupStatisticSubstitutor<?> substitutor =
+                fit(new GroupStatisticSubstitutor.MeanFactory<Double>());
+        assertArrayEquals("identifier is excluded from keys", new int[] {1},
+                substitutor.getKeyIndexes());
+        assertEquals(GROUPS + 2, substitutor.getGroupsNumber());
+        for (int group = 0; group < GROUPS; group++) {
+            assertEquals(groupValue(group), substitute(substitutor, "g" + group, "id0"));
+        }
+        assertEquals(globalMean, (Double) substitute(substitutor, "small", "id0"), 1e-9);
+        assertEquals(globalMean, (Double) substitute(substitutor, "unknown", "id0"), 1e-9);
+        assertEquals(globalMean, (Double) substitute(substitutor, null, "id0"), 1e-9);
+    }
+
+    @Test
+    public void testGroupMedian() throws IOException {
+        final GroupStatisticSubstitutor<?> substitutor =
+                fit(new GroupStatisticSubstitutor.MedianFactory<Double>());
+        for (int group = 0; group < GROUPS; group++) {
+            assertEquals(groupValue(group), substitute(substitutor, "g" + group, "id0"));
+        }
+    }
+
+    @Test
+    public void testExplicitKeyIsKept() throws IOException {
+        final GroupStatisticSubstitutor<?> substitutor =
+                fit(new GroupStatisticSubstitutor.MeanFactory<Double>(1, 2));
+        assertArrayEquals(new int[] {2}, substitutor.getKeyIndexes());
+        assertEquals(groupValue(5 % GROUPS), substitute(substitutor, "g0", "id5"));
+        assertEquals(SMALL_GROUP_VALUE, substitute(substitutor, "g0", "id" + RECORDS));
+    }
+
+    /**
+     * @param group index of a big group
+     * @return value of records of the group
+     */
+    private static double groupValue(int group) {
+        return group * 10.;
+    }
+
+    /**
+     * Fits substitutor of the value token.
+     * @param factory substitutor factory
+     * @return fitted substitutor
+     * @throws IOException on i/o error
+     */
+    private GroupStatisticSubstitutor<?> fit(AccumulatingSubstitutorFactory<?> factory)
+            throws IOException {
+        try (DefaultTokenDataSource<CharSequence> source = DataSourceFixtures.tokens(
+                new MappedTextFileDataSource(file, true), new TextFloatParser(),
+                new TextCategoricalParser(), new TextCategoricalParser())) {
+            return (GroupStatisticSubstitutor<?>) factory.produceSubstitutor(source, 0);
+        }
+    }
+
+    private static Object substitute(GroupStatisticSubstitutor<?> substitutor, String group,
+            String id) {
+        return substitutor.substitute(new Record<>(new Object[] {null, group, id}, 0));
+    }
+}
@@ -0,0 +1,128 @@
+package com.github.attatrol.preprocessing.datasource.parsing.missing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks guarantees of a heavy hitters sketch on a skewed stream: every item more frequent
+ * than n / k is tracked and counts are overestimated by at most n / k, for a single sketch
+ * and for a merge of sketches of parts.
+ * @author atta_troll
+ *
+ */
+public class HeavyHittersSketchTest {
+
+    /**
+     * Number of distinct items.
+     */
+    private static final int DISTINCT_ITEMS = 1000;
+
+    /**
+     * Number of counters.
+     */
+    private static final int CAPACITY = 50;
+
+    /**
+     * Number of parts.
+     */
+    private static final int PARTS = 4;
+
+    /**
+     * Items of the stream.
+     */
+    private int[] stream;
+
+    /**
+     * Exact counts of items.
+     */
+    private Map<Integer, Long> exactCounts;
+
+    @Before
+    public void setUp() {
+        // frequency of an item is inversely proportional to its rank
+        int length = 0;
+        for (int i = 0; i < DISTINCT_ITEMS; i++) {
+            length += DISTINCT_ITEMS / (i + 1);
+        }
+        stream = new int[length];
+        exactCounts = new HashMap<>();
+        int position = 0;
+        for (int i = 0; i < DISTINCT_ITEMS; i++) {
+            for (int j = 0; j < DISTINCT_ITEMS / (i + 1); j++) {
+                stream[position++] = i;
+            }
+            exactCounts.put(i, (long) (DISTINCT_ITEMS / (i + 1)));
+        }
+        final Random random = new Random(7);
+        for (int i = stream.length - 1; i > 0; i--) {
+            final int j = random.nextInt(i + 1);
+            final int item = stream[i];
+            stream[i] = stream[j];
+            stream[j] = item;
+        }
+    }
+
+    @Test
+    public void testGuarantees() {
+        final HeavyHittersSketch<Integer> sketch = new HeavyHittersSketch<>(CAPACITY);
+        for (int item : stream) {
+            sketch.add(item, 1L);
+        }
+        checkGuarantees(sketch);
+    }
+
+    @Test
+    public void testMergeOfParts() {
+        final HeavyHittersSketch<Integer> sketch = new HeavyHittersSketch<>(CAPACITY);
+        final int partSize = (stream.length + PARTS - 1) / PARTS;
+        for (int part = 0; part < PARTS; part++) {
+            final HeavyHittersSketch<Integer> partSketch = new HeavyHittersSketch<>(CAPACITY);
+            for (int i = part * partSize; i < Math.min(stream.length, (part + 1) * partSize);
+                    i++) {
+                partSketch.add(stream[i], 1L);
+            }
+            sketch.merge(partSketch);
+        }
+        checkGuarantees(sketch);
+    }
+
+    @Test
+    public void testExactCounts() {
+        final HeavyHittersSketch<Integer> sketch = HeavyHittersSketch.of(exactCounts, CAPACITY);
+        assertEquals(stream.length, sketch.getTotal());
+        assertEquals(Integer.valueOf(0), sketch.getMostFrequent());
+        assertEquals(CAPACITY, sketch.getCounts().size());
+        for (Map.Entry<Integer, Long> entry : sketch.getCounts().entrySet()) {
+            assertEquals(exactCounts.get(entry.getKey()), entry.getValue());
+        }
+    }
+
+    /**
+     * @param sketch sketch of the whole stream
+     */
+    private void checkGuarantees(HeavyHittersSketch<Integer> sketch) {
+        final long bound = stream.length / CAPACITY;
+        assertEquals(stream.length, sketch.getTotal());
+        assertTrue(sketch.getErrorBound() <= bound);
+        assertEquals(Integer.valueOf(0), sketch.getMostFrequent());
+        final Map<Integer, Long> counts = sketch.getCounts();
+        for (Map.Entry<Integer, Long> entry : exactCounts.entrySet()) {
+            if (entry.getValue() > bound) {
+                assertTrue("item " + entry.getKey() + " is tracked",
+                        counts.containsKey(entry.getKey()));
+            }
+        }
+        for (Map.Entry<Integer, Long> entry : counts.entrySet()) {
+            final long error = entry.getValue() - exactCounts.get(entry.getKey());
+            assertTrue("count of item " + entry.getKey() + " is overestimated by " + error,
+                    error >= 0 && error <= bound);
+        }
+    }
+}
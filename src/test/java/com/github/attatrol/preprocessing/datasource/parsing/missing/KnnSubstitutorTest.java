@@ -0,0 +1,126 @@
+package com.github.attatrol.preprocessing.datasource.parsing.missing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.attatrol.preprocessing.datasource.DataSourceFixtures;
+import com.github.attatrol.preprocessing.datasource.DefaultTokenDataSource;
+import com.github.attatrol.preprocessing.datasource.MappedTextFileDataSource;
+import com.github.attatrol.preprocessing.datasource.Record;
+import com.github.attatrol.preprocessing.datasource.parsing.TokenType;
+import com.github.attatrol.preprocessing.datasource.parsing.token.TextCategoricalParser;
+import com.github.attatrol.preprocessing.datasource.parsing.token.TextFloatParser;
+import com.github.attatrol.preprocessing.datasource.parsing.token.TextIntegerParser;
+import com.github.attatrol.preprocessing.distance.DistanceFunction;
+
+/**
+ * Checks that missing tokens are substituted by values of their nearest neighbours
+ * according to token types of the data source, and that a tie of votes is won
+ * by the nearest value.
+ * @author atta_troll
+ *
+ */
+public class KnnSubstitutorTest {
+
+    /**
+     * Number of complete records.
+     */
+    private static final int RECORDS = 20;
+
+    /**
+     * Number of neighbours.
+     */
+    private static final int NEIGHBOURS = 2;
+
+    private File directory;
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = DataSourceFixtures.createDirectory();
+        final List<String> lines = new ArrayList<>();
+        lines.add("x,y,color");
+        for (int i = 0; i < RECORDS; i++) {
+            lines.add(String.format("%d,%s,%s", i * 10, Double.toString(i * 2.5),
+                    i < RECORDS / 2 ? "a" : "b"));
+        }
+        lines.add("31,,a");
+        lines.add("12,2.5,");
+        lines.add(",26.0,b");
+        file = DataSourceFixtures.write(new File(directory, "data.csv"), lines);
+    }
+
+    @After
+    public void tearDown() {
+        DataSourceFixtures.delete(directory);
+    }
+
+    @Test
+    public void testNeighbourValues() throws IOException {
+        final MissingTokenSubstitutor<?>[] substitutors;
+        try (DefaultTokenDataSource<CharSequence> source = open()) {
+            substitutors = SubstitutorFitting.fit(source, new MissingTokenSubstitutorFactory<?>[] {
+                new KnnSubstitutor.Factory<Integer>(NEIGHBOURS, RECORDS * 2, null),
+                new KnnSubstitutor.Factory<Double>(NEIGHBOURS, RECORDS * 2, null),
+                new KnnSubstitutor.Factory<String>(NEIGHBOURS, RECORDS * 2, null)
+            });
+        }
+        // neighbours are x = 30 and x = 40
+        assertEquals(8.75, substitute(substitutors[1], 31, null, "a"));
+        // neighbours are x = 10 and x = 20
+        assertEquals("a", substitute(substitutors[2], 12, 2.5, null));
+        // neighbours are y = 25.0 and y = 27.5, integer mean is rounded
+        assertEquals(105, substitute(substitutors[0], null, 26., "b"));
+    }
+
+    @Test
+    public void testChosenDistanceFunction() throws IOException {
+        final AtomicInteger calls = new AtomicInteger();
+        final DistanceFunction distance = (point1, point2) -> {
+            calls.incrementAndGet();
+            return Math.abs(((Integer) point1[0]) - ((Integer) point2[0]));
+        };
+        final MissingTokenSubstitutor<?> substitutor;
+        try (DefaultTokenDataSource<CharSequence> source = open()) {
+            substitutor = new KnnSubstitutor.Factory<String>().withDistanceFunction(distance)
+                    .produceSubstitutor(source, 2);
+        }
+        assertEquals("b", substitute(substitutor, 190, 0., null));
+        assertTrue(calls.get() > 0);
+    }
+
+    @Test
+    public void testTieIsWonByNearestValue() {
+        final Object[][] references = {
+            {3, "B"}, {1, "A"}, {2, "B"}, {4, "A"}
+        };
+        final DistanceFunction distance = (point1, point2) ->
+                Math.abs(((Number) point1[0]).doubleValue() - ((Number) point2[0]).doubleValue());
+        final KnnSubstitutor<String> substitutor = new KnnSubstitutor<>(1, references, distance,
+                references.length, TokenType.CATEGORICAL_STRING);
+        // votes are 2 : 2, the nearest value is the one of x = 1
+        assertEquals("A", substitutor.substitute(new Record<>(new Object[] {0., null}, 0)));
+        // the nearest value is the one of x = 2
+        assertEquals("B", substitutor.substitute(new Record<>(new Object[] {2.4, null}, 0)));
+    }
+
+    private DefaultTokenDataSource<CharSequence> open() {
+        return DataSourceFixtures.tokens(new MappedTextFileDataSource(file, true),
+                new TextIntegerParser(), new TextFloatParser(), new TextCategoricalParser());
+    }
+
+    private static Object substitute(MissingTokenSubstitutor<?> substitutor, Object... tokens) {
+        return substitutor.substitute(new Record<>(tokens, 0));
+    }
+}
@@ -0,0 +1,106 @@
+package com.github.attatrol.preprocessing.datasource.parsing.missing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+/**
+ * Checks lookups of a long to int hash map with colliding keys, after resizes
+ * and for missing keys.
+ * @author atta_troll
+ *
+ */
+public class LongIntHashMapTest {
+
+    /**
+     * Number of keys that make the table grow many times.
+     */
+    private static final int KEYS = 100000;
+
+    /**
+     * Number of colliding keys.
+     */
+    private static final int COLLIDING_KEYS = 16;
+
+    @Test
+    public void testCollisions() {
+        final LongIntHashMap map = new LongIntHashMap();
+        for (int i = 0; i < COLLIDING_KEYS; i++) {
+            map.put(collidingKey(i), i);
+        }
+        assertEquals(COLLIDING_KEYS, map.size());
+        for (int i = 0; i < COLLIDING_KEYS; i++) {
+            assertEquals(i, map.get(collidingKey(i)));
+        }
+        for (int i = 0; i < COLLIDING_KEYS; i += 2) {
+            map.put(collidingKey(i), i + COLLIDING_KEYS);
+        }
+        assertEquals("values are replaced, not added", COLLIDING_KEYS, map.size());
+        for (int i = 0; i < COLLIDING_KEYS; i++) {
+            assertEquals(i % 2 == 0 ? i + COLLIDING_KEYS : i, map.get(collidingKey(i)));
+        }
+    }
+
+    @Test
+    public void testResize() {
+        final LongIntHashMap map = new LongIntHashMap();
+        for (int i = 0; i < KEYS; i++) {
+            map.put(key(i), i);
+        }
+        assertEquals(KEYS, map.size());
+        for (int i = 0; i < KEYS; i++) {
+            assertEquals(i, map.get(key(i)));
+        }
+        map.put(Long.MIN_VALUE, 1);
+        map.put(Long.MAX_VALUE, 2);
+        map.put(0L, 3);
+        assertEquals(1, map.get(Long.MIN_VALUE));
+        assertEquals(2, map.get(Long.MAX_VALUE));
+        assertEquals(3, map.get(0L));
+    }
+
+    @Test
+    public void testMissingKeys() {
+        final LongIntHashMap map = new LongIntHashMap();
+        assertEquals(LongIntHashMap.ABSENT, map.get(0L));
+        for (int i = 0; i < COLLIDING_KEYS / 2; i++) {
+            map.put(collidingKey(i), i);
+        }
+        for (int i = COLLIDING_KEYS / 2; i < COLLIDING_KEYS; i++) {
+            assertEquals(LongIntHashMap.ABSENT, map.get(collidingKey(i)));
+        }
+        for (int i = 0; i < KEYS; i += 2) {
+            map.put(key(i), i);
+        }
+        for (int i = 1; i < KEYS; i += 2) {
+            assertEquals(LongIntHashMap.ABSENT, map.get(key(i)));
+        }
+        try {
+            map.put(1L, LongIntHashMap.ABSENT);
+            fail("negative values mark empty slots");
+        }
+        catch (IllegalArgumentException ex) {
+            // expected
+        }
+    }
+
+    /**
+     * Keys that differ only in 4 high bits have the same home slot in tables
+     * of up to 2^28 slots, since the hash is the high half of their product
+     * with an odd multiplier.
+     * @param i index of a key
+     * @return colliding key
+     */
+    private static long collidingKey(int i) {
+        return 12345L + ((long) i << 60);
+    }
+
+    /**
+     * @param i index of a key
+     * @return distinct key spread over the whole range
+     */
+    private static long key(int i) {
+        return (i + 1) * 0xC6A4A7935BD1E995L;
+    }
+}
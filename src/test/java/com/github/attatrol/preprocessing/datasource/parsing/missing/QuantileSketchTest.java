@@ -0,0 +1,113 @@
+package com.github.attatrol.preprocessing.datasource.parsing.missing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks rank error of quantiles estimated by a sketch against exact quantiles,
+ * for a single sketch and for a merge of sketches of parts.
+ * @author atta_troll
+ *
+ */
+public class QuantileSketchTest {
+
+    /**
+     * Number of values.
+     */
+    private static final int VALUES = 100000;
+
+    /**
+     * Number of parts.
+     */
+    private static final int PARTS = 8;
+
+    /**
+     * Bound of rank error.
+     */
+    private static final double RANK_ERROR = 2. / QuantileSketch.DEFAULT_ACCURACY;
+
+    /**
+     * Values in random order.
+     */
+    private double[] values;
+
+    /**
+     * Sorted values.
+     */
+    private double[] sorted;
+
+    @Before
+    public void setUp() {
+        final Random random = new Random(42);
+        values = new double[VALUES];
+        for (int i = 0; i < VALUES; i++) {
+            values[i] = random.nextGaussian() * 100.;
+        }
+        sorted = values.clone();
+        Arrays.sort(sorted);
+    }
+
+    @Test
+    public void testRankError() {
+        final QuantileSketch sketch = new QuantileSketch(QuantileSketch.DEFAULT_ACCURACY);
+        for (double value : values) {
+            sketch.update(value);
+        }
+        checkQuantiles(sketch);
+    }
+
+    @Test
+    public void testMergeOfParts() {
+        final QuantileSketch sketch = new QuantileSketch(QuantileSketch.DEFAULT_ACCURACY,
+                QuantileSketch.getSeed(0, 0));
+        final int partSize = VALUES / PARTS;
+        for (int part = 0; part < PARTS; part++) {
+            final QuantileSketch partSketch = part == 0 ? sketch : new QuantileSketch(
+                    QuantileSketch.DEFAULT_ACCURACY, QuantileSketch.getSeed(part, 0));
+            for (int i = part * partSize; i < (part + 1) * partSize; i++) {
+                partSketch.update(values[i]);
+            }
+            if (part != 0) {
+                sketch.merge(partSketch);
+            }
+        }
+        checkQuantiles(sketch);
+    }
+
+    /**
+     * Compares ranks of estimated quantiles with exact ones.
+     * @param sketch sketch of all values
+     */
+    private void checkQuantiles(QuantileSketch sketch) {
+        assertEquals(VALUES, sketch.getCount());
+        assertEquals(sorted[0], sketch.getQuantile(0.), 0.);
+        assertEquals(sorted[VALUES - 1], sketch.getQuantile(1.), 0.);
+        for (int percent = 1; percent < 100; percent++) {
+            final double quantile = percent / 100.;
+            final double rank = getRank(sketch.getQuantile(quantile));
+            assertTrue(String.format("rank %f of quantile %f", rank, quantile),
+                    Math.abs(rank - quantile) <= RANK_ERROR);
+        }
+    }
+
+    /**
+     * @param value a value
+     * @return share of values not greater than the value
+     */
+    private double getRank(double value) {
+        int position = Arrays.binarySearch(sorted, value);
+        if (position < 0) {
+            position = -position - 1;
+        }
+        else {
+            position++;
+        }
+        return (double) position / VALUES;
+    }
+}
@@ -0,0 +1,127 @@
+package com.github.attatrol.preprocessing.datasource.parsing.missing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.attatrol.preprocessing.datasource.DataSourceFixtures;
+import com.github.attatrol.preprocessing.datasource.DefaultTokenDataSource;
+import com.github.attatrol.preprocessing.datasource.MappedTextFileDataSource;
+import com.github.attatrol.preprocessing.datasource.parsing.token.TextCategoricalParser;
+import com.github.attatrol.preprocessing.datasource.parsing.token.TextFloatParser;
+import com.github.attatrol.preprocessing.datasource.parsing.token.TextIntegerParser;
+
+/**
+ * Checks that substitutors fitted on parts of a data source and merged are the ones
+ * fitted by a sequential pass, for mean and most common value substitutors,
+ * including the most common value counted by a sketch.
+ * @author atta_troll
+ *
+ */
+public class SubstitutorFittingTest {
+
+    /**
+     * Number of records, enough for several parts.
+     */
+    private static final int RECORDS = 20000;
+
+    /**
+     * Distinct threshold of the most common value factory that switches to a sketch.
+     */
+    private static final int DISTINCT_THRESHOLD = 100;
+
+    /**
+     * Sketch capacity of the most common value factory.
+     */
+    private static final int SKETCH_CAPACITY = 50;
+
+    private File directory;
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = DataSourceFixtures.createDirectory();
+        final List<String> lines = new ArrayList<>();
+        lines.add("integer,float,category,key");
+        for (int i = 0; i < RECORDS; i++) {
+            lines.add(String.join(",",
+                    i % 11 == 0 ? "" : Integer.toString(i * 7 % 1000 - 300),
+                    i % 13 == 0 ? "" : Double.toString(i * 0.37 % 50.),
+                    i % 17 == 0 ? "" : "c" + (i % 3 == 0 ? 0 : i % 97),
+                    // many distinct keys and a dominant one
+                    i % 4 == 0 ? "top" : "k" + i));
+        }
+        file = DataSourceFixtures.write(new File(directory, "data.csv"), lines);
+    }
+
+    @After
+    public void tearDown() {
+        DataSourceFixtures.delete(directory);
+    }
+
+    @Test
+    public void testMergedPartsMatchSequentialFit() throws IOException {
+        final AccumulatingSubstitutorFactory<?>[] factories = {
+            new ExpectedValueIntegerSubstitutor.Factory(),
+            new ExpectedValueFloatSubstitutor.Factory(),
+            new MostCommonValueSubstitutor.Factory<String>(),
+            new MostCommonValueSubstitutor.Factory<String>(DISTINCT_THRESHOLD, SKETCH_CAPACITY)
+        };
+        try (DefaultTokenDataSource<CharSequence> source = DataSourceFixtures.tokens(
+                new MappedTextFileDataSource(file, true), new TextIntegerParser(),
+                new TextFloatParser(), new TextCategoricalParser(), new TextCategoricalParser())) {
+            assertTrue(source.isSplittable());
+            final MissingTokenSubstitutor<?>[] merged = SubstitutorFitting.fit(source, factories);
+            final MissingTokenSubstitutor<?>[] sequential = fitSequentially(source, factories);
+            assertEquals(getValue(sequential[0]), getValue(merged[0]));
+            assertEquals((Double) getValue(sequential[1]), (Double) getValue(merged[1]), 1e-9);
+            assertEquals("c0", getValue(sequential[2]));
+            assertEquals(getValue(sequential[2]), getValue(merged[2]));
+            assertEquals("top", getValue(sequential[3]));
+            assertEquals(getValue(sequential[3]), getValue(merged[3]));
+        }
+    }
+
+    /**
+     * Fits substitutors with single accumulators in a sequential pass.
+     * @param source token data source
+     * @param factories substitutor factories of tokens
+     * @return fitted substitutors
+     * @throws IOException on i/o error
+     */
+    private static MissingTokenSubstitutor<?>[] fitSequentially(
+            DefaultTokenDataSource<CharSequence> source,
+            AccumulatingSubstitutorFactory<?>[] factories) throws IOException {
+        final SubstitutorAccumulator<?>[] accumulators =
+                new SubstitutorAccumulator<?>[factories.length];
+        for (int i = 0; i < factories.length; i++) {
+            accumulators[i] = factories[i].createAccumulator(source, i);
+        }
+        source.reset();
+        while (source.hasNext()) {
+            final Object[] tokens = source.next().getData();
+            for (SubstitutorAccumulator<?> accumulator : accumulators) {
+                accumulator.accept(tokens);
+            }
+        }
+        final MissingTokenSubstitutor<?>[] substitutors =
+                new MissingTokenSubstitutor<?>[factories.length];
+        for (int i = 0; i < factories.length; i++) {
+            substitutors[i] = accumulators[i].finish();
+        }
+        return substitutors;
+    }
+
+    private static Object getValue(MissingTokenSubstitutor<?> substitutor) {
+        return ((ConstantTokenSubstitutor<?>) substitutor).getValue();
+    }
+}
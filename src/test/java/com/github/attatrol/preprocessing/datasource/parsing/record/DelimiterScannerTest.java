@@ -0,0 +1,102 @@
+package com.github.attatrol.preprocessing.datasource.parsing.record;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks that delimiter scanners split records exactly as {@link String#split(String)}
+ * with trimming of fields did before them.
+ * @author atta_troll
+ *
+ */
+public class DelimiterScannerTest {
+
+    /**
+     * Records of special cases.
+     */
+    private static final String[] RECORDS = {
+        "", " ", ",", ",,", ";;", "a", " a ", "a,b", "a,,b", ",a", "a,", "a,,", ",,a,,",
+        " , , ", "a , b ,c", "a;b;;", "\ta\t\tb\t", "  a  b  ", " ", "\t", "a\u000Bb\fc\rd",
+        "1,2.5,,x", "\u00E9,\u00FC ;\u00DF", "a, ,b", "x\u0001,\u0002y"
+    };
+
+    /**
+     * Characters of random records.
+     */
+    private static final String ALPHABET = "ab1 ,;\t\u000B\f\r\u0001\u00E9";
+
+    /**
+     * Number of random records.
+     */
+    private static final int RANDOM_RECORDS = 20000;
+
+    @Test
+    public void testCommaSplitter() {
+        checkSplitter(new CommaSeparatedStringSplitter(), ",");
+    }
+
+    @Test
+    public void testSemicolonSplitter() {
+        checkSplitter(new SemicolonSeparatedStringSplitter(), ";");
+    }
+
+    @Test
+    public void testTabulationSplitter() {
+        checkSplitter(new TabulationSeparatedStringSplitter(), "\\s+");
+    }
+
+    @Test
+    public void testScanMatchesTokenize() {
+        final DelimiterScanner scanner = new CommaSeparatedStringSplitter();
+        final FieldBounds bounds = new FieldBounds();
+        final String record = " a ,, b,c ,";
+        final String[] tokens = scanner.tokenize(record);
+        assertEquals(tokens.length, scanner.scan(record, bounds));
+        for (int i = 0; i < tokens.length; i++) {
+            assertEquals(tokens[i], bounds.getString(record, i));
+        }
+    }
+
+    /**
+     * Compares a scanner with the old splitting on special and random records.
+     * @param scanner a scanner
+     * @param regex regular expression of the old splitting
+     */
+    private static void checkSplitter(DelimiterScanner scanner, String regex) {
+        for (String record : RECORDS) {
+            assertArrayEquals(record, split(record, regex), scanner.tokenize(record));
+        }
+        final Random random = new Random(11L);
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < RANDOM_RECORDS; i++) {
+            builder.setLength(0);
+            final int length = random.nextInt(12);
+            for (int j = 0; j < length; j++) {
+                builder.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+            }
+            final String record = builder.toString();
+            assertArrayEquals(record, split(record, regex), scanner.tokenize(record));
+        }
+    }
+
+    /**
+     * Old splitting of records.
+     * @param record a record
+     * @param regex regular expression of delimiters
+     * @return trimmed fields, {@code null} for empty ones
+     */
+    private static String[] split(String record, String regex) {
+        final String[] strings = record.split(regex);
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = strings[i].trim();
+            if ("".equals(strings[i])) {
+                strings[i] = null;
+            }
+        }
+        return strings;
+    }
+}
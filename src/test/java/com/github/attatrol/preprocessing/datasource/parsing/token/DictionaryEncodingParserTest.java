@@ -0,0 +1,187 @@
+package com.github.attatrol.preprocessing.datasource.parsing.token;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.attatrol.preprocessing.datasource.DataSourceFixtures;
+import com.github.attatrol.preprocessing.datasource.DefaultTokenDataSource;
+import com.github.attatrol.preprocessing.datasource.MappedTextFileDataSource;
+import com.github.attatrol.preprocessing.datasource.Record;
+import com.github.attatrol.preprocessing.datasource.columnar.CategoryDictionary;
+import com.github.attatrol.preprocessing.datasource.parsing.missing.ConstantTokenSubstitutor;
+import com.github.attatrol.preprocessing.datasource.parsing.missing.MissingTokenSubstitutor;
+import com.github.attatrol.preprocessing.datasource.parsing.record.CommaSeparatedStringSplitter;
+
+/**
+ * Checks that categorical tokens are encoded with codes in order of their first appearance
+ * whether the dictionary is built and read in parallel or not, and that the parser
+ * rejects tokens out of its dictionary.
+ * @author atta_troll
+ *
+ */
+public class DictionaryEncodingParserTest {
+
+    /**
+     * Number of records.
+     */
+    private static final int RECORDS = 20000;
+
+    /**
+     * Number of distinct tokens.
+     */
+    private static final int DISTINCT_TOKENS = 500;
+
+    private File directory;
+
+    private File file;
+
+    /**
+     * Codes of tokens in order of their first appearance.
+     */
+    private Map<String, Integer> expectedCodes;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = DataSourceFixtures.createDirectory();
+        final List<String> lines = new ArrayList<>();
+        lines.add("id,category");
+        expectedCodes = new LinkedHashMap<>();
+        for (int i = 0; i < RECORDS; i++) {
+            final String token = i % 13 == 0 ? "" : "k" + i * 7919 % DISTINCT_TOKENS;
+            if (!token.isEmpty() && !expectedCodes.containsKey(token)) {
+                expectedCodes.put(token, expectedCodes.size());
+            }
+            lines.add(i + "," + token);
+        }
+        file = DataSourceFixtures.write(new File(directory, "data.csv"), lines);
+    }
+
+    @After
+    public void tearDown() {
+        DataSourceFixtures.delete(directory);
+    }
+
+    @Test
+    public void testCodesOfFirstAppearance() throws IOException {
+        try (DefaultTokenDataSource<CharSequence> source = DataSourceFixtures.tokens(
+                new MappedTextFileDataSource(file, true), new TextIntegerParser(),
+                new TextCategoricalParser()).encodeCategories()) {
+            assertTrue(source.isSplittable());
+            final DictionaryEncodingParser parser = source.getEncodingParser(1);
+            assertNull(source.getEncodingParser(0));
+            assertEquals(expectedCodes.size(), parser.getTokenNumber());
+            for (Map.Entry<String, Integer> entry : expectedCodes.entrySet()) {
+                assertEquals(entry.getValue(), parser.parseValue(entry.getKey()));
+                assertEquals(entry.getKey(), parser.decode(entry.getValue()));
+            }
+            checkRecords(parser, readAll(source));
+            final List<Record<Object[]>> records = new ArrayList<>();
+            for (DefaultTokenDataSource<CharSequence> part : source.split(4)) {
+                try {
+                    records.addAll(readAll(part));
+                }
+                finally {
+                    part.close();
+                }
+            }
+            checkRecords(parser, records);
+        }
+    }
+
+    @Test
+    public void testSubstitutedToken() throws IOException {
+        final MissingTokenSubstitutor<?>[] substitutors = {
+            null, new ConstantTokenSubstitutor<>(1, "none")
+        };
+        @SuppressWarnings("unchecked")
+        final TokenParser<Object, ?>[] parsers = new TokenParser[] {
+            new TextIntegerParser(), new TextCategoricalParser()
+        };
+        try (DefaultTokenDataSource<CharSequence> source = new DefaultTokenDataSource<>(
+                new MappedTextFileDataSource(file, true), new CommaSeparatedStringSplitter(), 2,
+                parsers, substitutors).encodeCategories()) {
+            final DictionaryEncodingParser parser = source.getEncodingParser(1);
+            assertEquals("substituted value follows tokens", expectedCodes.size(),
+                    parser.getCode("none"));
+            for (Record<Object[]> record : readAll(source)) {
+                final Object token = parser.decode((Integer) record.getData()[1]);
+                if (record.getIndex() % 13 == 0) {
+                    assertEquals("none", token);
+                }
+                else {
+                    assertEquals(expectedToken(record.getIndex()), token);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testUnknownToken() {
+        final DictionaryEncodingParser parser =
+                new DictionaryEncodingParser(new CategoryDictionary());
+        try {
+            parser.parseValue("unknown");
+            fail("token is not in the dictionary");
+        }
+        catch (IllegalArgumentException ex) {
+            // expected
+        }
+        try {
+            parser.parseRange(",unknown,", 1, 8);
+            fail("token is not in the dictionary");
+        }
+        catch (IllegalArgumentException ex) {
+            // expected
+        }
+    }
+
+    /**
+     * Checks that tokens of records in order decode into the fixture tokens.
+     * @param parser parser of the categorical column
+     * @param records records of the encoded data source
+     */
+    private static void checkRecords(DictionaryEncodingParser parser,
+            List<Record<Object[]>> records) {
+        assertEquals(RECORDS, records.size());
+        for (int i = 0; i < RECORDS; i++) {
+            final Object[] tokens = records.get(i).getData();
+            if (i % 13 == 0) {
+                assertNull(tokens[1]);
+            }
+            else {
+                assertEquals(expectedToken(i), parser.decode((Integer) tokens[1]));
+            }
+        }
+    }
+
+    /**
+     * @param index index of a record
+     * @return categorical token of the record
+     */
+    private static String expectedToken(long index) {
+        return "k" + index * 7919 % DISTINCT_TOKENS;
+    }
+
+    private static List<Record<Object[]>> readAll(DefaultTokenDataSource<CharSequence> source)
+            throws IOException {
+        final List<Record<Object[]>> records = new ArrayList<>();
+        source.reset();
+        while (source.hasNext()) {
+            records.add(source.next());
+        }
+        return records;
+    }
+}
@@ -0,0 +1,132 @@
+package com.github.attatrol.preprocessing.datasource.parsing.token;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.github.attatrol.preprocessing.datasource.AsciiCharSequence;
+
+/**
+ * Checks that parsing of a token in place, from a string or from ASCII bytes, gives
+ * the same result as parsing of the token string.
+ * @author atta_troll
+ *
+ */
+public class RangeTokenParserTest {
+
+    /**
+     * Tokens of special cases.
+     */
+    private static final String[] TOKENS = {
+        "", "0", "1", "-0", "+0", "-", "+", "00", "007", "12", "-12", "+12", "2147483647",
+        "2147483648", "-2147483648", "-2147483649", "99999999999", "12345678901234567890",
+        "1.5", ".5", "5.", ".", "-.5", "1e5", "1E-5", "1e", "1e+", "1.5e308", "1e309",
+        "4.9e-324", "1e-400", "NaN", "-Infinity", "0x1p3", "1d", "1f", " 1", "1 ", "t", "T",
+        "true", "True", "TRUE", "tru", "truex", "f", "false", "x", "1x"
+    };
+
+    /**
+     * Characters of random tokens.
+     */
+    private static final String ALPHABET = "0123456789+-.eEtTrux ";
+
+    /**
+     * Number of random tokens.
+     */
+    private static final int RANDOM_TOKENS = 50000;
+
+    @Test
+    public void testIntegerParser() {
+        check(new TextIntegerParser(), new TextIntegerParser());
+    }
+
+    @Test
+    public void testFloatParser() {
+        check(new TextFloatParser(), new TextFloatParser());
+    }
+
+    @Test
+    public void testBinaryParser() {
+        check(new TextBinaryParser(), new TextBinaryParser());
+    }
+
+    @Test
+    public void testBinaryDigitalParser() {
+        check(new TextBinaryDigitalParser(), new TextBinaryDigitalParser());
+    }
+
+    @Test
+    public void testCategoricalParser() {
+        check(new TextCategoricalParser(), new TextCategoricalParser());
+    }
+
+    /**
+     * Compares parsing of ranges with parsing of strings on special and random tokens.
+     * @param parser a parser of strings
+     * @param rangeParser the same parser as a parser of ranges
+     */
+    private static void check(TokenParser<String, ?> parser, RangeTokenParser<?> rangeParser) {
+        for (String token : TOKENS) {
+            checkToken(parser, rangeParser, token);
+        }
+        final Random random = new Random(13L);
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < RANDOM_TOKENS; i++) {
+            builder.setLength(0);
+            final int length = random.nextInt(14);
+            for (int j = 0; j < length; j++) {
+                builder.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+            }
+            checkToken(parser, rangeParser, builder.toString());
+        }
+    }
+
+    /**
+     * Parses a token placed between other fields of a string record and of an ASCII record.
+     * @param parser a parser of strings
+     * @param rangeParser the same parser as a parser of ranges
+     * @param token a token
+     */
+    private static void checkToken(TokenParser<String, ?> parser, RangeTokenParser<?> rangeParser,
+            String token) {
+        final String record = "ab," + token + ",cd";
+        final int start = 3;
+        final int end = start + token.length();
+        final ByteBuffer bytes = ByteBuffer.wrap(record.getBytes(StandardCharsets.US_ASCII));
+        final CharSequence asciiRecord = new AsciiCharSequence(bytes, 0, record.length());
+        final Object expected;
+        try {
+            expected = parser.parseValue(token);
+        }
+        catch (IllegalArgumentException ex) {
+            assertFails(rangeParser, record, start, end);
+            assertFails(rangeParser, asciiRecord, start, end);
+            return;
+        }
+        assertEquals(token, expected, rangeParser.parseRange(record, start, end));
+        assertEquals(token, expected, rangeParser.parseRange(asciiRecord, start, end));
+    }
+
+    /**
+     * Checks that parsing of a range fails.
+     * @param rangeParser a parser of ranges
+     * @param record a record
+     * @param start offset of the first character of the token
+     * @param end offset after the last character of the token
+     */
+    private static void assertFails(RangeTokenParser<?> rangeParser, CharSequence record,
+            int start, int end) {
+        try {
+            rangeParser.parseRange(record, start, end);
+            fail("Parsing of " + record.subSequence(start, end) + " must fail.");
+        }
+        catch (IllegalArgumentException ex) {
+            // expected
+        }
+    }
+}
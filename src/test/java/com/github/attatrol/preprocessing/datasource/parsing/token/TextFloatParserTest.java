@@ -0,0 +1,106 @@
+package com.github.attatrol.preprocessing.datasource.parsing.token;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks that the fast path of {@link TextFloatParser} gives bit for bit the same results
+ * as {@link Double#parseDouble(String)}, in particular at the limits of the fast path:
+ * mantissas around 2^53, powers of ten around 10^22 and mantissas of 18 and 19 digits.
+ * @author atta_troll
+ *
+ */
+public class TextFloatParserTest {
+
+    /**
+     * Tokens at the limits of the fast path.
+     */
+    private static final String[] TOKENS = {
+        "0", "-0", "0.0", "-0.0", "0e5", "0e-400", "1", "-1", "0.1", "0.3",
+        "1.7976931348623157e308", "4.9e-324", "2.2250738585072014e-308",
+        "9007199254740991", "9007199254740992", "9007199254740993", "9007199254740994",
+        "9007199254740995", "-9007199254740993", "900719925474099.3", "9007199254740993e-16",
+        "9007199254740991e22", "9007199254740992e22", "9007199254740993e22",
+        "9007199254740991e-22", "9007199254740993e-22", "1e22", "1e23", "1e-22", "1e-23",
+        "1.5e22", "1.5e-22", "15e21", "15e-23", "123456789e22", "123456789e-22",
+        "123456789012345678", "123456789012345678e22", "123456789012345678e-22",
+        "1234567890123456789", "12345678901234567890", "0.123456789012345678",
+        "0.1234567890123456789", "99999999999999999.9", "999999999999999999",
+        "000000000000000000001", "0.000000000000000000001", "1000000000000000000000",
+        "1e0022", "1e+22", "1E-22", "1e00000", "1e", "e1", ".", "-", "1.2.3", "1e2.5"
+    };
+
+    /**
+     * Number of random tokens.
+     */
+    private static final int RANDOM_TOKENS = 200000;
+
+    @Test
+    public void testBoundaries() {
+        for (String token : TOKENS) {
+            check(token);
+        }
+    }
+
+    @Test
+    public void testMantissasAroundTwoToFiftyThree() {
+        final long limit = 1L << 53;
+        for (long mantissa = limit - 20; mantissa <= limit + 20; mantissa++) {
+            for (int exponent = -24; exponent <= 24; exponent++) {
+                check(mantissa + "e" + exponent);
+                check("-" + mantissa + "e" + exponent);
+            }
+        }
+    }
+
+    @Test
+    public void testRandomTokens() {
+        final Random random = new Random(19L);
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < RANDOM_TOKENS; i++) {
+            builder.setLength(0);
+            if (random.nextBoolean()) {
+                builder.append('-');
+            }
+            final int digits = 1 + random.nextInt(20);
+            final int point = random.nextInt(digits + 2);
+            for (int j = 0; j < digits; j++) {
+                if (j == point) {
+                    builder.append('.');
+                }
+                builder.append((char) ('0' + random.nextInt(10)));
+            }
+            if (random.nextBoolean()) {
+                builder.append('e').append(random.nextInt(61) - 30);
+            }
+            check(builder.toString());
+        }
+    }
+
+    /**
+     * Compares parsing of a token with {@link Double#parseDouble(String)}.
+     * @param token a token
+     */
+    private static void check(String token) {
+        final TextFloatParser parser = new TextFloatParser();
+        final String record = "x " + token + " y";
+        Double expected;
+        try {
+            expected = Double.parseDouble(token);
+        }
+        catch (NumberFormatException ex) {
+            expected = null;
+        }
+        Double actual;
+        try {
+            actual = parser.parseDouble(record, 2, 2 + token.length());
+        }
+        catch (NumberFormatException ex) {
+            actual = null;
+        }
+        assertEquals(token, expected, actual);
+    }
+}
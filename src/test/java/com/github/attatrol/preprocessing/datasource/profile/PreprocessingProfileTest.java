@@ -0,0 +1,147 @@
+package com.github.attatrol.preprocessing.datasource.profile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.attatrol.preprocessing.datasource.AbstractTokenDataSource;
+import com.github.attatrol.preprocessing.datasource.DataSource;
+import com.github.attatrol.preprocessing.datasource.DataSourceFixtures;
+import com.github.attatrol.preprocessing.datasource.Record;
+import com.github.attatrol.preprocessing.datasource.parsing.TokenFeatures;
+import com.github.attatrol.preprocessing.datasource.parsing.TokenType;
+import com.github.attatrol.preprocessing.datasource.parsing.missing.ConstantTokenSubstitutor;
+import com.github.attatrol.preprocessing.datasource.parsing.missing.MissingTokenSubstitutor;
+import com.github.attatrol.preprocessing.datasource.parsing.missing.MissingTokenSubstitutorFactory;
+import com.github.attatrol.preprocessing.datasource.syntax.SyntaxRegister;
+
+/**
+ * Checks that a stored profile is found only for the data source with the same fingerprint,
+ * and that a loaded profile keeps its stored substitutors and fits the other ones.
+ * @author atta_troll
+ *
+ */
+public class PreprocessingProfileTest {
+
+    /**
+     * Number of records.
+     */
+    private static final int RECORDS = 200;
+
+    /**
+     * Token types of the fixture.
+     */
+    private static final TokenType[] TYPES = {
+        TokenType.INTEGER, TokenType.FLOAT, TokenType.CATEGORICAL_STRING, TokenType.BINARY
+    };
+
+    /**
+     * Stored value of the categorical token.
+     */
+    private static final String CONSTANT = "c1";
+
+    private File directory;
+
+    private File file;
+
+    private List<String> lines;
+
+    private ProfileStore store;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = DataSourceFixtures.createDirectory();
+        lines = DataSourceFixtures.lines(RECORDS);
+        file = DataSourceFixtures.write(new File(directory, "data.csv"), lines);
+        store = new ProfileStore(new File(directory, "profiles"));
+    }
+
+    @After
+    public void tearDown() {
+        DataSourceFixtures.delete(directory);
+    }
+
+    @Test
+    public void testFingerprintMatch() throws IOException {
+        store.save(createProfile());
+        final PreprocessingProfile profile = store.find(file);
+        assertNotNull(profile);
+        assertEquals(FileFingerprint.of(file), profile.getFingerprint());
+        assertEquals(SyntaxRegister.COMMA_SEPARATED_TITLED_LINES, profile.getSyntax());
+        for (int i = 0; i < TYPES.length; i++) {
+            assertEquals(TYPES[i], profile.getTokenFeatures()[i].getType());
+        }
+        assertFalse("fitted substitutors are not stored", profile.isComplete());
+        try (DataSource<?> basicDataSource = profile.getSyntax().getSyntax()
+                .getBasicDataSource(file)) {
+            final PreprocessingProfile fittedProfile = profile.fitSubstitutors(basicDataSource);
+            assertTrue(fittedProfile.isComplete());
+            assertSame(fittedProfile, fittedProfile.fitSubstitutors(basicDataSource));
+            assertNotNull(fittedProfile.getSubstitutors()[1]);
+            assertEquals(CONSTANT, ((ConstantTokenSubstitutor<?>) fittedProfile
+                    .getSubstitutors()[2]).getValue());
+            final AbstractTokenDataSource<?> tokenDataSource =
+                    fittedProfile.createTokenDataSource(basicDataSource);
+            int records = 0;
+            while (tokenDataSource.hasNext()) {
+                final Record<Object[]> record = tokenDataSource.next();
+                assertNotNull(record.getData()[1]);
+                if (record.getIndex() % 5 == 0) {
+                    assertEquals(CONSTANT, record.getData()[2]);
+                }
+                records++;
+            }
+            assertEquals(RECORDS, records);
+        }
+    }
+
+    @Test
+    public void testFingerprintMismatch() throws IOException {
+        final PreprocessingProfile profile = createProfile();
+        store.save(profile);
+        lines.add(RECORDS + ",1.0,c0,true");
+        DataSourceFixtures.write(file, lines);
+        assertNull("changed data source has another fingerprint", store.find(file));
+        assertNotNull(store.find(profile.getFingerprint()));
+    }
+
+    /**
+     * Creates profile of the fixture whose float token substitutor must be fitted
+     * and whose categorical token has a constant substitutor.
+     * @return the profile
+     * @throws IOException on i/o error
+     */
+    private PreprocessingProfile createProfile() throws IOException {
+        final String[] titles = lines.get(0).split(",");
+        final TokenFeatures[] features = new TokenFeatures[TYPES.length];
+        for (int i = 0; i < TYPES.length; i++) {
+            features[i] = new TokenFeatures();
+            features[i].setTitle(titles[i]);
+            features[i].setType(TYPES[i]);
+            features[i].setInUse(true);
+            features[i].setHasOmissions(i == 1 || i == 2);
+        }
+        final MissingTokenSubstitutorFactory<?>[] floatFactories =
+                MissingTokenSubstitutor.SUBSTITUTOR_REGISTER.get(TokenType.FLOAT);
+        final MissingTokenSubstitutorFactory<?>[] categoricalFactories =
+                MissingTokenSubstitutor.SUBSTITUTOR_REGISTER.get(TokenType.CATEGORICAL_STRING);
+        features[1].setMissingTokenSubstitutor(floatFactories[0]);
+        features[2].setMissingTokenSubstitutor(categoricalFactories[0]);
+        final MissingTokenSubstitutor<?>[] substitutors = {
+            null, null, new ConstantTokenSubstitutor<>(2, CONSTANT), null
+        };
+        return new PreprocessingProfile(FileFingerprint.of(file),
+                SyntaxRegister.COMMA_SEPARATED_TITLED_LINES, features, substitutors);
+    }
+}
@@ -0,0 +1,149 @@
+package com.github.attatrol.preprocessing.datasource.syntax;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import com.github.attatrol.preprocessing.datasource.parsing.TokenType;
+
+/**
+ * Checks that single pass detection of token types gives the same types as the cascade
+ * of regular expressions did before it, and that the table of common ancestors
+ * matches the search in the Hasse diagram.
+ * @author atta_troll
+ *
+ */
+public class StringTokenParsersTest {
+
+    /**
+     * Old pattern of integers.
+     */
+    private static final Pattern INTEGER_PATTERN = Pattern.compile("[+-]?\\d+");
+
+    /**
+     * Old pattern of floats.
+     */
+    private static final Pattern REAL_PATTERN =
+            Pattern.compile("[+-]?((\\d*\\.?\\d+)|(\\d+\\.?\\d*))");
+
+    /**
+     * Old pattern of binary digital tokens.
+     */
+    private static final Pattern BINARY_DIGITAL_PATTERN = Pattern.compile("0|1");
+
+    /**
+     * Old pattern of binary tokens.
+     */
+    private static final Pattern BINARY_PATTERN =
+            Pattern.compile("t|f|true|false|T|F|True|False");
+
+    /**
+     * Tokens of special cases.
+     */
+    private static final String[] TOKENS = {
+        "", "0", "1", "01", "10", "-1", "+0", "-", "+", ".", "..", "1.", ".1", "1.1", "1..1",
+        "-.1", "+1.", "1e5", "t", "f", "T", "F", "true", "false", "True", "False", "TRUE",
+        "tr", "fals", "x", " 1", "1 ", "\u0661", "\u0661\u0662", "1\u0662", "+\u0661.5"
+    };
+
+    /**
+     * Characters of random tokens, including non-ASCII digits that match {@code \d}.
+     */
+    private static final String ALPHABET = "0123456789+-.tfTFrueals \u0661\u00B2";
+
+    /**
+     * Number of random tokens.
+     */
+    private static final int RANDOM_TOKENS = 50000;
+
+    @Test
+    public void testSpecialTokens() {
+        for (String token : TOKENS) {
+            assertEquals(token, detect(token), StringTokenParsers.detectStringTokenType(token));
+        }
+    }
+
+    @Test
+    public void testRandomTokens() {
+        final Random random = new Random(17L);
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < RANDOM_TOKENS; i++) {
+            builder.setLength(0);
+            final int length = random.nextInt(8);
+            for (int j = 0; j < length; j++) {
+                builder.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+            }
+            final String token = builder.toString();
+            assertEquals(token, detect(token), StringTokenParsers.detectStringTokenType(token));
+        }
+    }
+
+    @Test
+    public void testOtherTokens() {
+        assertEquals(TokenType.MISSING, StringTokenParsers.detectStringTokenType(null));
+        assertEquals(TokenType.UNKNOWN, StringTokenParsers.detectStringTokenType(1));
+    }
+
+    @Test
+    public void testCommonAncestors() {
+        for (TokenType type1 : TokenType.values()) {
+            for (TokenType type2 : TokenType.values()) {
+                assertEquals(type1 + " " + type2, findClosestCommonAncestor(type1, type2),
+                        TokenType.getClosestCommonAncestor(type1, type2));
+            }
+        }
+    }
+
+    /**
+     * Old detection of token types.
+     * @param token a string token
+     * @return token type
+     */
+    private static TokenType detect(String token) {
+        if (BINARY_DIGITAL_PATTERN.matcher(token).matches()) {
+            return TokenType.BINARY_DIGITAL;
+        }
+        else if (INTEGER_PATTERN.matcher(token).matches()) {
+            return TokenType.INTEGER;
+        }
+        else if (REAL_PATTERN.matcher(token).matches()) {
+            return TokenType.FLOAT;
+        }
+        else if (BINARY_PATTERN.matcher(token).matches()) {
+            return TokenType.BINARY;
+        }
+        else {
+            return TokenType.CATEGORICAL_STRING;
+        }
+    }
+
+    /**
+     * Old search of the closest common ancestor in the Hasse diagram.
+     * @param type1 some token type
+     * @param type2 some token type
+     * @return closest common ancestor of the types
+     */
+    private static TokenType findClosestCommonAncestor(TokenType type1, TokenType type2) {
+        if (type1 == type2) {
+            return type1;
+        }
+        else if (type1.getSubtypes().contains(type2)) {
+            return type1;
+        }
+        else if (type2.getSubtypes().contains(type1)) {
+            return type2;
+        }
+        else {
+            for (TokenType ancestor1 : TokenType.getHasseDiagram().get(type1)) {
+                final TokenType commonAncestor = findClosestCommonAncestor(ancestor1, type2);
+                if (commonAncestor != null) {
+                    return commonAncestor;
+                }
+            }
+            return null;
+        }
+    }
+}